@@ -0,0 +1,147 @@
+package com.xd.location.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import android.location.GnssMeasurement;
+
+import com.xd.location.EpochEncoder;
+import com.xd.location.EpochFormatter;
+import com.xd.location.GnssData;
+import com.xd.location.GnssDataPool;
+import com.xd.location.SatelliteIndex;
+import com.xd.location.SppSolution;
+import com.xd.location.SubscriptionSpec;
+
+/**
+ * onGnssMeasurementsReceived 处理链路的基准测试，每次调用处理一个历元
+ *
+ * Throughput 为每微秒处理的历元数，SampleTime 给出单个历元耗时的分布，
+ * 分配速率用 -prof gc 查看（gc.alloc.rate.norm 即每个历元分配的字节数）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EpochBenchmark {
+  private static final int EPOCHS = 64;
+
+  @Param({"10", "40", "100"})
+  public int measurements;
+
+  private EpochReplay.Epoch[] epochs;
+  private int next = 0;
+
+  private final SatelliteIndex satelliteIndex = new SatelliteIndex();
+  private final GnssDataPool pool = new GnssDataPool();
+  private final EpochEncoder encoder = new EpochEncoder();
+  private final EpochEncoder deltaEncoder = new EpochEncoder();
+  private final SppSolution solution = new SppSolution();
+  private final SubscriptionSpec spec = SubscriptionSpec.DEFAULT;
+  private int[] selected;
+
+  @Setup
+  public void setup() throws IOException {
+    EpochReplay replay = EpochReplay.load(System.getProperty("epochs"), measurements, EPOCHS);
+    epochs = replay.epochs.toArray(new EpochReplay.Epoch[0]);
+    satelliteIndex.update(replay.status);
+    selected = new int[measurements];
+    deltaEncoder.setKeyframeInterval(10);
+  }
+
+  private EpochReplay.Epoch nextEpoch() {
+    EpochReplay.Epoch epoch = epochs[next];
+    next = (next + 1) % epochs.length;
+    return epoch;
+  }
+
+  private void fill(EpochReplay.Epoch epoch) {
+    pool.clear();
+    for (GnssMeasurement measurement : epoch.measurements) {
+      pool.add(measurement, epoch.clock, satelliteIndex);
+    }
+  }
+
+  // 每个观测值新建 GnssData，对照池化前的分配开销
+  @Benchmark
+  public List<GnssData> newGnssData() {
+    EpochReplay.Epoch epoch = nextEpoch();
+    List<GnssData> list = new ArrayList<GnssData>(epoch.measurements.length);
+    for (GnssMeasurement measurement : epoch.measurements) {
+      list.add(new GnssData(measurement, epoch.clock, satelliteIndex));
+    }
+    return list;
+  }
+
+  // 复用 GnssDataPool，包含伪距计算和 GnssStatus 索引查找
+  @Benchmark
+  public GnssDataPool pooledGnssData() {
+    fill(nextEpoch());
+    return pool;
+  }
+
+  @Benchmark
+  public void getPrn(Blackhole blackhole) {
+    for (GnssMeasurement measurement : nextEpoch().measurements) {
+      blackhole.consume(GnssData.getPRN(measurement.getConstellationType(), measurement.getSvid()));
+    }
+  }
+
+  @Benchmark
+  public Map<String, Object> formatClock() {
+    return EpochFormatter.formatClock(nextEpoch().clock);
+  }
+
+  // map 格式的完整历元：时钟 + 每颗卫星一个 map
+  @Benchmark
+  public Map<String, Object> mapEpoch() {
+    EpochReplay.Epoch epoch = nextEpoch();
+    fill(epoch);
+    int count = spec.select(pool, selected);
+
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put("rx_clock", EpochFormatter.formatClock(epoch.clock));
+    data.put("satellite_count", satelliteIndex.getSatelliteCount());
+    data.put("satellites", EpochFormatter.formatSatellites(pool, selected, count, spec));
+    return data;
+  }
+
+  // 二进制格式的完整历元
+  @Benchmark
+  public byte[] binaryEpoch() {
+    EpochReplay.Epoch epoch = nextEpoch();
+    fill(epoch);
+    int count = spec.select(pool, selected);
+    return encoder.encode(epoch.clock, null, null, solution, null, null, null, satelliteIndex.getSatelliteCount(),
+        pool, selected, count, spec.fieldMask);
+  }
+
+  // 增量编码的历元，每 10 个历元一个关键帧
+  @Benchmark
+  public byte[] deltaEpoch() {
+    EpochReplay.Epoch epoch = nextEpoch();
+    fill(epoch);
+    int count = spec.select(pool, selected);
+    return deltaEncoder.encode(epoch.clock, null, null, solution, null, null, null,
+        satelliteIndex.getSatelliteCount(), pool, selected, count, spec.fieldMask);
+  }
+}
@@ -0,0 +1,219 @@
+package com.xd.location.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+
+/**
+ * 基准测试回放的历元
+ *
+ * 优先读取 GnssLogger 记录的 Raw 行（按文件头的列名解析），没有记录时生成模拟历元。
+ * 每个历元的观测值个数固定为 measurements，记录中不够时循环使用已有的观测值。
+ */
+public class EpochReplay {
+  public static class Epoch {
+    public final GnssClock clock;
+    public final GnssMeasurement[] measurements;
+
+    Epoch(GnssClock clock, GnssMeasurement[] measurements) {
+      this.clock = clock;
+      this.measurements = measurements;
+    }
+  }
+
+  private static final long WEEK_NANOS = 604800L * 1000000000L;
+  private static final int[] CONSTELLATIONS = {
+      GnssStatus.CONSTELLATION_GPS, GnssStatus.CONSTELLATION_GALILEO, GnssStatus.CONSTELLATION_BEIDOU,
+      GnssStatus.CONSTELLATION_GLONASS
+  };
+  private static final float[] CARRIERS = {1575.42E6f, 1176.45E6f};
+
+  public final List<Epoch> epochs = new ArrayList<Epoch>();
+  public GnssStatus status;
+
+  // path 为空时生成 count 个模拟历元
+  public static EpochReplay load(String path, int measurements, int count) throws IOException {
+    EpochReplay replay = new EpochReplay();
+    if (path != null && !path.isEmpty()) {
+      replay.read(path, measurements);
+    }
+    if (replay.epochs.isEmpty()) {
+      replay.generate(measurements, count);
+    }
+    replay.buildStatus();
+    return replay;
+  }
+
+  private void read(String path, int measurements) throws IOException {
+    Map<String, Integer> columns = null;
+    long epochTime = Long.MIN_VALUE;
+    GnssClock clock = null;
+    List<GnssMeasurement> current = new ArrayList<GnssMeasurement>();
+
+    BufferedReader reader = new BufferedReader(new FileReader(path));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("# Raw,")) {
+          columns = new HashMap<String, Integer>();
+          String[] names = line.substring(2).split(",");
+          for (int i = 0; i < names.length; i++) {
+            columns.put(names[i].trim(), i);
+          }
+          continue;
+        }
+        if (columns == null || !line.startsWith("Raw,")) {
+          continue;
+        }
+
+        String[] v = line.split(",", -1);
+        long timeNanos = longOf(v, columns, "TimeNanos");
+        if (timeNanos != epochTime) {
+          if (clock != null) {
+            epochs.add(new Epoch(clock, fill(current, measurements)));
+          }
+          current.clear();
+          epochTime = timeNanos;
+          clock = readClock(v, columns);
+        }
+        current.add(readMeasurement(v, columns));
+      }
+      if (clock != null) {
+        epochs.add(new Epoch(clock, fill(current, measurements)));
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static GnssClock readClock(String[] v, Map<String, Integer> c) {
+    GnssClock clock = new GnssClock();
+    clock.setTimeNanos(longOf(v, c, "TimeNanos"));
+    if (!text(v, c, "LeapSecond").isEmpty()) {
+      clock.setLeapSecond((int) longOf(v, c, "LeapSecond"));
+    }
+    clock.setTimeUncertaintyNanos(doubleOf(v, c, "TimeUncertaintyNanos"));
+    clock.setFullBiasNanos(longOf(v, c, "FullBiasNanos"));
+    clock.setBiasNanos(doubleOf(v, c, "BiasNanos"));
+    clock.setBiasUncertaintyNanos(doubleOf(v, c, "BiasUncertaintyNanos"));
+    clock.setDriftNanosPerSecond(doubleOf(v, c, "DriftNanosPerSecond"));
+    clock.setDriftUncertaintyNanosPerSecond(doubleOf(v, c, "DriftUncertaintyNanosPerSecond"));
+    clock.setHardwareClockDiscontinuityCount((int) longOf(v, c, "HardwareClockDiscontinuityCount"));
+    return clock;
+  }
+
+  private static GnssMeasurement readMeasurement(String[] v, Map<String, Integer> c) {
+    GnssMeasurement m = new GnssMeasurement();
+    m.setSvid((int) longOf(v, c, "Svid"));
+    m.setConstellationType((int) longOf(v, c, "ConstellationType"));
+    m.setTimeOffsetNanos(doubleOf(v, c, "TimeOffsetNanos"));
+    m.setState((int) longOf(v, c, "State"));
+    m.setReceivedSvTimeNanos(longOf(v, c, "ReceivedSvTimeNanos"));
+    m.setReceivedSvTimeUncertaintyNanos(longOf(v, c, "ReceivedSvTimeUncertaintyNanos"));
+    m.setCn0DbHz(doubleOf(v, c, "Cn0DbHz"));
+    m.setPseudorangeRateMetersPerSecond(doubleOf(v, c, "PseudorangeRateMetersPerSecond"));
+    m.setPseudorangeRateUncertaintyMetersPerSecond(doubleOf(v, c, "PseudorangeRateUncertaintyMetersPerSecond"));
+    m.setAccumulatedDeltaRangeState((int) longOf(v, c, "AccumulatedDeltaRangeState"));
+    m.setAccumulatedDeltaRangeMeters(doubleOf(v, c, "AccumulatedDeltaRangeMeters"));
+    m.setAccumulatedDeltaRangeUncertaintyMeters(doubleOf(v, c, "AccumulatedDeltaRangeUncertaintyMeters"));
+    m.setCarrierFrequencyHz((float) doubleOf(v, c, "CarrierFrequencyHz"));
+    m.setMultipathIndicator((int) longOf(v, c, "MultipathIndicator"));
+    m.setSnrInDb(doubleOf(v, c, "SnrInDb"));
+    m.setAutomaticGainControlLevelDb(doubleOf(v, c, "AgcDb"));
+    return m;
+  }
+
+  private static String text(String[] v, Map<String, Integer> c, String name) {
+    Integer i = c.get(name);
+    return i == null || i >= v.length ? "" : v[i].trim();
+  }
+
+  private static long longOf(String[] v, Map<String, Integer> c, String name) {
+    String s = text(v, c, name);
+    return s.isEmpty() ? 0 : (long) Double.parseDouble(s);
+  }
+
+  private static double doubleOf(String[] v, Map<String, Integer> c, String name) {
+    String s = text(v, c, name);
+    return s.isEmpty() ? Double.NaN : Double.parseDouble(s);
+  }
+
+  private static GnssMeasurement[] fill(List<GnssMeasurement> source, int measurements) {
+    GnssMeasurement[] out = new GnssMeasurement[measurements];
+    for (int i = 0; i < measurements; i++) {
+      out[i] = source.get(i % source.size());
+    }
+    return out;
+  }
+
+  // 模拟历元：GPS、Galileo、北斗、GLONASS 轮流，每颗卫星 L1 和 L5 两个信号
+  private void generate(int measurements, int count) {
+    Random random = new Random(42);
+    long fullBias = -1300000000L * 1000000000L;
+    for (int e = 0; e < count; e++) {
+      GnssClock clock = new GnssClock();
+      long timeNanos = 100000000000L + e * 1000000000L;
+      clock.setTimeNanos(timeNanos);
+      clock.setLeapSecond(18);
+      clock.setTimeUncertaintyNanos(0);
+      clock.setFullBiasNanos(fullBias);
+      clock.setBiasNanos(0.5);
+      clock.setBiasUncertaintyNanos(20);
+      clock.setDriftNanosPerSecond(1.5);
+      clock.setDriftUncertaintyNanosPerSecond(0.1);
+
+      long gpsTime = (timeNanos - fullBias) % WEEK_NANOS;
+      GnssMeasurement[] list = new GnssMeasurement[measurements];
+      for (int i = 0; i < measurements; i++) {
+        int satellite = i / 2;
+        GnssMeasurement m = new GnssMeasurement();
+        m.setConstellationType(CONSTELLATIONS[satellite % CONSTELLATIONS.length]);
+        m.setSvid(1 + satellite / CONSTELLATIONS.length);
+        m.setCarrierFrequencyHz(CARRIERS[i % 2]);
+        m.setState(0x3FFF);
+        // 传播时间 65~85 毫秒
+        m.setReceivedSvTimeNanos(gpsTime - 65000000L - random.nextInt(20000000));
+        m.setReceivedSvTimeUncertaintyNanos(10 + random.nextInt(40));
+        m.setCn0DbHz(25 + random.nextDouble() * 20);
+        m.setPseudorangeRateMetersPerSecond(random.nextGaussian() * 500);
+        m.setPseudorangeRateUncertaintyMetersPerSecond(0.05);
+        m.setAccumulatedDeltaRangeState(1);
+        m.setAccumulatedDeltaRangeMeters(random.nextDouble() * 1E6);
+        m.setAccumulatedDeltaRangeUncertaintyMeters(0.01);
+        m.setAutomaticGainControlLevelDb(2);
+        list[i] = m;
+      }
+      epochs.add(new Epoch(clock, list));
+    }
+  }
+
+  // 由第一个历元的卫星生成 GnssStatus，让 SatelliteIndex 的查找都能命中
+  private void buildStatus() {
+    GnssMeasurement[] first = epochs.get(0).measurements;
+    int n = first.length;
+    int[] svid = new int[n];
+    int[] constellation = new int[n];
+    float[] cn0 = new float[n];
+    float[] elevation = new float[n];
+    float[] azimuth = new float[n];
+    float[] carrier = new float[n];
+    for (int i = 0; i < n; i++) {
+      svid[i] = first[i].getSvid();
+      constellation[i] = first[i].getConstellationType();
+      cn0[i] = (float) first[i].getCn0DbHz();
+      elevation[i] = 10 + (i * 7) % 80;
+      azimuth[i] = (i * 37) % 360;
+      carrier[i] = first[i].hasCarrierFrequencyHz() ? first[i].getCarrierFrequencyHz() : 0;
+    }
+    status = new GnssStatus(n, svid, constellation, cn0, elevation, azimuth, carrier);
+  }
+}
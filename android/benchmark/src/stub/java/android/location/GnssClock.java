@@ -0,0 +1,146 @@
+package android.location;
+
+// 基准测试用的替身，只保留插件用到的字段
+public class GnssClock {
+  private long timeNanos;
+  private int leapSecond;
+  private boolean hasLeapSecond;
+  private double timeUncertaintyNanos = Double.NaN;
+  private long fullBiasNanos;
+  private boolean hasFullBiasNanos;
+  private double biasNanos = Double.NaN;
+  private double biasUncertaintyNanos = Double.NaN;
+  private double driftNanosPerSecond = Double.NaN;
+  private double driftUncertaintyNanosPerSecond = Double.NaN;
+  private int hardwareClockDiscontinuityCount;
+  private long elapsedRealtimeNanos;
+  private boolean hasElapsedRealtimeNanos;
+  private double elapsedRealtimeUncertaintyNanos = Double.NaN;
+
+  public long getTimeNanos() {
+    return timeNanos;
+  }
+
+  public void setTimeNanos(long value) {
+    timeNanos = value;
+  }
+
+  public boolean hasLeapSecond() {
+    return hasLeapSecond;
+  }
+
+  public int getLeapSecond() {
+    return leapSecond;
+  }
+
+  public void setLeapSecond(int value) {
+    leapSecond = value;
+    hasLeapSecond = true;
+  }
+
+  public boolean hasTimeUncertaintyNanos() {
+    return !Double.isNaN(timeUncertaintyNanos);
+  }
+
+  public double getTimeUncertaintyNanos() {
+    return timeUncertaintyNanos;
+  }
+
+  public void setTimeUncertaintyNanos(double value) {
+    timeUncertaintyNanos = value;
+  }
+
+  public boolean hasFullBiasNanos() {
+    return hasFullBiasNanos;
+  }
+
+  public long getFullBiasNanos() {
+    return fullBiasNanos;
+  }
+
+  public void setFullBiasNanos(long value) {
+    fullBiasNanos = value;
+    hasFullBiasNanos = true;
+  }
+
+  public boolean hasBiasNanos() {
+    return !Double.isNaN(biasNanos);
+  }
+
+  public double getBiasNanos() {
+    return hasBiasNanos() ? biasNanos : 0;
+  }
+
+  public void setBiasNanos(double value) {
+    biasNanos = value;
+  }
+
+  public boolean hasBiasUncertaintyNanos() {
+    return !Double.isNaN(biasUncertaintyNanos);
+  }
+
+  public double getBiasUncertaintyNanos() {
+    return biasUncertaintyNanos;
+  }
+
+  public void setBiasUncertaintyNanos(double value) {
+    biasUncertaintyNanos = value;
+  }
+
+  public boolean hasDriftNanosPerSecond() {
+    return !Double.isNaN(driftNanosPerSecond);
+  }
+
+  public double getDriftNanosPerSecond() {
+    return driftNanosPerSecond;
+  }
+
+  public void setDriftNanosPerSecond(double value) {
+    driftNanosPerSecond = value;
+  }
+
+  public boolean hasDriftUncertaintyNanosPerSecond() {
+    return !Double.isNaN(driftUncertaintyNanosPerSecond);
+  }
+
+  public double getDriftUncertaintyNanosPerSecond() {
+    return driftUncertaintyNanosPerSecond;
+  }
+
+  public void setDriftUncertaintyNanosPerSecond(double value) {
+    driftUncertaintyNanosPerSecond = value;
+  }
+
+  public int getHardwareClockDiscontinuityCount() {
+    return hardwareClockDiscontinuityCount;
+  }
+
+  public void setHardwareClockDiscontinuityCount(int value) {
+    hardwareClockDiscontinuityCount = value;
+  }
+
+  public boolean hasElapsedRealtimeNanos() {
+    return hasElapsedRealtimeNanos;
+  }
+
+  public long getElapsedRealtimeNanos() {
+    return elapsedRealtimeNanos;
+  }
+
+  public void setElapsedRealtimeNanos(long value) {
+    elapsedRealtimeNanos = value;
+    hasElapsedRealtimeNanos = true;
+  }
+
+  public boolean hasElapsedRealtimeUncertaintyNanos() {
+    return !Double.isNaN(elapsedRealtimeUncertaintyNanos);
+  }
+
+  public double getElapsedRealtimeUncertaintyNanos() {
+    return elapsedRealtimeUncertaintyNanos;
+  }
+
+  public void setElapsedRealtimeUncertaintyNanos(double value) {
+    elapsedRealtimeUncertaintyNanos = value;
+  }
+}
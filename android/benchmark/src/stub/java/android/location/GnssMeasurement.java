@@ -0,0 +1,239 @@
+package android.location;
+
+// 基准测试用的替身，只保留插件用到的字段
+public class GnssMeasurement {
+  private int svid;
+  private int constellationType;
+  private double timeOffsetNanos;
+  private int state;
+  private long receivedSvTimeNanos;
+  private long receivedSvTimeUncertaintyNanos;
+  private double cn0DbHz;
+  private double pseudorangeRateMetersPerSecond;
+  private double pseudorangeRateUncertaintyMetersPerSecond;
+  private int accumulatedDeltaRangeState;
+  private double accumulatedDeltaRangeMeters;
+  private double accumulatedDeltaRangeUncertaintyMeters;
+  private float carrierFrequencyHz = Float.NaN;
+  private int multipathIndicator;
+  private double snrInDb = Double.NaN;
+  private double automaticGainControlLevelDb = Double.NaN;
+  private String codeType;
+  private double basebandCn0DbHz = Double.NaN;
+  private double fullInterSignalBiasNanos = Double.NaN;
+  private double fullInterSignalBiasUncertaintyNanos = Double.NaN;
+  private double satelliteInterSignalBiasNanos = Double.NaN;
+  private double satelliteInterSignalBiasUncertaintyNanos = Double.NaN;
+
+  public int getSvid() {
+    return svid;
+  }
+
+  public void setSvid(int value) {
+    svid = value;
+  }
+
+  public int getConstellationType() {
+    return constellationType;
+  }
+
+  public void setConstellationType(int value) {
+    constellationType = value;
+  }
+
+  public double getTimeOffsetNanos() {
+    return timeOffsetNanos;
+  }
+
+  public void setTimeOffsetNanos(double value) {
+    timeOffsetNanos = value;
+  }
+
+  public int getState() {
+    return state;
+  }
+
+  public void setState(int value) {
+    state = value;
+  }
+
+  public long getReceivedSvTimeNanos() {
+    return receivedSvTimeNanos;
+  }
+
+  public void setReceivedSvTimeNanos(long value) {
+    receivedSvTimeNanos = value;
+  }
+
+  public long getReceivedSvTimeUncertaintyNanos() {
+    return receivedSvTimeUncertaintyNanos;
+  }
+
+  public void setReceivedSvTimeUncertaintyNanos(long value) {
+    receivedSvTimeUncertaintyNanos = value;
+  }
+
+  public double getCn0DbHz() {
+    return cn0DbHz;
+  }
+
+  public void setCn0DbHz(double value) {
+    cn0DbHz = value;
+  }
+
+  public double getPseudorangeRateMetersPerSecond() {
+    return pseudorangeRateMetersPerSecond;
+  }
+
+  public void setPseudorangeRateMetersPerSecond(double value) {
+    pseudorangeRateMetersPerSecond = value;
+  }
+
+  public double getPseudorangeRateUncertaintyMetersPerSecond() {
+    return pseudorangeRateUncertaintyMetersPerSecond;
+  }
+
+  public void setPseudorangeRateUncertaintyMetersPerSecond(double value) {
+    pseudorangeRateUncertaintyMetersPerSecond = value;
+  }
+
+  public int getAccumulatedDeltaRangeState() {
+    return accumulatedDeltaRangeState;
+  }
+
+  public void setAccumulatedDeltaRangeState(int value) {
+    accumulatedDeltaRangeState = value;
+  }
+
+  public double getAccumulatedDeltaRangeMeters() {
+    return accumulatedDeltaRangeMeters;
+  }
+
+  public void setAccumulatedDeltaRangeMeters(double value) {
+    accumulatedDeltaRangeMeters = value;
+  }
+
+  public double getAccumulatedDeltaRangeUncertaintyMeters() {
+    return accumulatedDeltaRangeUncertaintyMeters;
+  }
+
+  public void setAccumulatedDeltaRangeUncertaintyMeters(double value) {
+    accumulatedDeltaRangeUncertaintyMeters = value;
+  }
+
+  public boolean hasCarrierFrequencyHz() {
+    return !Float.isNaN(carrierFrequencyHz);
+  }
+
+  public float getCarrierFrequencyHz() {
+    return carrierFrequencyHz;
+  }
+
+  public void setCarrierFrequencyHz(float value) {
+    carrierFrequencyHz = value;
+  }
+
+  public boolean hasCodeType() {
+    return codeType != null;
+  }
+
+  public String getCodeType() {
+    return codeType != null ? codeType : "UNKNOWN";
+  }
+
+  public void setCodeType(String value) {
+    codeType = value;
+  }
+
+  public int getMultipathIndicator() {
+    return multipathIndicator;
+  }
+
+  public void setMultipathIndicator(int value) {
+    multipathIndicator = value;
+  }
+
+  public boolean hasSnrInDb() {
+    return !Double.isNaN(snrInDb);
+  }
+
+  public double getSnrInDb() {
+    return snrInDb;
+  }
+
+  public void setSnrInDb(double value) {
+    snrInDb = value;
+  }
+
+  public boolean hasAutomaticGainControlLevelDb() {
+    return !Double.isNaN(automaticGainControlLevelDb);
+  }
+
+  public double getAutomaticGainControlLevelDb() {
+    return automaticGainControlLevelDb;
+  }
+
+  public void setAutomaticGainControlLevelDb(double value) {
+    automaticGainControlLevelDb = value;
+  }
+
+  public boolean hasBasebandCn0DbHz() {
+    return !Double.isNaN(basebandCn0DbHz);
+  }
+
+  public double getBasebandCn0DbHz() {
+    return basebandCn0DbHz;
+  }
+
+  public void setBasebandCn0DbHz(double value) {
+    basebandCn0DbHz = value;
+  }
+
+  public boolean hasFullInterSignalBiasNanos() {
+    return !Double.isNaN(fullInterSignalBiasNanos);
+  }
+
+  public double getFullInterSignalBiasNanos() {
+    return fullInterSignalBiasNanos;
+  }
+
+  public void setFullInterSignalBiasNanos(double value) {
+    fullInterSignalBiasNanos = value;
+  }
+
+  public boolean hasFullInterSignalBiasUncertaintyNanos() {
+    return !Double.isNaN(fullInterSignalBiasUncertaintyNanos);
+  }
+
+  public double getFullInterSignalBiasUncertaintyNanos() {
+    return fullInterSignalBiasUncertaintyNanos;
+  }
+
+  public void setFullInterSignalBiasUncertaintyNanos(double value) {
+    fullInterSignalBiasUncertaintyNanos = value;
+  }
+
+  public boolean hasSatelliteInterSignalBiasNanos() {
+    return !Double.isNaN(satelliteInterSignalBiasNanos);
+  }
+
+  public double getSatelliteInterSignalBiasNanos() {
+    return satelliteInterSignalBiasNanos;
+  }
+
+  public void setSatelliteInterSignalBiasNanos(double value) {
+    satelliteInterSignalBiasNanos = value;
+  }
+
+  public boolean hasSatelliteInterSignalBiasUncertaintyNanos() {
+    return !Double.isNaN(satelliteInterSignalBiasUncertaintyNanos);
+  }
+
+  public double getSatelliteInterSignalBiasUncertaintyNanos() {
+    return satelliteInterSignalBiasUncertaintyNanos;
+  }
+
+  public void setSatelliteInterSignalBiasUncertaintyNanos(double value) {
+    satelliteInterSignalBiasUncertaintyNanos = value;
+  }
+}
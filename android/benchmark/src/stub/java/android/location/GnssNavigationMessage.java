@@ -0,0 +1,14 @@
+package android.location;
+
+// 基准测试用的替身，只有 NavigationDecoder 用到的常量
+public class GnssNavigationMessage {
+  public static final int TYPE_UNKNOWN = 0;
+  public static final int TYPE_GPS_L1CA = 0x0101;
+  public static final int TYPE_QZS_L1CA = 0x0401;
+  public static final int TYPE_BDS_D1 = 0x0501;
+  public static final int TYPE_GAL_I = 0x0601;
+
+  public static final int STATUS_UNKNOWN = 0;
+  public static final int STATUS_PARITY_PASSED = 1;
+  public static final int STATUS_PARITY_REBUILT = 2;
+}
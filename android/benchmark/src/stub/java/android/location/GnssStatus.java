@@ -0,0 +1,149 @@
+package android.location;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 基准测试用的替身，卫星列表在构造时给出，或者像 API 30 起那样用 Builder 构造
+public class GnssStatus {
+  public static final int CONSTELLATION_UNKNOWN = 0;
+  public static final int CONSTELLATION_GPS = 1;
+  public static final int CONSTELLATION_SBAS = 2;
+  public static final int CONSTELLATION_GLONASS = 3;
+  public static final int CONSTELLATION_QZSS = 4;
+  public static final int CONSTELLATION_BEIDOU = 5;
+  public static final int CONSTELLATION_GALILEO = 6;
+  public static final int CONSTELLATION_IRNSS = 7;
+
+  private final int count;
+  private final int[] svid;
+  private final int[] constellationType;
+  private final float[] cn0DbHz;
+  private final float[] elevationDegrees;
+  private final float[] azimuthDegrees;
+  private final float[] carrierFrequencyHz;
+  private final float[] basebandCn0DbHz;
+  private final int[] flags; // Builder 构造时的星历、历书、参与定位标记
+
+  private static final int EPHEMERIS = 1;
+  private static final int ALMANAC = 1 << 1;
+  private static final int USED_IN_FIX = 1 << 2;
+  private static final int BASEBAND_CN0 = 1 << 3;
+
+  public static class Builder {
+    private final List<float[]> values = new ArrayList<float[]>();
+    private final List<int[]> ids = new ArrayList<int[]>();
+
+    public Builder addSatellite(int constellationType, int svid, float cn0DbHz, float elevation, float azimuth,
+                                boolean hasEphemeris, boolean hasAlmanac, boolean usedInFix,
+                                boolean hasCarrierFrequency, float carrierFrequency, boolean hasBasebandCn0DbHz,
+                                float basebandCn0DbHz) {
+      int f = (hasEphemeris ? EPHEMERIS : 0) | (hasAlmanac ? ALMANAC : 0) | (usedInFix ? USED_IN_FIX : 0)
+          | (hasBasebandCn0DbHz ? BASEBAND_CN0 : 0);
+      ids.add(new int[] {constellationType, svid, f});
+      values.add(new float[] {cn0DbHz, elevation, azimuth, hasCarrierFrequency ? carrierFrequency : 0,
+          basebandCn0DbHz});
+      return this;
+    }
+
+    public GnssStatus build() {
+      int n = ids.size();
+      int[] svid = new int[n];
+      int[] constellationType = new int[n];
+      int[] flags = new int[n];
+      float[] cn0 = new float[n];
+      float[] elevation = new float[n];
+      float[] azimuth = new float[n];
+      float[] carrier = new float[n];
+      float[] baseband = new float[n];
+      for (int i = 0; i < n; i++) {
+        constellationType[i] = ids.get(i)[0];
+        svid[i] = ids.get(i)[1];
+        flags[i] = ids.get(i)[2];
+        cn0[i] = values.get(i)[0];
+        elevation[i] = values.get(i)[1];
+        azimuth[i] = values.get(i)[2];
+        carrier[i] = values.get(i)[3];
+        baseband[i] = values.get(i)[4];
+      }
+      return new GnssStatus(n, svid, constellationType, cn0, elevation, azimuth, carrier, baseband, flags);
+    }
+  }
+
+  public GnssStatus(int count, int[] svid, int[] constellationType, float[] cn0DbHz, float[] elevationDegrees,
+                    float[] azimuthDegrees, float[] carrierFrequencyHz) {
+    this.count = count;
+    this.svid = svid;
+    this.constellationType = constellationType;
+    this.cn0DbHz = cn0DbHz;
+    this.elevationDegrees = elevationDegrees;
+    this.azimuthDegrees = azimuthDegrees;
+    this.carrierFrequencyHz = carrierFrequencyHz;
+    this.basebandCn0DbHz = new float[count];
+    this.flags = new int[count];
+  }
+
+  private GnssStatus(int count, int[] svid, int[] constellationType, float[] cn0DbHz, float[] elevationDegrees,
+                     float[] azimuthDegrees, float[] carrierFrequencyHz, float[] basebandCn0DbHz, int[] flags) {
+    this.count = count;
+    this.svid = svid;
+    this.constellationType = constellationType;
+    this.cn0DbHz = cn0DbHz;
+    this.elevationDegrees = elevationDegrees;
+    this.azimuthDegrees = azimuthDegrees;
+    this.carrierFrequencyHz = carrierFrequencyHz;
+    this.basebandCn0DbHz = basebandCn0DbHz;
+    this.flags = flags;
+  }
+
+  public int getSatelliteCount() {
+    return count;
+  }
+
+  public int getSvid(int i) {
+    return svid[i];
+  }
+
+  public int getConstellationType(int i) {
+    return constellationType[i];
+  }
+
+  public float getCn0DbHz(int i) {
+    return cn0DbHz[i];
+  }
+
+  public boolean hasBasebandCn0DbHz(int i) {
+    return (flags[i] & BASEBAND_CN0) != 0;
+  }
+
+  public float getBasebandCn0DbHz(int i) {
+    return basebandCn0DbHz[i];
+  }
+
+  public boolean hasEphemerisData(int i) {
+    return (flags[i] & EPHEMERIS) != 0;
+  }
+
+  public boolean hasAlmanacData(int i) {
+    return (flags[i] & ALMANAC) != 0;
+  }
+
+  public boolean usedInFix(int i) {
+    return (flags[i] & USED_IN_FIX) != 0;
+  }
+
+  public float getElevationDegrees(int i) {
+    return elevationDegrees[i];
+  }
+
+  public float getAzimuthDegrees(int i) {
+    return azimuthDegrees[i];
+  }
+
+  public boolean hasCarrierFrequencyHz(int i) {
+    return carrierFrequencyHz[i] > 0;
+  }
+
+  public float getCarrierFrequencyHz(int i) {
+    return carrierFrequencyHz[i];
+  }
+}
@@ -0,0 +1,149 @@
+package android.location;
+
+// 基准测试用的替身，EpochLog 读写的字段都有对应的 getter 和 setter
+public class Location {
+  private final String provider;
+  private long time;
+  private long elapsedRealtimeNanos;
+  private double latitude;
+  private double longitude;
+  private double altitude;
+  private boolean hasAltitude;
+  private float speed;
+  private boolean hasSpeed;
+  private float bearing;
+  private boolean hasBearing;
+  private float accuracy;
+  private boolean hasAccuracy;
+  private float verticalAccuracyMeters = Float.NaN;
+  private float speedAccuracyMetersPerSecond = Float.NaN;
+  private float bearingAccuracyDegrees = Float.NaN;
+
+  public Location(String provider) {
+    this.provider = provider;
+  }
+
+  public String getProvider() {
+    return provider;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public void setTime(long value) {
+    time = value;
+  }
+
+  public long getElapsedRealtimeNanos() {
+    return elapsedRealtimeNanos;
+  }
+
+  public void setElapsedRealtimeNanos(long value) {
+    elapsedRealtimeNanos = value;
+  }
+
+  public double getLatitude() {
+    return latitude;
+  }
+
+  public void setLatitude(double value) {
+    latitude = value;
+  }
+
+  public double getLongitude() {
+    return longitude;
+  }
+
+  public void setLongitude(double value) {
+    longitude = value;
+  }
+
+  public boolean hasAltitude() {
+    return hasAltitude;
+  }
+
+  public double getAltitude() {
+    return altitude;
+  }
+
+  public void setAltitude(double value) {
+    altitude = value;
+    hasAltitude = true;
+  }
+
+  public boolean hasSpeed() {
+    return hasSpeed;
+  }
+
+  public float getSpeed() {
+    return speed;
+  }
+
+  public void setSpeed(float value) {
+    speed = value;
+    hasSpeed = true;
+  }
+
+  public boolean hasBearing() {
+    return hasBearing;
+  }
+
+  public float getBearing() {
+    return bearing;
+  }
+
+  public void setBearing(float value) {
+    bearing = value;
+    hasBearing = true;
+  }
+
+  public boolean hasAccuracy() {
+    return hasAccuracy;
+  }
+
+  public float getAccuracy() {
+    return accuracy;
+  }
+
+  public void setAccuracy(float value) {
+    accuracy = value;
+    hasAccuracy = true;
+  }
+
+  public boolean hasVerticalAccuracy() {
+    return !Float.isNaN(verticalAccuracyMeters);
+  }
+
+  public float getVerticalAccuracyMeters() {
+    return hasVerticalAccuracy() ? verticalAccuracyMeters : 0;
+  }
+
+  public void setVerticalAccuracyMeters(float value) {
+    verticalAccuracyMeters = value;
+  }
+
+  public boolean hasSpeedAccuracy() {
+    return !Float.isNaN(speedAccuracyMetersPerSecond);
+  }
+
+  public float getSpeedAccuracyMetersPerSecond() {
+    return hasSpeedAccuracy() ? speedAccuracyMetersPerSecond : 0;
+  }
+
+  public void setSpeedAccuracyMetersPerSecond(float value) {
+    speedAccuracyMetersPerSecond = value;
+  }
+
+  public boolean hasBearingAccuracy() {
+    return !Float.isNaN(bearingAccuracyDegrees);
+  }
+
+  public float getBearingAccuracyDegrees() {
+    return hasBearingAccuracy() ? bearingAccuracyDegrees : 0;
+  }
+
+  public void setBearingAccuracyDegrees(float value) {
+    bearingAccuracyDegrees = value;
+  }
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+// 基准测试用的替身，固定为 Android 12
+public class Build {
+  public static class VERSION {
+    public static final int SDK_INT = 31;
+  }
+
+  public static class VERSION_CODES {
+    public static final int M = 23;
+    public static final int N = 24;
+    public static final int O = 26;
+    public static final int Q = 29;
+    public static final int R = 30;
+    public static final int S = 31;
+  }
+}
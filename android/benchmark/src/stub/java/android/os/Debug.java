@@ -0,0 +1,12 @@
+package android.os;
+
+// 基准测试用的替身，JVM 上没有 ART 的运行时统计
+public class Debug {
+  public static long threadCpuTimeNanos() {
+    return -1;
+  }
+
+  public static String getRuntimeStat(String statName) {
+    return null;
+  }
+}
@@ -0,0 +1,68 @@
+package android.os;
+
+import java.util.PriorityQueue;
+
+// 基准测试和回放测试用的替身，没有 Looper：消息按 uptimeMillis 排队，
+// 由测试在当前线程上调用 runUntilIdle 依次执行，相同时刻的消息按投递顺序执行
+public class Handler {
+  private static class Message implements Comparable<Message> {
+    final Runnable callback;
+    final long when;
+    final long sequence;
+
+    Message(Runnable callback, long when, long sequence) {
+      this.callback = callback;
+      this.when = when;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(Message o) {
+      if (when != o.when) {
+        return when < o.when ? -1 : 1;
+      }
+      return Long.compare(sequence, o.sequence);
+    }
+  }
+
+  private final PriorityQueue<Message> queue = new PriorityQueue<Message>();
+  private long sequence = 0;
+
+  public final synchronized boolean post(Runnable r) {
+    return postAtTime(r, SystemClock.uptimeMillis());
+  }
+
+  public final synchronized boolean postDelayed(Runnable r, long delayMillis) {
+    return postAtTime(r, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+  }
+
+  public final synchronized boolean postAtTime(Runnable r, long uptimeMillis) {
+    queue.add(new Message(r, uptimeMillis, sequence++));
+    notifyAll();
+    return true;
+  }
+
+  public final synchronized void removeCallbacks(Runnable r) {
+    queue.removeIf(m -> m.callback == r);
+  }
+
+  // 替身专有：执行消息直到队列为空，还没到时间的消息等到时间再执行
+  public void runUntilIdle() throws InterruptedException {
+    while (true) {
+      Message next;
+      synchronized (this) {
+        next = queue.peek();
+        if (next == null) {
+          return;
+        }
+        long wait = next.when - SystemClock.uptimeMillis();
+        if (wait > 0) {
+          wait(wait);
+          continue;
+        }
+        queue.poll();
+      }
+      next.callback.run();
+    }
+  }
+}
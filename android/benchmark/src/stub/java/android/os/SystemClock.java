@@ -0,0 +1,18 @@
+package android.os;
+
+// 基准测试用的替身，以 JVM 启动后的 System.nanoTime 代替开机时间
+public class SystemClock {
+  private static final long START_NANOS = System.nanoTime();
+
+  public static long uptimeMillis() {
+    return (System.nanoTime() - START_NANOS) / 1000000L;
+  }
+
+  public static long elapsedRealtime() {
+    return uptimeMillis();
+  }
+
+  public static long elapsedRealtimeNanos() {
+    return System.nanoTime() - START_NANOS;
+  }
+}
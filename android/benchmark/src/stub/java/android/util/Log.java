@@ -0,0 +1,25 @@
+package android.util;
+
+// 基准测试用的替身，输出到 System.err
+public class Log {
+  public static int i(String tag, String msg) {
+    System.err.println("I/" + tag + ": " + msg);
+    return 0;
+  }
+
+  public static int w(String tag, String msg) {
+    System.err.println("W/" + tag + ": " + msg);
+    return 0;
+  }
+
+  public static int e(String tag, String msg) {
+    System.err.println("E/" + tag + ": " + msg);
+    return 0;
+  }
+
+  public static int e(String tag, String msg, Throwable tr) {
+    System.err.println("E/" + tag + ": " + msg);
+    tr.printStackTrace();
+    return 0;
+  }
+}
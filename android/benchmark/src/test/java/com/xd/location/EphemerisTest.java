@@ -0,0 +1,71 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Ephemeris 的卫星钟差和 EphemerisCache 的过期处理
+ */
+public class EphemerisTest {
+
+  @Test
+  public void clockBiasSolvesForSatelliteTime() {
+    Ephemeris e = new Ephemeris();
+    e.toc = 388800;
+    e.af0 = 1E-3;
+    e.af1 = 1E-8;
+    e.af2 = 1E-15;
+    for (double t : new double[] {388800, 390600, 387000, 396000}) {
+      // 参考值：不动点 dt = dt0 - Δt(dt) 迭代到收敛
+      double dt0 = Ephemeris.wrap(t - e.toc);
+      double dt = dt0;
+      for (int i = 0; i < 20; i++) {
+        dt = dt0 - (e.af0 + e.af1 * dt + e.af2 * dt * dt);
+      }
+      double expected = e.af0 + e.af1 * dt + e.af2 * dt * dt;
+      assertEquals("t " + t, expected, e.clockBias(t), 1E-15);
+    }
+  }
+
+  @Test
+  public void findReleasesExpiredEntries() {
+    EphemerisCache cache = new EphemerisCache();
+    cache.put(ephemeris(Ephemeris.GPS, 3, 43, 387000));
+    cache.put(ephemeris(Ephemeris.GPS, 6, 46, 388800));
+    assertEquals(2, cache.size());
+
+    double maxAge = EphemerisCache.maxAge(Ephemeris.GPS);
+    assertEquals(3, cache.find(Ephemeris.GPS, 3, 387000 + maxAge).svid);
+    assertEquals(2, cache.size());
+
+    // 查询时间比 toe 晚 maxAge 以上：不返回并释放槽位
+    assertNull(cache.find(Ephemeris.GPS, 3, 387000 + maxAge + 1));
+    assertEquals(1, cache.size());
+    assertNull(cache.find(Ephemeris.GPS, 3, 387000));
+    assertEquals(1, cache.size());
+
+    // 查询时间早于 toe 太多时只是不可用，不释放
+    assertNull(cache.find(Ephemeris.GPS, 6, 388800 - maxAge - 1));
+    assertEquals(1, cache.size());
+    assertEquals(6, cache.find(Ephemeris.GPS, 6, 388800).svid);
+
+    // 跨周：周初的查询时间对应上周末的星历
+    cache.put(ephemeris(Ephemeris.GPS, 12, 52, 601200));
+    assertEquals(12, cache.find(Ephemeris.GPS, 12, 3600).svid);
+    assertNull(cache.find(Ephemeris.GPS, 12, 3601));
+    assertEquals(1, cache.size());
+  }
+
+  private static Ephemeris ephemeris(int constellationType, int svid, int iode, double toe) {
+    Ephemeris e = new Ephemeris();
+    e.constellationType = constellationType;
+    e.svid = svid;
+    e.iode = iode;
+    e.iodc = iode;
+    e.toe = toe;
+    e.toc = toe;
+    return e;
+  }
+}
@@ -0,0 +1,67 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import android.os.Handler;
+
+/**
+ * 生成并检查 test/fixtures/epoch_golden.bin，Dart 侧的 location_test.dart 用 GnssDeltaDecoder 解码它
+ *
+ * 回放 fixtures/static_drive.glog 的前 FRAMES 个历元，编码器每 5 个历元一个关键帧，
+ * 即一个关键帧和两个增量帧。每个历元依次写入：长度(u32) 增量编码，长度(u32) 同一历元的完整编码，
+ * Dart 侧解码增量帧后与完整编码逐字段比较。编码格式变化时用 gradle test -PupdateGolden 重新生成。
+ */
+public class EpochGoldenTest {
+  private static final int FRAMES = 3;
+
+  @Test
+  public void matchesGoldenBytes() throws Exception {
+    byte[] encoded = encode();
+    File golden = new File(System.getProperty("golden"));
+    if (Boolean.getBoolean("updateGolden")) {
+      golden.getParentFile().mkdirs();
+      Files.write(golden.toPath(), encoded);
+    }
+    assertTrue("missing " + golden + ", run gradle test -PupdateGolden", golden.isFile());
+    assertArrayEquals("EpochEncoder output changed, run gradle test -PupdateGolden and the Dart tests",
+        Files.readAllBytes(golden.toPath()), encoded);
+  }
+
+  private static byte[] encode() throws IOException, InterruptedException {
+    ReplayPipeline pipeline = new ReplayPipeline(Fixtures.ephemerides(), 5);
+    ReplaySource source = new ReplaySource(Fixtures.file("static_drive.glog"), 0);
+    pipeline.setSensorSource(source.getSensorSource());
+    Handler handler = new Handler();
+    source.start(pipeline, handler);
+    handler.runUntilIdle();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int k = 0; k < FRAMES; k++) {
+      byte[] delta = pipeline.epochs.get(k);
+      byte[] full = pipeline.fullEpochs.get(k);
+      ByteBuffer epoch = ByteBuffer.wrap(delta).order(ByteOrder.LITTLE_ENDIAN);
+      assertEquals("epoch " + k, EpochEncoder.FLAG_DELTA, epoch.get(3) & EpochEncoder.FLAG_DELTA);
+      assertEquals(0, ByteBuffer.wrap(full).get(3) & EpochEncoder.FLAG_DELTA);
+      write(out, delta);
+      write(out, full);
+    }
+    return out.toByteArray();
+  }
+
+  private static void write(ByteArrayOutputStream out, byte[] frame) {
+    byte[] length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(frame.length).array();
+    out.write(length, 0, 4);
+    out.write(frame, 0, frame.length);
+  }
+}
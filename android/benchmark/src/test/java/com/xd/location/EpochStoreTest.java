@@ -0,0 +1,118 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * EpochStore 跨分段的续查：时间回退开始的新分段、查询期间合并分段
+ */
+public class EpochStoreTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final EpochStore store = new EpochStore();
+  private File directory;
+
+  @Before
+  public void open() throws IOException {
+    directory = folder.newFolder("store");
+    store.open(directory, 0, 0, 0);
+  }
+
+  @After
+  public void close() {
+    store.close();
+  }
+
+  @Test
+  public void returnsSegmentsAfterTimeGoesBackwards() throws IOException {
+    append(100, 140);
+    append(50, 90); // 时间回退，换新分段
+
+    assertEquals(concat(range(100, 140), range(50, 90)), queryAll(0, Long.MAX_VALUE, 16));
+    assertEquals(concat(range(100, 121), range(60, 90)), queryAll(60, 120, 7));
+  }
+
+  @Test
+  public void continuesIntoCompactedSegment() throws IOException {
+    append(0, 20);
+    store.open(directory, 0, 0, 0); // 每次 open 从新分段开始
+    append(20, 40);
+    store.open(directory, 0, 0, 0);
+    append(40, 60);
+
+    EpochStore.Chunk chunk = store.query(0, Long.MAX_VALUE, EpochEncoder.ALL_FIELDS, 25);
+    List<Long> times = times(chunk);
+    assertEquals(25, chunk.next);
+
+    // 前两个分段合并到第一个分段的编号下，续查从合并后的分段中的同一时间开始
+    assertEquals(1, store.compact());
+    while (chunk.nextSegment >= 0) {
+      chunk = store.query(0, Long.MAX_VALUE, EpochEncoder.ALL_FIELDS, 25, chunk.nextSegment, chunk.next);
+      times.addAll(times(chunk));
+    }
+    assertEquals(range(0, 60), times);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveLimit() throws IOException {
+    append(0, 10);
+    store.query(0, Long.MAX_VALUE, EpochEncoder.ALL_FIELDS, 0);
+  }
+
+  private List<Long> queryAll(long from, long to, int limit) throws IOException {
+    EpochStore.Chunk chunk = store.query(from, to, EpochEncoder.ALL_FIELDS, limit);
+    List<Long> times = times(chunk);
+    while (chunk.nextSegment >= 0) {
+      assertEquals(limit, chunk.epochs.size());
+      chunk = store.query(from, to, EpochEncoder.ALL_FIELDS, limit, chunk.nextSegment, chunk.next);
+      times.addAll(times(chunk));
+    }
+    return times;
+  }
+
+  // 每条记录为 16 字节的历元头，前 8 字节写入记录时间，字段掩码为全部字段
+  private void append(long from, long to) {
+    for (long time = from; time < to; time++) {
+      ByteBuffer epoch = ByteBuffer.allocate(EpochEncoder.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      epoch.putLong(0, time);
+      epoch.putInt(12, EpochEncoder.ALL_FIELDS);
+      store.append(time, epoch.array());
+    }
+  }
+
+  private static List<Long> times(EpochStore.Chunk chunk) {
+    List<Long> times = new ArrayList<Long>();
+    for (byte[] epoch : chunk.epochs) {
+      times.add(ByteBuffer.wrap(epoch).order(ByteOrder.LITTLE_ENDIAN).getLong(0));
+    }
+    return times;
+  }
+
+  private static List<Long> range(long from, long to) {
+    List<Long> times = new ArrayList<Long>();
+    for (long time = from; time < to; time++) {
+      times.add(time);
+    }
+    return times;
+  }
+
+  private static List<Long> concat(List<Long> a, List<Long> b) {
+    List<Long> times = new ArrayList<Long>(a);
+    times.addAll(b);
+    return times;
+  }
+}
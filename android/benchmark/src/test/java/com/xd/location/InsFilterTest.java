@@ -0,0 +1,132 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * InsFilter 用合成的 IMU 采样和定位结果检查：手机水平静止、加速度计只有重力、没有陀螺转动，
+ * 本地坐标系的东北天与手机的 x、y、z 轴重合
+ */
+public class InsFilterTest {
+  private static final double LATITUDE = 34.13;
+  private static final double LONGITUDE = 108.84;
+  private static final double ALTITUDE = 420;
+  private static final float GRAVITY = 9.80665f;
+  private static final long START = 1000000000L;
+  private static final long STEP = 10000000L; // 100 Hz
+  private static final double METERS_PER_DEGREE = 111320;
+
+  private final InsFilter filter = new InsFilter();
+  private final FusionTrack track = new FusionTrack(256);
+  private long now = START;
+
+  @Test
+  public void staticReceiverStaysAtFix() {
+    imu(1);
+    assertTrue(filter.correctPosition(now, LATITUDE, LONGITUDE, ALTITUDE, 3, 5));
+    assertTrue(filter.isInitialized());
+
+    // 60 秒，每秒一个固定位置的定位结果
+    for (int k = 0; k < 60; k++) {
+      imu(100);
+      assertTrue("fix " + k, filter.correctPosition(now, LATITUDE, LONGITUDE, ALTITUDE, 3, 5));
+      if (k >= 10) {
+        int last = (track.count - 1) * 3;
+        assertEquals(0, (track.positions[last] - LATITUDE) * METERS_PER_DEGREE, 0.1);
+        assertEquals(0, (track.positions[last + 1] - LONGITUDE) * eastMetersPerDegree(), 0.1);
+        assertEquals(ALTITUDE, track.positions[last + 2], 0.1);
+        assertEquals(0, speed(track.count - 1), 0.05);
+      }
+    }
+    // 水平放置，航向为 y 轴方向（北）
+    int last = (track.count - 1) * 3;
+    assertEquals(0, track.attitudes[last], 0.5);
+    assertEquals(0, track.attitudes[last + 1], 0.5);
+    assertEquals(0, Math.min(track.attitudes[last + 2], 360 - track.attitudes[last + 2]), 0.5);
+  }
+
+  @Test
+  public void propagatesConstantVelocity() {
+    imu(1);
+    assertTrue(filter.correctPosition(now, LATITUDE, LONGITUDE, ALTITUDE, 3, 5));
+    assertTrue(filter.correctVelocity(1.0, -0.5, 0, 0.05));
+
+    // 只有 IMU 递推 2 秒，加速度为 0，速度不变，位置按速度线性增加
+    imu(200);
+    assertEquals(200, track.count);
+    double east = track.velocities[0];
+    double north = track.velocities[1];
+    assertEquals(1.0, east, 0.01);
+    assertEquals(-0.5, north, 0.01);
+    for (int i = 0; i < track.count; i++) {
+      int j = i * 3;
+      double seconds = (track.timestamps[i] - track.timestamps[0]) * 1E-9;
+      assertEquals(east, track.velocities[j], 1E-4);
+      assertEquals(north, track.velocities[j + 1], 1E-4);
+      assertEquals(east * seconds,
+          (track.positions[j + 1] - track.positions[1]) * eastMetersPerDegree(), 0.02);
+      assertEquals(north * seconds,
+          (track.positions[j] - track.positions[0]) * METERS_PER_DEGREE, 0.01);
+      assertEquals(track.positions[2], track.positions[j + 2], 1E-3);
+    }
+  }
+
+  @Test
+  public void rejectsJumpsThenReinitializes() {
+    imu(1);
+    assertTrue(filter.correctPosition(now, LATITUDE, LONGITUDE, ALTITUDE, 3, 5));
+    for (int k = 0; k < 10; k++) {
+      imu(100);
+      assertTrue(filter.correctPosition(now, LATITUDE, LONGITUDE, ALTITUDE, 3, 5));
+    }
+
+    // 向北跳 100 米的定位结果被新息检验拒绝，状态不变
+    double jumped = LATITUDE + 100 / METERS_PER_DEGREE;
+    for (int k = 0; k < 5; k++) {
+      imu(100);
+      assertFalse("jump " + k, filter.correctPosition(now, jumped, LONGITUDE, ALTITUDE, 3, 5));
+      assertTrue(filter.isInitialized());
+      int last = (track.count - 1) * 3;
+      assertEquals(0, (track.positions[last] - LATITUDE) * METERS_PER_DEGREE, 0.5);
+    }
+
+    // 连续拒绝超过 MAX_REJECTED 次后以新位置重新初始化
+    imu(100);
+    assertTrue(filter.correctPosition(now, jumped, LONGITUDE, ALTITUDE, 3, 5));
+    imu(1);
+    int last = (track.count - 1) * 3;
+    assertEquals(0, (track.positions[last] - jumped) * METERS_PER_DEGREE, 0.01);
+    assertEquals(0, speed(track.count - 1), 0.01);
+
+    // 之后新位置附近的定位结果正常采用
+    imu(100);
+    assertTrue(filter.correctPosition(now, jumped, LONGITUDE, ALTITUDE, 3, 5));
+  }
+
+  // 递推 n 个 100 Hz 的陀螺和加速度计采样，输出在 track 中
+  private void imu(int n) {
+    ImuSamples samples = new ImuSamples(n * 2);
+    for (int i = 0; i < n; i++) {
+      now += STEP;
+      samples.add(InsFilter.TYPE_GYROSCOPE, now, 0, 0, 0);
+      samples.add(InsFilter.TYPE_ACCELEROMETER, now, 0, 0, GRAVITY);
+    }
+    track.clear();
+    filter.process(samples, track);
+  }
+
+  private double speed(int i) {
+    int j = i * 3;
+    double e = track.velocities[j];
+    double n = track.velocities[j + 1];
+    double u = track.velocities[j + 2];
+    return Math.sqrt(e * e + n * n + u * u);
+  }
+
+  private static double eastMetersPerDegree() {
+    return METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+  }
+}
@@ -0,0 +1,79 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * LatencyHistogram 的分桶边界和百分位数
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void indexesBucketEdges() {
+    // 0..15 每个值一个桶
+    for (int v = 0; v < 16; v++) {
+      assertEquals(v, LatencyHistogram.index(v));
+      assertEquals(v, LatencyHistogram.upperBound(v));
+    }
+    // 16..31 仍是宽度 1，32 起宽度 2
+    assertEquals(16, LatencyHistogram.index(16));
+    assertEquals(31, LatencyHistogram.index(31));
+    assertEquals(32, LatencyHistogram.index(32));
+    assertEquals(32, LatencyHistogram.index(33));
+    assertEquals(33, LatencyHistogram.index(34));
+    assertEquals(33, LatencyHistogram.upperBound(32));
+    // 496..511 为一个桶
+    assertEquals(LatencyHistogram.index(496), LatencyHistogram.index(511));
+    assertEquals(LatencyHistogram.index(511) + 1, LatencyHistogram.index(512));
+    assertEquals(511, LatencyHistogram.upperBound(LatencyHistogram.index(500)));
+  }
+
+  @Test
+  public void bucketsAreContiguousUpToLast() {
+    int last = LatencyHistogram.index(Long.MAX_VALUE);
+    long lower = 0;
+    for (int i = 0; i < last; i++) {
+      long upper = LatencyHistogram.upperBound(i);
+      // 每个桶的上界和下一个值落在相邻的桶，宽度不超过下界的 1/16
+      assertEquals("bucket " + i, i, LatencyHistogram.index(upper));
+      assertEquals("bucket " + i, i + 1, LatencyHistogram.index(upper + 1));
+      assertTrue("bucket " + i, upper - lower + 1 <= Math.max(1, lower / 16));
+      lower = upper + 1;
+    }
+    // 最后一个桶的上界为 2^41 - 1 ns（约 36 分钟），更大的值也记入最后一个桶
+    assertEquals((1L << 41) - 1, LatencyHistogram.upperBound(last));
+    assertEquals(last, LatencyHistogram.index((1L << 41) - 1));
+    assertEquals(last, LatencyHistogram.index(1L << 41));
+    assertEquals(last - 1, LatencyHistogram.index((1L << 41) - (1L << 36) - 1));
+  }
+
+  @Test
+  public void reportsPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.percentile(50));
+
+    histogram.record(-5); // 负值不记录
+    for (long v = 1; v <= 1000; v++) {
+      histogram.record(v);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1, histogram.percentile(0));
+    assertEquals(10, histogram.percentile(1));
+    // 第 500 个值在 496..511 桶，第 900 个在 896..927，第 990 个在 960..991
+    assertEquals(511, histogram.percentile(50));
+    assertEquals(927, histogram.percentile(90));
+    assertEquals(991, histogram.percentile(99));
+    // 1000 所在桶的上界为 1023，结果不超过记录的最大值
+    assertEquals(1000, histogram.percentile(100));
+
+    Map<String, Object> map = histogram.toMap();
+    assertEquals(1000L, map.get("count"));
+    assertEquals(0.5, (Double) map.get("mean_us"), 1E-9);
+    assertEquals(0.511, (Double) map.get("p50_us"), 1E-9);
+    assertEquals(1.0, (Double) map.get("max_us"), 1E-9);
+  }
+}
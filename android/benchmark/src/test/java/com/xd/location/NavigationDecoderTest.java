@@ -0,0 +1,193 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.location.GnssNavigationMessage;
+
+/**
+ * NavigationDecoder 用 navigation.txt 中的电文检查校验和字段比例因子，解码结果与
+ * navigation_ephemeris.txt 中量化后的星历逐项比较
+ */
+public class NavigationDecoderTest {
+  private final EphemerisCache cache = new EphemerisCache();
+  private final NavigationDecoder decoder = new NavigationDecoder(cache);
+  private final List<byte[]> gps = new ArrayList<byte[]>();
+  private final List<byte[]> galileo = new ArrayList<byte[]>();
+  private final List<byte[]> beidou = new ArrayList<byte[]>();
+  private List<String[]> expected;
+
+  @Before
+  public void load() throws IOException {
+    for (String[] v : Fixtures.rows("navigation.txt")) {
+      int type = Integer.parseInt(v[0]);
+      byte[] data = hex(v[2]);
+      if (type == GnssNavigationMessage.TYPE_GPS_L1CA) {
+        gps.add(data);
+      } else if (type == GnssNavigationMessage.TYPE_GAL_I) {
+        galileo.add(data);
+      } else {
+        beidou.add(data);
+      }
+    }
+    expected = Fixtures.rows("navigation_ephemeris.txt");
+  }
+
+  @Test
+  public void checksKnownAnswers() {
+    // CRC-24Q 的标准校验值
+    assertEquals(0xCDE703, NavigationDecoder.crc24q("123456789".getBytes(StandardCharsets.US_ASCII), 72));
+    // x^14 mod (x^4 + x + 1) = x^3 + 1，任意一位错误都能纠正
+    assertEquals(0x400, NavigationDecoder.bch(0x4009));
+    for (int k = 0; k < 15; k++) {
+      assertEquals("bit " + k, 0x400, NavigationDecoder.bch(0x4009 ^ 1 << k));
+    }
+  }
+
+  @Test
+  public void decodesLnav() {
+    assertFalse(decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3, 0, gps.get(0)));
+    assertFalse(decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3, 0, gps.get(1)));
+    assertTrue(decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3, 0, gps.get(2)));
+    assertEphemeris(expected.get(0), Ephemeris.GPS, 3);
+    assertEquals(0, decoder.getRejectedCount());
+  }
+
+  @Test
+  public void decodesInvertedLnav() {
+    // 整个子帧极性反转（数据位和校验位都取反）
+    for (byte[] subframe : gps) {
+      byte[] inverted = subframe.clone();
+      for (int i = 0; i < inverted.length; i += 4) {
+        inverted[i] ^= 0x3F;
+        inverted[i + 1] ^= 0xFF;
+        inverted[i + 2] ^= 0xFF;
+        inverted[i + 3] ^= 0xFF;
+      }
+      decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3, 0, inverted);
+    }
+    assertEquals(1, decoder.getDecodedCount());
+    assertEphemeris(expected.get(0), Ephemeris.GPS, 3);
+  }
+
+  @Test
+  public void rejectsLnavParityError() {
+    // 子帧 2 第 5 个字的一个数据位出错：自己校验时丢弃，子帧 3 到达后也凑不齐
+    byte[] corrupted = gps.get(1).clone();
+    corrupted[17] ^= 0x10;
+    decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3, 0, gps.get(0));
+    assertFalse(decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3, 0, corrupted));
+    assertFalse(decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3, 0, gps.get(2)));
+    assertEquals(1, decoder.getRejectedCount());
+    assertNull(cache.find(Ephemeris.GPS, 3, 387008));
+
+    // 芯片报告校验通过时按芯片的结果采用，与已收到的子帧 1、3 凑成一组
+    assertTrue(decode(GnssNavigationMessage.TYPE_GPS_L1CA, 3,
+        GnssNavigationMessage.STATUS_PARITY_PASSED, corrupted));
+    assertEquals(1, decoder.getRejectedCount());
+  }
+
+  @Test
+  public void decodesInav() {
+    for (int i = 0; i < 4; i++) {
+      assertFalse(decode(GnssNavigationMessage.TYPE_GAL_I, 4, 0, galileo.get(i)));
+    }
+    assertTrue(decode(GnssNavigationMessage.TYPE_GAL_I, 4, 0, galileo.get(4)));
+    assertEphemeris(expected.get(1), Ephemeris.GALILEO, 4);
+    assertEquals(0, decoder.getRejectedCount());
+  }
+
+  @Test
+  public void rejectsInavCrcError() {
+    // 奇数页中的一位出错，CRC 不符
+    byte[] corrupted = galileo.get(0).clone();
+    corrupted[15] ^= 0x02;
+    assertFalse(decode(GnssNavigationMessage.TYPE_GAL_I, 4, 0, corrupted));
+    for (int i = 1; i < 5; i++) {
+      assertFalse(decode(GnssNavigationMessage.TYPE_GAL_I, 4, 0, galileo.get(i)));
+    }
+    assertEquals(1, decoder.getRejectedCount());
+    assertEquals(0, decoder.getDecodedCount());
+  }
+
+  @Test
+  public void decodesD1() {
+    assertFalse(decode(GnssNavigationMessage.TYPE_BDS_D1, 20, 0, beidou.get(0)));
+    assertFalse(decode(GnssNavigationMessage.TYPE_BDS_D1, 20, 0, beidou.get(1)));
+    assertTrue(decode(GnssNavigationMessage.TYPE_BDS_D1, 20, 0, beidou.get(2)));
+    assertEphemeris(expected.get(2), Ephemeris.BEIDOU, 20);
+  }
+
+  @Test
+  public void correctsD1SingleBitErrors() {
+    // 每个 BCH 码字各错一位：字 1 的码字，字 2~10 交织的两个码字
+    for (byte[] subframe : beidou) {
+      byte[] corrupted = subframe.clone();
+      corrupted[3] ^= 0x01;
+      for (int i = 4; i < corrupted.length; i += 4) {
+        corrupted[i + 3] ^= 0x03;
+      }
+      decode(GnssNavigationMessage.TYPE_BDS_D1, 20, 0, corrupted);
+    }
+    assertEquals(1, decoder.getDecodedCount());
+    assertEquals(0, decoder.getRejectedCount());
+    assertEphemeris(expected.get(2), Ephemeris.BEIDOU, 20);
+  }
+
+  private boolean decode(int type, int svid, int status, byte[] data) {
+    return decoder.decode(type, svid, status, data);
+  }
+
+  // 电文中的整数乘比例因子与生成时的运算顺序相同，结果应逐位相等
+  private void assertEphemeris(String[] row, int constellationType, int svid) {
+    Ephemeris want = Fixtures.ephemeris(row);
+    Ephemeris e = cache.find(constellationType, svid, want.toe);
+    assertNotNull(e);
+    assertEquals(constellationType, e.constellationType);
+    assertEquals(svid, e.svid);
+    assertEquals(want.week, e.week);
+    assertEquals(want.iode, e.iode);
+    assertEquals(want.iodc, e.iodc);
+    assertEquals(want.health, e.health);
+    assertEquals("toe", want.toe, e.toe, 0);
+    assertEquals("toc", want.toc, e.toc, 0);
+    assertEquals("af0", want.af0, e.af0, 0);
+    assertEquals("af1", want.af1, e.af1, 0);
+    assertEquals("af2", want.af2, e.af2, 0);
+    assertEquals("tgd", want.tgd, e.tgd, 0);
+    assertEquals("sqrtA", want.sqrtA, e.sqrtA, 0);
+    assertEquals("e", want.e, e.e, 0);
+    assertEquals("i0", want.i0, e.i0, 0);
+    assertEquals("idot", want.idot, e.idot, 0);
+    assertEquals("omega0", want.omega0, e.omega0, 0);
+    assertEquals("omegaDot", want.omegaDot, e.omegaDot, 0);
+    assertEquals("omega", want.omega, e.omega, 0);
+    assertEquals("m0", want.m0, e.m0, 0);
+    assertEquals("deltaN", want.deltaN, e.deltaN, 0);
+    assertEquals("cuc", want.cuc, e.cuc, 0);
+    assertEquals("cus", want.cus, e.cus, 0);
+    assertEquals("crc", want.crc, e.crc, 0);
+    assertEquals("crs", want.crs, e.crs, 0);
+    assertEquals("cic", want.cic, e.cic, 0);
+    assertEquals("cis", want.cis, e.cis, 0);
+  }
+
+  private static byte[] hex(String s) {
+    byte[] data = new byte[s.length() / 2];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+    }
+    return data;
+  }
+}
@@ -0,0 +1,178 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * ObservableTracker 用合成的观测值检查：每颗 GPS 卫星的距离按固定速率变化，伪距加噪声，
+ * ADR 为距离加一个固定的整周模糊度，多普勒与距离变化率一致，没有电离层变化
+ */
+public class ObservableTrackerTest {
+  private static final int GPS = 1;
+  private static final double L1 = 1575.42E6;
+  private static final double L5 = 1176.45E6;
+  private static final double SPEED_OF_LIGHT = 299792458.0;
+  private static final long START = 1000000000000L;
+  private static final long FULL_BIAS = -1300000000000000000L;
+  private static final int[] SVIDS = {3, 7, 12, 25};
+
+  private final ObservableTracker tracker = new ObservableTracker();
+  private final Random random = new Random(7);
+  private long fullBias = FULL_BIAS;
+  private int discontinuity = 0;
+
+  @Test
+  public void hatchSmoothingConverges() {
+    double rawSquares = 0;
+    double smoothedSquares = 0;
+    int n = 0;
+    for (int k = 0; k < 120; k++) {
+      epoch(k, 3.0, 0);
+      for (int i = 0; i < SVIDS.length; i++) {
+        assertEquals(Math.min(k + 1, ObservableTracker.HATCH_WINDOW), tracker.getSmoothingCount(i));
+        assertEquals(0, tracker.getCycleSlip(i));
+        if (k >= 100) {
+          double raw = lastPseudorange[i] - range(SVIDS[i], k);
+          double smoothed = tracker.getSmoothedPseudorange(i) - range(SVIDS[i], k);
+          rawSquares += raw * raw;
+          smoothedSquares += smoothed * smoothed;
+          n++;
+          assertEquals(0, smoothed, 1.0);
+        }
+      }
+    }
+    // 窗口填满后平滑伪距的误差远小于原始伪距的噪声
+    assertTrue(Math.sqrt(smoothedSquares / n) < Math.sqrt(rawSquares / n) / 4);
+  }
+
+  @Test
+  public void restartsAfterGapOrDiscontinuity() {
+    for (int k = 0; k < 10; k++) {
+      epoch(k, 3.0, 0);
+    }
+    assertEquals(10, tracker.getSmoothingCount(0));
+
+    // 超过 MAX_GAP_SECONDS 没有观测值，视为失锁
+    epoch(15, 3.0, 0);
+    for (int i = 0; i < SVIDS.length; i++) {
+      assertEquals(1, tracker.getSmoothingCount(i));
+      assertEquals(lastPseudorange[i], tracker.getSmoothedPseudorange(i), 1E-6);
+    }
+    epoch(16, 3.0, 0);
+    assertEquals(2, tracker.getSmoothingCount(0));
+
+    // 硬件时钟不连续，全部信号重新开始
+    discontinuity++;
+    epoch(17, 3.0, 0);
+    for (int i = 0; i < SVIDS.length; i++) {
+      assertEquals(1, tracker.getSmoothingCount(i));
+      assertEquals(lastPseudorange[i], tracker.getSmoothedPseudorange(i), 1E-6);
+    }
+  }
+
+  @Test
+  public void flagsReportedSlip() {
+    for (int k = 0; k < 5; k++) {
+      epoch(k, 0, 0);
+    }
+    // 芯片报告周跳：只标记该信号，平滑改用多普勒积分继续
+    slipState = ObservableTracker.ADR_STATE_CYCLE_SLIP;
+    slipSignal = 1;
+    epoch(5, 0, 0);
+    assertSlips(1, ObservableTracker.SLIP_REPORTED);
+    assertEquals(6, tracker.getSmoothingCount(1));
+  }
+
+  @Test
+  public void flagsDopplerSlip() {
+    for (int k = 0; k < 5; k++) {
+      epoch(k, 0, 0);
+    }
+    // ADR 跳 10 米（约 52 周），与多普勒积分不符
+    slipSignal = 2;
+    epoch(5, 0, 10.0);
+    assertSlips(2, ObservableTracker.SLIP_DOPPLER);
+    // 跳变后的 ADR 成为新的基准，下一个历元不再标记
+    epoch(6, 0, 10.0);
+    assertSlips(-1, 0);
+  }
+
+  @Test
+  public void flagsGeometryFreeSlip() {
+    dualFrequency = true;
+    for (int k = 0; k < 5; k++) {
+      epoch(k, 0, 0);
+    }
+    // L5 跳一周（约 0.25 米），低于多普勒检验的门限，由无几何组合发现，同一卫星的两个信号都标记
+    slipSignal = SVIDS.length;
+    epoch(5, 0, SPEED_OF_LIGHT / L5);
+    for (int i = 0; i < tracker.size(); i++) {
+      int expected = i == 0 || i == SVIDS.length ? ObservableTracker.SLIP_GEOMETRY_FREE : 0;
+      assertEquals("signal " + i, expected, tracker.getCycleSlip(i));
+    }
+  }
+
+  @Test
+  public void rereferencesClockOffsetWhenFullBiasSteps() {
+    for (int k = 0; k < 20; k++) {
+      epoch(k, 0, 0);
+    }
+    // 接收机钟差估计跳 1 ms：本历元的伪距整体少 1 ms 的距离，ADR 和多普勒连续，平滑不中断
+    fullBias += 1000000L;
+    epoch(20, 0, 0);
+    for (int i = 0; i < SVIDS.length; i++) {
+      assertEquals(21, tracker.getSmoothingCount(i));
+      assertEquals(0, tracker.getCycleSlip(i));
+      assertEquals(lastPseudorange[i], tracker.getSmoothedPseudorange(i), 1E-3);
+    }
+    epoch(21, 0, 0);
+    assertEquals(22, tracker.getSmoothingCount(0));
+    assertEquals(lastPseudorange[0], tracker.getSmoothedPseudorange(0), 1E-3);
+  }
+
+  // 下面是合成观测值的状态，epoch 按它们生成一个历元
+  private final double[] lastPseudorange = new double[SVIDS.length * 2];
+  private boolean dualFrequency = false;
+  private int slipSignal = -1; // 加 adrJump 或 slipState 的信号序号
+  private int slipState = 0;
+
+  // 第 k 秒的历元，伪距加标准差 sigma 的噪声，slipSignal 的 ADR 加 adrJump
+  private void epoch(int k, double sigma, double adrJump) {
+    long time = START + k * 1000000000L;
+    tracker.begin(time, fullBias, 0.25, discontinuity);
+    double clock = (fullBias - FULL_BIAS) * 1E-9 * SPEED_OF_LIGHT;
+    int bands = dualFrequency ? 2 : 1;
+    for (int b = 0; b < bands; b++) {
+      for (int j = 0; j < SVIDS.length; j++) {
+        int i = b * SVIDS.length + j;
+        int svid = SVIDS[j];
+        double r = range(svid, k);
+        double adr = r - 1E6 + (i == slipSignal ? adrJump : 0);
+        int state = ObservableTracker.ADR_STATE_VALID | (i == slipSignal ? slipState : 0);
+        lastPseudorange[i] = r - clock + sigma * random.nextGaussian();
+        tracker.add(GPS, svid, b == 0 ? L1 : L5, lastPseudorange[i], rate(svid), adr, state);
+      }
+    }
+    tracker.finish();
+    slipState = 0;
+  }
+
+  // 只有 signal 有 expected 标记，其他信号没有
+  private void assertSlips(int signal, int expected) {
+    for (int i = 0; i < tracker.size(); i++) {
+      assertEquals("signal " + i, i == signal ? expected : 0, tracker.getCycleSlip(i));
+    }
+  }
+
+  private static double range(int svid, int k) {
+    return 2.2E7 + 1E5 * svid + rate(svid) * k;
+  }
+
+  private static double rate(int svid) {
+    return 40.0 * svid - 500;
+  }
+}
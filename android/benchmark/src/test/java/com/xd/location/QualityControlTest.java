@@ -0,0 +1,173 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * QualityControl 的各项检查，观测值为合成的 1 Hz 历元：伪距按固定的伪距率变化，参数为
+ * 载噪比 25 dB-Hz、高度角 10°、接收时间不确定度 500 ns、伪距率不确定度 10 m/s、一致性 50 m/s
+ */
+public class QualityControlTest {
+  private static final int GPS = 1;
+  private static final int SBAS = 2;
+  private static final int GLONASS = 3;
+  private static final double L1 = 1575.42E6;
+  private static final double L5 = 1176.45E6;
+  private static final long START = 1000000000000L;
+  private static final long FULL_BIAS = -1300000000000000000L;
+  private static final int TRACKED = QualityControl.STATE_CODE_LOCK | QualityControl.STATE_TOW_DECODED;
+
+  private final QualityControl qc = new QualityControl();
+  private int epoch = 0;
+  private double common = 0; // 所有信号共同的伪距变化，m
+
+  @Before
+  public void configure() {
+    qc.configure(25, 10, 500, 10, 50);
+  }
+
+  @Test
+  public void flagsTrackingState() {
+    begin();
+    qc.add(GPS, 1, L1, TRACKED, 10, 2.2E7, 0, 0.1, 40, 45);
+    qc.add(GPS, 2, L1, QualityControl.STATE_CODE_LOCK | QualityControl.STATE_TOW_KNOWN, 10, 2.2E7, 0, 0.1, 40, 45);
+    qc.add(GPS, 3, L1, QualityControl.STATE_TOW_DECODED, 10, 2.2E7, 0, 0.1, 40, 45); // 没有码锁定
+    qc.add(GPS, 4, L1, QualityControl.STATE_CODE_LOCK, 10, 2.2E7, 0, 0.1, 40, 45); // TOW 未知
+    // GLONASS 看 TOD，GPS 的 TOW 标记不算
+    qc.add(GLONASS, 5, L1, QualityControl.STATE_CODE_LOCK | QualityControl.STATE_GLO_TOD_DECODED, 10, 2.2E7, 0, 0.1,
+        40, 45);
+    qc.add(GLONASS, 6, L1, TRACKED, 10, 2.2E7, 0, 0.1, 40, 45);
+    qc.finish();
+
+    assertFlags(0, 0, QualityControl.QC_STATE, QualityControl.QC_STATE, 0, QualityControl.QC_STATE);
+  }
+
+  @Test
+  public void flagsUncertaintyRangeAndMasks() {
+    begin();
+    qc.add(GPS, 1, L1, TRACKED, 600, 2.2E7, 0, 0.1, 40, 45);
+    qc.add(GPS, 2, L1, TRACKED, 10, 2.2E7, 0, 20, 40, 45);
+    qc.add(GPS, 3, L1, TRACKED, 10, 5E6, 0, 0.1, 40, 45);
+    qc.add(GPS, 4, L1, TRACKED, 10, 6E7, 0, 0.1, 40, 45);
+    qc.add(GPS, 5, L1, TRACKED, 10, 2.2E7, 0, 0.1, 20, 45);
+    qc.add(GPS, 6, L1, TRACKED, 10, 2.2E7, 0, 0.1, 0, 45);
+    qc.add(GPS, 7, L1, TRACKED, 10, 2.2E7, 0, 0.1, 40, 5);
+    qc.finish();
+
+    assertFlags(QualityControl.QC_UNCERTAINTY, QualityControl.QC_UNCERTAINTY, QualityControl.QC_RANGE,
+        QualityControl.QC_RANGE, QualityControl.QC_CN0, QualityControl.QC_CN0, QualityControl.QC_ELEVATION);
+  }
+
+  @Test
+  public void handlesNaNInputs() {
+    begin();
+    qc.add(GPS, 1, L1, TRACKED, Double.NaN, 2.2E7, 0, 0.1, 40, 45); // 接收时间不确定度未知：不通过
+    qc.add(GPS, 2, L1, TRACKED, 10, Double.NaN, 0, 0.1, 40, 45); // 伪距无效：不通过
+    qc.add(GPS, 3, L1, TRACKED, 10, 2.2E7, 0, 0.1, Double.NaN, 45); // 载噪比未知：不通过
+    qc.add(GPS, 4, L1, TRACKED, 10, 2.2E7, 0, Double.NaN, 40, 45); // 伪距率不确定度未知：不判断
+    qc.add(GPS, 5, L1, TRACKED, 10, 2.2E7, 0, 0.1, 40, Double.NaN); // 没有 GnssStatus：不判断高度角
+    qc.add(GPS, 6, L1, TRACKED, 10, 2.2E7, Double.NaN, 0.1, 40, 45); // 伪距率无效：不做一致性检查
+    qc.finish();
+    assertFlags(QualityControl.QC_UNCERTAINTY, QualityControl.QC_RANGE, QualityControl.QC_CN0, 0, 0, 0);
+
+    // 伪距率一直无效的信号伪距跳变也不标记，其他信号正常检查
+    for (int k = 1; k < 3; k++) {
+      begin();
+      for (int svid = 11; svid <= 15; svid++) {
+        qc.add(GPS, svid, L1, TRACKED, 10, range(svid, k), rate(svid), 0.1, 40, 45);
+      }
+      qc.add(GPS, 6, L1, TRACKED, 10, 2.2E7 + 1000 * k, Double.NaN, 0.1, 40, 45);
+      qc.finish();
+      assertFlags(0, 0, 0, 0, 0, 0);
+    }
+  }
+
+  @Test
+  public void flagsRateInconsistency() {
+    for (int k = 0; k < 3; k++) {
+      epoch(k, 0, 0);
+      assertFlags(0, 0, 0, 0);
+    }
+    // 所有信号共同的跳变（接收机钟差）由中位数去掉，只有单独跳 500 m 的信号被标记
+    common = 3000;
+    epoch(3, 2, 500);
+    assertFlags(0, 0, QualityControl.QC_RATE, 0);
+  }
+
+  @Test
+  public void skipsMedianCheckWithFewSignals() {
+    for (int k = 0; k < 3; k++) {
+      begin();
+      qc.add(GPS, 1, L1, TRACKED, 10, range(1, k), rate(1), 0.1, 40, 45);
+      qc.add(GPS, 2, L1, TRACKED, 10, range(2, k) + (k == 2 ? 500 : 0), rate(2), 0.1, 40, 45);
+      qc.finish();
+      // 只有两个残差时中位数可能就是异常值，不做判断
+      assertFlags(0, 0);
+    }
+  }
+
+  @Test
+  public void rebasesAfterMaxRejects() {
+    for (int k = 0; k < 3; k++) {
+      epoch(k, 0, 0);
+    }
+    // 信号 1 的伪距从第 3 个历元起一直多 500 m：连续 MAX_REJECTS 次不一致后以当前值为新的基准
+    for (int k = 3; k < 6; k++) {
+      epoch(k, 1, 500);
+      assertFlags(0, QualityControl.QC_RATE, 0, 0);
+    }
+    epoch(6, 1, 500);
+    assertFlags(0, 0, 0, 0);
+    epoch(7, 1, 500);
+    assertFlags(0, 0, 0, 0);
+  }
+
+  @Test
+  public void separatesSbasSvidsSharingLowBits() {
+    // SBAS 184 和 120 的低 6 位相同，各自的一致性基准不能混在一起，184 跳变时要能单独标记
+    for (int k = 0; k < 4; k++) {
+      begin();
+      for (int svid = 1; svid <= 3; svid++) {
+        qc.add(GPS, svid, L1, TRACKED, 10, range(svid, k), rate(svid), 0.1, 40, 45);
+      }
+      qc.add(SBAS, 120, L1, TRACKED, 10, 3.8E7, 0, 0.1, 40, 45);
+      qc.add(SBAS, 184, L1, TRACKED, 10, 3.9E7 + (k == 3 ? 500 : 0), 0, 0.1, 40, 45);
+      qc.add(SBAS, 120, L5, TRACKED, 10, 3.8E7, 0, 0.1, 40, 45);
+      qc.finish();
+      assertFlags(0, 0, 0, 0, k == 3 ? QualityControl.QC_RATE : 0, 0);
+    }
+  }
+
+  private void begin() {
+    qc.begin(START + epoch * 1000000000L, FULL_BIAS, 0.5, 0);
+    epoch++;
+  }
+
+  // 第 k 秒的 4 个 GPS L1 信号，都加上 common，jumped 的伪距另外加 jump 米
+  private void epoch(int k, int jumped, double jump) {
+    epoch = k;
+    begin();
+    for (int i = 0; i < 4; i++) {
+      int svid = i + 1;
+      qc.add(GPS, svid, L1, TRACKED, 10, range(svid, k) + common + (i == jumped ? jump : 0), rate(svid), 0.1, 40, 45);
+    }
+    qc.finish();
+  }
+
+  private void assertFlags(int... expected) {
+    assertEquals(expected.length, qc.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("signal " + i, expected[i], qc.getFlags(i));
+    }
+  }
+
+  private static double range(int svid, int k) {
+    return 2.2E7 + 1E5 * svid + rate(svid) * k;
+  }
+
+  private static double rate(int svid) {
+    return 40.0 * svid - 500;
+  }
+}
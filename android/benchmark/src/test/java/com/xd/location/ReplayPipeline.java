@@ -0,0 +1,117 @@
+package com.xd.location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssNavigationMessage;
+import android.location.GnssStatus;
+import android.location.Location;
+
+/**
+ * 回放测试用的 GnssSink，每个历元都经过 GnssEngine 使用的 EpochPipeline，按 SPEC 订阅并发送：
+ * 质量检查（tag）、平滑跟踪、分组和单点定位、IMU 和传感器读取、二进制编码。
+ * 每个历元的编码结果、解算结果和 IMU 采样个数保存下来供测试检查。
+ */
+class ReplayPipeline implements GnssSink {
+  static final SubscriptionSpec SPEC = spec(0);
+
+  final List<byte[]> epochs = new ArrayList<byte[]>();
+  final List<SppSolution> solutions = new ArrayList<SppSolution>();
+  final List<Integer> imuCounts = new ArrayList<Integer>();
+  final List<byte[]> fullEpochs = new ArrayList<byte[]>(); // 增量模式下同一历元的完整编码
+  int statusCount = 0;
+  int navigationCount = 0;
+  int locationCount = 0;
+
+  private final EpochPipeline pipeline;
+  private final NavigationDecoder navigationDecoder;
+  private final SubscriptionSpec spec;
+  private final EpochEncoder encoder = new EpochEncoder();
+  private final EpochEncoder fullEncoder;
+  private Location latest;
+
+  // ephemerides 为预先载入的星历，记录中的导航电文解码后也放入其中
+  ReplayPipeline(EphemerisCache ephemerides) {
+    this(ephemerides, 0);
+  }
+
+  // keyframeInterval 大于 0 时按增量编码，每 keyframeInterval 个历元一个关键帧，
+  // fullEpochs 中另外保存同一历元按 SPEC 不带增量的编码
+  ReplayPipeline(EphemerisCache ephemerides, int keyframeInterval) {
+    this.pipeline = new EpochPipeline(ephemerides);
+    this.navigationDecoder = new NavigationDecoder(ephemerides);
+    this.spec = keyframeInterval > 0 ? spec(keyframeInterval) : SPEC;
+    this.fullEncoder = keyframeInterval > 0 ? new EpochEncoder() : null;
+  }
+
+  void setSensorSource(SensorSource sensors) {
+    pipeline.setSensorSource(sensors);
+  }
+
+  @Override
+  public void onMeasurements(GnssClock clock, Collection<GnssMeasurement> measurements) {
+    int steps = pipeline.steps(spec, true, true, false, false);
+    pipeline.process(clock, measurements, spec, steps, null, 0);
+    int count = pipeline.select(spec);
+    boolean imu = pipeline.readImu(spec, clock);
+
+    solutions.add(copy(pipeline.getSolution()));
+    imuCounts.add(imu ? pipeline.getImuSamples().count : 0);
+    epochs.add(pipeline.encode(encoder, clock, latest, spec, count, imu, false, false));
+    if (fullEncoder != null) {
+      fullEpochs.add(pipeline.encode(fullEncoder, clock, latest, SPEC, count, imu, false, false));
+    }
+  }
+
+  @Override
+  public void onSatelliteStatus(GnssStatus status) {
+    statusCount++;
+    pipeline.onSatelliteStatus(status);
+  }
+
+  @Override
+  public void onNavigationMessage(int type, int svid, int status, int messageId, int submessageId, byte[] data) {
+    navigationCount++;
+    if (status != GnssNavigationMessage.STATUS_UNKNOWN) {
+      navigationDecoder.decode(type, svid, status, data);
+    }
+  }
+
+  @Override
+  public void onLocation(Location location) {
+    locationCount++;
+    latest = location;
+  }
+
+  // EpochPipeline 每个历元复用同一个 SppSolution，测试检查的字段复制出来
+  private static SppSolution copy(SppSolution s) {
+    SppSolution c = new SppSolution();
+    c.valid = s.valid;
+    c.usedCount = s.usedCount;
+    c.latitude = s.latitude;
+    c.longitude = s.longitude;
+    c.altitude = s.altitude;
+    c.clockBiasMeters = s.clockBiasMeters;
+    c.pdop = s.pdop;
+    return c;
+  }
+
+  // 全部观测值字段（包括平滑伪距和周跳），单点定位、传感器和 IMU，质量检查只标记不去掉
+  private static SubscriptionSpec spec(int keyframeInterval) {
+    Map<String, Object> arguments = new HashMap<String, Object>();
+    arguments.put("format", "binary");
+    arguments.put("fields", Arrays.asList("rx_clock", "location", "sensor", "spp", "imu", "satellites"));
+    arguments.put("imu_rate_hz", 100);
+    arguments.put("qc", "tag");
+    if (keyframeInterval > 0) {
+      arguments.put("keyframe_interval", keyframeInterval);
+    }
+    return new SubscriptionSpec(arguments);
+  }
+}
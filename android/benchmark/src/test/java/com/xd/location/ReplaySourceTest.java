@@ -0,0 +1,139 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import android.os.Handler;
+
+/**
+ * 回放 EpochLog 记录并经过 ReplayPipeline（EpochPipeline）处理
+ *
+ * fixtures/static_drive.glog 为静止接收机 10 个历元的记录（GPS 8 颗、Galileo 4 颗，
+ * 其中一颗 GPS 低于截止高度角），星历见 fixtures/ephemeris.txt。
+ * -Pdrives 指定目录时，另外回放其中全部 *.glog，只检查处理链路的不变量。
+ */
+public class ReplaySourceTest {
+  // 记录的真值，与记录中的系统定位结果相同
+  private static final double LATITUDE = 34.13;
+  private static final double LONGITUDE = 108.84;
+  private static final double ALTITUDE = 420;
+  private static final double GPS_CLOCK_BIAS = 12.5; // 米，每历元增加 0.15
+  private static final double METERS_PER_DEGREE = 111320;
+
+  @Test
+  public void replaysStaticDrive() throws Exception {
+    File log = Fixtures.file("static_drive.glog");
+    ReplaySource source = new ReplaySource(log, 0);
+    ReplayPipeline pipeline = replay(source, Fixtures.ephemerides());
+
+    assertEquals(10, source.getEpochCount());
+    assertEquals(10, pipeline.epochs.size());
+    assertEquals(10, pipeline.statusCount);
+    assertEquals(10, pipeline.locationCount);
+
+    for (int k = 0; k < pipeline.epochs.size(); k++) {
+      ByteBuffer epoch = ByteBuffer.wrap(pipeline.epochs.get(k)).order(ByteOrder.LITTLE_ENDIAN);
+      assertEquals(EpochEncoder.MAGIC, epoch.getShort(0) & 0xffff);
+      assertEquals(EpochEncoder.VERSION, epoch.get(2));
+      int flags = epoch.get(3) & 0xff;
+      int expected = EpochEncoder.FLAG_SENSOR | EpochEncoder.FLAG_STATUS | EpochEncoder.FLAG_SOLUTION
+          | EpochEncoder.FLAG_IMU | (k > 0 ? EpochEncoder.FLAG_LOCATION : 0); // 第一个定位结果在历元之后
+      assertEquals("epoch " + k, expected, flags);
+      assertEquals(12, epoch.getShort(4));
+      assertEquals(12, epoch.getShort(6));
+      assertEquals(10, (int) pipeline.imuCounts.get(k));
+
+      SppSolution solution = pipeline.solutions.get(k);
+      assertTrue("epoch " + k, solution.valid);
+      assertEquals(11, solution.usedCount); // 低高度角的卫星不参与解算
+      assertEquals(0, (LATITUDE - solution.latitude) * METERS_PER_DEGREE, 2.0);
+      assertEquals(0, (LONGITUDE - solution.longitude) * METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE)), 2.0);
+      assertEquals(ALTITUDE, solution.altitude, 4.0);
+      assertEquals(GPS_CLOCK_BIAS + 0.15 * k, solution.clockBiasMeters, 3.0);
+
+      // 编码的解算结果与 SppSolution 一致
+      int offset = EpochEncoder.HEADER_SIZE + EpochEncoder.CLOCK_SIZE + EpochEncoder.SENSOR_SIZE
+          + (k > 0 ? EpochEncoder.LOCATION_SIZE : 0);
+      assertEquals(solution.latitude, epoch.getDouble(offset), 0);
+      assertEquals(solution.longitude, epoch.getDouble(offset + 8), 0);
+      assertEquals(11, epoch.getShort(offset + 44));
+    }
+  }
+
+  @Test
+  public void pacesReplayBySpeed() throws Exception {
+    ReplaySource source = new ReplaySource(Fixtures.file("static_drive.glog"), 10);
+    long start = System.nanoTime();
+    replay(source, Fixtures.ephemerides());
+    long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+    // 记录跨 9.5 秒（传感器快照在第一个历元之前 0.5 秒），10 倍速约 950 ms
+    assertEquals(10, source.getEpochCount());
+    assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 900);
+  }
+
+  // 回放 -Pdrives 目录中的记录：每条观测值记录都要经过处理链路，编码的观测值个数与记录一致
+  @Test
+  public void replaysCapturedDrives() throws Exception {
+    String drives = System.getProperty("drives");
+    assumeTrue(drives != null && !drives.isEmpty());
+    File[] logs = new File(drives).listFiles((dir, name) -> name.endsWith(".glog"));
+    assumeTrue(logs != null && logs.length > 0);
+    Arrays.sort(logs);
+
+    for (File log : logs) {
+      int[] counts = measurementCounts(log);
+      ReplaySource source = new ReplaySource(log, 0);
+      ReplayPipeline pipeline = replay(source, new EphemerisCache());
+      assertEquals(log.getName(), counts.length, pipeline.epochs.size());
+
+      for (int k = 0; k < counts.length; k++) {
+        ByteBuffer epoch = ByteBuffer.wrap(pipeline.epochs.get(k)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(log.getName() + " epoch " + k, counts[k], epoch.getShort(4) & 0xffff);
+        SppSolution solution = pipeline.solutions.get(k);
+        if (solution.valid) {
+          assertTrue(log.getName() + " epoch " + k, solution.pdop > 0 && !Double.isNaN(solution.altitude));
+        }
+      }
+    }
+  }
+
+  private static ReplayPipeline replay(ReplaySource source, EphemerisCache ephemerides) throws InterruptedException {
+    ReplayPipeline pipeline = new ReplayPipeline(ephemerides);
+    pipeline.setSensorSource(source.getSensorSource());
+    Handler handler = new Handler();
+    source.start(pipeline, handler);
+    handler.runUntilIdle();
+    return pipeline;
+  }
+
+  // 直接用 EpochLog.Reader 读出每个历元的观测值个数
+  private static int[] measurementCounts(File log) throws IOException {
+    EpochLog.Reader reader = new EpochLog.Reader(log);
+    int[] counts = new int[16];
+    int n = 0;
+    try {
+      int type;
+      while ((type = reader.next()) >= 0) {
+        if (type == EpochLog.RECORD_MEASUREMENTS) {
+          if (n == counts.length) {
+            counts = Arrays.copyOf(counts, n * 2);
+          }
+          counts[n++] = reader.getMeasurements().size();
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return Arrays.copyOf(counts, n);
+  }
+}
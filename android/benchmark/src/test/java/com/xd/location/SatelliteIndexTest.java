@@ -0,0 +1,59 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import android.location.GnssStatus;
+
+/**
+ * SatelliteIndex 按 (constellation, svid, band) 查找，同一频段有多个信号时按载波频率选择
+ */
+public class SatelliteIndexTest {
+  private static final double B1I = 1561.098E6;
+  private static final double B1C = 1575.42E6;
+  private static final double B2A = 1176.45E6;
+  private static final double B2I = 1207.14E6;
+
+  private final SatelliteIndex index = new SatelliteIndex();
+
+  @Test
+  public void selectsSignalByCarrierWithinBand() {
+    index.update(status(
+        GnssStatus.CONSTELLATION_BEIDOU, 20, B1I,
+        GnssStatus.CONSTELLATION_BEIDOU, 20, B1C,
+        GnssStatus.CONSTELLATION_BEIDOU, 20, B2A,
+        GnssStatus.CONSTELLATION_GPS, 5, B1C));
+
+    assertEquals(0, index.indexOf(GnssStatus.CONSTELLATION_BEIDOU, 20, B1I));
+    assertEquals(1, index.indexOf(GnssStatus.CONSTELLATION_BEIDOU, 20, B1C));
+    assertEquals(2, index.indexOf(GnssStatus.CONSTELLATION_BEIDOU, 20, B2A));
+    // 没有该频段时退回到同一卫星的第一个信号
+    assertEquals(0, index.indexOf(GnssStatus.CONSTELLATION_BEIDOU, 20, B2I));
+    assertEquals(3, index.indexOf(GnssStatus.CONSTELLATION_GPS, 5, B1C));
+    assertEquals(-1, index.indexOf(GnssStatus.CONSTELLATION_GPS, 6, B1C));
+  }
+
+  @Test
+  public void clearsPreviousStatus() {
+    index.update(status(
+        GnssStatus.CONSTELLATION_BEIDOU, 20, B1I,
+        GnssStatus.CONSTELLATION_BEIDOU, 20, B1C));
+    index.update(status(
+        GnssStatus.CONSTELLATION_BEIDOU, 20, B1C));
+
+    // 频段中没有载波频率相同的信号时取该频段的第一个
+    assertEquals(0, index.indexOf(GnssStatus.CONSTELLATION_BEIDOU, 20, B1I));
+    assertEquals(0, index.indexOf(GnssStatus.CONSTELLATION_BEIDOU, 20, B1C));
+  }
+
+  // 参数依次为 constellation、svid、载波频率
+  private static GnssStatus status(Object... satellites) {
+    GnssStatus.Builder builder = new GnssStatus.Builder();
+    for (int i = 0; i < satellites.length; i += 3) {
+      builder.addSatellite((Integer) satellites[i], (Integer) satellites[i + 1], 40, 45, 90, true, true, true,
+          true, ((Double) satellites[i + 2]).floatValue(), false, 0);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,130 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * SignalGroups 的分组和无电离层组合。合成伪距 P = R + I1 * (f1 / f)^2，组合应消去 I1 回到 R，
+ * 期望的组合系数 a = f1^2 / (f1^2 - f2^2)、c = f2^2 / (f1^2 - f2^2) 为按频率算好的值
+ */
+public class SignalGroupsTest {
+  private static final int GPS = 1;
+  private static final int BEIDOU = 5;
+  private static final int GALILEO = 6;
+  private static final double L1 = 1575.42E6;
+  private static final double L2 = 1227.60E6;
+  private static final double L5 = 1176.45E6;
+  private static final double E5B = 1207.14E6;
+  private static final double B1I = 1561.098E6;
+  private static final double B3I = 1268.52E6;
+  private static final double RANGE = 2.2E7;
+  private static final double IONOSPHERE = 5.0; // L1 上的电离层延迟，米
+
+  private final SignalGroups groups = new SignalGroups();
+
+  @Test
+  public void combinesL1L5() {
+    groups.begin();
+    add(GPS, 5, L1, L1, 0);
+    add(GPS, 5, L5, L1, 0);
+    groups.finish();
+
+    assertEquals(1, groups.getGroupCount());
+    assertTrue(groups.hasIonosphereFree(0));
+    assertEquals(GnssBand.L5, groups.getSecondaryBand(0));
+    assertEquals(RANGE, groups.getIonosphereFree(0), 1E-6);
+    // a = 2.2606043, c = 1.2606043
+    assertEquals(2.2606043275 * 2.2606043275 + 1.2606043275 * 1.2606043275, groups.getVarianceScale(0), 1E-8);
+    assertEquals(0, groups.getGroupDelayScale(0), 0);
+    // 平滑伪距同样组合：L1 平滑值偏 1 米时组合偏 a 米
+    assertEquals(RANGE + 2.2606043275, groups.getIonosphereFreeSmoothed(0), 1E-6);
+  }
+
+  @Test
+  public void combinesL1L2() {
+    groups.begin();
+    add(GPS, 7, L1, L1, 0);
+    add(GPS, 7, L2, L1, 0);
+    groups.finish();
+
+    assertEquals(GnssBand.L2, groups.getSecondaryBand(0));
+    assertEquals(RANGE, groups.getIonosphereFree(0), 1E-6);
+    // a = 2.5457278, c = 1.5457278
+    assertEquals(2.5457277802 * 2.5457277802 + 1.5457277802 * 1.5457277802, groups.getVarianceScale(0), 1E-8);
+    assertEquals(RANGE + 2.5457277802, groups.getIonosphereFreeSmoothed(0), 1E-6);
+  }
+
+  @Test
+  public void rejectsLargeIonosphere() {
+    // L5 伪距错 200 米，组合与 L1 相差 c * 200 米，超过 MAX_IONOSPHERE_METERS，改用 L2
+    groups.begin();
+    add(GPS, 5, L1, L1, 0);
+    add(GPS, 5, L5, L1, 200);
+    add(GPS, 5, L2, L1, 0);
+    // 只有出错的 L5 时没有组合
+    add(GPS, 9, L1, L1, 0);
+    add(GPS, 9, L5, L1, 200);
+    groups.finish();
+
+    assertEquals(2, groups.getGroupCount());
+    assertEquals(GnssBand.L2, groups.getSecondaryBand(0));
+    assertEquals(RANGE, groups.getIonosphereFree(0), 1E-6);
+    assertFalse(groups.hasIonosphereFree(1));
+    assertTrue(Double.isNaN(groups.getIonosphereFree(1)));
+    assertEquals(1, groups.getVarianceScale(1), 0);
+
+    // 100 米以内的偏差仍然组合
+    groups.begin();
+    add(GPS, 5, L1, L1, 0);
+    add(GPS, 5, L5, L1, 70);
+    groups.finish();
+    assertEquals(GnssBand.L5, groups.getSecondaryBand(0));
+    assertEquals(RANGE - 1.2606043275 * 70, groups.getIonosphereFree(0), 1E-6);
+  }
+
+  @Test
+  public void prefersGalileoE5b() {
+    // I/NAV 钟差以 E1/E5b 为基准
+    groups.begin();
+    add(GALILEO, 4, L1, L1, 0);
+    add(GALILEO, 4, L5, L1, 0);
+    add(GALILEO, 4, E5B, L1, 0);
+    groups.finish();
+    assertEquals(GnssBand.L7, groups.getSecondaryBand(0));
+    assertEquals(RANGE, groups.getIonosphereFree(0), 1E-6);
+    assertEquals(0, groups.getGroupDelayScale(0), 0);
+  }
+
+  @Test
+  public void combinesOnlyBeidouB1IB3I() {
+    groups.begin();
+    // B1I/B2a：D1 钟差以 B3I 为基准，没有 B2a 的群时延，不组合
+    add(BEIDOU, 20, B1I, B1I, 0);
+    add(BEIDOU, 20, L5, B1I, 0);
+    // B1C/B3I：TGD1 只对应 B1I，不组合
+    add(BEIDOU, 21, L1, L1, 0);
+    add(BEIDOU, 21, B3I, L1, 0);
+    // B1I/B3I：组合，卫星钟差减去 a 倍 TGD1
+    add(BEIDOU, 22, B1I, B1I, 0);
+    add(BEIDOU, 22, L5, B1I, 0);
+    add(BEIDOU, 22, B3I, B1I, 0);
+    groups.finish();
+
+    assertEquals(3, groups.getGroupCount());
+    assertFalse(groups.hasIonosphereFree(0));
+    assertFalse(groups.hasIonosphereFree(1));
+    assertEquals(GnssBand.L6, groups.getSecondaryBand(2));
+    assertEquals(RANGE, groups.getIonosphereFree(2), 1E-6);
+    assertEquals(2.9436817701, groups.getGroupDelayScale(2), 1E-9);
+  }
+
+  // 信号的伪距为 R + I1 * (f1 / f)^2 + error，平滑伪距在 L1 上多 1 米
+  private void add(int constellationType, int svid, double frequency, double f1, double error) {
+    double p = RANGE + IONOSPHERE * (f1 / frequency) * (f1 / frequency) + error;
+    double smoothed = p + (frequency == f1 ? 1 : 0);
+    groups.add(constellationType, svid, frequency, p, smoothed);
+  }
+}
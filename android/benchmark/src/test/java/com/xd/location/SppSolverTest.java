@@ -0,0 +1,132 @@
+package com.xd.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 用 fixtures/spp_epoch.txt 的一个历元和 fixtures/ephemeris.txt 的星历检查 SppSolver
+ *
+ * 历元不是实测数据，而是由已知位置和同一份星历按观测模型生成的，所以只能检查解算与模型自洽，
+ * 不能代替实测数据的回放。历元包含 GPS 8 颗（svid 3 高度角 6.47°，低于截止高度角）和 Galileo 4 颗，
+ * 伪距噪声 0.3 m。
+ */
+public class SppSolverTest {
+  private static final int GPS = 1;
+  private static final int GALILEO = 6;
+
+  private final List<String[]> observations = new ArrayList<String[]>();
+  private double[] truth;
+  private EphemerisCache ephemerides;
+  private final SppSolver solver = new SppSolver();
+  private final SppSolution solution = new SppSolution();
+
+  @Before
+  public void load() throws IOException {
+    for (String[] v : Fixtures.rows("spp_epoch.txt")) {
+      if (v[0].equals("truth")) {
+        truth = new double[v.length - 1];
+        for (int i = 1; i < v.length; i++) {
+          truth[i - 1] = Double.parseDouble(v[i]);
+        }
+      } else {
+        observations.add(v);
+      }
+    }
+    ephemerides = Fixtures.ephemerides();
+  }
+
+  // 解算应回到生成历元的位置和钟差，残差与加入的噪声同一量级
+  @Test
+  public void recoversSyntheticEpochTruth() {
+    addAll();
+    assertTrue(solver.solve(ephemerides, solution));
+
+    assertTrue(solution.valid);
+    assertEquals(11, solution.usedCount);
+    assertTrue(solution.iterations > 0 && solution.iterations <= 10);
+
+    double dx = solution.x - truth[0];
+    double dy = solution.y - truth[1];
+    double dz = solution.z - truth[2];
+    assertEquals(0, Math.sqrt(dx * dx + dy * dy + dz * dz), 2.0);
+    assertEquals(34.13, solution.latitude, 2E-5);
+    assertEquals(108.84, solution.longitude, 2E-5);
+    assertEquals(420, solution.altitude, 2.0);
+
+    // GPS 在前，Galileo 钟差单独估计
+    assertEquals(truth[3], solution.clockBiasMeters, 1.5);
+    assertEquals(truth[3], solution.systemBiasMeters[0], 1.5);
+    assertEquals(truth[4], solution.systemBiasMeters[1], 1.5);
+
+    assertTrue(solution.gdop >= solution.pdop && solution.pdop >= solution.hdop);
+    assertTrue(solution.pdop >= solution.vdop);
+    assertTrue(solution.hdop > 0.5 && solution.gdop < 5);
+
+    for (int i = 0; i < observations.size(); i++) {
+      int svid = Integer.parseInt(observations.get(i)[1]);
+      double elevation = Double.parseDouble(observations.get(i)[5]);
+      if (elevation < 10) {
+        assertTrue("svid " + svid, Double.isNaN(solution.residuals[i]));
+      } else {
+        assertEquals("svid " + svid, 0, solution.residuals[i], 1.5);
+      }
+    }
+  }
+
+  @Test
+  public void rejectsUnderDeterminedEpoch() {
+    // GPS 只有 3 颗高度角足够的卫星，未知数为位置和一个钟差
+    addObservations(GPS, 3);
+    assertFalse(solver.solve(ephemerides, solution));
+    assertFalse(solution.valid);
+
+    // 加入 1 颗 Galileo 后多一个系统钟差，4 颗仍然不够
+    addObservations(GALILEO, 1);
+    assertFalse(solver.solve(ephemerides, solution));
+
+    // GPS 4 颗可以解算
+    solver.clear();
+    addObservations(GPS, 4);
+    assertTrue(solver.solve(ephemerides, solution));
+    assertEquals(4, solution.usedCount);
+  }
+
+  @Test
+  public void rejectsEpochWithoutEphemeris() {
+    addAll();
+    assertFalse(solver.solve(new EphemerisCache(), solution));
+    assertFalse(solution.valid);
+    for (int i = 0; i < observations.size(); i++) {
+      assertTrue(Double.isNaN(solution.residuals[i]));
+    }
+  }
+
+  private void addAll() {
+    for (String[] v : observations) {
+      add(v);
+    }
+  }
+
+  // 加入该系统前 n 颗高度角在截止高度角以上的卫星
+  private void addObservations(int constellationType, int n) {
+    for (String[] v : observations) {
+      if (n > 0 && Integer.parseInt(v[0]) == constellationType && Double.parseDouble(v[5]) >= 10) {
+        add(v);
+        n--;
+      }
+    }
+  }
+
+  private void add(String[] v) {
+    assertTrue(solver.add(Integer.parseInt(v[0]), Integer.parseInt(v[1]), Double.parseDouble(v[2]),
+        Double.parseDouble(v[3]), Double.parseDouble(v[4]), true));
+  }
+}
@@ -0,0 +1,184 @@
+package com.xd.location;
+
+/**
+ * 广播星历（开普勒轨道根数），适用于 GPS、QZSS、Galileo 和北斗
+ *
+ * 时间参数都以各系统自己的周内秒表示（北斗为 BDT），不依赖 Android 类，可以在 JVM 上测试。
+ */
+public class Ephemeris {
+  // 星座编号，与 GnssStatus.CONSTELLATION_* 相同
+  public static final int GPS = 1;
+  public static final int QZSS = 4;
+  public static final int BEIDOU = 5;
+  public static final int GALILEO = 6;
+
+  private static final double GM_GPS = 3.9860050E14;
+  private static final double GM_GALILEO = 3.986004418E14;
+  private static final double GM_BEIDOU = 3.986004418E14;
+  private static final double OMEGA_E_GPS = 7.2921151467E-5;
+  private static final double OMEGA_E_BEIDOU = 7.2921150E-5;
+  private static final double F_RELATIVITY = -4.442807633E-10; // -2 * sqrt(GM) / c^2
+  private static final double HALF_WEEK = 302400;
+  private static final double WEEK = 604800;
+  private static final double SIN_5 = Math.sin(Math.toRadians(-5));
+  private static final double COS_5 = Math.cos(Math.toRadians(-5));
+
+  public int constellationType;
+  public int svid;
+  public int iode; // 星历数据龄期，北斗为 AODE，Galileo 为 IODnav
+  public int iodc;
+  public int week;
+  public int health;
+  public double toe; // 星历参考时间，周内秒
+  public double toc; // 钟差参考时间，周内秒
+  public double af0;
+  public double af1;
+  public double af2;
+  public double tgd;
+
+  public double sqrtA;
+  public double e;
+  public double i0;
+  public double idot;
+  public double omega0;
+  public double omegaDot;
+  public double omega;
+  public double m0;
+  public double deltaN;
+  public double cuc;
+  public double cus;
+  public double crc;
+  public double crs;
+  public double cic;
+  public double cis;
+
+  public Ephemeris() {
+  }
+
+  public Ephemeris(Ephemeris other) {
+    copyFrom(other);
+  }
+
+  public void copyFrom(Ephemeris o) {
+    constellationType = o.constellationType;
+    svid = o.svid;
+    iode = o.iode;
+    iodc = o.iodc;
+    week = o.week;
+    health = o.health;
+    toe = o.toe;
+    toc = o.toc;
+    af0 = o.af0;
+    af1 = o.af1;
+    af2 = o.af2;
+    tgd = o.tgd;
+    sqrtA = o.sqrtA;
+    e = o.e;
+    i0 = o.i0;
+    idot = o.idot;
+    omega0 = o.omega0;
+    omegaDot = o.omegaDot;
+    omega = o.omega;
+    m0 = o.m0;
+    deltaN = o.deltaN;
+    cuc = o.cuc;
+    cus = o.cus;
+    crc = o.crc;
+    crs = o.crs;
+    cic = o.cic;
+    cis = o.cis;
+  }
+
+  // 北斗 GEO 卫星需要单独处理
+  public boolean isBeidouGeo() {
+    return constellationType == BEIDOU && (svid <= 5 || svid >= 59);
+  }
+
+  // 卫星钟差，单位秒，不含相对论效应
+  public double clockBias(double t) {
+    // t 为卫星钟读数，迭代求 dt = dt0 - Δt(dt)
+    double dt0 = wrap(t - toc);
+    double dt = dt0;
+    for (int i = 0; i < 2; i++) {
+      dt = dt0 - (af0 + af1 * dt + af2 * dt * dt);
+    }
+    return af0 + af1 * dt + af2 * dt * dt;
+  }
+
+  /**
+   * 计算信号发射时刻 t 的卫星位置（ECEF，米）和钟差（秒，含相对论效应），
+   * 结果依次写入 out[offset] ... out[offset + 3]
+   */
+  public void position(double t, double[] out, int offset) {
+    double gm = constellationType == GALILEO ? GM_GALILEO : constellationType == BEIDOU ? GM_BEIDOU : GM_GPS;
+    double omegaE = constellationType == BEIDOU ? OMEGA_E_BEIDOU : OMEGA_E_GPS;
+
+    double a = sqrtA * sqrtA;
+    double tk = wrap(t - toe);
+    double n = Math.sqrt(gm / (a * a * a)) + deltaN;
+    double mk = m0 + n * tk;
+
+    // 开普勒方程迭代求偏近点角
+    double ek = mk;
+    for (int i = 0; i < 30; i++) {
+      double next = mk + e * Math.sin(ek);
+      if (Math.abs(next - ek) < 1E-13) {
+        ek = next;
+        break;
+      }
+      ek = next;
+    }
+
+    double sinE = Math.sin(ek);
+    double cosE = Math.cos(ek);
+    double vk = Math.atan2(Math.sqrt(1 - e * e) * sinE, cosE - e);
+    double phik = vk + omega;
+    double sin2p = Math.sin(2 * phik);
+    double cos2p = Math.cos(2 * phik);
+
+    double uk = phik + cus * sin2p + cuc * cos2p;
+    double rk = a * (1 - e * cosE) + crs * sin2p + crc * cos2p;
+    double ik = i0 + idot * tk + cis * sin2p + cic * cos2p;
+
+    double xp = rk * Math.cos(uk);
+    double yp = rk * Math.sin(uk);
+    double cosI = Math.cos(ik);
+    double sinI = Math.sin(ik);
+
+    if (isBeidouGeo()) {
+      // GEO 卫星先在自定义惯性系中计算，再旋转到 CGCS2000
+      double omegak = omega0 + omegaDot * tk - omegaE * toe;
+      double cosO = Math.cos(omegak);
+      double sinO = Math.sin(omegak);
+      double xg = xp * cosO - yp * cosI * sinO;
+      double yg = xp * sinO + yp * cosI * cosO;
+      double zg = yp * sinI;
+
+      double cosZ = Math.cos(omegaE * tk);
+      double sinZ = Math.sin(omegaE * tk);
+      out[offset] = xg * cosZ + yg * sinZ * COS_5 + zg * sinZ * SIN_5;
+      out[offset + 1] = -xg * sinZ + yg * cosZ * COS_5 + zg * cosZ * SIN_5;
+      out[offset + 2] = -yg * SIN_5 + zg * COS_5;
+    } else {
+      double omegak = omega0 + (omegaDot - omegaE) * tk - omegaE * toe;
+      double cosO = Math.cos(omegak);
+      double sinO = Math.sin(omegak);
+      out[offset] = xp * cosO - yp * cosI * sinO;
+      out[offset + 1] = xp * sinO + yp * cosI * cosO;
+      out[offset + 2] = yp * sinI;
+    }
+
+    out[offset + 3] = clockBias(t) + F_RELATIVITY * e * sqrtA * sinE;
+  }
+
+  // 时间差按半周归算，处理跨周
+  public static double wrap(double dt) {
+    if (dt > HALF_WEEK) {
+      return dt - WEEK;
+    }
+    if (dt < -HALF_WEEK) {
+      return dt + WEEK;
+    }
+    return dt;
+  }
+}
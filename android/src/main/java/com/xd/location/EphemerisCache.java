@@ -0,0 +1,126 @@
+package com.xd.location;
+
+/**
+ * 广播星历缓存，按 (星座, svid, IODE) 保存解码得到的星历
+ *
+ * 每颗卫星固定保留 DEPTH 组星历，星历更新时新旧两组可以同时使用。
+ * 槽位在第一次写入时分配，之后只复制字段不再分配对象。
+ * 与 NavigationDecoder 一样只在处理线程上访问。
+ */
+public class EphemerisCache implements EphemerisSource {
+  public static final int DEPTH = 2;
+
+  // 星座编号 0..7，每个星座 64 个 svid（QZSS 193..202 取低 6 位）
+  private static final int SATELLITES = 8 * 64;
+
+  private final Ephemeris[] slots = new Ephemeris[SATELLITES * DEPTH];
+  private int size = 0;
+
+  private static int satellite(int constellationType, int svid) {
+    return ((constellationType & 7) << 6) | (svid & 63);
+  }
+
+  // 星历的最长有效时间（秒），超过后视为过期
+  public static double maxAge(int constellationType) {
+    switch (constellationType) {
+      case Ephemeris.GALILEO:
+        return 14400;
+      case Ephemeris.BEIDOU:
+        return 21600;
+      default:
+        return 7200;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] != null) {
+        slots[i].svid = 0;
+      }
+    }
+    size = 0;
+  }
+
+  /**
+   * 保存一组星历，IODE 相同时覆盖原来的数据。同一卫星的过期星历先被替换，
+   * 没有空位时替换 toe 最早的一组
+   */
+  public void put(Ephemeris eph) {
+    int base = satellite(eph.constellationType, eph.svid) * DEPTH;
+    double maxAge = maxAge(eph.constellationType);
+
+    int target = -1;
+    int empty = -1;
+    int oldest = -1;
+    for (int i = base; i < base + DEPTH; i++) {
+      Ephemeris slot = slots[i];
+      if (slot == null || slot.svid == 0) {
+        if (empty < 0) {
+          empty = i;
+        }
+        continue;
+      }
+      if (slot.iode == eph.iode) {
+        target = i;
+        break;
+      }
+      double age = Ephemeris.wrap(eph.toe - slot.toe);
+      if (Math.abs(age) > maxAge) {
+        // 过期，直接释放
+        slot.svid = 0;
+        size--;
+        if (empty < 0) {
+          empty = i;
+        }
+        continue;
+      }
+      if (oldest < 0 || age > Ephemeris.wrap(eph.toe - slots[oldest].toe)) {
+        oldest = i;
+      }
+    }
+
+    if (target < 0) {
+      target = empty >= 0 ? empty : oldest;
+      if (empty >= 0) {
+        size++;
+      }
+    }
+    if (slots[target] == null) {
+      slots[target] = new Ephemeris();
+    }
+    slots[target].copyFrom(eph);
+  }
+
+  // 返回 toe 离 timeOfWeek 最近且未过期的星历。比 timeOfWeek 早 maxAge 以上的星历在这里释放，
+  // 卫星不再播发新星历时（落山、不健康）也不会一直占着槽位
+  @Override
+  public Ephemeris find(int constellationType, int svid, double timeOfWeek) {
+    int base = satellite(constellationType, svid) * DEPTH;
+    double maxAge = maxAge(constellationType);
+
+    Ephemeris best = null;
+    double bestAge = maxAge;
+    for (int i = base; i < base + DEPTH; i++) {
+      Ephemeris slot = slots[i];
+      if (slot == null || slot.svid != svid || slot.constellationType != constellationType) {
+        continue;
+      }
+      double age = Ephemeris.wrap(timeOfWeek - slot.toe);
+      if (age > maxAge) {
+        slot.svid = 0;
+        size--;
+        continue;
+      }
+      age = Math.abs(age);
+      if (age <= bestAge) {
+        best = slot;
+        bestAge = age;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,11 @@
+package com.xd.location;
+
+/**
+ * 星历来源，SppSolver 通过它查找卫星的广播星历
+ */
+public interface EphemerisSource {
+  /**
+   * 查找 (constellationType, svid) 在系统时间 timeOfWeek（秒）可用的星历，没有时返回 null
+   */
+  Ephemeris find(int constellationType, int svid, double timeOfWeek);
+}
@@ -0,0 +1,136 @@
+package com.xd.location;
+
+import java.util.ArrayDeque;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * 处理线程到 UI 线程的历元投递
+ *
+ * 处理线程 offer 编码好的数据，UI 线程一次性投递队列中的所有数据。
+ * 队列有界，Dart 端处理不过来时丢弃最旧的历元。
+ * 开启 PipelineMetrics 时记录每个数据在队列中的等待时间和从测量时刻到投递的延迟，
+ * 时间保存在与队列对应的环形数组中，不分配对象。
+ */
+public class EpochDispatcher {
+  public static final int DEFAULT_CAPACITY = 8;
+
+  private final Handler uiThreadHandler;
+  private final int capacity;
+  private final ArrayDeque<Object> queue;
+
+  private boolean drainPosted = false; // 是否已经向 UI 线程投递了 drain 任务
+  private long droppedCount = 0; // 因队列满被丢弃的历元数
+
+  // 与 queue 一一对应的入队时刻和测量时刻，elapsedRealtime 纳秒
+  private final long[] offeredNanos;
+  private final long[] originNanos;
+  private int head = 0;
+
+  private volatile PipelineMetrics metrics;
+
+  private EventChannel.EventSink eventSink; // 只在 UI 线程访问
+  private volatile boolean hasListener = false;
+
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  public EpochDispatcher(Handler uiThreadHandler, int capacity) {
+    this.uiThreadHandler = uiThreadHandler;
+    this.capacity = capacity;
+    this.queue = new ArrayDeque<Object>(capacity);
+    this.offeredNanos = new long[capacity];
+    this.originNanos = new long[capacity];
+  }
+
+  public void setMetrics(PipelineMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public void setEventSink(EventChannel.EventSink eventSink) {
+    this.eventSink = eventSink;
+    this.hasListener = eventSink != null;
+  }
+
+  // Dart 端是否在监听，没有监听时处理线程可以跳过编码
+  public boolean hasListener() {
+    return hasListener;
+  }
+
+  // 处理线程调用
+  public void offer(Object payload) {
+    offer(payload, 0);
+  }
+
+  // originNanos 为数据对应的测量时刻（elapsedRealtime 纳秒），没有时为 0
+  public void offer(Object payload, long originNanos) {
+    long now = metrics != null ? SystemClock.elapsedRealtimeNanos() : 0;
+    boolean post = false;
+    synchronized (this) {
+      if (queue.size() >= capacity) {
+        queue.pollFirst();
+        head = (head + 1) % capacity;
+        droppedCount++;
+      }
+      int tail = (head + queue.size()) % capacity;
+      offeredNanos[tail] = now;
+      this.originNanos[tail] = originNanos;
+      queue.addLast(payload);
+      if (!drainPosted) {
+        drainPosted = true;
+        post = true;
+      }
+    }
+
+    if (post) {
+      uiThreadHandler.post(drainTask);
+    }
+  }
+
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  public synchronized void clear() {
+    queue.clear();
+    head = 0;
+  }
+
+  // UI 线程调用
+  private void drain() {
+    while (true) {
+      Object payload;
+      long offered;
+      long origin;
+      synchronized (this) {
+        payload = queue.pollFirst();
+        if (payload == null) {
+          drainPosted = false;
+          return;
+        }
+        offered = offeredNanos[head];
+        origin = originNanos[head];
+        head = (head + 1) % capacity;
+      }
+
+      if (eventSink != null) {
+        eventSink.success(payload);
+        PipelineMetrics m = metrics;
+        if (m != null && offered > 0) {
+          long now = SystemClock.elapsedRealtimeNanos();
+          m.record(PipelineMetrics.STAGE_DISPATCH, now - offered);
+          if (origin > 0) {
+            m.record(PipelineMetrics.STAGE_END_TO_END, now - origin);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,706 @@
+package com.xd.location;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import android.location.GnssClock;
+import android.location.Location;
+
+/**
+ * 二进制历元编码器
+ *
+ * 每个历元编码成一个定长布局、带版本号的小端 byte[]，经 EventChannel 发送，
+ * Dart 侧由 lib/src/gnss_epoch.dart 中的 GnssEpoch 直接在 ByteData 上解码。
+ *
+ * 布局（version 8）：
+ *   header  16 字节：magic(u16) version(u8) flags(u8) count(u16) satelliteCount(u16) clockFlags(u32) fieldMask(u32)
+ *   clock   64 字节：见 writeClock
+ *   location 40 字节（flags & FLAG_LOCATION）
+ *   sensor   32 字节（flags & FLAG_SENSOR）
+ *   solution 48 字节（flags & FLAG_SOLUTION，version 2 起）
+ *   imu      4 + 21 * n 字节（flags & FLAG_IMU，version 3 起）：
+ *            n(u32)，timestamp(i64) × n，x y z(f32) × n，type(u8) × n
+ *   fusion   4 + 56 * n 字节（flags & FLAG_FUSION，version 4 起）：
+ *            n(u32)，timestamp(i64) × n，纬度 经度 高度(f64) × n，东 北 天速度(f32) × n，横滚 俯仰 航向(f32) × n
+ *   iono_free 4 + 19 * n 字节（flags & FLAG_IONO_FREE，version 6 起），每颗有双频组合的卫星一项：
+ *            n(u32)，伪距(f64) × n，平滑伪距(f64) × n，svid(u8) × n，constellation(u8) × n，第二频段(u8) × n
+ *   measurement 按 fieldMask 中置位的字段顺序，每个字段一列 count 个值（struct-of-arrays），
+ *            version 8 起增加 qc_flags 字段
+ *
+ * 增量模式（version 7 起，setKeyframeInterval 大于 0）：每 N 个历元一个关键帧，其余历元 flags 带 FLAG_DELTA，
+ * measurement 部分换成只包含变化的信号和字段：
+ *   sequence(u32) keyframe(u8) reserved(u8) entryCount(u16)
+ *   key(u16) × count      本历元全部信号的 key，按输出顺序，见 signalKey
+ *   index(u16) × entries  有变化的信号在 key 列表中的下标
+ *   mask(u32) × entries   变化的字段，ENTRY_ABSOLUTE 表示残差字段直接给出 f64 值
+ *   按 fieldMask 的字段顺序，每个字段依次给出 mask 中置位的条目的值
+ * 伪距、平滑伪距和 ADR 是残差字段：用上一个值加上一历元的伪距率乘以间隔预测，只发送 f32 残差，
+ * 两端都以 预测值 + 残差 作为新的值，所以重建结果与编码端一致，与原始值的差在残差的 f32 精度以内。
+ * 关键帧的全部条目都是 ENTRY_ABSOLUTE 且包含全部字段。sequence 不连续（分发或缓冲区丢弃）时，
+ * 解码端丢弃增量帧直到下一个关键帧。
+ */
+public class EpochEncoder {
+  public static final int MAGIC = 0x4550; // "EP"
+  public static final int VERSION = 8;
+
+  public static final int HEADER_SIZE = 16;
+  public static final int CLOCK_SIZE = 64;
+  public static final int LOCATION_SIZE = 40;
+  public static final int SENSOR_SIZE = 32;
+  public static final int SOLUTION_SIZE = 48;
+  public static final int IMU_SAMPLE_SIZE = 21;
+  public static final int FUSION_SAMPLE_SIZE = 56;
+  public static final int IONO_FREE_SIZE = 19;
+  public static final int DELTA_HEADER_SIZE = 8;
+
+  // header flags
+  public static final int FLAG_LOCATION = 1;
+  public static final int FLAG_SENSOR = 1 << 1;
+  public static final int FLAG_STATUS = 1 << 2;
+  public static final int FLAG_SOLUTION = 1 << 3;
+  public static final int FLAG_IMU = 1 << 4;
+  public static final int FLAG_FUSION = 1 << 5;
+  public static final int FLAG_IONO_FREE = 1 << 6;
+  public static final int FLAG_DELTA = 1 << 7;
+
+  // 增量条目的 mask 中表示残差字段为绝对值
+  public static final int ENTRY_ABSOLUTE = 1 << 31;
+
+  // clock flags
+  public static final int CLOCK_LEAP_SECOND = 1;
+  public static final int CLOCK_TIME_UNCERTAINTY = 1 << 1;
+  public static final int CLOCK_FULL_BIAS = 1 << 2;
+  public static final int CLOCK_BIAS = 1 << 3;
+  public static final int CLOCK_BIAS_UNCERTAINTY = 1 << 4;
+  public static final int CLOCK_DRIFT = 1 << 5;
+  public static final int CLOCK_DRIFT_UNCERTAINTY = 1 << 6;
+
+  // measurement 字段，位序即列序
+  public static final int FIELD_SVID = 0;
+  public static final int FIELD_CONSTELLATION_TYPE = 1;
+  public static final int FIELD_TTX = 2;
+  public static final int FIELD_TRX = 3;
+  public static final int FIELD_AZIMUTH_DEGREES = 4;
+  public static final int FIELD_ELEVATION_DEGREES = 5;
+  public static final int FIELD_CN0_DB = 6;
+  public static final int FIELD_RECEIVED_SV_TIME_UNCERTAINTY_NANOS = 7;
+  public static final int FIELD_PSEUDORANGE = 8;
+  public static final int FIELD_TIME_OFFSET_NANOS = 9;
+  public static final int FIELD_RECEIVED_SV_TIME_NANOS = 10;
+  public static final int FIELD_PSEUDORANGE_RATE_UNCERTAINTY = 11;
+  public static final int FIELD_PSEUDORANGE_RATE = 12;
+  public static final int FIELD_MULTIPATH_INDICATOR = 13;
+  public static final int FIELD_AGC_LEVEL_DB = 14;
+  public static final int FIELD_ADR_UNCERTAINTY = 15;
+  public static final int FIELD_ADR_STATE = 16;
+  public static final int FIELD_ADR = 17;
+  public static final int FIELD_CARRIER_FREQUENCY = 18;
+  public static final int FIELD_SMOOTHED_PSEUDORANGE = 19;
+  public static final int FIELD_SMOOTHING_COUNT = 20;
+  public static final int FIELD_CARRIER_CYCLES = 21;
+  public static final int FIELD_CYCLE_SLIP = 22;
+  public static final int FIELD_BAND = 23;
+  public static final int FIELD_QC_FLAGS = 24;
+  public static final int FIELD_COUNT = 25;
+
+  public static final int ALL_FIELDS = (1 << FIELD_COUNT) - 1;
+  // 需要跨历元跟踪的字段，由 ObservableTracker 计算
+  public static final int TRACKED_FIELDS = (1 << FIELD_SMOOTHED_PSEUDORANGE) | (1 << FIELD_SMOOTHING_COUNT)
+      | (1 << FIELD_CARRIER_CYCLES) | (1 << FIELD_CYCLE_SLIP);
+
+  // 每个字段单个值的字节数
+  private static final int[] FIELD_WIDTH = {
+    4, // svid i32
+    1, // constellation_type u8
+    8, // ttx f64
+    8, // trx f64
+    4, // azimuth_degrees f32
+    4, // elevation_degrees f32
+    4, // cn0_db f32
+    8, // received_sv_time_uncertainty_nanos i64
+    8, // pseudorange f64
+    8, // time_offset_nanos f64
+    8, // received_sv_time_nanos i64
+    8, // pseudorange_rate_uncertainty_meters_per_second f64
+    8, // pseudorange_rate_meters_per_second f64
+    1, // multipath_indicator u8
+    8, // automatic_gain_control_levelDb f64
+    8, // acumulated_delta_range_uncertainty_meters f64
+    4, // accumulated_delta_range_state i32
+    8, // accumulated_delta_range_meters f64
+    8, // carrier_frequency f64
+    8, // smoothed_pseudorange f64
+    1, // smoothing_count u8
+    8, // carrier_cycles f64
+    1, // cycle_slip u8
+    1, // band u8
+    1, // qc_flags u8
+  };
+
+  // 字段名，与 map 格式的 key 一致
+  private static final String[] FIELD_NAMES = {
+    "svid",
+    "constellation_type",
+    "ttx",
+    "trx",
+    "azimuth_degrees",
+    "elevation_degrees",
+    "cn0_db",
+    "received_sv_time_uncertainty_nanos",
+    "pseudorange",
+    "time_offset_nanos",
+    "received_sv_time_nanos",
+    "pseudorange_rate_uncertainty_meters_per_second",
+    "pseudorange_rate_meters_per_second",
+    "multipath_indicator",
+    "automatic_gain_control_levelDb",
+    "acumulated_delta_range_uncertainty_meters",
+    "accumulated_delta_range_state",
+    "accumulated_delta_range_meters",
+    "carrier_frequency",
+    "smoothed_pseudorange",
+    "smoothing_count",
+    "carrier_cycles",
+    "cycle_slip",
+    "band",
+    "qc_flags",
+  };
+
+  // 增量模式下按残差发送的字段
+  public static final int RESIDUAL_FIELDS = (1 << FIELD_PSEUDORANGE) | (1 << FIELD_SMOOTHED_PSEUDORANGE)
+      | (1 << FIELD_ADR);
+
+  private static final double MAX_RESIDUAL = 100; // 残差超过该值（或为 NaN）时发送绝对值，m
+
+  private final int[] columnOffset = new int[FIELD_COUNT];
+
+  // 增量模式的状态，只在处理线程上访问；keyframeRequested 可以从其他线程设置
+  private int keyframeInterval = 0;
+  private volatile boolean keyframeRequested = true;
+  private int sequence = 0;
+  private int sinceKeyframe = 0;
+  private int lastFieldMask = -1;
+  private int epoch = 0;
+  private final int[] keyEpoch = new int[1 << 16]; // key 在哪个历元出现过
+  private final int[] keySlot = new int[1 << 16]; // key 对应的状态槽 + 1，0 表示没有
+  private int slotCount = 0;
+  private int[] slotKeys = new int[64];
+  private long[] slotTime = new long[64];
+  private long[] slotBits = new long[64 * FIELD_COUNT]; // 解码端看到的上一个值
+  // 本历元的信号和条目
+  private int[] keys = new int[64];
+  private int[] slots = new int[64];
+  private int[] entryIndex = new int[64];
+  private int[] entryMask = new int[64];
+  private long[] entryBits = new long[64 * FIELD_COUNT];
+
+  private ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+  public static int fieldWidth(int field) {
+    return FIELD_WIDTH[field];
+  }
+
+  public static String fieldName(int field) {
+    return FIELD_NAMES[field];
+  }
+
+  // 按字段名查找字段编号，没有时返回 -1
+  public static int fieldOf(String name) {
+    for (int field = 0; field < FIELD_COUNT; field++) {
+      if (FIELD_NAMES[field].equals(name)) {
+        return field;
+      }
+    }
+    return -1;
+  }
+
+  // 大于 0 时启用增量模式，每 interval 个历元一个关键帧，改变时下一个历元为关键帧
+  public void setKeyframeInterval(int interval) {
+    if (interval != keyframeInterval) {
+      keyframeInterval = interval;
+      keyframeRequested = true;
+    }
+  }
+
+  // 下一个历元发送关键帧，新的监听者开始接收时调用，可以在任意线程调用
+  public void requestKeyframe() {
+    keyframeRequested = true;
+  }
+
+  // 信号的 key：星座(3 位) svid(8 位) 频段(3 位) 序号(2 位)，序号区分同一卫星同一频段的多个信号（如 L1 C/A 和 L1C）
+  public static int signalKey(int constellationType, int svid, int band, int occurrence) {
+    return ((constellationType & 7) << 13) | ((svid & 0xff) << 5) | ((band & 7) << 2) | (occurrence & 3);
+  }
+
+  // 编码一个历元，只编码 selected 中的观测值，返回的数组归调用方所有
+  public byte[] encode(GnssClock clock, Location location, SensorSnapshot sensor, SppSolution solution,
+                       ImuSamples imu, FusionTrack fusion, SignalGroups groups, int satelliteCount, GnssDataPool measurements, int[] selected, int count, int fieldMask) {
+    int flags = 0;
+    int size = HEADER_SIZE + CLOCK_SIZE;
+    if (location != null) {
+      flags |= FLAG_LOCATION;
+      size += LOCATION_SIZE;
+    }
+    if (sensor != null) {
+      flags |= FLAG_SENSOR;
+      size += SENSOR_SIZE;
+    }
+    if (satelliteCount > 0) {
+      flags |= FLAG_STATUS;
+    }
+    if (solution != null && solution.valid) {
+      flags |= FLAG_SOLUTION;
+      size += SOLUTION_SIZE;
+    }
+    if (imu != null) {
+      flags |= FLAG_IMU;
+      size += 4 + IMU_SAMPLE_SIZE * imu.count;
+    }
+    if (fusion != null) {
+      flags |= FLAG_FUSION;
+      size += 4 + FUSION_SAMPLE_SIZE * fusion.count;
+    }
+    int ionosphereFreeCount = 0;
+    if (groups != null) {
+      flags |= FLAG_IONO_FREE;
+      for (int g = 0; g < groups.getGroupCount(); g++) {
+        if (groups.hasIonosphereFree(g)) {
+          ionosphereFreeCount++;
+        }
+      }
+      size += 4 + IONO_FREE_SIZE * ionosphereFreeCount;
+    }
+
+    int entries = -1;
+    if (keyframeInterval > 0 && fieldMask != 0) {
+      entries = diff(clock.getTimeNanos(), measurements, selected, count, fieldMask);
+    }
+    int measurementOffset = size;
+    if (entries >= 0) {
+      flags |= FLAG_DELTA;
+      size += DELTA_HEADER_SIZE + count * 2 + entries * 6;
+      for (int e = 0; e < entries; e++) {
+        size += valueSize(entryMask[e], fieldMask);
+      }
+    } else {
+      for (int field = 0; field < FIELD_COUNT; field++) {
+        if ((fieldMask & (1 << field)) != 0) {
+          columnOffset[field] = size;
+          size += FIELD_WIDTH[field] * count;
+        } else {
+          columnOffset[field] = -1;
+        }
+      }
+    }
+
+    if (buffer.capacity() < size) {
+      buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    buffer.clear();
+
+    buffer.putShort(0, (short) MAGIC);
+    buffer.put(2, (byte) VERSION);
+    buffer.put(3, (byte) flags);
+    buffer.putShort(4, (short) count);
+    buffer.putShort(6, (short) satelliteCount);
+    buffer.putInt(12, fieldMask);
+
+    int offset = HEADER_SIZE;
+    buffer.putInt(8, writeClock(clock, offset));
+    offset += CLOCK_SIZE;
+
+    if (location != null) {
+      buffer.putDouble(offset, location.getLatitude());
+      buffer.putDouble(offset + 8, location.getLongitude());
+      buffer.putDouble(offset + 16, location.getAltitude());
+      buffer.putFloat(offset + 24, location.getAccuracy());
+      buffer.putFloat(offset + 28, location.getSpeed());
+      buffer.putFloat(offset + 32, location.getSpeedAccuracyMetersPerSecond());
+      buffer.putFloat(offset + 36, 0f);
+      offset += LOCATION_SIZE;
+    }
+
+    if (sensor != null) {
+      buffer.putInt(offset, sensor.origen);
+      buffer.putFloat(offset + 4, sensor.angle);
+      buffer.putDouble(offset + 8, sensor.speed);
+      buffer.putDouble(offset + 16, sensor.speedH);
+      buffer.putDouble(offset + 24, sensor.speedV);
+      offset += SENSOR_SIZE;
+    }
+
+    if ((flags & FLAG_SOLUTION) != 0) {
+      buffer.putDouble(offset, solution.latitude);
+      buffer.putDouble(offset + 8, solution.longitude);
+      buffer.putDouble(offset + 16, solution.altitude);
+      buffer.putDouble(offset + 24, solution.clockBiasMeters);
+      buffer.putFloat(offset + 32, (float) solution.pdop);
+      buffer.putFloat(offset + 36, (float) solution.hdop);
+      buffer.putFloat(offset + 40, (float) solution.vdop);
+      buffer.putShort(offset + 44, (short) solution.usedCount);
+      buffer.putShort(offset + 46, (short) solution.iterations);
+      offset += SOLUTION_SIZE;
+    }
+
+    if (imu != null) {
+      int n = imu.count;
+      buffer.putInt(offset, n);
+      offset += 4;
+      for (int i = 0; i < n; i++) {
+        buffer.putLong(offset + i * 8, imu.timestamps[i]);
+      }
+      offset += n * 8;
+      for (int i = 0; i < n * 3; i++) {
+        buffer.putFloat(offset + i * 4, imu.values[i]);
+      }
+      offset += n * 12;
+      for (int i = 0; i < n; i++) {
+        buffer.put(offset + i, imu.types[i]);
+      }
+      offset += n;
+    }
+
+    if (fusion != null) {
+      int n = fusion.count;
+      buffer.putInt(offset, n);
+      offset += 4;
+      for (int i = 0; i < n; i++) {
+        buffer.putLong(offset + i * 8, fusion.timestamps[i]);
+      }
+      offset += n * 8;
+      for (int i = 0; i < n * 3; i++) {
+        buffer.putDouble(offset + i * 8, fusion.positions[i]);
+      }
+      offset += n * 24;
+      for (int i = 0; i < n * 3; i++) {
+        buffer.putFloat(offset + i * 4, fusion.velocities[i]);
+      }
+      offset += n * 12;
+      for (int i = 0; i < n * 3; i++) {
+        buffer.putFloat(offset + i * 4, fusion.attitudes[i]);
+      }
+      offset += n * 12;
+    }
+
+    if (groups != null) {
+      int n = ionosphereFreeCount;
+      buffer.putInt(offset, n);
+      offset += 4;
+      for (int g = 0, i = 0; g < groups.getGroupCount(); g++) {
+        if (groups.hasIonosphereFree(g)) {
+          buffer.putDouble(offset + i * 8, groups.getIonosphereFree(g));
+          buffer.putDouble(offset + n * 8 + i * 8, groups.getIonosphereFreeSmoothed(g));
+          buffer.put(offset + n * 16 + i, (byte) groups.getSvid(g));
+          buffer.put(offset + n * 17 + i, (byte) groups.getConstellationType(g));
+          buffer.put(offset + n * 18 + i, (byte) groups.getSecondaryBand(g));
+          i++;
+        }
+      }
+    }
+
+    if (entries >= 0) {
+      writeDelta(measurementOffset, count, entries, fieldMask);
+    } else {
+      for (int i = 0; i < count; i++) {
+        writeMeasurement(i, measurements.get(selected[i]));
+      }
+    }
+
+    byte[] out = new byte[size];
+    System.arraycopy(buffer.array(), 0, out, 0, size);
+    return out;
+  }
+
+  private int writeClock(GnssClock clock, int offset) {
+    int clockFlags = 0;
+    buffer.putLong(offset, clock.getTimeNanos());
+    buffer.putLong(offset + 8, 0);
+    buffer.putDouble(offset + 16, 0);
+    buffer.putDouble(offset + 24, 0);
+    buffer.putDouble(offset + 32, 0);
+    buffer.putDouble(offset + 40, 0);
+    buffer.putDouble(offset + 48, 0);
+    buffer.putInt(offset + 56, 0);
+    buffer.putInt(offset + 60, clock.getHardwareClockDiscontinuityCount());
+
+    if (clock.hasFullBiasNanos()) {
+      clockFlags |= CLOCK_FULL_BIAS;
+      buffer.putLong(offset + 8, clock.getFullBiasNanos());
+    }
+    if (clock.hasBiasNanos()) {
+      clockFlags |= CLOCK_BIAS;
+      buffer.putDouble(offset + 16, clock.getBiasNanos());
+    }
+    if (clock.hasBiasUncertaintyNanos()) {
+      clockFlags |= CLOCK_BIAS_UNCERTAINTY;
+      buffer.putDouble(offset + 24, clock.getBiasUncertaintyNanos());
+    }
+    if (clock.hasDriftNanosPerSecond()) {
+      clockFlags |= CLOCK_DRIFT;
+      buffer.putDouble(offset + 32, clock.getDriftNanosPerSecond());
+    }
+    if (clock.hasDriftUncertaintyNanosPerSecond()) {
+      clockFlags |= CLOCK_DRIFT_UNCERTAINTY;
+      buffer.putDouble(offset + 40, clock.getDriftUncertaintyNanosPerSecond());
+    }
+    if (clock.hasTimeUncertaintyNanos()) {
+      clockFlags |= CLOCK_TIME_UNCERTAINTY;
+      buffer.putDouble(offset + 48, clock.getTimeUncertaintyNanos());
+    }
+    if (clock.hasLeapSecond()) {
+      clockFlags |= CLOCK_LEAP_SECOND;
+      buffer.putInt(offset + 56, clock.getLeapSecond());
+    }
+
+    return clockFlags;
+  }
+
+  private void writeMeasurement(int i, GnssData data) {
+    for (int field = 0; field < FIELD_COUNT; field++) {
+      int o = columnOffset[field];
+      if (o >= 0) {
+        putBits(o + i * FIELD_WIDTH[field], FIELD_WIDTH[field], fieldBits(field, data));
+      }
+    }
+  }
+
+  private void putBits(int offset, int width, long bits) {
+    if (width == 1) {
+      buffer.put(offset, (byte) bits);
+    } else if (width == 4) {
+      buffer.putInt(offset, (int) bits);
+    } else {
+      buffer.putLong(offset, bits);
+    }
+  }
+
+  // 字段值按编码后的类型取位模式，浮点数为 IEEE 754 位，整数为值本身
+  static long fieldBits(int field, GnssData data) {
+    switch (field) {
+      case FIELD_SVID:
+        return data.getSvid();
+      case FIELD_CONSTELLATION_TYPE:
+        return data.getConstellationType() & 0xff;
+      case FIELD_TTX:
+        return Double.doubleToRawLongBits(data.getTTx());
+      case FIELD_TRX:
+        return Double.doubleToRawLongBits(data.getTRx());
+      case FIELD_AZIMUTH_DEGREES:
+        return Float.floatToRawIntBits(data.getAzimuthDegrees());
+      case FIELD_ELEVATION_DEGREES:
+        return Float.floatToRawIntBits(data.getElevationDegrees());
+      case FIELD_CN0_DB:
+        return Float.floatToRawIntBits(data.getCn0DbHz());
+      case FIELD_RECEIVED_SV_TIME_UNCERTAINTY_NANOS:
+        return data.getReceivedSvTimeUncertaintyNanos();
+      case FIELD_PSEUDORANGE:
+        return Double.doubleToRawLongBits(data.getPseudorange());
+      case FIELD_TIME_OFFSET_NANOS:
+        return Double.doubleToRawLongBits(data.getTimeOffsetNanos());
+      case FIELD_RECEIVED_SV_TIME_NANOS:
+        return data.getReceivedSvTimeNanos();
+      case FIELD_PSEUDORANGE_RATE_UNCERTAINTY:
+        return Double.doubleToRawLongBits(data.getPseudorangeRateUncertaintyMetersPerSecond());
+      case FIELD_PSEUDORANGE_RATE:
+        return Double.doubleToRawLongBits(data.getPseudorangeRateMetersPerSecond());
+      case FIELD_MULTIPATH_INDICATOR:
+        return data.getMultipathIndicator() & 0xff;
+      case FIELD_AGC_LEVEL_DB:
+        return Double.doubleToRawLongBits(data.getAutomaticGainControlLevelDb());
+      case FIELD_ADR_UNCERTAINTY:
+        return Double.doubleToRawLongBits(data.getAccumulatedDeltaRangeUncertaintyMeters());
+      case FIELD_ADR_STATE:
+        return data.getAccumulatedDeltaRangeState();
+      case FIELD_ADR:
+        return Double.doubleToRawLongBits(data.getAccumulatedDeltaRangeMeters());
+      case FIELD_CARRIER_FREQUENCY:
+        return Double.doubleToRawLongBits(data.getCarrierFrequencyHz());
+      case FIELD_SMOOTHED_PSEUDORANGE:
+        return Double.doubleToRawLongBits(data.getSmoothedPseudorange());
+      case FIELD_SMOOTHING_COUNT:
+        return data.getSmoothingCount() & 0xff;
+      case FIELD_CARRIER_CYCLES:
+        return Double.doubleToRawLongBits(data.getCarrierCycles());
+      case FIELD_CYCLE_SLIP:
+        return data.getCycleSlip() & 0xff;
+      case FIELD_BAND:
+        return data.getBand() & 0xff;
+      case FIELD_QC_FLAGS:
+        return data.getQcFlags() & 0xff;
+      default:
+        return 0;
+    }
+  }
+
+  // 增量模式：与上一历元比较，得到有变化的条目并更新状态，返回条目数；无法编码为增量时返回 -1，按完整历元发送
+  private int diff(long timeNanos, GnssDataPool measurements, int[] selected, int count, int fieldMask) {
+    boolean keyframe = keyframeRequested || fieldMask != lastFieldMask || sinceKeyframe >= keyframeInterval;
+    if (keyframe) {
+      for (int s = 0; s < slotCount; s++) {
+        keySlot[slotKeys[s]] = 0;
+      }
+      slotCount = 0;
+      sinceKeyframe = 0;
+      keyframeRequested = false;
+      lastFieldMask = fieldMask;
+    }
+    if (keys.length < count) {
+      keys = new int[count];
+      slots = new int[count];
+      entryIndex = new int[count];
+      entryMask = new int[count];
+      entryBits = new long[count * FIELD_COUNT];
+    }
+
+    epoch++;
+    for (int i = 0; i < count; i++) {
+      GnssData data = measurements.get(selected[i]);
+      int key = -1;
+      for (int occurrence = 0; occurrence < 4; occurrence++) {
+        int k = signalKey(data.getConstellationType(), data.getSvid(), data.getBand(), occurrence);
+        if (keyEpoch[k] != epoch) {
+          keyEpoch[k] = epoch;
+          key = k;
+          break;
+        }
+      }
+      if (key < 0) {
+        // 同一卫星同一频段超过 4 个信号，本历元发送完整数据，下一个历元重新开始
+        keyframeRequested = true;
+        return -1;
+      }
+      keys[i] = key;
+    }
+
+    boolean predictRate = (fieldMask & (1 << FIELD_PSEUDORANGE_RATE)) != 0;
+    int entries = 0;
+    for (int i = 0; i < count; i++) {
+      GnssData data = measurements.get(selected[i]);
+      int s = keySlot[keys[i]] - 1;
+      int mask = 0;
+      int e = entries;
+      if (s < 0) {
+        s = newSlot(keys[i]);
+        mask = fieldMask | ENTRY_ABSOLUTE;
+      }
+      slots[i] = s;
+      int base = s * FIELD_COUNT;
+      double dt = (timeNanos - slotTime[s]) * 1E-9;
+      double rate = predictRate ? Double.longBitsToDouble(slotBits[base + FIELD_PSEUDORANGE_RATE]) : 0;
+
+      if (mask == 0) {
+        // 任一残差字段无法用 f32 残差表示时，该条目的残差字段都发送绝对值
+        for (int field = 0; field < FIELD_COUNT; field++) {
+          int bit = 1 << field;
+          if ((fieldMask & bit) == 0) {
+            continue;
+          }
+          long bits = fieldBits(field, data);
+          if (bits == slotBits[base + field]) {
+            continue;
+          }
+          mask |= bit;
+          if ((RESIDUAL_FIELDS & bit) != 0) {
+            double predicted = Double.longBitsToDouble(slotBits[base + field]) + rate * dt;
+            double residual = Double.longBitsToDouble(bits) - predicted;
+            if (!(Math.abs(residual) <= MAX_RESIDUAL)) {
+              mask |= ENTRY_ABSOLUTE;
+            }
+          }
+        }
+      }
+
+      if (mask != 0) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+          int bit = 1 << field;
+          if ((mask & bit) == 0) {
+            continue;
+          }
+          long bits = fieldBits(field, data);
+          if ((RESIDUAL_FIELDS & bit) != 0 && (mask & ENTRY_ABSOLUTE) == 0) {
+            double predicted = Double.longBitsToDouble(slotBits[base + field]) + rate * dt;
+            float residual = (float) (Double.longBitsToDouble(bits) - predicted);
+            entryBits[e * FIELD_COUNT + field] = Float.floatToRawIntBits(residual);
+            bits = Double.doubleToRawLongBits(predicted + residual);
+          } else {
+            entryBits[e * FIELD_COUNT + field] = bits;
+          }
+          slotBits[base + field] = bits;
+        }
+        entryIndex[e] = i;
+        entryMask[e] = mask;
+        entries++;
+      }
+      slotTime[s] = timeNanos;
+    }
+
+    sinceKeyframe++;
+    return entries;
+  }
+
+  private int newSlot(int key) {
+    if (slotCount == slotKeys.length) {
+      int capacity = slotCount * 2;
+      slotKeys = Arrays.copyOf(slotKeys, capacity);
+      slotTime = Arrays.copyOf(slotTime, capacity);
+      slotBits = Arrays.copyOf(slotBits, capacity * FIELD_COUNT);
+    }
+    int s = slotCount++;
+    slotKeys[s] = key;
+    keySlot[key] = s + 1;
+    return s;
+  }
+
+  private static int valueSize(int mask, int fieldMask) {
+    int size = 0;
+    for (int field = 0; field < FIELD_COUNT; field++) {
+      int bit = 1 << field;
+      if ((mask & fieldMask & bit) != 0) {
+        size += valueWidth(field, mask);
+      }
+    }
+    return size;
+  }
+
+  // 增量条目中单个值的字节数，残差为 f32
+  private static int valueWidth(int field, int mask) {
+    if ((RESIDUAL_FIELDS & (1 << field)) != 0 && (mask & ENTRY_ABSOLUTE) == 0) {
+      return 4;
+    }
+    return FIELD_WIDTH[field];
+  }
+
+  private void writeDelta(int offset, int count, int entries, int fieldMask) {
+    buffer.putInt(offset, sequence++);
+    buffer.put(offset + 4, (byte) (sinceKeyframe == 1 ? 1 : 0));
+    buffer.put(offset + 5, (byte) 0);
+    buffer.putShort(offset + 6, (short) entries);
+    offset += DELTA_HEADER_SIZE;
+    for (int i = 0; i < count; i++) {
+      buffer.putShort(offset + i * 2, (short) keys[i]);
+    }
+    offset += count * 2;
+    for (int e = 0; e < entries; e++) {
+      buffer.putShort(offset + e * 2, (short) entryIndex[e]);
+    }
+    offset += entries * 2;
+    for (int e = 0; e < entries; e++) {
+      buffer.putInt(offset + e * 4, entryMask[e]);
+    }
+    offset += entries * 4;
+    for (int field = 0; field < FIELD_COUNT; field++) {
+      int bit = 1 << field;
+      if ((fieldMask & bit) == 0) {
+        continue;
+      }
+      for (int e = 0; e < entries; e++) {
+        if ((entryMask[e] & bit) != 0) {
+          int width = valueWidth(field, entryMask[e]);
+          putBits(offset, width, entryBits[e * FIELD_COUNT + field]);
+          offset += width;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package com.xd.location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.location.GnssClock;
+
+/**
+ * map 格式的历元字段，键名与 Dart 端保持一致
+ *
+ * 只依赖 GnssClock 和 GnssData，benchmark 模块直接使用这个类测量 map 编码的开销。
+ */
+public class EpochFormatter {
+  public static Map<String, Object> formatClock(GnssClock gnssClock) {
+    Map<String, Object> clock = new HashMap<String, Object>();
+    clock.put("leap_second", gnssClock.getLeapSecond());
+    clock.put("time_nanos", gnssClock.getTimeNanos());
+    if (gnssClock.hasTimeUncertaintyNanos()) {
+      clock.put("time_uncertaint_nanos", gnssClock.getTimeUncertaintyNanos());
+    }
+    if (gnssClock.hasFullBiasNanos()) {
+      clock.put("full_bias_nanos", gnssClock.getFullBiasNanos());
+    }
+    if (gnssClock.hasBiasNanos()) {
+      clock.put("bias_nanos", gnssClock.getBiasNanos());
+    }
+    if (gnssClock.hasBiasUncertaintyNanos()) {
+      clock.put("bias_uncertaint_nanos", gnssClock.getBiasUncertaintyNanos());
+    }
+
+    if (gnssClock.hasDriftNanosPerSecond()) {
+      clock.put("drift_nanos_second", gnssClock.getDriftNanosPerSecond());
+    }
+    if (gnssClock.hasDriftUncertaintyNanosPerSecond()) {
+      clock.put("bias_uncertaint_nanos", gnssClock.getDriftUncertaintyNanosPerSecond());
+    }
+    
+    clock.put("hardware_clock_discontinuity_count", gnssClock.getHardwareClockDiscontinuityCount());
+
+    return clock;
+  }
+
+  public static Map<String, Object> formatSensor(SensorSnapshot sensor) {
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put("origen", sensor.origen);
+    data.put("speed", sensor.speed);
+    data.put("speedH", sensor.speedH);
+    data.put("speedV", sensor.speedV);
+    data.put("angle", sensor.angle);
+    return data;
+  }
+
+  // IMU 采样按列输出为基本类型数组，Dart 端收到 Int64List、Uint8List 和 Float32List
+  public static Map<String, Object> formatImu(ImuSamples imu) {
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put("timestamps", Arrays.copyOf(imu.timestamps, imu.count));
+    data.put("types", Arrays.copyOf(imu.types, imu.count));
+    data.put("values", Arrays.copyOf(imu.values, imu.count * 3));
+    return data;
+  }
+
+  // 融合结果按 IMU 频率输出，positions 为 纬度,经度,高度 交错排列，velocities 为东北天速度，attitudes 为横滚,俯仰,航向
+  public static Map<String, Object> formatFusion(FusionTrack fusion) {
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put("timestamps", Arrays.copyOf(fusion.timestamps, fusion.count));
+    data.put("positions", Arrays.copyOf(fusion.positions, fusion.count * 3));
+    data.put("velocities", Arrays.copyOf(fusion.velocities, fusion.count * 3));
+    data.put("attitudes", Arrays.copyOf(fusion.attitudes, fusion.count * 3));
+    return data;
+  }
+
+  // 每颗有双频组合的卫星一项，按列输出为基本类型数组，bands 为与 L1 组合的第二个频段
+  public static Map<String, Object> formatIonosphereFree(SignalGroups groups) {
+    int n = 0;
+    for (int g = 0; g < groups.getGroupCount(); g++) {
+      if (groups.hasIonosphereFree(g)) {
+        n++;
+      }
+    }
+    int[] svids = new int[n];
+    int[] constellations = new int[n];
+    int[] bands = new int[n];
+    double[] pseudoranges = new double[n];
+    double[] smoothed = new double[n];
+    for (int g = 0, i = 0; g < groups.getGroupCount(); g++) {
+      if (groups.hasIonosphereFree(g)) {
+        svids[i] = groups.getSvid(g);
+        constellations[i] = groups.getConstellationType(g);
+        bands[i] = groups.getSecondaryBand(g);
+        pseudoranges[i] = groups.getIonosphereFree(g);
+        smoothed[i] = groups.getIonosphereFreeSmoothed(g);
+        i++;
+      }
+    }
+
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put("svids", svids);
+    data.put("constellation_types", constellations);
+    data.put("bands", bands);
+    data.put("pseudoranges", pseudoranges);
+    data.put("smoothed_pseudoranges", smoothed);
+    return data;
+  }
+
+  public static Map<String, Object> formatSolution(SppSolution solution) {
+    Map<String, Object> spp = new HashMap<String, Object>();
+    spp.put("latitude", solution.latitude);
+    spp.put("longitude", solution.longitude);
+    spp.put("altitude", solution.altitude);
+    spp.put("clock_bias_meters", solution.clockBiasMeters);
+    spp.put("gdop", solution.gdop);
+    spp.put("pdop", solution.pdop);
+    spp.put("hdop", solution.hdop);
+    spp.put("vdop", solution.vdop);
+    spp.put("used_count", solution.usedCount);
+    return spp;
+  }
+
+  // 按选中的下标生成观测值列表
+  public static List<Map<String, Object>> formatSatellites(GnssDataPool pool, int[] selected, int count,
+                                                           SubscriptionSpec spec) {
+    List<Map<String, Object>> satellites = new ArrayList<Map<String, Object>>(count);
+    for (int i = 0; i < count; i++) {
+      satellites.add(formatSatellite(pool.get(selected[i]), spec));
+    }
+    return satellites;
+  }
+
+  // 按订阅的字段生成单个观测值的 map
+  public static Map<String, Object> formatSatellite(GnssData gnssdata, SubscriptionSpec spec) {
+    int mask = spec.fieldMask;
+    Map<String, Object> temp = new HashMap<String, Object>();
+    if (has(mask, EpochEncoder.FIELD_SVID)) {
+      temp.put("svid", gnssdata.getPRN());
+    }
+    if (has(mask, EpochEncoder.FIELD_TTX)) {
+      temp.put("ttx", gnssdata.getTTx());
+    }
+    if (has(mask, EpochEncoder.FIELD_TRX)) {
+      temp.put("trx", gnssdata.getTRx());
+    }
+    if (has(mask, EpochEncoder.FIELD_AZIMUTH_DEGREES)) {
+      temp.put("azimuth_degrees", gnssdata.getAzimuthDegrees());
+    }
+    if (has(mask, EpochEncoder.FIELD_ELEVATION_DEGREES)) {
+      temp.put("elevation_degrees", gnssdata.getElevationDegrees());
+    }
+    if (has(mask, EpochEncoder.FIELD_CN0_DB)) {
+      temp.put("cn0_db", gnssdata.getCn0DbHz());
+    }
+    if (has(mask, EpochEncoder.FIELD_RECEIVED_SV_TIME_UNCERTAINTY_NANOS)) {
+      temp.put("received_sv_time_uncertainty_nanos", gnssdata.getReceivedSvTimeUncertaintyNanos());
+      // 旧的重复字段，只在没有指定字段白名单时保留
+      if (spec.legacyFields) {
+        temp.put("received_svtime_uncertainty_nanos", gnssdata.getReceivedSvTimeUncertaintyNanos());
+      }
+    }
+    if (has(mask, EpochEncoder.FIELD_PSEUDORANGE)) {
+      temp.put("pseudorange", gnssdata.getPseudorange());
+    }
+    if (has(mask, EpochEncoder.FIELD_TIME_OFFSET_NANOS)) {
+      temp.put("time_offset_nanos", gnssdata.getTimeOffsetNanos());
+    }
+    // temp.put("snr_in_db", gnssdata.getSnrInDb());
+    // temp.put("satellite_inter_signal_bias_nanos", gnssdata.getSatelliteInterSignalBiasNanos());
+    if (has(mask, EpochEncoder.FIELD_RECEIVED_SV_TIME_NANOS)) {
+      temp.put("received_sv_time_nanos", gnssdata.getReceivedSvTimeNanos());
+    }
+    if (has(mask, EpochEncoder.FIELD_PSEUDORANGE_RATE_UNCERTAINTY)) {
+      temp.put("pseudorange_rate_uncertainty_meters_per_second", gnssdata.getPseudorangeRateUncertaintyMetersPerSecond());
+    }
+    if (has(mask, EpochEncoder.FIELD_PSEUDORANGE_RATE)) {
+      temp.put("pseudorange_rate_meters_per_second", gnssdata.getPseudorangeRateMetersPerSecond());
+    }
+    if (has(mask, EpochEncoder.FIELD_MULTIPATH_INDICATOR)) {
+      temp.put("multipath_indicator", gnssdata.getMultipathIndicator());
+    }
+    // temp.put("full_inter_signal_bias_nanos", gnssdata.getFullInterSignalBiasNanos());
+    if (has(mask, EpochEncoder.FIELD_CONSTELLATION_TYPE)) {
+      temp.put("constellation_type", gnssdata.getConstellationType());
+    }
+    if (has(mask, EpochEncoder.FIELD_AGC_LEVEL_DB)) {
+      temp.put("automatic_gain_control_levelDb", gnssdata.getAutomaticGainControlLevelDb());
+    }
+    if (has(mask, EpochEncoder.FIELD_ADR_UNCERTAINTY)) {
+      temp.put("acumulated_delta_range_uncertainty_meters", gnssdata.getAccumulatedDeltaRangeUncertaintyMeters());
+    }
+    if (has(mask, EpochEncoder.FIELD_ADR_STATE)) {
+      temp.put("accumulated_delta_range_state", gnssdata.getAccumulatedDeltaRangeState());
+    }
+    if (has(mask, EpochEncoder.FIELD_ADR)) {
+      temp.put("accumulated_delta_range_meters", gnssdata.getAccumulatedDeltaRangeMeters());
+    }
+    if (has(mask, EpochEncoder.FIELD_CARRIER_FREQUENCY)) {
+      temp.put("carrier_frequency", gnssdata.getCarrierFrequencyHz());
+    }
+    if (has(mask, EpochEncoder.FIELD_SMOOTHED_PSEUDORANGE)) {
+      temp.put("smoothed_pseudorange", gnssdata.getSmoothedPseudorange());
+    }
+    if (has(mask, EpochEncoder.FIELD_SMOOTHING_COUNT)) {
+      temp.put("smoothing_count", gnssdata.getSmoothingCount());
+    }
+    if (has(mask, EpochEncoder.FIELD_CARRIER_CYCLES)) {
+      temp.put("carrier_cycles", gnssdata.getCarrierCycles());
+    }
+    if (has(mask, EpochEncoder.FIELD_CYCLE_SLIP)) {
+      temp.put("cycle_slip", gnssdata.getCycleSlip());
+    }
+    if (has(mask, EpochEncoder.FIELD_BAND)) {
+      temp.put("band", GnssBand.name(gnssdata.getBand()));
+    }
+    if (has(mask, EpochEncoder.FIELD_QC_FLAGS)) {
+      temp.put("qc_flags", gnssdata.getQcFlags());
+    }
+    // temp.put("base_cn0_db", gnssdata.getBasebandCn0DbHz());
+
+    return temp;
+  }
+
+  private static boolean has(int mask, int field) {
+    return (mask & (1 << field)) != 0;
+  }
+}
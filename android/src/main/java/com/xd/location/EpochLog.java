@@ -0,0 +1,758 @@
+package com.xd.location;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+import android.location.Location;
+import android.os.Build;
+
+/**
+ * 原始数据记录文件，回放时按记录的顺序和时间把数据送回处理链路
+ *
+ * 小端二进制，文件头 8 字节：magic(u32) version(u16) sdk(u16)，之后是连续的记录：
+ *   type(u8) length(u32) elapsedRealtimeNanos(i64) payload(length 字节)
+ * elapsedRealtimeNanos 为记录时刻，回放按它控制节奏。可选字段由 payload 中的标记决定是否存在，
+ * 不认识的记录类型按 length 跳过。记录的是 GnssClock/GnssMeasurement 等的字段值而不是 Parcel，
+ * 不依赖系统版本，可以在其他设备或 JVM 上回放。
+ */
+public class EpochLog {
+  public static final int MAGIC = 0x474F4C47; // "GLOG"
+  public static final int VERSION = 1;
+
+  public static final int FILE_HEADER_SIZE = 8;
+  public static final int RECORD_HEADER_SIZE = 13;
+
+  // 记录类型
+  public static final int RECORD_MEASUREMENTS = 1;
+  public static final int RECORD_STATUS = 2;
+  public static final int RECORD_NAVIGATION = 3;
+  public static final int RECORD_LOCATION = 4;
+  public static final int RECORD_IMU = 5;
+  public static final int RECORD_SENSOR = 6;
+
+  // 时钟可选字段，与 EpochEncoder.CLOCK_* 相同，另加 elapsedRealtime
+  static final int CLOCK_ELAPSED_REALTIME = 1 << 7;
+  static final int CLOCK_ELAPSED_REALTIME_UNCERTAINTY = 1 << 8;
+
+  // 观测值可选字段
+  static final int HAS_CARRIER_FREQUENCY = 1;
+  static final int HAS_SNR = 1 << 1;
+  static final int HAS_AGC = 1 << 2;
+  static final int HAS_CODE_TYPE = 1 << 3;
+  static final int HAS_BASEBAND_CN0 = 1 << 4;
+  static final int HAS_FULL_ISB = 1 << 5;
+  static final int HAS_FULL_ISB_UNCERTAINTY = 1 << 6;
+  static final int HAS_SATELLITE_ISB = 1 << 7;
+  static final int HAS_SATELLITE_ISB_UNCERTAINTY = 1 << 8;
+
+  // 卫星状态标记
+  public static final int STATUS_EPHEMERIS = 1;
+  public static final int STATUS_ALMANAC = 1 << 1;
+  public static final int STATUS_USED_IN_FIX = 1 << 2;
+  public static final int STATUS_CARRIER_FREQUENCY = 1 << 3;
+  public static final int STATUS_BASEBAND_CN0 = 1 << 4;
+
+  // 定位结果可选字段
+  static final int LOCATION_ALTITUDE = 1;
+  static final int LOCATION_SPEED = 1 << 1;
+  static final int LOCATION_BEARING = 1 << 2;
+  static final int LOCATION_ACCURACY = 1 << 3;
+  static final int LOCATION_VERTICAL_ACCURACY = 1 << 4;
+  static final int LOCATION_SPEED_ACCURACY = 1 << 5;
+  static final int LOCATION_BEARING_ACCURACY = 1 << 6;
+
+  private static final int CLOCK_SIZE = 84; // 全部可选字段都存在时
+  private static final int MEASUREMENT_SIZE = 160; // 不含 codeType 的字符
+  private static final int STATUS_SIZE = 24;
+  private static final int LOCATION_SIZE = 96;
+
+  private EpochLog() {
+  }
+
+  /**
+   * 写入记录文件，内容先写入 direct ByteBuffer，缓冲区不够时才写入 FileChannel。
+   * 可以在多个线程上调用，每条记录整体写入
+   */
+  public static class Writer {
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    public Writer(File file, int bufferSize) throws IOException {
+      stream = new FileOutputStream(file);
+      channel = stream.getChannel();
+      buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC);
+      buffer.putShort((short) VERSION);
+      buffer.putShort((short) Build.VERSION.SDK_INT);
+    }
+
+    public synchronized void writeMeasurements(long elapsedNanos, GnssClock clock,
+                                               Collection<GnssMeasurement> measurements) throws IOException {
+      int size = CLOCK_SIZE + 2;
+      for (GnssMeasurement m : measurements) {
+        size += MEASUREMENT_SIZE + (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && m.hasCodeType()
+            ? m.getCodeType().length() : 0);
+      }
+      int start = begin(RECORD_MEASUREMENTS, elapsedNanos, size);
+      writeClock(clock);
+      buffer.putShort((short) measurements.size());
+      for (GnssMeasurement m : measurements) {
+        writeMeasurement(m);
+      }
+      end(start);
+    }
+
+    public synchronized void writeStatus(long elapsedNanos, GnssStatus status) throws IOException {
+      int n = status.getSatelliteCount();
+      int start = begin(RECORD_STATUS, elapsedNanos, 2 + STATUS_SIZE * n);
+      buffer.putShort((short) n);
+      for (int i = 0; i < n; i++) {
+        int flags = 0;
+        if (status.hasEphemerisData(i)) {
+          flags |= STATUS_EPHEMERIS;
+        }
+        if (status.hasAlmanacData(i)) {
+          flags |= STATUS_ALMANAC;
+        }
+        if (status.usedInFix(i)) {
+          flags |= STATUS_USED_IN_FIX;
+        }
+        float carrier = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && status.hasCarrierFrequencyHz(i)) {
+          flags |= STATUS_CARRIER_FREQUENCY;
+          carrier = status.getCarrierFrequencyHz(i);
+        }
+        float baseband = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && status.hasBasebandCn0DbHz(i)) {
+          flags |= STATUS_BASEBAND_CN0;
+          baseband = status.getBasebandCn0DbHz(i);
+        }
+        buffer.putShort((short) status.getSvid(i));
+        buffer.put((byte) status.getConstellationType(i));
+        buffer.put((byte) flags);
+        buffer.putFloat(status.getCn0DbHz(i));
+        buffer.putFloat(status.getElevationDegrees(i));
+        buffer.putFloat(status.getAzimuthDegrees(i));
+        buffer.putFloat(carrier);
+        buffer.putFloat(baseband);
+      }
+      end(start);
+    }
+
+    public synchronized void writeNavigation(long elapsedNanos, int type, int svid, int status, int messageId,
+                                             int submessageId, byte[] data) throws IOException {
+      int start = begin(RECORD_NAVIGATION, elapsedNanos, 14 + data.length);
+      buffer.putInt(type);
+      buffer.putShort((short) svid);
+      buffer.putShort((short) status);
+      buffer.putShort((short) messageId);
+      buffer.putShort((short) submessageId);
+      buffer.putShort((short) data.length);
+      buffer.put(data);
+      end(start);
+    }
+
+    public synchronized void writeLocation(long elapsedNanos, Location location) throws IOException {
+      String provider = location.getProvider() != null ? location.getProvider() : "";
+      int start = begin(RECORD_LOCATION, elapsedNanos, LOCATION_SIZE + provider.length());
+      int flags = 0;
+      if (location.hasAltitude()) {
+        flags |= LOCATION_ALTITUDE;
+      }
+      if (location.hasSpeed()) {
+        flags |= LOCATION_SPEED;
+      }
+      if (location.hasBearing()) {
+        flags |= LOCATION_BEARING;
+      }
+      if (location.hasAccuracy()) {
+        flags |= LOCATION_ACCURACY;
+      }
+      float verticalAccuracy = 0;
+      float speedAccuracy = 0;
+      float bearingAccuracy = 0;
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+        if (location.hasVerticalAccuracy()) {
+          flags |= LOCATION_VERTICAL_ACCURACY;
+          verticalAccuracy = location.getVerticalAccuracyMeters();
+        }
+        if (location.hasSpeedAccuracy()) {
+          flags |= LOCATION_SPEED_ACCURACY;
+          speedAccuracy = location.getSpeedAccuracyMetersPerSecond();
+        }
+        if (location.hasBearingAccuracy()) {
+          flags |= LOCATION_BEARING_ACCURACY;
+          bearingAccuracy = location.getBearingAccuracyDegrees();
+        }
+      }
+      buffer.putShort((short) flags);
+      buffer.putLong(location.getTime());
+      buffer.putLong(location.getElapsedRealtimeNanos());
+      buffer.putDouble(location.getLatitude());
+      buffer.putDouble(location.getLongitude());
+      buffer.putDouble(location.getAltitude());
+      buffer.putFloat(location.getSpeed());
+      buffer.putFloat(location.getBearing());
+      buffer.putFloat(location.getAccuracy());
+      buffer.putFloat(verticalAccuracy);
+      buffer.putFloat(speedAccuracy);
+      buffer.putFloat(bearingAccuracy);
+      putString(provider);
+      end(start);
+    }
+
+    public synchronized void writeImu(long elapsedNanos, int type, long timestampNanos, float x, float y, float z)
+        throws IOException {
+      int start = begin(RECORD_IMU, elapsedNanos, 21);
+      buffer.put((byte) type);
+      buffer.putLong(timestampNanos);
+      buffer.putFloat(x);
+      buffer.putFloat(y);
+      buffer.putFloat(z);
+      end(start);
+    }
+
+    public synchronized void writeSensor(long elapsedNanos, SensorSnapshot sensor) throws IOException {
+      int start = begin(RECORD_SENSOR, elapsedNanos, 40);
+      buffer.putLong(sensor.timestampNanos);
+      buffer.putInt(sensor.origen);
+      buffer.putFloat(sensor.angle);
+      buffer.putDouble(sensor.speed);
+      buffer.putDouble(sensor.speedH);
+      buffer.putDouble(sensor.speedV);
+      end(start);
+    }
+
+    public synchronized void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    public synchronized void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        stream.close();
+      }
+    }
+
+    // 写入记录头，返回记录的起始位置；maxPayload 为 payload 的上限
+    private int begin(int type, long elapsedNanos, int maxPayload) throws IOException {
+      if (buffer.remaining() < RECORD_HEADER_SIZE + maxPayload) {
+        flush();
+        if (buffer.remaining() < RECORD_HEADER_SIZE + maxPayload) {
+          throw new IOException("record too large: " + maxPayload);
+        }
+      }
+      int start = buffer.position();
+      buffer.put((byte) type);
+      buffer.putInt(0);
+      buffer.putLong(elapsedNanos);
+      return start;
+    }
+
+    private void end(int start) {
+      buffer.putInt(start + 1, buffer.position() - start - RECORD_HEADER_SIZE);
+    }
+
+    private void putString(String s) {
+      int n = Math.min(s.length(), 255);
+      buffer.put((byte) n);
+      for (int i = 0; i < n; i++) {
+        buffer.put((byte) s.charAt(i));
+      }
+    }
+
+    private void writeClock(GnssClock clock) {
+      int flags = 0;
+      int start = buffer.position();
+      buffer.putShort((short) 0);
+      buffer.putLong(clock.getTimeNanos());
+      buffer.putInt(clock.getHardwareClockDiscontinuityCount());
+      if (clock.hasLeapSecond()) {
+        flags |= EpochEncoder.CLOCK_LEAP_SECOND;
+        buffer.putInt(clock.getLeapSecond());
+      }
+      if (clock.hasTimeUncertaintyNanos()) {
+        flags |= EpochEncoder.CLOCK_TIME_UNCERTAINTY;
+        buffer.putDouble(clock.getTimeUncertaintyNanos());
+      }
+      if (clock.hasFullBiasNanos()) {
+        flags |= EpochEncoder.CLOCK_FULL_BIAS;
+        buffer.putLong(clock.getFullBiasNanos());
+      }
+      if (clock.hasBiasNanos()) {
+        flags |= EpochEncoder.CLOCK_BIAS;
+        buffer.putDouble(clock.getBiasNanos());
+      }
+      if (clock.hasBiasUncertaintyNanos()) {
+        flags |= EpochEncoder.CLOCK_BIAS_UNCERTAINTY;
+        buffer.putDouble(clock.getBiasUncertaintyNanos());
+      }
+      if (clock.hasDriftNanosPerSecond()) {
+        flags |= EpochEncoder.CLOCK_DRIFT;
+        buffer.putDouble(clock.getDriftNanosPerSecond());
+      }
+      if (clock.hasDriftUncertaintyNanosPerSecond()) {
+        flags |= EpochEncoder.CLOCK_DRIFT_UNCERTAINTY;
+        buffer.putDouble(clock.getDriftUncertaintyNanosPerSecond());
+      }
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+        if (clock.hasElapsedRealtimeNanos()) {
+          flags |= CLOCK_ELAPSED_REALTIME;
+          buffer.putLong(clock.getElapsedRealtimeNanos());
+        }
+        if (clock.hasElapsedRealtimeUncertaintyNanos()) {
+          flags |= CLOCK_ELAPSED_REALTIME_UNCERTAINTY;
+          buffer.putDouble(clock.getElapsedRealtimeUncertaintyNanos());
+        }
+      }
+      buffer.putShort(start, (short) flags);
+    }
+
+    private void writeMeasurement(GnssMeasurement m) {
+      int flags = 0;
+      int start = buffer.position();
+      buffer.putShort((short) 0);
+      buffer.putShort((short) m.getSvid());
+      buffer.put((byte) m.getConstellationType());
+      buffer.put((byte) m.getMultipathIndicator());
+      buffer.putInt(m.getState());
+      buffer.putInt(m.getAccumulatedDeltaRangeState());
+      buffer.putDouble(m.getTimeOffsetNanos());
+      buffer.putLong(m.getReceivedSvTimeNanos());
+      buffer.putLong(m.getReceivedSvTimeUncertaintyNanos());
+      buffer.putDouble(m.getCn0DbHz());
+      buffer.putDouble(m.getPseudorangeRateMetersPerSecond());
+      buffer.putDouble(m.getPseudorangeRateUncertaintyMetersPerSecond());
+      buffer.putDouble(m.getAccumulatedDeltaRangeMeters());
+      buffer.putDouble(m.getAccumulatedDeltaRangeUncertaintyMeters());
+      if (m.hasCarrierFrequencyHz()) {
+        flags |= HAS_CARRIER_FREQUENCY;
+        buffer.putFloat(m.getCarrierFrequencyHz());
+      }
+      if (m.hasSnrInDb()) {
+        flags |= HAS_SNR;
+        buffer.putDouble(m.getSnrInDb());
+      }
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && m.hasAutomaticGainControlLevelDb()) {
+        flags |= HAS_AGC;
+        buffer.putDouble(m.getAutomaticGainControlLevelDb());
+      }
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && m.hasCodeType()) {
+        flags |= HAS_CODE_TYPE;
+        putString(m.getCodeType());
+      }
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+        if (m.hasBasebandCn0DbHz()) {
+          flags |= HAS_BASEBAND_CN0;
+          buffer.putDouble(m.getBasebandCn0DbHz());
+        }
+        if (m.hasFullInterSignalBiasNanos()) {
+          flags |= HAS_FULL_ISB;
+          buffer.putDouble(m.getFullInterSignalBiasNanos());
+        }
+        if (m.hasFullInterSignalBiasUncertaintyNanos()) {
+          flags |= HAS_FULL_ISB_UNCERTAINTY;
+          buffer.putDouble(m.getFullInterSignalBiasUncertaintyNanos());
+        }
+        if (m.hasSatelliteInterSignalBiasNanos()) {
+          flags |= HAS_SATELLITE_ISB;
+          buffer.putDouble(m.getSatelliteInterSignalBiasNanos());
+        }
+        if (m.hasSatelliteInterSignalBiasUncertaintyNanos()) {
+          flags |= HAS_SATELLITE_ISB_UNCERTAINTY;
+          buffer.putDouble(m.getSatelliteInterSignalBiasUncertaintyNanos());
+        }
+      }
+      buffer.putShort(start, (short) flags);
+    }
+  }
+
+  /**
+   * 顺序读取记录文件。next 返回下一条记录的类型，之后用对应的 getter 读取内容，
+   * 每条记录都生成新的对象，可以交给处理链路保留
+   */
+  public static class Reader {
+    private final FileInputStream stream;
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final int sdk;
+
+    private long elapsedNanos;
+    private GnssClock clock;
+    private final List<GnssMeasurement> measurements = new ArrayList<GnssMeasurement>();
+    private GnssStatus status;
+    private Location location;
+    private int navigationType;
+    private int navigationSvid;
+    private int navigationStatus;
+    private int messageId;
+    private int submessageId;
+    private byte[] navigationData;
+    private int imuType;
+    private long imuTimestampNanos;
+    private final float[] imuValues = new float[3];
+    private final SensorSnapshot sensor = new SensorSnapshot();
+
+    public Reader(File file) throws IOException {
+      stream = new FileInputStream(file);
+      channel = stream.getChannel();
+      buffer.flip();
+      try {
+        require(FILE_HEADER_SIZE);
+        if (buffer.getInt() != MAGIC) {
+          throw new IOException("not an epoch log: " + file);
+        }
+        int version = buffer.getShort() & 0xffff;
+        if (version > VERSION) {
+          throw new IOException("unsupported epoch log version " + version);
+        }
+        sdk = buffer.getShort() & 0xffff;
+      } catch (IOException e) {
+        stream.close();
+        throw e;
+      }
+    }
+
+    // 记录时设备的 Build.VERSION.SDK_INT
+    public int getSdk() {
+      return sdk;
+    }
+
+    // 读取下一条记录，返回 RECORD_*，文件结束时返回 -1
+    public int next() throws IOException {
+      while (true) {
+        if (!available(RECORD_HEADER_SIZE)) {
+          return -1;
+        }
+        int type = buffer.get() & 0xff;
+        int length = buffer.getInt();
+        elapsedNanos = buffer.getLong();
+        require(length);
+        int end = buffer.position() + length;
+        try {
+          switch (type) {
+            case RECORD_MEASUREMENTS:
+              readMeasurements();
+              break;
+            case RECORD_STATUS:
+              readStatus();
+              break;
+            case RECORD_NAVIGATION:
+              readNavigation();
+              break;
+            case RECORD_LOCATION:
+              readLocation();
+              break;
+            case RECORD_IMU:
+              imuType = buffer.get() & 0xff;
+              imuTimestampNanos = buffer.getLong();
+              imuValues[0] = buffer.getFloat();
+              imuValues[1] = buffer.getFloat();
+              imuValues[2] = buffer.getFloat();
+              break;
+            case RECORD_SENSOR:
+              sensor.valid = true;
+              sensor.timestampNanos = buffer.getLong();
+              sensor.origen = buffer.getInt();
+              sensor.angle = buffer.getFloat();
+              sensor.speed = buffer.getDouble();
+              sensor.speedH = buffer.getDouble();
+              sensor.speedV = buffer.getDouble();
+              break;
+            default:
+              buffer.position(end); // 新版本增加的记录类型
+              continue;
+          }
+        } catch (ReflectiveOperationException e) {
+          throw new IOException("cannot rebuild GNSS objects on this platform", e);
+        }
+        buffer.position(end);
+        return type;
+      }
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    public GnssClock getClock() {
+      return clock;
+    }
+
+    public List<GnssMeasurement> getMeasurements() {
+      return measurements;
+    }
+
+    // 系统低于 API 30 时无法构造 GnssStatus，返回 null
+    public GnssStatus getStatus() {
+      return status;
+    }
+
+    public Location getLocation() {
+      return location;
+    }
+
+    public int getNavigationType() {
+      return navigationType;
+    }
+
+    public int getNavigationSvid() {
+      return navigationSvid;
+    }
+
+    public int getNavigationStatus() {
+      return navigationStatus;
+    }
+
+    public int getMessageId() {
+      return messageId;
+    }
+
+    public int getSubmessageId() {
+      return submessageId;
+    }
+
+    public byte[] getNavigationData() {
+      return navigationData;
+    }
+
+    public int getImuType() {
+      return imuType;
+    }
+
+    public long getImuTimestampNanos() {
+      return imuTimestampNanos;
+    }
+
+    public float getImuValue(int axis) {
+      return imuValues[axis];
+    }
+
+    public SensorSnapshot getSensor() {
+      return sensor;
+    }
+
+    public void close() throws IOException {
+      stream.close();
+    }
+
+    private void readMeasurements() throws ReflectiveOperationException {
+      clock = GnssObjects.newClock();
+      int flags = buffer.getShort() & 0xffff;
+      GnssObjects.setClock(clock, GnssObjects.CLOCK_TIME_NANOS, buffer.getLong());
+      GnssObjects.setClock(clock, GnssObjects.CLOCK_DISCONTINUITY, buffer.getInt());
+      if ((flags & EpochEncoder.CLOCK_LEAP_SECOND) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_LEAP_SECOND, buffer.getInt());
+      }
+      if ((flags & EpochEncoder.CLOCK_TIME_UNCERTAINTY) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_TIME_UNCERTAINTY, buffer.getDouble());
+      }
+      if ((flags & EpochEncoder.CLOCK_FULL_BIAS) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_FULL_BIAS, buffer.getLong());
+      }
+      if ((flags & EpochEncoder.CLOCK_BIAS) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_BIAS, buffer.getDouble());
+      }
+      if ((flags & EpochEncoder.CLOCK_BIAS_UNCERTAINTY) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_BIAS_UNCERTAINTY, buffer.getDouble());
+      }
+      if ((flags & EpochEncoder.CLOCK_DRIFT) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_DRIFT, buffer.getDouble());
+      }
+      if ((flags & EpochEncoder.CLOCK_DRIFT_UNCERTAINTY) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_DRIFT_UNCERTAINTY, buffer.getDouble());
+      }
+      if ((flags & CLOCK_ELAPSED_REALTIME) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_ELAPSED_REALTIME, buffer.getLong());
+      }
+      if ((flags & CLOCK_ELAPSED_REALTIME_UNCERTAINTY) != 0) {
+        GnssObjects.setClock(clock, GnssObjects.CLOCK_ELAPSED_REALTIME_UNCERTAINTY, buffer.getDouble());
+      }
+
+      measurements.clear();
+      int n = buffer.getShort() & 0xffff;
+      for (int i = 0; i < n; i++) {
+        measurements.add(readMeasurement());
+      }
+    }
+
+    private GnssMeasurement readMeasurement() throws ReflectiveOperationException {
+      GnssMeasurement m = GnssObjects.newMeasurement();
+      int flags = buffer.getShort() & 0xffff;
+      GnssObjects.setMeasurement(m, GnssObjects.SVID, (int) buffer.getShort());
+      GnssObjects.setMeasurement(m, GnssObjects.CONSTELLATION_TYPE, buffer.get() & 0xff);
+      GnssObjects.setMeasurement(m, GnssObjects.MULTIPATH_INDICATOR, buffer.get() & 0xff);
+      GnssObjects.setMeasurement(m, GnssObjects.STATE, buffer.getInt());
+      GnssObjects.setMeasurement(m, GnssObjects.ADR_STATE, buffer.getInt());
+      GnssObjects.setMeasurement(m, GnssObjects.TIME_OFFSET, buffer.getDouble());
+      GnssObjects.setMeasurement(m, GnssObjects.RECEIVED_SV_TIME, buffer.getLong());
+      GnssObjects.setMeasurement(m, GnssObjects.RECEIVED_SV_TIME_UNCERTAINTY, buffer.getLong());
+      GnssObjects.setMeasurement(m, GnssObjects.CN0, buffer.getDouble());
+      GnssObjects.setMeasurement(m, GnssObjects.PSEUDORANGE_RATE, buffer.getDouble());
+      GnssObjects.setMeasurement(m, GnssObjects.PSEUDORANGE_RATE_UNCERTAINTY, buffer.getDouble());
+      GnssObjects.setMeasurement(m, GnssObjects.ADR, buffer.getDouble());
+      GnssObjects.setMeasurement(m, GnssObjects.ADR_UNCERTAINTY, buffer.getDouble());
+      if ((flags & HAS_CARRIER_FREQUENCY) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.CARRIER_FREQUENCY, buffer.getFloat());
+      }
+      if ((flags & HAS_SNR) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.SNR, buffer.getDouble());
+      }
+      if ((flags & HAS_AGC) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.AGC_LEVEL, buffer.getDouble());
+      }
+      if ((flags & HAS_CODE_TYPE) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.CODE_TYPE, getString());
+      }
+      if ((flags & HAS_BASEBAND_CN0) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.BASEBAND_CN0, buffer.getDouble());
+      }
+      if ((flags & HAS_FULL_ISB) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.FULL_ISB, buffer.getDouble());
+      }
+      if ((flags & HAS_FULL_ISB_UNCERTAINTY) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.FULL_ISB_UNCERTAINTY, buffer.getDouble());
+      }
+      if ((flags & HAS_SATELLITE_ISB) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.SATELLITE_ISB, buffer.getDouble());
+      }
+      if ((flags & HAS_SATELLITE_ISB_UNCERTAINTY) != 0) {
+        GnssObjects.setMeasurement(m, GnssObjects.SATELLITE_ISB_UNCERTAINTY, buffer.getDouble());
+      }
+      return m;
+    }
+
+    private void readStatus() {
+      int n = buffer.getShort() & 0xffff;
+      int[] svids = new int[n];
+      int[] constellations = new int[n];
+      int[] flags = new int[n];
+      float[] cn0 = new float[n];
+      float[] elevations = new float[n];
+      float[] azimuths = new float[n];
+      float[] carriers = new float[n];
+      float[] baseband = new float[n];
+      for (int i = 0; i < n; i++) {
+        svids[i] = buffer.getShort();
+        constellations[i] = buffer.get() & 0xff;
+        flags[i] = buffer.get() & 0xff;
+        cn0[i] = buffer.getFloat();
+        elevations[i] = buffer.getFloat();
+        azimuths[i] = buffer.getFloat();
+        carriers[i] = buffer.getFloat();
+        baseband[i] = buffer.getFloat();
+      }
+      status = GnssObjects.canBuildStatus()
+          ? GnssObjects.newStatus(n, svids, constellations, flags, cn0, elevations, azimuths, carriers, baseband)
+          : null;
+    }
+
+    private void readNavigation() {
+      navigationType = buffer.getInt();
+      navigationSvid = buffer.getShort();
+      navigationStatus = buffer.getShort();
+      messageId = buffer.getShort();
+      submessageId = buffer.getShort();
+      navigationData = new byte[buffer.getShort() & 0xffff];
+      buffer.get(navigationData);
+    }
+
+    private void readLocation() {
+      int flags = buffer.getShort() & 0xffff;
+      long time = buffer.getLong();
+      long elapsed = buffer.getLong();
+      double latitude = buffer.getDouble();
+      double longitude = buffer.getDouble();
+      double altitude = buffer.getDouble();
+      float speed = buffer.getFloat();
+      float bearing = buffer.getFloat();
+      float accuracy = buffer.getFloat();
+      float verticalAccuracy = buffer.getFloat();
+      float speedAccuracy = buffer.getFloat();
+      float bearingAccuracy = buffer.getFloat();
+
+      location = new Location(getString());
+      location.setTime(time);
+      location.setElapsedRealtimeNanos(elapsed);
+      location.setLatitude(latitude);
+      location.setLongitude(longitude);
+      if ((flags & LOCATION_ALTITUDE) != 0) {
+        location.setAltitude(altitude);
+      }
+      if ((flags & LOCATION_SPEED) != 0) {
+        location.setSpeed(speed);
+      }
+      if ((flags & LOCATION_BEARING) != 0) {
+        location.setBearing(bearing);
+      }
+      if ((flags & LOCATION_ACCURACY) != 0) {
+        location.setAccuracy(accuracy);
+      }
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+        if ((flags & LOCATION_VERTICAL_ACCURACY) != 0) {
+          location.setVerticalAccuracyMeters(verticalAccuracy);
+        }
+        if ((flags & LOCATION_SPEED_ACCURACY) != 0) {
+          location.setSpeedAccuracyMetersPerSecond(speedAccuracy);
+        }
+        if ((flags & LOCATION_BEARING_ACCURACY) != 0) {
+          location.setBearingAccuracyDegrees(bearingAccuracy);
+        }
+      }
+    }
+
+    private String getString() {
+      int n = buffer.get() & 0xff;
+      char[] chars = new char[n];
+      for (int i = 0; i < n; i++) {
+        chars[i] = (char) (buffer.get() & 0xff);
+      }
+      return new String(chars);
+    }
+
+    // 保证缓冲区中至少有 n 个字节，文件提前结束时抛出 EOFException
+    private void require(int n) throws IOException {
+      if (!available(n)) {
+        throw new EOFException("truncated epoch log");
+      }
+    }
+
+    private boolean available(int n) throws IOException {
+      if (buffer.remaining() >= n) {
+        return true;
+      }
+      if (buffer.capacity() < n) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(n, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        larger.put(buffer);
+        buffer = larger;
+      } else {
+        buffer.compact();
+      }
+      while (buffer.position() < n) {
+        if (channel.read(buffer) < 0) {
+          break;
+        }
+      }
+      buffer.flip();
+      return buffer.remaining() >= n;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.xd.location;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 原始数据记录，写入 EpochLog 文件，之后可以由 ReplaySource 回放
+ *
+ * GNSS 数据在处理线程上写入，IMU 采样在采集线程上写入，EpochLog.Writer 按记录加锁。
+ * 每条记录带写入时的 elapsedRealtime，写入失败时停止记录。
+ */
+public class EpochLogRecorder {
+  private static final String TAG = "EpochLogRecorder";
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private volatile EpochLog.Writer writer;
+
+  public boolean isRecording() {
+    return writer != null;
+  }
+
+  public synchronized void start(String path) throws IOException {
+    stop();
+
+    File file = new File(path);
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("cannot create " + parent);
+    }
+    writer = new EpochLog.Writer(file, BUFFER_SIZE);
+  }
+
+  public synchronized void stop() {
+    EpochLog.Writer w = writer;
+    writer = null;
+    if (w == null) {
+      return;
+    }
+    try {
+      w.close();
+    } catch (IOException e) {
+      Log.e(TAG, "close failed", e);
+    }
+  }
+
+  public void writeMeasurements(GnssClock clock, Collection<GnssMeasurement> measurements) {
+    EpochLog.Writer w = writer;
+    if (w == null) {
+      return;
+    }
+    try {
+      w.writeMeasurements(SystemClock.elapsedRealtimeNanos(), clock, measurements);
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  public void writeStatus(GnssStatus status) {
+    EpochLog.Writer w = writer;
+    if (w == null) {
+      return;
+    }
+    try {
+      w.writeStatus(SystemClock.elapsedRealtimeNanos(), status);
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  public void writeNavigation(int type, int svid, int status, int messageId, int submessageId, byte[] data) {
+    EpochLog.Writer w = writer;
+    if (w == null) {
+      return;
+    }
+    try {
+      w.writeNavigation(SystemClock.elapsedRealtimeNanos(), type, svid, status, messageId, submessageId, data);
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  public void writeLocation(Location location) {
+    EpochLog.Writer w = writer;
+    if (w == null) {
+      return;
+    }
+    try {
+      w.writeLocation(SystemClock.elapsedRealtimeNanos(), location);
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  // 采集线程调用
+  public void writeImu(int type, long timestampNanos, float x, float y, float z) {
+    EpochLog.Writer w = writer;
+    if (w == null) {
+      return;
+    }
+    try {
+      w.writeImu(SystemClock.elapsedRealtimeNanos(), type, timestampNanos, x, y, z);
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  public void writeSensor(SensorSnapshot sensor) {
+    EpochLog.Writer w = writer;
+    if (w == null) {
+      return;
+    }
+    try {
+      w.writeSensor(SystemClock.elapsedRealtimeNanos(), sensor);
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  private void failed(IOException e) {
+    Log.e(TAG, "write failed, recording stopped", e);
+    stop();
+  }
+}
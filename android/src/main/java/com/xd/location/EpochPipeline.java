@@ -0,0 +1,360 @@
+package com.xd.location;
+
+import java.util.Collection;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * 一个历元的处理链路中不依赖系统服务的部分，GnssEngine 和 JVM 上的回放测试共用
+ *
+ * process 按 steps 依次填充 GnssData、质量检查、跨历元跟踪、按卫星分组和单点定位，
+ * 需要发送时再由调用方 select、readImu、fuse 和 encode。记录、存储、分发和延迟统计以外的状态都在这里，
+ * 只在处理线程上使用。系统定位结果由调用方传入。
+ */
+public class EpochPipeline {
+  // process 的处理步骤，由 steps 按订阅参数和本历元的用途决定
+  public static final int STEP_POOL = 1; // 填充 GnssData 并计算伪距
+  public static final int STEP_CHECK = 1 << 1; // 质量检查
+  public static final int STEP_TRACK = 1 << 2; // 平滑和周跳检测
+  public static final int STEP_SOLVE = 1 << 3; // 单点定位
+  public static final int STEP_IONO_FREE = 1 << 4; // 双频无电离层组合
+
+  private static final double SPP_SIGMA = 3.0; // 单点定位的伪距误差，乘以 DOP 得到位置标准差
+  private static final long MAX_FIX_AGE_NANOS = 2000000000L; // 系统定位结果超过该时间不再用于融合
+
+  private final EphemerisSource ephemerisSource; // 为 null 时不解算
+
+  private final SatelliteIndex satelliteIndex = new SatelliteIndex(); // GnssStatus数据及其索引
+  private final GnssDataPool gnssDataPool = new GnssDataPool();
+  private int[] selected = new int[GnssDataPool.MAX_CHANNELS]; // 按订阅参数选中的观测值下标
+  private int[] all = new int[GnssDataPool.MAX_CHANNELS]; // 全部观测值的下标，用于存储
+
+  private final QualityControl qualityControl = new QualityControl();
+  private final ObservableTracker observableTracker = new ObservableTracker();
+  private final SignalGroups signalGroups = new SignalGroups();
+  private final SppSolver sppSolver = new SppSolver();
+  private final SppSolution sppSolution = new SppSolution();
+
+  private SensorSource sensors; // 当前数据来源的传感器数据，数据来源启动前设置
+  private final SensorSnapshot sensorSnapshot = new SensorSnapshot();
+  private final ImuSamples imuSamples = new ImuSamples(256);
+
+  // GNSS/INS 融合
+  private final InsFilter insFilter = new InsFilter();
+  private final FusionTrack fusionTrack = new FusionTrack(256);
+  private long lastFixNanos = 0; // 已用于融合的系统定位结果的时刻
+
+  public EpochPipeline(EphemerisSource ephemerisSource) {
+    this.ephemerisSource = ephemerisSource;
+  }
+
+  public void setSensorSource(SensorSource sensors) {
+    this.sensors = sensors;
+  }
+
+  public SensorSource getSensorSource() {
+    return sensors;
+  }
+
+  public void onSatelliteStatus(GnssStatus status) {
+    satelliteIndex.update(status);
+  }
+
+  public SatelliteIndex getSatelliteIndex() {
+    return satelliteIndex;
+  }
+
+  public GnssDataPool getPool() {
+    return gnssDataPool;
+  }
+
+  public int[] getSelected() {
+    return selected;
+  }
+
+  // 最近一次 process 的解算结果，没有解算时 valid 为 false
+  public SppSolution getSolution() {
+    return sppSolution;
+  }
+
+  public SignalGroups getSignalGroups() {
+    return signalGroups;
+  }
+
+  public SensorSnapshot getSensorSnapshot() {
+    return sensorSnapshot;
+  }
+
+  public ImuSamples getImuSamples() {
+    return imuSamples;
+  }
+
+  public FusionTrack getFusionTrack() {
+    return fusionTrack;
+  }
+
+  // 本历元需要的处理步骤。listening 为 Dart 端在监听，emit 为本历元要发送（没有被限频）。
+  // 质量检查、跟踪和解算不依赖界面：Activity 和 Flutter 引擎分离后，前台服务的记录和存储照常使用它们的结果；
+  // 被限频时仍然更新跨历元的跟踪和质量检查状态。返回 0 时本历元不需要处理
+  public int steps(SubscriptionSpec spec, boolean listening, boolean emit, boolean recording, boolean storing) {
+    boolean consumed = listening || recording || storing;
+    int steps = 0;
+    if (consumed && spec.qcMode != SubscriptionSpec.QC_OFF) {
+      steps |= STEP_CHECK;
+    }
+    if (consumed && spec.tracksObservables()) {
+      steps |= STEP_TRACK;
+    }
+    if ((emit || recording || storing) && ephemerisSource != null && spec.has(SubscriptionSpec.GROUP_SOLUTION)) {
+      steps |= STEP_SOLVE;
+    }
+    if (emit && spec.has(SubscriptionSpec.GROUP_IONO_FREE)) {
+      steps |= STEP_IONO_FREE;
+    }
+    if (steps != 0 || recording || storing || emit && spec.has(SubscriptionSpec.GROUP_SATELLITES)) {
+      steps |= STEP_POOL;
+    }
+    return steps;
+  }
+
+  // 按 steps 处理本历元的观测值，结果在 getPool、getSolution 和 getSignalGroups 中。
+  // m 不为 null 时按阶段记录延迟，t 为上一阶段结束的时刻，返回最后一个阶段结束的时刻
+  public long process(GnssClock gnssClock, Collection<GnssMeasurement> measurements, SubscriptionSpec spec,
+                      int steps, PipelineMetrics m, long t) {
+    gnssDataPool.clear();
+    if ((steps & STEP_POOL) != 0) {
+      for (GnssMeasurement measurement : measurements) { // 遍历所有的卫星数据
+        gnssDataPool.add(measurement, gnssClock, satelliteIndex);
+      }
+    }
+    if (m != null) {
+      t = m.stage(PipelineMetrics.STAGE_POOL, t);
+    }
+
+    if ((steps & STEP_CHECK) != 0) {
+      checkQuality(gnssClock, spec);
+      if (m != null) {
+        t = m.stage(PipelineMetrics.STAGE_QC, t);
+      }
+    }
+
+    if ((steps & STEP_TRACK) != 0) {
+      trackObservables(gnssClock);
+      if (m != null) {
+        t = m.stage(PipelineMetrics.STAGE_TRACK, t);
+      }
+    }
+
+    boolean group = (steps & (STEP_SOLVE | STEP_IONO_FREE)) != 0;
+    if (group) {
+      groupSignals();
+    }
+
+    sppSolution.reset();
+    if ((steps & STEP_SOLVE) != 0) {
+      solvePosition();
+    }
+    if (m != null && group) {
+      t = m.stage(PipelineMetrics.STAGE_SOLVE, t);
+    }
+    return t;
+  }
+
+  // 按订阅参数选择要发送的观测值，下标在 getSelected 中，返回个数
+  public int select(SubscriptionSpec spec) {
+    if (selected.length < gnssDataPool.size()) {
+      selected = new int[gnssDataPool.size()];
+    }
+    return spec.select(gnssDataPool, selected);
+  }
+
+  // 按卫星对本历元的信号分组，并计算双频无电离层组合，质量检查有标记的信号不参与组合
+  private void groupSignals() {
+    signalGroups.begin();
+    for (int i = 0; i < gnssDataPool.size(); i++) {
+      GnssData d = gnssDataPool.get(i);
+      boolean usable = d.getQcFlags() == 0;
+      signalGroups.add(d.getConstellationType(), d.getSvid(), d.getCarrierFrequencyHz(),
+          usable ? d.getPseudorange() : Double.NaN,
+          usable && d.getSmoothingCount() > 1 ? d.getSmoothedPseudorange() : Double.NaN);
+    }
+    signalGroups.finish();
+  }
+
+  // 用本历元的伪距做单点定位，结果在 sppSolution 中。
+  // 每颗卫星只用一个观测值：有双频时用无电离层组合（有平滑伪距时用平滑的），否则用 L1，没有 L1 时用第一个信号。
+  // 质量检查有标记的信号不使用
+  private void solvePosition() {
+    sppSolver.clear();
+    for (int g = 0; g < signalGroups.getGroupCount(); g++) {
+      int i = usableSignal(g, GnssBand.L1);
+      boolean primary = i >= 0;
+      for (int b = 0; b < GnssBand.COUNT && i < 0; b++) {
+        i = usableSignal(g, b);
+      }
+      if (i < 0) {
+        continue;
+      }
+      GnssData d = gnssDataPool.get(i);
+
+      if (signalGroups.hasIonosphereFree(g)) {
+        double p = signalGroups.getIonosphereFreeSmoothed(g);
+        if (Double.isNaN(p)) {
+          p = signalGroups.getIonosphereFree(g);
+        }
+        sppSolver.add(d.getConstellationType(), d.getSvid(), p, d.getTRx() * 1E-9, d.getMeasurementCn0DbHz(),
+            signalGroups.getGroupDelayScale(g), signalGroups.getVarianceScale(g));
+      } else {
+        double p = d.getSmoothingCount() > 1 ? d.getSmoothedPseudorange() : d.getPseudorange();
+        sppSolver.add(d.getConstellationType(), d.getSvid(), p, d.getTRx() * 1E-9, d.getMeasurementCn0DbHz(),
+            primary);
+      }
+    }
+    sppSolver.solve(ephemerisSource, sppSolution);
+  }
+
+  // 卫星分组 g 在 band 频段的信号序号，没有或质量检查有标记时返回 -1
+  private int usableSignal(int g, int band) {
+    int i = signalGroups.getSignal(g, band);
+    return i >= 0 && gnssDataPool.get(i).getQcFlags() == 0 ? i : -1;
+  }
+
+  // 质量检查，QualityControl.QC_* 标记写回 gnssDataPool 中的 GnssData
+  private void checkQuality(GnssClock gnssClock, SubscriptionSpec spec) {
+    qualityControl.configure(spec.minCn0DbHz, spec.minElevationDegrees, spec.maxTimeUncertaintyNanos,
+        spec.maxRateUncertainty, spec.maxRateResidual);
+    qualityControl.begin(gnssClock.getTimeNanos(), gnssClock.hasFullBiasNanos() ? gnssClock.getFullBiasNanos() : 0,
+        gnssClock.hasBiasNanos() ? gnssClock.getBiasNanos() : 0, gnssClock.getHardwareClockDiscontinuityCount());
+    for (int i = 0; i < gnssDataPool.size(); i++) {
+      GnssData d = gnssDataPool.get(i);
+      qualityControl.add(d.getConstellationType(), d.getSvid(), d.getCarrierFrequencyHz(), d.getState(),
+          d.getReceivedSvTimeUncertaintyNanos(), d.getPseudorange(), d.getPseudorangeRateMetersPerSecond(),
+          d.getPseudorangeRateUncertaintyMetersPerSecond(), d.getMeasurementCn0DbHz(),
+          d.hasSatelliteStatus() ? d.getElevationDegrees() : Double.NaN);
+    }
+    qualityControl.finish();
+    for (int i = 0; i < gnssDataPool.size(); i++) {
+      gnssDataPool.get(i).setQcFlags(qualityControl.getFlags(i));
+    }
+  }
+
+  // 更新跨历元的观测值状态，结果写回 gnssDataPool 中的 GnssData，质量检查有标记的伪距不参与平滑
+  private void trackObservables(GnssClock gnssClock) {
+    observableTracker.begin(gnssClock.getTimeNanos(), gnssClock.hasFullBiasNanos() ? gnssClock.getFullBiasNanos() : 0,
+        gnssClock.hasBiasNanos() ? gnssClock.getBiasNanos() : 0, gnssClock.getHardwareClockDiscontinuityCount());
+    for (int i = 0; i < gnssDataPool.size(); i++) {
+      GnssData d = gnssDataPool.get(i);
+      observableTracker.add(d.getConstellationType(), d.getSvid(), d.getCarrierFrequencyHz(),
+          d.getQcFlags() == 0 ? d.getPseudorange() : Double.NaN,
+          d.getPseudorangeRateMetersPerSecond(), d.getAccumulatedDeltaRangeMeters(), d.getAccumulatedDeltaRangeState());
+    }
+    observableTracker.finish();
+    for (int i = 0; i < gnssDataPool.size(); i++) {
+      gnssDataPool.get(i).setObservables(observableTracker.getSmoothedPseudorange(i),
+          observableTracker.getSmoothingCount(i), observableTracker.getCarrierCycles(i),
+          observableTracker.getCycleSlip(i));
+    }
+  }
+
+  // 订阅了传感器数据时读取快照到 getSensorSnapshot，还没有数据时为 0
+  public boolean readSensor(SubscriptionSpec spec) {
+    if (!spec.has(SubscriptionSpec.GROUP_SENSOR) || sensors == null) {
+      return false;
+    }
+    sensors.read(sensorSnapshot);
+    return true;
+  }
+
+  // 取出截至本历元的 IMU 采样到 getImuSamples，被限频跳过的历元的采样留给下一个发送的历元
+  public boolean readImu(SubscriptionSpec spec, GnssClock gnssClock) {
+    if (spec.imuRateHz <= 0 || !spec.has(SubscriptionSpec.GROUP_IMU | SubscriptionSpec.GROUP_FUSION)
+        || sensors == null) {
+      return false;
+    }
+    imuSamples.clear();
+    sensors.drainImu(elapsedRealtimeOf(gnssClock), imuSamples);
+    return true;
+  }
+
+  // 用本历元的 IMU 采样递推融合滤波器，再用 GNSS 定位结果更新，递推过程的输出在 getFusionTrack 中。
+  // 优先用本历元的单点定位结果，没有时用系统的最新定位结果 loc，可以为 null
+  public void fuse(GnssClock gnssClock, Location loc) {
+    fusionTrack.clear();
+    insFilter.process(imuSamples, fusionTrack);
+
+    long now = elapsedRealtimeOf(gnssClock);
+    if (sppSolution.valid) {
+      insFilter.correctPosition(now, sppSolution.latitude, sppSolution.longitude, sppSolution.altitude,
+          SPP_SIGMA * sppSolution.hdop, SPP_SIGMA * sppSolution.vdop);
+      return;
+    }
+
+    if (loc == null || loc.getElapsedRealtimeNanos() <= lastFixNanos
+        || now - loc.getElapsedRealtimeNanos() > MAX_FIX_AGE_NANOS) {
+      return;
+    }
+    lastFixNanos = loc.getElapsedRealtimeNanos();
+    double accuracy = Math.max(loc.getAccuracy(), 1);
+    double verticalAccuracy = accuracy * 1.5;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && loc.hasVerticalAccuracy()) {
+      verticalAccuracy = Math.max(loc.getVerticalAccuracyMeters(), 1);
+    }
+    if (!insFilter.correctPosition(lastFixNanos, loc.getLatitude(), loc.getLongitude(), loc.getAltitude(), accuracy,
+        verticalAccuracy)) {
+      return;
+    }
+
+    // 速度太低时方向不可靠
+    if (loc.hasSpeed() && loc.hasBearing() && loc.getSpeed() > 1) {
+      double speedAccuracy = 0.5;
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && loc.hasSpeedAccuracy()) {
+        speedAccuracy = Math.max(loc.getSpeedAccuracyMetersPerSecond(), 0.1);
+      }
+      double bearing = Math.toRadians(loc.getBearing());
+      insFilter.correctVelocity(loc.getSpeed() * Math.sin(bearing), loc.getSpeed() * Math.cos(bearing), 0,
+          speedAccuracy);
+    }
+  }
+
+  // 二进制格式：按订阅参数把本历元选中的 count 个观测值编码为一个 byte[]
+  public byte[] encode(EpochEncoder encoder, GnssClock gnssClock, Location loc, SubscriptionSpec spec, int count,
+                       boolean imu, boolean fusion, boolean ionosphereFree) {
+    if (!spec.has(SubscriptionSpec.GROUP_LOCATION)) {
+      loc = null;
+    }
+    SensorSnapshot sensor = readSensor(spec) ? sensorSnapshot : null;
+    int fieldMask = spec.has(SubscriptionSpec.GROUP_SATELLITES) ? spec.fieldMask : 0;
+
+    encoder.setKeyframeInterval(spec.keyframeInterval);
+    return encoder.encode(gnssClock, loc, sensor, sppSolution, imu ? imuSamples : null,
+        fusion ? fusionTrack : null, ionosphereFree ? signalGroups : null, satelliteIndex.getSatelliteCount(),
+        gnssDataPool, selected, count, fieldMask);
+  }
+
+  // 本历元的全部观测值和解算结果编码为完整的二进制历元，用于历元存储
+  public byte[] encodeAll(EpochEncoder encoder, GnssClock gnssClock, Location loc) {
+    int n = gnssDataPool.size();
+    if (all.length < n) {
+      all = new int[n];
+    }
+    for (int i = 0; i < n; i++) {
+      all[i] = i;
+    }
+    return encoder.encode(gnssClock, loc, null, sppSolution, null, null, null, satelliteIndex.getSatelliteCount(),
+        gnssDataPool, all, n, EpochEncoder.ALL_FIELDS);
+  }
+
+  // GnssClock 的测量时刻换算到 elapsedRealtime，与 SensorEvent.timestamp 的时间基准相同
+  public static long elapsedRealtimeOf(GnssClock gnssClock) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && gnssClock.hasElapsedRealtimeNanos()) {
+      return gnssClock.getElapsedRealtimeNanos();
+    }
+    // 旧系统没有对应关系，用回调到达的时间近似，包含回调的延迟
+    return SystemClock.elapsedRealtimeNanos();
+  }
+}
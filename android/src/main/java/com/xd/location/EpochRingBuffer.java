@@ -0,0 +1,92 @@
+package com.xd.location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编码后历元的定长环形缓冲区
+ *
+ * 批量模式下处理线程写入，每 N 个历元或 T 毫秒整体取出作为一条消息发送；
+ * 拉取模式下由 drain 方法调用取出。缓冲区满时覆盖最旧的历元并计数，
+ * 可以据此按实际数据调整容量。
+ */
+public class EpochRingBuffer {
+  private final Object[] slots;
+  private int head = 0; // 最旧历元的位置
+  private int size = 0;
+
+  private long pushedCount = 0; // 写入的历元总数
+  private long overwrittenCount = 0; // 被覆盖的历元数
+  private long drainedCount = 0; // 取出的历元总数
+  private long batchCount = 0; // 取出的批次数
+
+  public EpochRingBuffer(int capacity) {
+    this.slots = new Object[Math.max(1, capacity)];
+  }
+
+  public int capacity() {
+    return slots.length;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  // 写入一个历元，返回写入后的历元数
+  public synchronized int push(Object payload) {
+    int tail = (head + size) % slots.length;
+    slots[tail] = payload;
+    if (size == slots.length) {
+      head = (head + 1) % slots.length;
+      overwrittenCount++;
+    } else {
+      size++;
+    }
+    pushedCount++;
+    return size;
+  }
+
+  // 按写入顺序取出全部历元，没有数据时返回 null
+  public synchronized List<Object> drain() {
+    if (size == 0) {
+      return null;
+    }
+
+    List<Object> epochs = new ArrayList<Object>(size);
+    for (int i = 0; i < size; i++) {
+      int index = (head + i) % slots.length;
+      epochs.add(slots[index]);
+      slots[index] = null;
+    }
+    drainedCount += size;
+    batchCount++;
+    head = 0;
+    size = 0;
+    return epochs;
+  }
+
+  public synchronized void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = null;
+    }
+    head = 0;
+    size = 0;
+  }
+
+  public synchronized long getOverwrittenCount() {
+    return overwrittenCount;
+  }
+
+  public synchronized Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<String, Object>();
+    stats.put("capacity", slots.length);
+    stats.put("size", size);
+    stats.put("pushed", pushedCount);
+    stats.put("overwritten", overwrittenCount);
+    stats.put("drained", drainedCount);
+    stats.put("batches", batchCount);
+    return stats;
+  }
+}
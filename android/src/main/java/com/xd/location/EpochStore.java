@@ -0,0 +1,660 @@
+package com.xd.location;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * 历元的持久化存储，按 GPS 时间范围查询
+ *
+ * 目录下只追加的分段文件 segment-<id>.eps，小端二进制，文件头 8 字节：magic(u32) version(u16) reserved(u16)，
+ * 之后是连续的记录：gpsTimeNanos(i64) length(u32) epoch(length 字节)。epoch 为 EpochEncoder 编码的完整历元
+ * （非增量、全部观测值字段），可以直接交给 Dart 端的 GnssEpoch 解码。gpsTimeNanos 为
+ * GnssClock 的 TimeNanos - (FullBiasNanos + BiasNanos)，即自 GPS 时间起点的纳秒数，分段内递增。
+ *
+ * 每个分段在内存中有稀疏时间索引，每 INDEX_INTERVAL 条记录一项（时间、偏移），open 时扫描记录头重建，
+ * 末尾不完整的记录（写入时进程被杀）截掉。查询按分段的时间范围跳过分段，在索引中二分查找，
+ * 最多再顺序读 INDEX_INTERVAL 个记录头就到达起点。查询结果按分段编号（即写入顺序）排列，
+ * 只在分段内按时间递增：时间回退后写入的记录在新分段中，排在时间较晚的旧记录之后。
+ *
+ * 当前分段超过 segmentBytes、跨越 SEGMENT_NANOS 或时间回退时换新分段，换分段时按总大小 maxBytes
+ * 和保留时间 maxAgeNanos（相对最新的记录）删除最旧的分段。每次 open 从新分段开始，
+ * compact 把相邻的小分段合并成不超过 segmentBytes 的分段，合并后的分段沿用第一个分段的编号。
+ *
+ * append 在处理线程上调用，open、query 和 compact 在查询线程上调用。分段列表和索引由锁保护，
+ * 已写入的记录不再修改，读取记录时不加锁。
+ */
+public class EpochStore {
+  public static final int MAGIC = 0x47455345; // "ESEG"
+  public static final int VERSION = 1;
+
+  public static final int FILE_HEADER_SIZE = 8;
+  public static final int RECORD_HEADER_SIZE = 12;
+
+  private static final String TAG = "EpochStore";
+  private static final String PREFIX = "segment-";
+  private static final String SUFFIX = ".eps";
+
+  private static final int INDEX_INTERVAL = 64; // 每多少条记录一个索引项
+  private static final long SEGMENT_NANOS = 3600L * 1000000000L; // 一个分段最长跨越的时间
+  private static final int MAX_CHUNK_BYTES = 1024 * 1024; // 一次查询返回的最大字节数
+  private static final long MAX_SEGMENT_BYTES = 1L << 30; // 偏移用 int 保存
+
+  // 一个分段，size 之前的记录已经完整写入
+  private static class Segment {
+    final int id;
+    final File file;
+    long size = FILE_HEADER_SIZE;
+    long firstTime = 0;
+    long lastTime = 0;
+    int count = 0;
+    long[] indexTimes = new long[16];
+    int[] indexOffsets = new int[16];
+    int indexCount = 0;
+
+    Segment(int id, File file) {
+      this.id = id;
+      this.file = file;
+    }
+
+    void add(long time, int offset, int length) {
+      if (count % INDEX_INTERVAL == 0) {
+        if (indexCount == indexTimes.length) {
+          indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+          indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+        }
+        indexTimes[indexCount] = time;
+        indexOffsets[indexCount] = offset;
+        indexCount++;
+      }
+      if (count == 0) {
+        firstTime = time;
+      }
+      lastTime = time;
+      count++;
+      size = offset + RECORD_HEADER_SIZE + length;
+    }
+
+    // 时间不晚于 time 的最后一个索引项的偏移，都晚于 time 时为第一条记录
+    long seek(long time) {
+      int lo = 0;
+      int hi = indexCount - 1;
+      int found = -1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (indexTimes[mid] <= time) {
+          found = mid;
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return found >= 0 ? indexOffsets[found] : FILE_HEADER_SIZE;
+    }
+  }
+
+  // 一次查询的结果
+  public static class Chunk {
+    public final List<byte[]> epochs = new ArrayList<byte[]>();
+    // 续查位置：分段编号和该分段中下一条记录的时间，nextSegment 为 -1 表示已经没有更多记录
+    public int nextSegment = -1;
+    public long next = -1;
+    int bytes = 0;
+  }
+
+  private File directory;
+  private long segmentBytes;
+  private long maxBytes;
+  private long maxAgeNanos;
+
+  private final List<Segment> segments = new ArrayList<Segment>(); // 按编号排列，最后一个是当前分段
+  private Segment active;
+  private FileOutputStream stream;
+  private FileChannel channel;
+  private final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+  // 统计
+  private long appended = 0;
+  private long deletedSegments = 0;
+  private long compactedSegments = 0;
+  private long writeErrors = 0;
+
+  public synchronized boolean isOpen() {
+    return active != null;
+  }
+
+  /**
+   * 打开 directory 下的存储，扫描已有的分段并开始新的分段。
+   * maxBytes、maxAgeNanos 为 0 时不按该条件删除
+   */
+  public synchronized void open(File directory, long segmentBytes, long maxBytes, long maxAgeNanos)
+      throws IOException {
+    close();
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("cannot create " + directory);
+    }
+    this.directory = directory;
+    this.segmentBytes = Math.min(Math.max(segmentBytes, 64 * 1024), MAX_SEGMENT_BYTES);
+    this.maxBytes = maxBytes;
+    this.maxAgeNanos = maxAgeNanos;
+    appended = 0;
+    deletedSegments = 0;
+    compactedSegments = 0;
+    writeErrors = 0;
+
+    int last = 0;
+    for (int id : listIds(directory)) {
+      Segment segment = new Segment(id, segmentFile(id));
+      if (scan(segment) && segment.count > 0) {
+        segments.add(segment);
+      } else {
+        delete(segment.file);
+      }
+      last = id;
+    }
+    startSegment(last + 1);
+    applyRetention();
+  }
+
+  public synchronized void close() {
+    closeChannel();
+    active = null;
+    segments.clear();
+  }
+
+  // 追加一个历元，写入失败时关闭存储
+  public synchronized void append(long gpsTimeNanos, byte[] epoch) {
+    if (active == null) {
+      return;
+    }
+    try {
+      if (active.count > 0 && (active.size + RECORD_HEADER_SIZE + epoch.length > segmentBytes
+          || gpsTimeNanos - active.firstTime > SEGMENT_NANOS || gpsTimeNanos <= active.lastTime)) {
+        startSegment(active.id + 1);
+        applyRetention();
+      } else if (maxAgeNanos > 0 && segments.size() > 1 && gpsTimeNanos - segments.get(0).lastTime > maxAgeNanos) {
+        applyRetention();
+      }
+      header.clear();
+      header.putLong(gpsTimeNanos);
+      header.putInt(epoch.length);
+      header.flip();
+      ByteBuffer[] buffers = {header, ByteBuffer.wrap(epoch)};
+      long length = RECORD_HEADER_SIZE + epoch.length;
+      long written = 0;
+      while (written < length) {
+        written += channel.write(buffers);
+      }
+      active.add(gpsTimeNanos, (int) active.size, epoch.length);
+      appended++;
+    } catch (IOException e) {
+      Log.e(TAG, "append failed", e);
+      writeErrors++;
+      close();
+    }
+  }
+
+  /**
+   * 按写入顺序返回 [from, to] 之间的历元，最多 limit 个（大于 0）、约 MAX_CHUNK_BYTES 字节，
+   * fieldMask 为保留的观测值字段。Chunk.nextSegment 不为 -1 时用同样的 from、to
+   * 和 Chunk.nextSegment、Chunk.next 调用 query 继续查询
+   */
+  public Chunk query(long from, long to, int fieldMask, int limit) throws IOException {
+    return query(from, to, fieldMask, limit, -1, from);
+  }
+
+  /**
+   * 从分段 segment 中时间不早于 time 的记录继续查询，之后是编号更大的分段中 [from, to] 之间的记录。
+   * 分段被合并后从合并成的分段中同一时间继续（合并的分段时间递增），期间分段被合并或删除不会重复或遗漏
+   * 仍然存在的记录。segment 为 -1 时从头查询
+   */
+  public Chunk query(long from, long to, int fieldMask, int limit, int segment, long time) throws IOException {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive: " + limit);
+    }
+    Chunk chunk = new Chunk();
+    int resumeId = segment; // 需要重新定位的分段编号，-1 表示不需要
+    long resumeTime = time;
+    int segmentId = 0;
+    while (true) {
+      Segment current;
+      long lower;
+      long start;
+      long end;
+      synchronized (this) {
+        if (resumeId >= 0) {
+          Segment containing = containing(resumeId);
+          resumeId = -1;
+          if (containing != null) {
+            resumeId = containing.id;
+            segmentId = containing.id;
+          }
+        }
+        current = next(segmentId, from, to);
+        if (current == null) {
+          return chunk;
+        }
+        lower = current.id == resumeId ? Math.max(from, resumeTime) : from;
+        start = current.seek(lower);
+        end = current.size;
+        resumeId = -1;
+      }
+      segmentId = current.id + 1;
+
+      RandomAccessFile file;
+      try {
+        file = new RandomAccessFile(current.file, "r");
+      } catch (FileNotFoundException e) {
+        // 已经被合并时从合并成的分段中重新定位
+        synchronized (this) {
+          if (!segments.contains(current)) {
+            resumeId = current.id;
+            resumeTime = lower;
+          }
+        }
+        continue;
+      }
+      try {
+        if (read(file.getChannel(), current.id, start, end, lower, to, fieldMask, limit, chunk)) {
+          return chunk;
+        }
+      } finally {
+        file.close();
+      }
+    }
+  }
+
+  // 读取一个分段中的记录，chunk 已满时返回 true
+  private static boolean read(FileChannel channel, int segmentId, long position, long end, long from, long to,
+                              int fieldMask, int limit, Chunk chunk) throws IOException {
+    ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    while (position + RECORD_HEADER_SIZE <= end) {
+      recordHeader.clear();
+      readFully(channel, recordHeader, position);
+      long time = recordHeader.getLong(0);
+      int length = recordHeader.getInt(8);
+      if (time > to) {
+        return false;
+      }
+      if (time >= from) {
+        if (chunk.epochs.size() >= limit || chunk.bytes + length > MAX_CHUNK_BYTES && chunk.bytes > 0) {
+          chunk.nextSegment = segmentId;
+          chunk.next = time;
+          return true;
+        }
+        ByteBuffer epoch = ByteBuffer.allocate(length);
+        readFully(channel, epoch, position + RECORD_HEADER_SIZE);
+        byte[] projected = project(epoch.array(), fieldMask);
+        chunk.epochs.add(projected);
+        chunk.bytes += projected.length;
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    return false;
+  }
+
+  /**
+   * 合并相邻的小分段，当前分段不参与，返回合并掉的分段数。
+   * 复制文件时不持有锁，append 不受影响
+   */
+  public int compact() throws IOException {
+    int merged = 0;
+    while (true) {
+      List<Segment> run;
+      synchronized (this) {
+        if (active == null) {
+          return merged;
+        }
+        run = smallRun();
+      }
+      if (run == null) {
+        return merged;
+      }
+
+      Segment first = run.get(0);
+      File temporary = new File(first.file.getParentFile(), PREFIX + first.id + ".tmp");
+      FileOutputStream out = new FileOutputStream(temporary);
+      try {
+        FileChannel target = out.getChannel();
+        target.write(fileHeader());
+        for (Segment segment : run) {
+          FileInputStream in = new FileInputStream(segment.file);
+          try {
+            FileChannel source = in.getChannel();
+            long position = FILE_HEADER_SIZE;
+            while (position < segment.size) {
+              position += source.transferTo(position, segment.size - position, target);
+            }
+          } finally {
+            in.close();
+          }
+        }
+      } finally {
+        out.close();
+      }
+
+      synchronized (this) {
+        // 复制期间被保留策略删除或存储已关闭时放弃这次合并
+        if (active == null || !segments.containsAll(run)) {
+          delete(temporary);
+          return merged;
+        }
+        Segment combined = new Segment(first.id, first.file);
+        // 直接替换第一个分段的文件，其他分段的记录已经在其中
+        if (!temporary.renameTo(first.file) || !scan(combined)) {
+          delete(temporary);
+          throw new IOException("cannot replace " + first.file);
+        }
+        for (int i = 1; i < run.size(); i++) {
+          delete(run.get(i).file);
+        }
+        int index = segments.indexOf(first);
+        segments.removeAll(run);
+        segments.add(index, combined);
+        merged += run.size() - 1;
+        compactedSegments += run.size() - 1;
+      }
+    }
+  }
+
+  public synchronized Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<String, Object>();
+    long bytes = 0;
+    long epochs = 0;
+    for (Segment segment : segments) {
+      bytes += segment.size;
+      epochs += segment.count;
+    }
+    Segment oldest = firstNonEmpty();
+    stats.put("open", active != null);
+    stats.put("path", directory != null ? directory.getPath() : null);
+    stats.put("segments", segments.size());
+    stats.put("bytes", bytes);
+    stats.put("epochs", epochs);
+    stats.put("first_gps_nanos", oldest != null ? oldest.firstTime : null);
+    stats.put("last_gps_nanos", oldest != null ? lastTime() : null);
+    stats.put("appended", appended);
+    stats.put("deleted_segments", deletedSegments);
+    stats.put("compacted_segments", compactedSegments);
+    stats.put("write_errors", writeErrors);
+    return stats;
+  }
+
+  // 第一个编号不小于 id、时间范围与 [from, to] 相交的分段
+  private Segment next(int id, long from, long to) {
+    for (Segment segment : segments) {
+      if (segment.id >= id && segment.count > 0 && segment.lastTime >= from && segment.firstTime <= to) {
+        return segment;
+      }
+    }
+    return null;
+  }
+
+  // 编号不大于 id 的最后一个分段，即包含分段 id 的记录的分段（被合并时为合并成的分段）
+  private Segment containing(int id) {
+    Segment found = null;
+    for (Segment segment : segments) {
+      if (segment.id > id) {
+        break;
+      }
+      found = segment;
+    }
+    return found;
+  }
+
+  // 第一段合计不超过 segmentBytes 的相邻已关闭分段，至少两个
+  private List<Segment> smallRun() {
+    List<Segment> run = new ArrayList<Segment>();
+    long size = FILE_HEADER_SIZE;
+    for (Segment segment : segments) {
+      if (segment == active) {
+        break;
+      }
+      long records = segment.size - FILE_HEADER_SIZE;
+      // 合并后的分段要保持时间递增
+      boolean ordered = run.isEmpty() || segment.firstTime > run.get(run.size() - 1).lastTime;
+      if (ordered && size + records <= segmentBytes) {
+        run.add(segment);
+        size += records;
+        continue;
+      }
+      if (run.size() >= 2) {
+        return run;
+      }
+      run.clear();
+      run.add(segment);
+      size = segment.size;
+    }
+    return run.size() >= 2 ? run : null;
+  }
+
+  // 删除超出总大小或保留时间的最旧的分段，当前分段不删除
+  private void applyRetention() {
+    long total = 0;
+    for (Segment segment : segments) {
+      total += segment.size;
+    }
+    long newest = lastTime();
+    while (segments.size() > 1) {
+      Segment oldest = segments.get(0);
+      boolean tooLarge = maxBytes > 0 && total > maxBytes;
+      boolean tooOld = maxAgeNanos > 0 && oldest.count > 0 && newest - oldest.lastTime > maxAgeNanos;
+      if (!tooLarge && !tooOld && oldest.count > 0) {
+        return;
+      }
+      segments.remove(0);
+      delete(oldest.file);
+      total -= oldest.size;
+      deletedSegments++;
+    }
+  }
+
+  private long lastTime() {
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      if (segments.get(i).count > 0) {
+        return segments.get(i).lastTime;
+      }
+    }
+    return 0;
+  }
+
+  private Segment firstNonEmpty() {
+    for (Segment segment : segments) {
+      if (segment.count > 0) {
+        return segment;
+      }
+    }
+    return null;
+  }
+
+  private void startSegment(int id) throws IOException {
+    closeChannel();
+    // 上一个分段没有记录时直接删除
+    if (active != null && active.count == 0) {
+      segments.remove(active);
+      delete(active.file);
+    }
+    Segment segment = new Segment(id, segmentFile(id));
+    stream = new FileOutputStream(segment.file);
+    channel = stream.getChannel();
+    ByteBuffer fileHeader = fileHeader();
+    while (fileHeader.hasRemaining()) {
+      channel.write(fileHeader);
+    }
+    segments.add(segment);
+    active = segment;
+  }
+
+  private void closeChannel() {
+    if (stream == null) {
+      return;
+    }
+    try {
+      stream.close();
+    } catch (IOException e) {
+      Log.e(TAG, "close failed", e);
+    }
+    stream = null;
+    channel = null;
+  }
+
+  // 扫描记录头重建索引，截掉末尾不完整的记录，文件头无效时返回 false
+  private static boolean scan(Segment segment) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(segment.file, "rw");
+    try {
+      FileChannel channel = file.getChannel();
+      long length = channel.size();
+      if (length < FILE_HEADER_SIZE) {
+        return false;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.limit(FILE_HEADER_SIZE);
+      readFully(channel, buffer, 0);
+      if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+        return false;
+      }
+
+      long position = FILE_HEADER_SIZE;
+      while (position + RECORD_HEADER_SIZE <= length) {
+        buffer.clear();
+        readFully(channel, buffer, position);
+        long time = buffer.getLong(0);
+        int size = buffer.getInt(8);
+        if (size < 0 || position + RECORD_HEADER_SIZE + size > length || position > MAX_SEGMENT_BYTES) {
+          break;
+        }
+        segment.add(time, (int) position, size);
+        position += RECORD_HEADER_SIZE + size;
+      }
+      if (position < length) {
+        channel.truncate(position);
+      }
+      return true;
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * 只保留 fieldMask 中的观测值字段列，其他部分原样复制，header 中的 fieldMask 同时更新。
+   * epoch 必须是非增量的历元
+   */
+  static byte[] project(byte[] epoch, int fieldMask) {
+    ByteBuffer in = ByteBuffer.wrap(epoch).order(ByteOrder.LITTLE_ENDIAN);
+    int stored = in.getInt(12);
+    int mask = stored & fieldMask;
+    if (mask == stored) {
+      return epoch;
+    }
+    int flags = in.get(3) & 0xff;
+    int count = in.getShort(4) & 0xffff;
+
+    int offset = EpochEncoder.HEADER_SIZE + EpochEncoder.CLOCK_SIZE;
+    if ((flags & EpochEncoder.FLAG_LOCATION) != 0) {
+      offset += EpochEncoder.LOCATION_SIZE;
+    }
+    if ((flags & EpochEncoder.FLAG_SENSOR) != 0) {
+      offset += EpochEncoder.SENSOR_SIZE;
+    }
+    if ((flags & EpochEncoder.FLAG_SOLUTION) != 0) {
+      offset += EpochEncoder.SOLUTION_SIZE;
+    }
+    if ((flags & EpochEncoder.FLAG_IMU) != 0) {
+      offset += 4 + EpochEncoder.IMU_SAMPLE_SIZE * in.getInt(offset);
+    }
+    if ((flags & EpochEncoder.FLAG_FUSION) != 0) {
+      offset += 4 + EpochEncoder.FUSION_SAMPLE_SIZE * in.getInt(offset);
+    }
+    if ((flags & EpochEncoder.FLAG_IONO_FREE) != 0) {
+      offset += 4 + EpochEncoder.IONO_FREE_SIZE * in.getInt(offset);
+    }
+
+    int size = offset;
+    for (int field = 0; field < EpochEncoder.FIELD_COUNT; field++) {
+      if ((mask & (1 << field)) != 0) {
+        size += EpochEncoder.fieldWidth(field) * count;
+      }
+    }
+    byte[] out = new byte[size];
+    System.arraycopy(epoch, 0, out, 0, offset);
+    int source = offset;
+    int target = offset;
+    for (int field = 0; field < EpochEncoder.FIELD_COUNT; field++) {
+      if ((stored & (1 << field)) == 0) {
+        continue;
+      }
+      int width = EpochEncoder.fieldWidth(field) * count;
+      if ((mask & (1 << field)) != 0) {
+        System.arraycopy(epoch, source, out, target, width);
+        target += width;
+      }
+      source += width;
+    }
+    ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN).putInt(12, mask);
+    return out;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position + buffer.position());
+      if (n < 0) {
+        throw new IOException("unexpected end of segment");
+      }
+    }
+  }
+
+  private static ByteBuffer fileHeader() {
+    ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putShort((short) VERSION);
+    buffer.putShort((short) 0);
+    buffer.flip();
+    return buffer;
+  }
+
+  private File segmentFile(int id) {
+    return new File(directory, PREFIX + id + SUFFIX);
+  }
+
+  // 目录下已有分段的编号，从小到大
+  private static int[] listIds(File directory) {
+    String[] names = directory.list();
+    if (names == null) {
+      return new int[0];
+    }
+    int[] ids = new int[names.length];
+    int n = 0;
+    for (String name : names) {
+      if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+        try {
+          int id = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+          ids[n++] = id;
+        } catch (NumberFormatException e) {
+          // 不是分段文件
+        }
+      }
+    }
+    ids = Arrays.copyOf(ids, n);
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  private static void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      Log.w(TAG, "cannot delete " + file);
+    }
+  }
+}
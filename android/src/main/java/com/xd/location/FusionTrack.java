@@ -0,0 +1,51 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+/**
+ * 一个 GNSS 历元内 InsFilter 按 IMU 频率输出的状态
+ *
+ * positions 每个点占 3 个 double（纬度、经度、高度），velocities 为东北天速度，
+ * attitudes 为横滚、俯仰、航向（度）。数组在处理线程上复用，只在容量不够时扩容。
+ */
+public class FusionTrack {
+  public int count = 0;
+  public long[] timestamps; // elapsedRealtime 纳秒
+  public double[] positions;
+  public float[] velocities;
+  public float[] attitudes;
+
+  public FusionTrack(int capacity) {
+    timestamps = new long[capacity];
+    positions = new double[capacity * 3];
+    velocities = new float[capacity * 3];
+    attitudes = new float[capacity * 3];
+  }
+
+  public void clear() {
+    count = 0;
+  }
+
+  public void add(long timestampNanos, double lat, double lon, double alt,
+                  double east, double north, double up, double roll, double pitch, double yaw) {
+    if (count == timestamps.length) {
+      int capacity = count * 2;
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      positions = Arrays.copyOf(positions, capacity * 3);
+      velocities = Arrays.copyOf(velocities, capacity * 3);
+      attitudes = Arrays.copyOf(attitudes, capacity * 3);
+    }
+    int j = count * 3;
+    timestamps[count] = timestampNanos;
+    positions[j] = lat;
+    positions[j + 1] = lon;
+    positions[j + 2] = alt;
+    velocities[j] = (float) east;
+    velocities[j + 1] = (float) north;
+    velocities[j + 2] = (float) up;
+    attitudes[j] = (float) roll;
+    attitudes[j + 1] = (float) pitch;
+    attitudes[j + 2] = (float) yaw;
+    count++;
+  }
+}
@@ -0,0 +1,46 @@
+package com.xd.location;
+
+/**
+ * 载波频段划分
+ *
+ * 按载波频率把各星座的信号归到几个频段。同一颗卫星同一频段可能有多个信号：北斗 B1I 和 B1C
+ * 载波频率不同，GPS L1 C/A 和 L1C 载波频率相同、码类型不同，所以按频段区分信号时还需要载波频率
+ * （SatelliteIndex）或出现次序（EpochEncoder.signalKey 的 occurrence）。
+ * 没有上报载波频率时按 L1 处理，与 GnssData 的默认值一致。
+ */
+public final class GnssBand {
+  public static final int L1 = 0; // L1/E1/B1I/B1C/G1，1559 - 1610 MHz
+  public static final int L2 = 1; // L2/G2，1215 - 1254 MHz
+  public static final int L5 = 2; // L5/E5a/B2a/E5，1164 - 1195 MHz
+  public static final int L6 = 3; // E6/B3/LEX，1254 - 1300 MHz
+  public static final int L7 = 4; // E5b/B2I/B2b/G3，1195 - 1215 MHz
+  public static final int COUNT = 5;
+
+  private static final String[] NAMES = {"L1", "L2", "L5", "L6", "L7"};
+
+  private GnssBand() {
+  }
+
+  public static String name(int band) {
+    return NAMES[band];
+  }
+
+  public static int of(double carrierFrequencyHz) {
+    if (!(carrierFrequencyHz > 0)) {
+      return L1;
+    }
+    if (carrierFrequencyHz < 1195E6) {
+      return L5;
+    }
+    if (carrierFrequencyHz < 1215E6) {
+      return L7;
+    }
+    if (carrierFrequencyHz < 1254E6) {
+      return L2;
+    }
+    if (carrierFrequencyHz < 1300E6) {
+      return L6;
+    }
+    return L1;
+  }
+}
@@ -0,0 +1,170 @@
+package com.xd.location;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.GnssCapabilities;
+import android.location.GnssMeasurementsEvent;
+import android.location.GnssNavigationMessage;
+import android.location.LocationManager;
+import android.os.Build;
+
+/**
+ * 设备是否支持原始观测值和导航电文，按设备缓存在 SharedPreferences 中
+ *
+ * Android 12 起直接读取 LocationManager.getGnssCapabilities()；更早的系统只能注册回调后
+ * 从 onStatusChanged 得知，第一次得到 STATUS_READY 或 STATUS_NOT_SUPPORTED 后写入缓存，
+ * 之后的 open 按缓存只注册支持的回调。缓存以 Build.FINGERPRINT 为键，系统升级后重新探测。
+ * LOCATION_DISABLED、NOT_ALLOWED 是暂时的状态，只报告不缓存。
+ * 状态回调在处理线程上，读取在主线程上，所以状态字段都是 volatile。
+ */
+public class GnssCapabilityProbe {
+  public static final int UNKNOWN = 0;
+  public static final int SUPPORTED = 1;
+  public static final int UNSUPPORTED = 2;
+
+  private static final String PREFERENCES = "com.xd.location.capabilities";
+  private static final String KEY_FINGERPRINT = "fingerprint";
+  private static final String KEY_MEASUREMENTS = "measurements";
+  private static final String KEY_NAVIGATION = "navigation_messages";
+
+  private static final String[] SUPPORT_NAMES = {"unknown", "supported", "unsupported"};
+
+  private final SharedPreferences preferences;
+  private final String fingerprint;
+
+  private volatile int measurements = UNKNOWN;
+  private volatile int navigation = UNKNOWN;
+  private volatile int measurementStatus = -1; // 最近一次 onStatusChanged，-1 表示还没有收到
+  private volatile int navigationStatus = -1;
+  private volatile Map<String, Object> details; // getGnssCapabilities 的其他能力，Android 12 以下为 null
+
+  public GnssCapabilityProbe(Context context) {
+    preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    fingerprint = Build.FINGERPRINT;
+    if (fingerprint.equals(preferences.getString(KEY_FINGERPRINT, null))) {
+      measurements = preferences.getInt(KEY_MEASUREMENTS, UNKNOWN);
+      navigation = preferences.getInt(KEY_NAVIGATION, UNKNOWN);
+    }
+  }
+
+  // 有系统接口时直接读取能力，open 时调用
+  public void probe(LocationManager locationManager) {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+      return;
+    }
+    GnssCapabilities capabilities = locationManager.getGnssCapabilities();
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("low_power_mode", capabilities.hasLowPowerMode());
+    map.put("satellite_blocklist", capabilities.hasSatelliteBlocklist());
+    map.put("measurement_corrections", capabilities.hasMeasurementCorrections());
+    map.put("antenna_info", capabilities.hasAntennaInfo());
+    details = map;
+    measurements = capabilities.hasMeasurements() ? SUPPORTED : UNSUPPORTED;
+    navigation = capabilities.hasNavigationMessages() ? SUPPORTED : UNSUPPORTED;
+    save();
+  }
+
+  public int getMeasurements() {
+    return measurements;
+  }
+
+  public int getNavigation() {
+    return navigation;
+  }
+
+  // 没有确认不支持的都注册，未知时由状态回调确认
+  public boolean shouldRegisterMeasurements() {
+    return measurements != UNSUPPORTED;
+  }
+
+  // 导航电文只用于解码星历做单点定位和 RINEX 记录，没有原始观测值时也不需要
+  public boolean shouldRegisterNavigation() {
+    return navigation != UNSUPPORTED && measurements != UNSUPPORTED;
+  }
+
+  // GnssMeasurementsEvent.Callback.onStatusChanged，返回 false 表示不支持，应注销回调
+  public boolean onMeasurementStatus(int status) {
+    measurementStatus = status;
+    if (status == GnssMeasurementsEvent.Callback.STATUS_READY) {
+      update(SUPPORTED, navigation);
+    } else if (status == GnssMeasurementsEvent.Callback.STATUS_NOT_SUPPORTED) {
+      update(UNSUPPORTED, navigation);
+      return false;
+    }
+    return true;
+  }
+
+  // GnssNavigationMessage.Callback.onStatusChanged，返回 false 表示不支持，应注销回调
+  public boolean onNavigationStatus(int status) {
+    navigationStatus = status;
+    if (status == GnssNavigationMessage.Callback.STATUS_READY) {
+      update(measurements, SUPPORTED);
+    } else if (status == GnssNavigationMessage.Callback.STATUS_NOT_SUPPORTED) {
+      update(measurements, UNSUPPORTED);
+      return false;
+    }
+    return true;
+  }
+
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("measurements", SUPPORT_NAMES[measurements]);
+    map.put("navigation_messages", SUPPORT_NAMES[navigation]);
+    map.put("measurement_status", measurementStatusName(measurementStatus));
+    map.put("navigation_status", navigationStatusName(navigationStatus));
+    Map<String, Object> d = details;
+    if (d != null) {
+      map.putAll(d);
+    }
+    map.put("fingerprint", fingerprint);
+    return map;
+  }
+
+  private synchronized void update(int measurements, int navigation) {
+    if (measurements == this.measurements && navigation == this.navigation) {
+      return;
+    }
+    this.measurements = measurements;
+    this.navigation = navigation;
+    save();
+  }
+
+  private void save() {
+    preferences.edit()
+        .putString(KEY_FINGERPRINT, fingerprint)
+        .putInt(KEY_MEASUREMENTS, measurements)
+        .putInt(KEY_NAVIGATION, navigation)
+        .apply();
+  }
+
+  private static String measurementStatusName(int status) {
+    switch (status) {
+      case GnssMeasurementsEvent.Callback.STATUS_NOT_SUPPORTED:
+        return "not_supported";
+      case GnssMeasurementsEvent.Callback.STATUS_READY:
+        return "ready";
+      case GnssMeasurementsEvent.Callback.STATUS_LOCATION_DISABLED:
+        return "location_disabled";
+      case GnssMeasurementsEvent.Callback.STATUS_NOT_ALLOWED:
+        return "not_allowed";
+      default:
+        return "unknown";
+    }
+  }
+
+  private static String navigationStatusName(int status) {
+    switch (status) {
+      case GnssNavigationMessage.Callback.STATUS_NOT_SUPPORTED:
+        return "not_supported";
+      case GnssNavigationMessage.Callback.STATUS_READY:
+        return "ready";
+      case GnssNavigationMessage.Callback.STATUS_LOCATION_DISABLED:
+        return "location_disabled";
+      default:
+        return "unknown";
+    }
+  }
+}
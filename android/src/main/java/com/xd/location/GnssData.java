@@ -1,9 +1,9 @@
 package com.xd.location;
 
-import java.util.Locale;
 import android.location.GnssMeasurement;
 import android.location.GnssClock;
 import android.location.GnssStatus;
+import android.os.Build;
 
 public class GnssData {
   private static final double L1Frequency = 1575.42 * 1E6;
@@ -13,52 +13,89 @@ public class GnssData {
   private static final double WEEK_NANOSECOND = 604800 * 1E9;
   private static final double DAY_NANOSECOND = 86400 * 1E9;
 
-  private final GnssMeasurement measurement;  // final修饰的成员变量必须在定义时或者在构造器中初始化。
-  private final GnssClock clock;
-  private final int satelliteIndex; // 卫星在gnssstatus中的索引号
-  private final int prn;
-  private final int constellationType;
-  private final double carrierFrequencyHZ;
-  private final GnssStatus status;
+  // 卫星标识表，按 [constellationType][svid] 预先生成，避免每个观测值都 String.format
+  private static final int MAX_SVID = 256;
+  private static final String[][] PRN_TABLE = new String[8][MAX_SVID];
+  // 信号标识表，按 [constellationType][svid * GnssBand.COUNT + band] 在第一次使用时生成，如 G#05/L5
+  private static final String[][] SIGNAL_TABLE = new String[8][MAX_SVID * GnssBand.COUNT];
+
+  static {
+    // 下标为 GnssStatus.CONSTELLATION_*，SBAS 和 IRNSS 与原来一样归为 U
+    char[] prefix = {'U', 'G', 'U', 'R', 'J', 'C', 'E', 'U'};
+    for (int type = 0; type < PRN_TABLE.length; type++) {
+      for (int svid = 0; svid < MAX_SVID; svid++) {
+        PRN_TABLE[type][svid] = prefix[type] + "#" + (svid < 10 ? "0" : "") + svid;
+      }
+    }
+  }
+
+  // 对象可复用，由 GnssDataPool 管理，每个历元通过 reset 重新填充
+  private GnssMeasurement measurement;
+  private GnssClock clock;
+  private int satelliteIndex; // 卫星在gnssstatus中的索引号
+  private int prn;
+  private int constellationType;
+  private double carrierFrequencyHZ;
+  private boolean hasCarrierFrequency;
+  private int band;
+  private GnssStatus status;
 
   private double tTxNanos; // 发送时间
   private double tRxNanos; // 接收时间
 
   private double pseudorange;
 
+  // 跨历元的观测值，由 ObservableTracker 计算
+  private double smoothedPseudorange;
+  private int smoothingCount;
+  private double carrierCycles;
+  private int cycleSlip;
+  private int qcFlags;
+
+  public GnssData() {
+  }
+
   // 构造函数，传入 GnssClock 和 GnssMeasurement 对象
-  public GnssData(GnssMeasurement measurement, GnssClock clock, GnssStatus status) {
+  public GnssData(GnssMeasurement measurement, GnssClock clock, SatelliteIndex index) {
+    reset(measurement, clock, index);
+  }
+
+  // 用新的观测值重新填充，不分配新对象
+  public GnssData reset(GnssMeasurement measurement, GnssClock clock, SatelliteIndex index) {
     this.measurement = measurement;
-    this.status = status;
+    this.status = index.getStatus();
     this.clock = clock;
     this.prn = measurement.getSvid();
     this.constellationType = measurement.getConstellationType();
-    this.carrierFrequencyHZ =
-            measurement.hasCarrierFrequencyHz() ? measurement.getCarrierFrequencyHz() : L1Frequency;
+    this.hasCarrierFrequency = measurement.hasCarrierFrequencyHz();
+    this.carrierFrequencyHZ = hasCarrierFrequency ? measurement.getCarrierFrequencyHz() : L1Frequency;
+    this.band = GnssBand.of(carrierFrequencyHZ);
     this.pseudorange = 0;
+    this.smoothedPseudorange = Double.NaN;
+    this.smoothingCount = 0;
+    this.carrierCycles = Double.NaN;
+    this.cycleSlip = 0;
+    this.qcFlags = 0;
 
-    this.satelliteIndex = getSatelliteStatusIndex();
+    this.satelliteIndex = status != null ? index.indexOf(constellationType, prn, carrierFrequencyHZ) : -1;
 
     calcPseudorange(); // 计算伪距
+    return this;
   }
 
   // 获取卫星标识
   public String getPRN() {
-    Locale locale = Locale.getDefault();
-    switch (constellationType) {
-      case GnssStatus.CONSTELLATION_BEIDOU:
-        return "C#" + String.format(locale, "%02d", prn);
-      case GnssStatus.CONSTELLATION_GLONASS:
-        return "R#" + String.format(locale, "%02d", prn);
-      case GnssStatus.CONSTELLATION_GPS:
-        return "G#" + String.format(locale, "%02d", prn);
-      case GnssStatus.CONSTELLATION_GALILEO:
-        return "E#" + String.format(locale, "%02d", prn);
-      case GnssStatus.CONSTELLATION_QZSS:
-        return "J#" + String.format(locale, "%02d", prn);
-      default:
-        return "U#" + String.format(locale, "%02d", prn);
+    return getPRN(constellationType, prn);
+  }
+
+  public static String getPRN(int constellationType, int svid) {
+    if (constellationType < 0 || constellationType >= PRN_TABLE.length) {
+      constellationType = GnssStatus.CONSTELLATION_UNKNOWN;
+    }
+    if (svid >= 0 && svid < MAX_SVID) {
+      return PRN_TABLE[constellationType][svid];
     }
+    return PRN_TABLE[constellationType][0].charAt(0) + "#" + svid;
   }
 
   public float getAzimuthDegrees() {
@@ -69,6 +106,11 @@ public class GnssData {
     return 0.0f;
   }
 
+  // 有对应的 GnssStatus 卫星时高度角、方位角和 GnssStatus 载噪比才有效
+  public boolean hasSatelliteStatus() {
+    return satelliteIndex >= 0;
+  }
+
   public float getElevationDegrees() {
     if (satelliteIndex >= 0) {
       return status.getElevationDegrees(satelliteIndex);
@@ -85,10 +127,47 @@ public class GnssData {
     return 0.0f;
   }
 
+  // 观测值自身的载噪比，GnssStatus 中的值是按卫星给出的
+  public double getMeasurementCn0DbHz() {
+    return measurement.getCn0DbHz();
+  }
+
   public double getCarrierFrequencyHz() {
     return carrierFrequencyHZ;
   }
 
+  // 没有上报载波频率时 getCarrierFrequencyHz 按 L1 返回
+  public boolean hasCarrierFrequency() {
+    return hasCarrierFrequency;
+  }
+
+  // 载波频段，GnssBand.*
+  public int getBand() {
+    return band;
+  }
+
+  // 码类型，如 C、Q、I，Android 10 以下或没有上报时为 null
+  public String getCodeType() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && measurement.hasCodeType()) {
+      return measurement.getCodeType();
+    }
+    return null;
+  }
+
+  // 信号标识，同一卫星不同频段的信号各不相同，如 G#05/L1、G#05/L5
+  public String getSignalId() {
+    if (constellationType < 0 || constellationType >= SIGNAL_TABLE.length || prn < 0 || prn >= MAX_SVID) {
+      return getPRN() + "/" + GnssBand.name(band);
+    }
+    int key = prn * GnssBand.COUNT + band;
+    String id = SIGNAL_TABLE[constellationType][key];
+    if (id == null) {
+      id = PRN_TABLE[constellationType][prn] + "/" + GnssBand.name(band);
+      SIGNAL_TABLE[constellationType][key] = id;
+    }
+    return id;
+  }
+
   // 获取cn0db，以 MHz 为单位
   public float getCn0DbHz() {
     if (satelliteIndex >= 0) {
@@ -103,6 +182,46 @@ public class GnssData {
     return pseudorange;
   }
 
+  public void setObservables(double smoothedPseudorange, int smoothingCount, double carrierCycles, int cycleSlip) {
+    this.smoothedPseudorange = smoothedPseudorange;
+    this.smoothingCount = smoothingCount;
+    this.carrierCycles = carrierCycles;
+    this.cycleSlip = cycleSlip;
+  }
+
+  // Hatch 滤波平滑后的伪距，以 m 为单位，没有跟踪时为 NaN
+  public double getSmoothedPseudorange() {
+    return smoothedPseudorange;
+  }
+
+  public int getSmoothingCount() {
+    return smoothingCount;
+  }
+
+  // 载波相位，以周为单位，ADR 无效时为 NaN
+  public double getCarrierCycles() {
+    return carrierCycles;
+  }
+
+  // ObservableTracker.SLIP_* 标记
+  public int getCycleSlip() {
+    return cycleSlip;
+  }
+
+  // QualityControl.QC_* 标记，没有做质量检查时为 0
+  public int getQcFlags() {
+    return qcFlags;
+  }
+
+  public void setQcFlags(int qcFlags) {
+    this.qcFlags = qcFlags;
+  }
+
+  // GnssMeasurement.STATE_* 跟踪状态
+  public int getState() {
+    return measurement.getState();
+  }
+
   // 获取tTx
   public double getTTx() {
     return tTxNanos;
@@ -113,18 +232,7 @@ public class GnssData {
     return tRxNanos;
   }
 
-  private int getSatelliteStatusIndex() {
-    int count = status.getSatelliteCount();
-    for (int i = 0; i < count; i++) {
-      if (prn == status.getSvid(i)) {
-        return i;
-      }
-    }
-
-    return -1;
-  }
-
-  public Long getReceivedSvTimeUncertaintyNanos() {
+  public long getReceivedSvTimeUncertaintyNanos() {
     return measurement.getReceivedSvTimeUncertaintyNanos();
   }
 
@@ -164,7 +272,7 @@ public class GnssData {
     return measurement.getPseudorangeRateUncertaintyMetersPerSecond();
   }
 
-  public Long getReceivedSvTimeNanos() {
+  public long getReceivedSvTimeNanos() {
     return measurement.getReceivedSvTimeNanos();
   }
 
@@ -202,6 +310,7 @@ public class GnssData {
     switch (constellationType) {
         case GnssStatus.CONSTELLATION_GALILEO:
         case GnssStatus.CONSTELLATION_GPS:
+        case GnssStatus.CONSTELLATION_QZSS: // QZSS 使用 GPS 时间
             break;
         case GnssStatus.CONSTELLATION_BEIDOU:
             tRxNanos -= 14E9;
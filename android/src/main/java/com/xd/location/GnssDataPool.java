@@ -0,0 +1,58 @@
+package com.xd.location;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+
+/**
+ * GnssData 对象池
+ *
+ * 按最大通道数预先分配，每个历元 clear 后依次 acquire，稳态下不再分配新对象。
+ * 只在处理线程上使用。
+ */
+public class GnssDataPool {
+  public static final int MAX_CHANNELS = 128; // 最大通道数
+
+  private GnssData[] items;
+  private int count = 0;
+
+  public GnssDataPool() {
+    this(MAX_CHANNELS);
+  }
+
+  public GnssDataPool(int capacity) {
+    items = new GnssData[capacity];
+    for (int i = 0; i < capacity; i++) {
+      items[i] = new GnssData();
+    }
+  }
+
+  // 开始新的历元
+  public void clear() {
+    count = 0;
+  }
+
+  public GnssData add(GnssMeasurement measurement, GnssClock clock, SatelliteIndex index) {
+    if (count == items.length) {
+      grow();
+    }
+    return items[count++].reset(measurement, clock, index);
+  }
+
+  public GnssData get(int i) {
+    return items[i];
+  }
+
+  public int size() {
+    return count;
+  }
+
+  // 超过预设通道数时才扩容，正常情况下不会发生
+  private void grow() {
+    GnssData[] larger = new GnssData[items.length * 2];
+    System.arraycopy(items, 0, larger, 0, items.length);
+    for (int i = items.length; i < larger.length; i++) {
+      larger[i] = new GnssData();
+    }
+    items = larger;
+  }
+}
@@ -0,0 +1,722 @@
+package com.xd.location;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+
+import io.flutter.plugin.common.EventChannel;
+
+import android.location.LocationManager;
+import android.location.Location;
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+import android.location.GnssNavigationMessage;
+import android.content.Context;
+import android.os.Looper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Build;
+import android.os.Debug;
+
+/**
+ * GNSS 采集和处理引擎，与 Activity 和 Flutter 引擎无关
+ *
+ * 进程内只有一个实例，持有 LocationManager、传感器、处理线程和全部处理状态，只依赖 Application Context。
+ * LocationPlugin 把方法调用转发到这里，事件流通过 setEventSink 挂接；Flutter 引擎或 Activity 销毁后，
+ * 以前台服务（GnssService）方式 open 的引擎继续采集、记录和解算，新的 Flutter 引擎可以重新挂接事件流。
+ * 不是前台服务时由 LocationPlugin 在 Flutter 引擎分离时 close，注销全部回调。
+ * open、close 和事件流挂接在主线程上调用。历元存储的打开、查询和合并有文件操作，在单独的查询线程上执行，
+ * 结果通过 Callback 回到主线程。
+ */
+public class GnssEngine implements GnssSink {
+  private static GnssEngine instance;
+
+  public static synchronized GnssEngine getInstance(Context context) {
+    if (instance == null) {
+      instance = new GnssEngine(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  private final Context context;
+
+  // 异步操作的结果，在主线程上回调
+  public interface Callback {
+    void onResult(Object value);
+
+    void onError(String code, String message);
+  }
+
+  private Handler uiThreadHandler = new Handler(Looper.getMainLooper());
+
+  // GNSS 回调、数据处理和编码都在该线程上执行，只把编码结果交给 UI 线程
+  // close 时在主线程上置为 null，处理线程通过 processingHandler() 读取
+  private HandlerThread processingThread;
+  private volatile Handler processingHandler;
+
+  private EpochDispatcher dispatcher = new EpochDispatcher(uiThreadHandler, EpochDispatcher.DEFAULT_CAPACITY);
+
+  private volatile SubscriptionSpec subscription = SubscriptionSpec.DEFAULT; // 事件流订阅参数
+
+  private EpochEncoder epochEncoder = new EpochEncoder();
+
+  // 批量和拉取模式下的历元缓冲区，open 时按订阅参数重建
+  private volatile EpochRingBuffer ringBuffer = new EpochRingBuffer(SubscriptionSpec.DEFAULT.bufferCapacity);
+  // 只在当前的处理线程上读写，close 后旧线程上仍在执行的消息不再修改，新线程开始时重置
+  private boolean flushScheduled = false;
+
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      if (processingHandler() != null) {
+        flushScheduled = false;
+      }
+      flushBatch();
+    }
+  };
+
+  private final Runnable resetFlushTask = new Runnable() {
+    @Override
+    public void run() {
+      flushScheduled = false;
+    }
+  };
+
+  // 定时把 metrics 作为事件发送给 Dart 端，在处理线程上运行
+  private final Runnable metricsTask = new Runnable() {
+    @Override
+    public void run() {
+      Handler handler = processingHandler();
+      Map<String, Object> data = getMetrics();
+      long interval = subscription.metricsIntervalMillis;
+      if (handler == null || data == null || interval <= 0) {
+        return;
+      }
+      data.put("type", "metrics");
+      dispatcher.offer(data);
+      handler.postDelayed(this, interval);
+    }
+  };
+
+  // 星历由导航电文解码得到，每个历元在处理线程上解算
+  private EphemerisCache ephemerisCache = new EphemerisCache();
+  private NavigationDecoder navigationDecoder = new NavigationDecoder(ephemerisCache);
+
+  // 质量检查、跟踪、解算、融合和编码，只在处理线程上使用
+  private final EpochPipeline pipeline = new EpochPipeline(ephemerisCache);
+
+  private RinexRecorder rinexRecorder = new RinexRecorder(); // 原生 RINEX 记录
+  private EpochLogRecorder epochLog = new EpochLogRecorder(); // 原始数据记录，用于回放
+
+  // 历元存储，每个历元编码为完整的二进制历元写入，只在处理线程上编码
+  private EpochStore epochStore = new EpochStore();
+  private EpochEncoder storeEncoder = new EpochEncoder();
+  private HandlerThread queryThread; // 存储的打开、查询和合并，只在主线程上创建
+  private Handler queryHandler;
+
+  private final LocationManager mLocationManager;
+
+  private GnssLocationListener locationListener = new GnssLocationListener();
+
+  private final SensorHandler sensorHandler;
+  private final GnssCapabilityProbe capabilityProbe; // 按设备缓存的原始观测值和导航电文支持情况
+  private GnssSource source; // 实时数据或回放，open 时创建
+  private volatile SamplingScheduler scheduler; // adaptive 时按运动状态切换采集档位，open 时创建
+  private volatile PipelineMetrics metrics; // 分阶段的延迟和计数，开启时 open 创建，没有开启时为 null
+  private volatile boolean foreground = true; // Activity 是否可见
+  private EventChannel.EventSink eventSink; // 当前挂接的事件流，只在主线程访问
+  private volatile boolean opened = false; // 主线程写入，处理线程读取
+  private boolean foregroundService = false;
+
+  private GnssEngine(Context context) {
+    this.context = context;
+    mLocationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+    sensorHandler = new SensorHandler(context);
+    sensorHandler.setRecorder(epochLog);
+    capabilityProbe = new GnssCapabilityProbe(context);
+  }
+
+  @Override
+  public void onSatelliteStatus(GnssStatus status) {
+    epochLog.writeStatus(status);
+    pipeline.onSatelliteStatus(status);
+  }
+
+  @Override
+  public void onLocation(Location location) {
+    epochLog.writeLocation(location);
+    locationListener.onLocationChanged(location);
+
+    SamplingScheduler current = scheduler;
+    if (current == null) {
+      return;
+    }
+    current.onFix(location.hasAccuracy() ? location.getAccuracy() : Double.NaN, location.getElapsedRealtimeNanos());
+    // position 档位没有历元，定位结果单独发送
+    if (current.getProfile() == SamplingScheduler.PROFILE_POSITION && dispatcher.hasListener()) {
+      Map<String, Object> data = new HashMap<String, Object>();
+      data.put("type", "location");
+      data.put("accuracy", location.getAccuracy());
+      data.put("longitude", location.getLongitude());
+      data.put("latitude", location.getLatitude());
+      data.put("altitude", location.getAltitude());
+      data.put("speed", location.getSpeed());
+      data.put("elapsed_realtime_nanos", location.getElapsedRealtimeNanos());
+      dispatcher.offer(data);
+    }
+  }
+
+  @Override
+  public void onNavigationMessage(int type, int svid, int status, int messageId, int submessageId, byte[] data) {
+    epochLog.writeNavigation(type, svid, status, messageId, submessageId, data);
+    rinexRecorder.writeNavigation(type, svid, status, messageId, submessageId, data);
+
+    if (status != GnssNavigationMessage.STATUS_UNKNOWN) {
+      navigationDecoder.decode(type, svid, status, data);
+    }
+  }
+
+  @Override
+  public void onMeasurements(GnssClock gnssClock, Collection<GnssMeasurement> measurements) {
+    SamplingScheduler current = scheduler;
+    if (current == null) {
+      processMeasurements(gnssClock, measurements);
+      return;
+    }
+    // 处理线程上一个历元的 CPU 时间，计入当前档位的开销
+    long cpuNanos = Debug.threadCpuTimeNanos();
+    processMeasurements(gnssClock, measurements);
+    current.onEpoch(Debug.threadCpuTimeNanos() - cpuNanos);
+  }
+
+  private void processMeasurements(GnssClock gnssClock, Collection<GnssMeasurement> measurements) {
+    PipelineMetrics m = metrics;
+    long start = 0;
+    long t = 0;
+    long origin = 0; // 测量时刻，没有对应关系时为 0，不计入回调和端到端延迟
+    if (m != null) {
+      start = System.nanoTime();
+      t = start;
+      m.onEpoch(measurements.size());
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && gnssClock.hasElapsedRealtimeNanos()) {
+        origin = gnssClock.getElapsedRealtimeNanos();
+        m.record(PipelineMetrics.STAGE_CALLBACK, SystemClock.elapsedRealtimeNanos() - origin);
+      }
+    }
+
+    // 传感器快照跟在它之后的历元一起回放
+    if (epochLog.isRecording()) {
+      SensorSource sensors = pipeline.getSensorSource();
+      if (sensors != null && sensors.read(pipeline.getSensorSnapshot())) {
+        epochLog.writeSensor(pipeline.getSensorSnapshot());
+      }
+      epochLog.writeMeasurements(gnssClock, measurements);
+    }
+
+    SubscriptionSpec spec = subscription;
+    boolean listening = spec.delivery == SubscriptionSpec.DELIVERY_PULL || dispatcher.hasListener();
+    boolean emit = listening && spec.shouldEmit(gnssClock.getTimeNanos());
+    boolean recording = rinexRecorder.isRecording();
+    boolean storing = epochStore.isOpen() && gnssClock.hasFullBiasNanos(); // 没有 GPS 时间时无法索引
+    int steps = pipeline.steps(spec, listening, emit, recording, storing);
+
+    // Dart 端没有监听或者被限频时只为记录、存储和跨历元的跟踪、质量检查处理观测值
+    if (!emit && steps == 0) {
+      if (m != null) {
+        m.onSkipped();
+      }
+      return;
+    }
+
+    t = pipeline.process(gnssClock, measurements, spec, steps, m, t);
+    GnssDataPool pool = pipeline.getPool();
+
+    rinexRecorder.writeEpoch(gnssClock, pool);
+    if (m != null) {
+      t = System.nanoTime(); // 不计入 RINEX 记录
+    }
+
+    if (storing) {
+      storeEpoch(gnssClock);
+      if (m != null) {
+        t = m.stage(PipelineMetrics.STAGE_STORE, t);
+      }
+    }
+
+    if (!emit) {
+      if (m != null) {
+        m.onSkipped();
+        m.stage(PipelineMetrics.STAGE_PROCESS, start);
+      }
+      return;
+    }
+
+    int count = pipeline.select(spec);
+    boolean ionosphereFree = (steps & EpochPipeline.STEP_IONO_FREE) != 0;
+
+    boolean imu = pipeline.readImu(spec, gnssClock);
+    boolean fusion = imu && spec.has(SubscriptionSpec.GROUP_FUSION);
+    if (fusion) {
+      pipeline.fuse(gnssClock, locationListener.getLatest());
+    }
+    imu = imu && spec.has(SubscriptionSpec.GROUP_IMU);
+    if (m != null) {
+      t = m.stage(PipelineMetrics.STAGE_FUSION, t);
+    }
+
+    if (spec.binary) {
+      byte[] epoch = pipeline.encode(epochEncoder, gnssClock, locationListener.getLatest(), spec, count, imu, fusion,
+          ionosphereFree);
+      if (m != null) {
+        m.stage(PipelineMetrics.STAGE_ENCODE, t);
+      }
+      sendMessage(epoch, origin);
+      if (m != null) {
+        m.onEmitted();
+        m.stage(PipelineMetrics.STAGE_PROCESS, start);
+      }
+      return;
+    }
+
+    Map<String, Object> data = new HashMap<String, Object>();
+    if (spec.has(SubscriptionSpec.GROUP_CLOCK)) {
+      data.put("rx_clock", EpochFormatter.formatClock(gnssClock));
+    }
+
+    if (spec.has(SubscriptionSpec.GROUP_LOCATION)) {
+      Location loc = locationListener.getLatest();
+      if (loc != null) {
+        data.put("accuracy", loc.getAccuracy());
+        data.put("longitude", loc.getLongitude());
+        data.put("latitude", loc.getLatitude());
+        data.put("speed", loc.getSpeed());
+        data.put("altitude", loc.getAltitude());
+        data.put("speed_accuracy", loc.getSpeedAccuracyMetersPerSecond());
+      }
+    }
+
+    SatelliteIndex satelliteIndex = pipeline.getSatelliteIndex();
+    data.put("satellite_count", 0);
+    if (satelliteIndex.getStatus() != null) {
+      data.put("satellite_count", satelliteIndex.getSatelliteCount());
+
+      if (spec.has(SubscriptionSpec.GROUP_SATELLITES)) {
+        data.put("satellites", EpochFormatter.formatSatellites(pool, pipeline.getSelected(), count, spec));
+      }
+    }
+
+    if (pipeline.readSensor(spec)) {
+      data.put("sensor", EpochFormatter.formatSensor(pipeline.getSensorSnapshot()));
+    }
+
+    if (imu) {
+      data.put("imu", EpochFormatter.formatImu(pipeline.getImuSamples()));
+    }
+
+    if (fusion) {
+      data.put("fusion", EpochFormatter.formatFusion(pipeline.getFusionTrack()));
+    }
+
+    SppSolution solution = pipeline.getSolution();
+    if (solution.valid) {
+      data.put("spp", EpochFormatter.formatSolution(solution));
+    }
+
+    if (ionosphereFree) {
+      data.put("iono_free", EpochFormatter.formatIonosphereFree(pipeline.getSignalGroups()));
+    }
+    if (m != null) {
+      m.stage(PipelineMetrics.STAGE_ENCODE, t);
+    }
+
+    sendMessage(data, origin);
+    if (m != null) {
+      m.onEmitted();
+      m.stage(PipelineMetrics.STAGE_PROCESS, start);
+    }
+  }
+
+  // 本历元的全部观测值编码为完整的二进制历元写入存储，以 GPS 时间为索引。没有解算结果时 valid 为 false
+  private void storeEpoch(GnssClock gnssClock) {
+    long gpsTimeNanos = gnssClock.getTimeNanos() - gnssClock.getFullBiasNanos()
+        - (gnssClock.hasBiasNanos() ? Math.round(gnssClock.getBiasNanos()) : 0);
+    epochStore.append(gpsTimeNanos, pipeline.encodeAll(storeEncoder, gnssClock, locationListener.getLatest()));
+  }
+
+  // originNanos 为历元的测量时刻（elapsedRealtime 纳秒），用于端到端延迟，没有时为 0
+  public void sendMessage(Object payload, long originNanos) {
+    SubscriptionSpec spec = subscription;
+    if (spec.delivery == SubscriptionSpec.DELIVERY_STREAM) {
+      dispatcher.offer(payload, originNanos);
+      return;
+    }
+
+    int size = ringBuffer.push(payload);
+    if (spec.delivery != SubscriptionSpec.DELIVERY_BATCH) {
+      return;
+    }
+
+    Handler handler = processingHandler();
+    if (size >= spec.batchSize) {
+      if (handler != null) {
+        handler.removeCallbacks(flushTask);
+        flushScheduled = false;
+      }
+      flushBatch();
+    } else if (!flushScheduled && handler != null) {
+      flushScheduled = true;
+      handler.postDelayed(flushTask, spec.batchIntervalMillis);
+    }
+  }
+
+  // 处理线程调用，返回当前处理线程的 Handler。close 时 quitSafely 仍会执行已经到期的消息，
+  // 这时 processingHandler 已经为 null 或者属于重新 open 后的新线程，返回 null，不再投递
+  private Handler processingHandler() {
+    Handler handler = processingHandler;
+    if (!opened || handler == null || handler.getLooper() != Looper.myLooper()) {
+      return null;
+    }
+    return handler;
+  }
+
+  // 批量模式：把缓冲区中的历元作为一条消息发送
+  private void flushBatch() {
+    List<Object> epochs = ringBuffer.drain();
+    if (epochs == null) {
+      return;
+    }
+
+    Map<String, Object> batch = new HashMap<String, Object>();
+    batch.put("type", "batch");
+    batch.put("epochs", epochs);
+    dispatcher.offer(batch);
+  }
+
+  // 设备能力和当前启用的数据来源，没有 open 时 active 为 null
+  public Map<String, Object> getCapabilities() {
+    Map<String, Object> data = new HashMap<String, Object>();
+    capabilityProbe.probe(mLocationManager);
+    data.put("device", capabilityProbe.toMap());
+    GnssSource current = source;
+    data.put("active", current != null ? current.getConfiguration() : null);
+    return data;
+  }
+
+  // 采集档位统计，没有开启 adaptive 时为 null
+  public Map<String, Object> getSchedulerStats() {
+    SamplingScheduler current = scheduler;
+    return current != null ? current.getStats() : null;
+  }
+
+  // Activity 切换前后台时调用
+  public void setForeground(boolean foreground) {
+    this.foreground = foreground;
+    SamplingScheduler current = scheduler;
+    if (current != null) {
+      current.setForeground(foreground);
+    }
+  }
+
+  // 分阶段的延迟和计数，没有开启 metrics 时为 null
+  public Map<String, Object> getMetrics() {
+    PipelineMetrics current = metrics;
+    return current != null ? current.toMap(dispatcher.getDroppedCount(), ringBuffer.getOverwrittenCount()) : null;
+  }
+
+  public Map<String, Object> getBatchStats() {
+    Map<String, Object> stats = ringBuffer.getStats();
+    stats.put("dispatch_dropped", dispatcher.getDroppedCount());
+    return stats;
+  }
+
+  // 挂接 Flutter 引擎的事件流，新的监听者没有增量编码的状态，从关键帧开始
+  public void setEventSink(EventChannel.EventSink sink) {
+    eventSink = sink;
+    dispatcher.setEventSink(sink);
+    epochEncoder.requestKeyframe();
+  }
+
+  // 只有 sink 仍是当前挂接的事件流时才断开，其他 Flutter 引擎已经重新挂接时不受影响
+  public void removeEventSink(EventChannel.EventSink sink) {
+    if (eventSink == sink) {
+      eventSink = null;
+      dispatcher.setEventSink(null);
+    }
+  }
+
+  // 按订阅参数开始采集，已经开始时按新的参数重新开始
+  public void open(SubscriptionSpec spec) {
+    if (spec.bufferCapacity != ringBuffer.capacity()) {
+      ringBuffer = new EpochRingBuffer(spec.bufferCapacity);
+    }
+    subscription = spec;
+    epochEncoder.requestKeyframe();
+    metrics = spec.metrics ? new PipelineMetrics() : null;
+    dispatcher.setMetrics(metrics);
+    opened = true;
+    openLocationListen();
+
+    if (spec.foregroundService) {
+      GnssService.start(context, spec.notificationTitle, spec.notificationText);
+    } else if (foregroundService) {
+      GnssService.stop(context);
+    }
+    foregroundService = spec.foregroundService;
+  }
+
+  // 停止采集，注销全部回调，停止前台服务。没有 open 时什么也不做
+  public void close() {
+    if (!opened) {
+      return;
+    }
+    opened = false; // 先置位，处理线程上剩余的消息不再重新投递
+    closeLocationListen();
+    if (foregroundService) {
+      GnssService.stop(context);
+      foregroundService = false;
+    }
+  }
+
+  // Flutter 引擎分离且不是前台服务时调用：停止采集和记录，关闭文件
+  public void release() {
+    close();
+    rinexRecorder.stop();
+    epochLog.stop();
+    epochStore.close();
+    if (queryThread != null) {
+      queryThread.quitSafely();
+      queryThread = null;
+      queryHandler = null;
+    }
+  }
+
+  public boolean isOpen() {
+    return opened;
+  }
+
+  // 以前台服务方式运行，Flutter 引擎分离后继续采集
+  public boolean isForegroundService() {
+    return foregroundService;
+  }
+
+  public void startRecording(String path) throws IOException {
+    rinexRecorder.start(path);
+  }
+
+  public void stopRecording() {
+    rinexRecorder.stop();
+  }
+
+  public void startLog(String path) throws IOException {
+    epochLog.start(path);
+  }
+
+  public void stopLog() {
+    epochLog.stop();
+  }
+
+  // 取出缓冲区中的全部历元，没有时为空列表
+  public List<Object> drain() {
+    List<Object> epochs = ringBuffer.drain();
+    return epochs != null ? epochs : new ArrayList<Object>();
+  }
+
+  // 打开 path 目录下的历元存储，之后的历元都写入存储
+  public void openStore(final String path, final long segmentBytes, final long maxBytes, final long maxAgeMillis,
+                        final Callback callback) {
+    runQuery(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          epochStore.open(new File(path), segmentBytes, maxBytes, maxAgeMillis * 1000000L);
+          deliver(callback, true);
+        } catch (IOException e) {
+          fail(callback, "STORE_FAILED", e.getMessage());
+        }
+      }
+    });
+  }
+
+  public void closeStore() {
+    epochStore.close();
+  }
+
+  // GPS 时间 [from, to] 之间的历元，一次最多 limit 个（大于 0），从 segment、time 继续（segment 为 -1 时从头查询），
+  // 结果为 {epochs, next}，next 为续查位置 {segment, time}，为 null 时已经没有更多
+  public void queryEpochs(final long from, final long to, final int fieldMask, final int limit,
+                          final int segment, final long time, final Callback callback) {
+    if (limit <= 0) {
+      fail(callback, "INVALID_ARGUMENT", "limit must be positive: " + limit);
+      return;
+    }
+    runQuery(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          EpochStore.Chunk chunk = epochStore.query(from, to, fieldMask, limit, segment, time);
+          Map<String, Object> next = null;
+          if (chunk.nextSegment >= 0) {
+            next = new HashMap<String, Object>();
+            next.put("segment", chunk.nextSegment);
+            next.put("time", chunk.next);
+          }
+          Map<String, Object> data = new HashMap<String, Object>();
+          data.put("epochs", chunk.epochs);
+          data.put("next", next);
+          deliver(callback, data);
+        } catch (IOException e) {
+          fail(callback, "QUERY_FAILED", e.getMessage());
+        }
+      }
+    });
+  }
+
+  // 合并小分段，结果为合并掉的分段数
+  public void compactStore(final Callback callback) {
+    runQuery(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          deliver(callback, epochStore.compact());
+        } catch (IOException e) {
+          fail(callback, "COMPACT_FAILED", e.getMessage());
+        }
+      }
+    });
+  }
+
+  public Map<String, Object> getStoreStats() {
+    return epochStore.getStats();
+  }
+
+  private void runQuery(Runnable task) {
+    if (queryThread == null) {
+      queryThread = new HandlerThread("GnssQuery", Process.THREAD_PRIORITY_BACKGROUND);
+      queryThread.start();
+      queryHandler = new Handler(queryThread.getLooper());
+    }
+    queryHandler.post(task);
+  }
+
+  private void deliver(final Callback callback, final Object value) {
+    uiThreadHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        callback.onResult(value);
+      }
+    });
+  }
+
+  private void fail(final Callback callback, final String code, final String message) {
+    uiThreadHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        callback.onError(code, message);
+      }
+    });
+  }
+
+  // 引擎状态，Flutter 引擎重新挂接时用来恢复界面
+  public Map<String, Object> getState() {
+    Map<String, Object> state = new HashMap<String, Object>();
+    state.put("open", opened);
+    state.put("foreground_service", foregroundService);
+    state.put("recording", rinexRecorder.isRecording());
+    state.put("logging", epochLog.isRecording());
+    state.put("storing", epochStore.isOpen());
+    return state;
+  }
+
+  // 开启定位数据监测
+  private void openLocationListen() {
+    if (processingThread == null) {
+      processingThread = new HandlerThread("GnssProcessing", Process.THREAD_PRIORITY_DEFAULT);
+      processingThread.start();
+      processingHandler = new Handler(processingThread.getLooper());
+      // 先于数据来源投递的消息执行，旧线程留下的 flushScheduled 不影响新线程的定时发送
+      processingHandler.post(resetFlushTask);
+    }
+
+    stopScheduler();
+    if (source != null) {
+      source.stop();
+    }
+
+    SubscriptionSpec spec = subscription;
+    if (spec.replayPath != null) {
+      source = new ReplaySource(new File(spec.replayPath), spec.replaySpeed);
+    } else {
+      source = new LiveGnssSource(mLocationManager, sensorHandler, capabilityProbe, spec.locationIntervalMillis,
+          spec.positionIntervalMillis, spec.imuRateHz, spec.orientationMode);
+    }
+    pipeline.setSensorSource(source.getSensorSource());
+    source.start(this, processingHandler);
+
+    // 回放按记录的数据推送，不切换档位
+    if (spec.adaptive && spec.replayPath == null) {
+      startScheduler(spec, source);
+    }
+    processingHandler.removeCallbacks(metricsTask);
+    if (metrics != null && spec.metricsIntervalMillis > 0) {
+      processingHandler.postDelayed(metricsTask, spec.metricsIntervalMillis);
+    }
+  }
+
+  private void startScheduler(SubscriptionSpec spec, final GnssSource target) {
+    final SamplingScheduler created = new SamplingScheduler(processingHandler, sensorHandler, spec,
+        new SamplingScheduler.Listener() {
+          @Override
+          public void onProfileChanged(int previous, int profile, String reason) {
+            target.setProfile(profile);
+            Map<String, Object> event = new HashMap<String, Object>();
+            event.put("type", "profile");
+            event.put("profile", SamplingScheduler.PROFILE_NAMES[profile]);
+            event.put("previous", SamplingScheduler.PROFILE_NAMES[previous]);
+            event.put("reason", reason);
+            dispatcher.offer(event);
+          }
+        });
+    created.setForeground(foreground);
+    scheduler = created;
+    processingHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        created.start();
+      }
+    });
+  }
+
+  private void stopScheduler() {
+    SamplingScheduler current = scheduler;
+    if (current != null) {
+      current.stop();
+      scheduler = null;
+    }
+  }
+
+  // 关闭定位数据监测
+  private void closeLocationListen() {
+    stopScheduler();
+    if (source != null) {
+      source.stop();
+      source = null;
+    }
+    locationListener.clear();
+
+    if (processingThread != null) {
+      processingHandler.removeCallbacks(flushTask);
+      processingHandler.removeCallbacks(metricsTask);
+      processingThread.quitSafely();
+      processingThread = null;
+      processingHandler = null;
+    }
+    dispatcher.clear();
+  }
+}
@@ -4,10 +4,28 @@ import android.location.LocationListener;
 import android.location.Location;
 import android.os.Bundle;
 
+/**
+ * 缓存 GPS_PROVIDER 推送的最新定位结果
+ *
+ * 处理线程每个历元从这里读取定位结果，不再调用 getLastKnownLocation（每次都是一次到 system_server 的跨进程调用）。
+ * 第一次推送前的定位结果由 LiveGnssSource.start 经 GnssSink.onLocation 送来。
+ * 回调在处理线程上执行，clear 在主线程上调用，所以用 volatile 发布。
+ */
 public class GnssLocationListener implements LocationListener {
+  private volatile Location latest;
+
+  // 最新的定位结果，还没有时为 null
+  public Location getLatest() {
+    return latest;
+  }
+
+  public void clear() {
+    latest = null;
+  }
+
   @Override
   public void onLocationChanged(Location location) {
-
+    latest = location;
   }
 
   @Override
@@ -24,4 +42,4 @@ public class GnssLocationListener implements LocationListener {
   public void onProviderDisabled(String provider) {
 
   }
-}
\ No newline at end of file
+}
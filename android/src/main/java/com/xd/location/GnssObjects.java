@@ -0,0 +1,177 @@
+package com.xd.location;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+import android.os.Build;
+
+/**
+ * 由记录的字段值重建 GnssClock、GnssMeasurement 和 GnssStatus，供 EpochLog 回放使用
+ *
+ * GnssClock 和 GnssMeasurement 的构造函数和 setter 是隐藏 API，只能通过反射调用，
+ * 在 JVM 上（android-all 或基准测试的替身类）这些方法是公开的。当前系统没有的 setter 直接跳过。
+ * GnssStatus 用 API 30 起的 GnssStatus.Builder 构造，更早的系统上回放时没有卫星状态。
+ */
+class GnssObjects {
+  // GnssClock 字段，下标与 EpochLog 中的顺序一致
+  static final int CLOCK_TIME_NANOS = 0;
+  static final int CLOCK_LEAP_SECOND = 1;
+  static final int CLOCK_TIME_UNCERTAINTY = 2;
+  static final int CLOCK_FULL_BIAS = 3;
+  static final int CLOCK_BIAS = 4;
+  static final int CLOCK_BIAS_UNCERTAINTY = 5;
+  static final int CLOCK_DRIFT = 6;
+  static final int CLOCK_DRIFT_UNCERTAINTY = 7;
+  static final int CLOCK_DISCONTINUITY = 8;
+  static final int CLOCK_ELAPSED_REALTIME = 9;
+  static final int CLOCK_ELAPSED_REALTIME_UNCERTAINTY = 10;
+
+  private static final String[] CLOCK_SETTERS = {
+    "setTimeNanos",
+    "setLeapSecond",
+    "setTimeUncertaintyNanos",
+    "setFullBiasNanos",
+    "setBiasNanos",
+    "setBiasUncertaintyNanos",
+    "setDriftNanosPerSecond",
+    "setDriftUncertaintyNanosPerSecond",
+    "setHardwareClockDiscontinuityCount",
+    "setElapsedRealtimeNanos",
+    "setElapsedRealtimeUncertaintyNanos",
+  };
+  private static final Class<?>[] CLOCK_TYPES = {
+    long.class, int.class, double.class, long.class, double.class, double.class, double.class, double.class,
+    int.class, long.class, double.class,
+  };
+
+  // GnssMeasurement 字段
+  static final int SVID = 0;
+  static final int CONSTELLATION_TYPE = 1;
+  static final int STATE = 2;
+  static final int TIME_OFFSET = 3;
+  static final int RECEIVED_SV_TIME = 4;
+  static final int RECEIVED_SV_TIME_UNCERTAINTY = 5;
+  static final int CN0 = 6;
+  static final int PSEUDORANGE_RATE = 7;
+  static final int PSEUDORANGE_RATE_UNCERTAINTY = 8;
+  static final int ADR_STATE = 9;
+  static final int ADR = 10;
+  static final int ADR_UNCERTAINTY = 11;
+  static final int MULTIPATH_INDICATOR = 12;
+  static final int CARRIER_FREQUENCY = 13;
+  static final int SNR = 14;
+  static final int AGC_LEVEL = 15;
+  static final int CODE_TYPE = 16;
+  static final int BASEBAND_CN0 = 17;
+  static final int FULL_ISB = 18;
+  static final int FULL_ISB_UNCERTAINTY = 19;
+  static final int SATELLITE_ISB = 20;
+  static final int SATELLITE_ISB_UNCERTAINTY = 21;
+
+  private static final String[] MEASUREMENT_SETTERS = {
+    "setSvid",
+    "setConstellationType",
+    "setState",
+    "setTimeOffsetNanos",
+    "setReceivedSvTimeNanos",
+    "setReceivedSvTimeUncertaintyNanos",
+    "setCn0DbHz",
+    "setPseudorangeRateMetersPerSecond",
+    "setPseudorangeRateUncertaintyMetersPerSecond",
+    "setAccumulatedDeltaRangeState",
+    "setAccumulatedDeltaRangeMeters",
+    "setAccumulatedDeltaRangeUncertaintyMeters",
+    "setMultipathIndicator",
+    "setCarrierFrequencyHz",
+    "setSnrInDb",
+    "setAutomaticGainControlLevelDb",
+    "setCodeType",
+    "setBasebandCn0DbHz",
+    "setFullInterSignalBiasNanos",
+    "setFullInterSignalBiasUncertaintyNanos",
+    "setSatelliteInterSignalBiasNanos",
+    "setSatelliteInterSignalBiasUncertaintyNanos",
+  };
+  private static final Class<?>[] MEASUREMENT_TYPES = {
+    int.class, int.class, int.class, double.class, long.class, long.class, double.class, double.class, double.class,
+    int.class, double.class, double.class, int.class, float.class, double.class, double.class, String.class,
+    double.class, double.class, double.class, double.class, double.class,
+  };
+
+  private static Constructor<GnssClock> clockConstructor;
+  private static Constructor<GnssMeasurement> measurementConstructor;
+  private static Method[] clockSetters;
+  private static Method[] measurementSetters;
+
+  private GnssObjects() {
+  }
+
+  static synchronized GnssClock newClock() throws ReflectiveOperationException {
+    if (clockConstructor == null) {
+      clockConstructor = GnssClock.class.getDeclaredConstructor();
+      clockConstructor.setAccessible(true);
+      clockSetters = setters(GnssClock.class, CLOCK_SETTERS, CLOCK_TYPES);
+    }
+    return clockConstructor.newInstance();
+  }
+
+  static synchronized GnssMeasurement newMeasurement() throws ReflectiveOperationException {
+    if (measurementConstructor == null) {
+      measurementConstructor = GnssMeasurement.class.getDeclaredConstructor();
+      measurementConstructor.setAccessible(true);
+      measurementSetters = setters(GnssMeasurement.class, MEASUREMENT_SETTERS, MEASUREMENT_TYPES);
+    }
+    return measurementConstructor.newInstance();
+  }
+
+  // 设置 newClock 返回的对象的字段
+  static void setClock(GnssClock clock, int field, Object value) throws ReflectiveOperationException {
+    invoke(clockSetters[field], clock, value);
+  }
+
+  static void setMeasurement(GnssMeasurement measurement, int field, Object value)
+      throws ReflectiveOperationException {
+    invoke(measurementSetters[field], measurement, value);
+  }
+
+  static boolean canBuildStatus() {
+    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+  }
+
+  // 卫星状态按列给出，flags 为 EpochLog.STATUS_* 标记
+  static GnssStatus newStatus(int count, int[] svids, int[] constellationTypes, int[] flags, float[] cn0DbHz,
+                              float[] elevations, float[] azimuths, float[] carrierFrequencies,
+                              float[] basebandCn0DbHz) {
+    GnssStatus.Builder builder = new GnssStatus.Builder();
+    for (int i = 0; i < count; i++) {
+      int f = flags[i];
+      builder.addSatellite(constellationTypes[i], svids[i], cn0DbHz[i], elevations[i], azimuths[i],
+          (f & EpochLog.STATUS_EPHEMERIS) != 0, (f & EpochLog.STATUS_ALMANAC) != 0,
+          (f & EpochLog.STATUS_USED_IN_FIX) != 0, (f & EpochLog.STATUS_CARRIER_FREQUENCY) != 0,
+          carrierFrequencies[i], (f & EpochLog.STATUS_BASEBAND_CN0) != 0, basebandCn0DbHz[i]);
+    }
+    return builder.build();
+  }
+
+  private static Method[] setters(Class<?> type, String[] names, Class<?>[] types) {
+    Method[] methods = new Method[names.length];
+    for (int i = 0; i < names.length; i++) {
+      try {
+        methods[i] = type.getDeclaredMethod(names[i], types[i]);
+        methods[i].setAccessible(true);
+      } catch (NoSuchMethodException e) {
+        methods[i] = null; // 旧系统没有这个字段
+      }
+    }
+    return methods;
+  }
+
+  private static void invoke(Method setter, Object target, Object value) throws ReflectiveOperationException {
+    if (setter != null) {
+      setter.invoke(target, value);
+    }
+  }
+}
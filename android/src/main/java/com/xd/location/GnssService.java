@@ -0,0 +1,98 @@
+package com.xd.location;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+
+/**
+ * 前台服务，让 GnssEngine 在 Activity 和 Flutter 引擎销毁后继续采集
+ *
+ * 服务本身不持有状态，只负责通知和进程优先级，采集由 GnssEngine 单例完成。
+ * 进程被系统回收后不重启（START_NOT_STICKY），订阅参数只在 Dart 端，需要重新 open。
+ */
+public class GnssService extends Service {
+  private static final String CHANNEL_ID = "com.xd.location.gnss";
+  private static final int NOTIFICATION_ID = 0x474e5353; // "GNSS"
+
+  private static final String EXTRA_TITLE = "title";
+  private static final String EXTRA_TEXT = "text";
+
+  // 主线程调用，title、text 为 null 时使用应用名称
+  public static void start(Context context, String title, String text) {
+    Intent intent = new Intent(context, GnssService.class);
+    intent.putExtra(EXTRA_TITLE, title);
+    intent.putExtra(EXTRA_TEXT, text);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+      context.startForegroundService(intent);
+    } else {
+      context.startService(intent);
+    }
+  }
+
+  public static void stop(Context context) {
+    context.stopService(new Intent(context, GnssService.class));
+  }
+
+  @Override
+  public int onStartCommand(Intent intent, int flags, int startId) {
+    String title = intent != null ? intent.getStringExtra(EXTRA_TITLE) : null;
+    String text = intent != null ? intent.getStringExtra(EXTRA_TEXT) : null;
+    Notification notification = buildNotification(title, text);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
+    } else {
+      startForeground(NOTIFICATION_ID, notification);
+    }
+    return START_NOT_STICKY;
+  }
+
+  @Override
+  public IBinder onBind(Intent intent) {
+    return null;
+  }
+
+  @Override
+  public void onDestroy() {
+    stopForeground(true);
+    super.onDestroy();
+  }
+
+  private Notification buildNotification(String title, String text) {
+    ApplicationInfo info = getApplicationInfo();
+    CharSequence label = getPackageManager().getApplicationLabel(info);
+
+    Notification.Builder builder;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+      NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+      manager.createNotificationChannel(
+          new NotificationChannel(CHANNEL_ID, label, NotificationManager.IMPORTANCE_LOW));
+      builder = new Notification.Builder(this, CHANNEL_ID);
+    } else {
+      builder = new Notification.Builder(this);
+    }
+
+    // 点击通知回到应用
+    Intent launch = getPackageManager().getLaunchIntentForPackage(getPackageName());
+    if (launch != null) {
+      int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+      builder.setContentIntent(PendingIntent.getActivity(this, 0, launch, flags));
+    }
+
+    // 没有应用图标时 startForeground 会抛出异常，使用系统图标
+    int icon = info.icon != 0 ? info.icon : android.R.drawable.ic_menu_mylocation;
+    return builder
+        .setSmallIcon(icon)
+        .setContentTitle(title != null ? title : label)
+        .setContentText(text)
+        .setOngoing(true)
+        .build();
+  }
+}
@@ -0,0 +1,25 @@
+package com.xd.location;
+
+import java.util.Collection;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+import android.location.Location;
+
+/**
+ * 处理链路的输入，GnssSource 在处理线程上依次回调
+ *
+ * 实时数据来自 LocationManager 的回调，回放数据来自 EpochLog，两者经过同一条处理链路。
+ */
+public interface GnssSink {
+  // 一个历元的原始观测值
+  void onMeasurements(GnssClock clock, Collection<GnssMeasurement> measurements);
+
+  void onSatelliteStatus(GnssStatus status);
+
+  // 导航电文，参数与 GnssNavigationMessage 的字段相同
+  void onNavigationMessage(int type, int svid, int status, int messageId, int submessageId, byte[] data);
+
+  void onLocation(Location location);
+}
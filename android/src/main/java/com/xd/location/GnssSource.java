@@ -0,0 +1,26 @@
+package com.xd.location;
+
+import java.util.Map;
+
+import android.os.Handler;
+
+/**
+ * 观测值、卫星状态、导航电文、定位结果和传感器数据的来源
+ *
+ * LiveGnssSource 注册 LocationManager 和传感器回调，ReplaySource 回放 EpochLog 记录的数据。
+ */
+public interface GnssSource {
+  // 开始推送数据，sink 的回调都在 handler 的线程上执行
+  void start(GnssSink sink, Handler handler);
+
+  void stop();
+
+  // 切换采集档位 SamplingScheduler.PROFILE_*，在处理线程上调用
+  void setProfile(int profile);
+
+  // 处理线程读取传感器数据的来源，没有传感器时为 null
+  SensorSource getSensorSource();
+
+  // 当前启用的数据，报告给 Dart 端
+  Map<String, Object> getConfiguration();
+}
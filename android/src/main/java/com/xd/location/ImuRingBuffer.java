@@ -0,0 +1,90 @@
+package com.xd.location;
+
+/**
+ * 高频 IMU 采样的定长环形缓冲区
+ *
+ * 传感器线程写入、处理线程读取，单写单读，不加锁也不分配对象。
+ * 写入方从不等待，缓冲区满时覆盖最旧的采样；读取方发现被覆盖时跳过这些采样并计数。
+ */
+public class ImuRingBuffer {
+  // 3 个传感器 400Hz 时约 3.4 秒
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private final int capacity;
+  private final int mask;
+  private final long[] timestamps;
+  private final byte[] types;
+  private final float[] values;
+
+  private volatile long writeIndex = 0; // 只由写入方修改
+  private long readIndex = 0; // 只在读取线程上访问
+  private long droppedCount = 0; // 只在读取线程上访问
+
+  // capacity 向上取整为 2 的幂
+  public ImuRingBuffer(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.capacity = size;
+    this.mask = size - 1;
+    this.timestamps = new long[size];
+    this.types = new byte[size];
+    this.values = new float[size * 3];
+  }
+
+  // 传感器线程调用
+  public void push(int type, long timestampNanos, float x, float y, float z) {
+    long w = writeIndex;
+    int i = (int) (w & mask);
+    timestamps[i] = timestampNanos;
+    types[i] = (byte) type;
+    values[i * 3] = x;
+    values[i * 3 + 1] = y;
+    values[i * 3 + 2] = z;
+    writeIndex = w + 1; // volatile 写，发布这个采样
+  }
+
+  /**
+   * 处理线程调用，按写入顺序取出时间戳不晚于 boundaryNanos 的采样追加到 out，
+   * 遇到第一个更晚的采样时停止，留给下一个历元。返回取出的个数
+   */
+  public int drain(long boundaryNanos, ImuSamples out) {
+    int drained = 0;
+    long w = writeIndex;
+    while (readIndex < w) {
+      if (w - readIndex >= capacity) {
+        // 读取方落后整整一圈，最旧的采样可能正在被覆盖
+        long skip = w - capacity + 1 - readIndex;
+        droppedCount += skip;
+        readIndex += skip;
+        continue;
+      }
+
+      int i = (int) (readIndex & mask);
+      long timestamp = timestamps[i];
+      if (timestamp > boundaryNanos) {
+        break;
+      }
+      int type = types[i];
+      float x = values[i * 3];
+      float y = values[i * 3 + 1];
+      float z = values[i * 3 + 2];
+
+      // 拷贝期间被覆盖的采样丢弃
+      w = writeIndex;
+      if (w - readIndex >= capacity) {
+        continue;
+      }
+      out.add(type, timestamp, x, y, z);
+      readIndex++;
+      drained++;
+    }
+    return drained;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+}
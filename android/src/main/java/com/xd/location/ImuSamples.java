@@ -0,0 +1,41 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+/**
+ * 一个 GNSS 历元内的 IMU 采样，由 ImuRingBuffer.drain 在处理线程上填充
+ *
+ * 采样按写入顺序存放在基本类型数组中，values 每个采样占 3 个 float（x, y, z）。
+ * 数组在处理线程上复用，只在容量不够时扩容。
+ */
+public class ImuSamples {
+  public int count = 0;
+  public long[] timestamps; // SensorEvent.timestamp，elapsedRealtime 纳秒
+  public byte[] types; // Sensor.TYPE_ACCELEROMETER / TYPE_GYROSCOPE / TYPE_MAGNETIC_FIELD
+  public float[] values;
+
+  public ImuSamples(int capacity) {
+    timestamps = new long[capacity];
+    types = new byte[capacity];
+    values = new float[capacity * 3];
+  }
+
+  public void clear() {
+    count = 0;
+  }
+
+  public void add(int type, long timestampNanos, float x, float y, float z) {
+    if (count == timestamps.length) {
+      int capacity = count * 2;
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      types = Arrays.copyOf(types, capacity);
+      values = Arrays.copyOf(values, capacity * 3);
+    }
+    timestamps[count] = timestampNanos;
+    types[count] = (byte) type;
+    values[count * 3] = x;
+    values[count * 3 + 1] = y;
+    values[count * 3 + 2] = z;
+    count++;
+  }
+}
@@ -0,0 +1,587 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+/**
+ * GNSS/INS 松组合滤波器（误差状态扩展卡尔曼滤波）
+ *
+ * 名义状态：本地东北天坐标系下的位置、速度，载体（手机）到东北天的姿态四元数，加速度计和陀螺零偏。
+ * 误差状态 15 维：δp δv δθ δba δbg。每个加速度计采样做一次惯导递推和协方差预测，
+ * GNSS 定位结果到达时做位置（和速度）量测更新。矩阵都是预分配的定长数组，递推过程中不分配对象。
+ *
+ * 本地坐标系原点为初始化时的 GNSS 位置，离开原点 5km 后平移到当前位置。
+ * 忽略地球自转和磁偏角，适用于手机级 MEMS 器件。不依赖 Android 类，可以在 JVM 上测试。
+ */
+public class InsFilter {
+  public static final int N = 15;
+
+  // 与 Sensor.TYPE_* 相同
+  public static final int TYPE_ACCELEROMETER = 1;
+  public static final int TYPE_MAGNETIC_FIELD = 2;
+  public static final int TYPE_GYROSCOPE = 4;
+
+  private static final int POS = 0;
+  private static final int VEL = 3;
+  private static final int ATT = 6;
+  private static final int ACC_BIAS = 9;
+  private static final int GYRO_BIAS = 12;
+
+  private static final double GRAVITY = 9.80665;
+  private static final double WGS84_A = 6378137.0;
+  private static final double WGS84_E2 = 6.69437999014E-3;
+
+  // 噪声参数（手机级 MEMS）
+  private static final double ACC_NOISE = 0.1; // m/s^2/sqrt(Hz)
+  private static final double GYRO_NOISE = 0.005; // rad/s/sqrt(Hz)
+  private static final double ACC_BIAS_WALK = 1E-3; // m/s^3/sqrt(Hz)
+  private static final double GYRO_BIAS_WALK = 1E-4; // rad/s^2/sqrt(Hz)
+
+  private static final double MAX_STEP_SECONDS = 0.1; // 采样间隔超过该值时不递推
+  private static final long MAX_COAST_NANOS = 10000000000L; // 超过 10 秒没有 GNSS 更新时重新初始化
+  private static final double GATE = 16.27; // 3 自由度卡方检验 99.9%
+  private static final int MAX_REJECTED = 5; // 连续拒绝次数超过该值时重新初始化
+  private static final double RECENTER_METERS = 5000;
+
+  private boolean initialized = false;
+
+  // 本地坐标系原点
+  private double originLat;
+  private double originLon;
+  private double originAlt;
+  private double metersPerRadLat;
+  private double metersPerRadLon;
+
+  // 名义状态
+  private final double[] p = new double[3];
+  private final double[] v = new double[3];
+  private final double[] q = new double[4]; // w x y z，载体到东北天
+  private final double[] accBias = new double[3];
+  private final double[] gyroBias = new double[3];
+  private final double[] c = new double[9]; // q 对应的方向余弦矩阵
+
+  // 最近的原始采样
+  private final double[] acc = new double[3];
+  private final double[] gyro = new double[3];
+  private final double[] mag = new double[3];
+  private boolean hasAcc = false;
+  private boolean hasGyro = false;
+  private boolean hasMag = false;
+  private long lastImuNanos = 0;
+  private long lastFixNanos = 0;
+  private int rejectedCount = 0;
+
+  // 协方差和预分配的中间矩阵
+  private final double[] cov = new double[N * N];
+  private final double[] phi = new double[N * N];
+  private final double[] tmp = new double[N * N];
+  private final double[] gain = new double[N * 3];
+  private final double[] rows = new double[3 * N];
+  private final double[] s = new double[9];
+  private final double[] sInv = new double[9];
+  private final double[] innovation = new double[3];
+  private final double[] dx = new double[N];
+  private final double[] an = new double[3];
+  private final double[] fn = new double[3];
+  private final double[] up = new double[3]; // 初始化时载体系中的天、东、北方向
+  private final double[] east = new double[3];
+  private final double[] north = new double[3];
+
+  public boolean isInitialized() {
+    return initialized;
+  }
+
+  public void reset() {
+    initialized = false;
+    rejectedCount = 0;
+  }
+
+  /**
+   * 处理一个 IMU 采样。加速度计采样触发一次递推，此时返回 true，
+   * 调用方可以用 output 取出该时刻的状态
+   */
+  public boolean addImu(int type, long timestampNanos, float x, float y, float z) {
+    switch (type) {
+      case TYPE_GYROSCOPE:
+        gyro[0] = x;
+        gyro[1] = y;
+        gyro[2] = z;
+        hasGyro = true;
+        return false;
+      case TYPE_MAGNETIC_FIELD:
+        mag[0] = x;
+        mag[1] = y;
+        mag[2] = z;
+        hasMag = true;
+        return false;
+      case TYPE_ACCELEROMETER:
+        break;
+      default:
+        return false;
+    }
+
+    acc[0] = x;
+    acc[1] = y;
+    acc[2] = z;
+    hasAcc = true;
+
+    long last = lastImuNanos;
+    lastImuNanos = timestampNanos;
+    if (!initialized) {
+      return false;
+    }
+    if (timestampNanos - lastFixNanos > MAX_COAST_NANOS) {
+      initialized = false;
+      return false;
+    }
+
+    double dt = (timestampNanos - last) * 1E-9;
+    if (last == 0 || dt <= 0 || dt > MAX_STEP_SECONDS) {
+      return true;
+    }
+    propagate(dt);
+    return true;
+  }
+
+  // 依次处理 samples 中的采样，每次递推后把状态追加到 out
+  public void process(ImuSamples samples, FusionTrack out) {
+    for (int i = 0; i < samples.count; i++) {
+      int j = i * 3;
+      if (addImu(samples.types[i], samples.timestamps[i], samples.values[j], samples.values[j + 1],
+          samples.values[j + 2])) {
+        output(samples.timestamps[i], out);
+      }
+    }
+  }
+
+  /**
+   * GNSS 位置量测更新，未初始化时用该位置初始化。
+   * horizontalStd、verticalStd 为位置标准差（米），返回量测是否被采用
+   */
+  public boolean correctPosition(long timestampNanos, double latDeg, double lonDeg, double alt,
+                                 double horizontalStd, double verticalStd) {
+    if (!initialized) {
+      return initialize(timestampNanos, latDeg, lonDeg, alt, horizontalStd, verticalStd);
+    }
+
+    double lat = Math.toRadians(latDeg);
+    double lon = Math.toRadians(lonDeg);
+    innovation[0] = (lon - Math.toRadians(originLon)) * metersPerRadLon - p[0];
+    innovation[1] = (lat - Math.toRadians(originLat)) * metersPerRadLat - p[1];
+    innovation[2] = alt - originAlt - p[2];
+
+    if (!update(POS, horizontalStd * horizontalStd, horizontalStd * horizontalStd, verticalStd * verticalStd)) {
+      if (++rejectedCount > MAX_REJECTED) {
+        initialized = false;
+        return initialize(timestampNanos, latDeg, lonDeg, alt, horizontalStd, verticalStd);
+      }
+      return false;
+    }
+    rejectedCount = 0;
+    lastFixNanos = timestampNanos;
+
+    if (p[0] * p[0] + p[1] * p[1] > RECENTER_METERS * RECENTER_METERS) {
+      recenter();
+    }
+    return true;
+  }
+
+  // GNSS 速度量测更新（东北天，m/s）
+  public boolean correctVelocity(double east, double north, double up, double std) {
+    if (!initialized) {
+      return false;
+    }
+    innovation[0] = east - v[0];
+    innovation[1] = north - v[1];
+    innovation[2] = up - v[2];
+    double r = std * std;
+    return update(VEL, r, r, r);
+  }
+
+  // 把当前状态追加到 out，位置为经纬度（度）和高度，姿态为横滚、俯仰、航向（度）
+  public void output(long timestampNanos, FusionTrack out) {
+    double lat = originLat + Math.toDegrees(p[1] / metersPerRadLat);
+    double lon = originLon + Math.toDegrees(p[0] / metersPerRadLon);
+    // 以手机 y 轴（屏幕上方）为前向，航向从北顺时针
+    double yaw = Math.toDegrees(Math.atan2(c[1], c[4]));
+    if (yaw < 0) {
+      yaw += 360;
+    }
+    double pitch = Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, c[7]))));
+    double roll = Math.toDegrees(Math.atan2(-c[6], c[8]));
+    out.add(timestampNanos, lat, lon, originAlt + p[2], v[0], v[1], v[2], roll, pitch, yaw);
+  }
+
+  private boolean initialize(long timestampNanos, double latDeg, double lonDeg, double alt,
+                             double horizontalStd, double verticalStd) {
+    if (!hasAcc) {
+      return false;
+    }
+    setOrigin(latDeg, lonDeg, alt);
+    Arrays.fill(p, 0);
+    Arrays.fill(v, 0);
+    Arrays.fill(accBias, 0);
+    Arrays.fill(gyroBias, 0);
+    level();
+
+    Arrays.fill(cov, 0);
+    setVariance(POS, horizontalStd * horizontalStd, horizontalStd * horizontalStd, verticalStd * verticalStd);
+    setVariance(VEL, 1, 1, 1);
+    double tilt = Math.toRadians(2);
+    double heading = Math.toRadians(hasMag ? 30 : 180);
+    setVariance(ATT, tilt * tilt, tilt * tilt, heading * heading);
+    setVariance(ACC_BIAS, 0.04, 0.04, 0.04);
+    setVariance(GYRO_BIAS, 1E-4, 1E-4, 1E-4);
+
+    lastFixNanos = timestampNanos;
+    rejectedCount = 0;
+    initialized = true;
+    return true;
+  }
+
+  // 由重力方向（和磁场方向）确定初始姿态，假设初始化时手机近似静止
+  private void level() {
+    normalize(acc, up);
+    if (hasMag) {
+      cross(mag, up, east);
+    }
+    if (!hasMag || norm(east) < 1E-6) {
+      // 没有磁力计时取 y 轴在水平面上的投影为北
+      double d = up[1];
+      north[0] = -d * up[0];
+      north[1] = 1 - d * up[1];
+      north[2] = -d * up[2];
+      if (norm(north) < 1E-6) {
+        north[0] = 0;
+        north[1] = 0;
+        north[2] = 1;
+      }
+      normalize(north, north);
+      cross(north, up, east);
+    }
+    normalize(east, east);
+    cross(up, east, north);
+
+    // 方向余弦矩阵的行依次为东、北、天在载体系中的方向
+    for (int i = 0; i < 3; i++) {
+      c[i] = east[i];
+      c[3 + i] = north[i];
+      c[6 + i] = up[i];
+    }
+    fromDcm();
+  }
+
+  private void setOrigin(double latDeg, double lonDeg, double alt) {
+    originLat = latDeg;
+    originLon = lonDeg;
+    originAlt = alt;
+    double sin = Math.sin(Math.toRadians(latDeg));
+    double w = 1 - WGS84_E2 * sin * sin;
+    double rn = WGS84_A / Math.sqrt(w);
+    double rm = WGS84_A * (1 - WGS84_E2) / (w * Math.sqrt(w));
+    metersPerRadLat = rm + alt;
+    metersPerRadLon = (rn + alt) * Math.cos(Math.toRadians(latDeg));
+  }
+
+  private void recenter() {
+    double lat = originLat + Math.toDegrees(p[1] / metersPerRadLat);
+    double lon = originLon + Math.toDegrees(p[0] / metersPerRadLon);
+    double alt = originAlt + p[2];
+    setOrigin(lat, lon, alt);
+    Arrays.fill(p, 0);
+  }
+
+  // 惯导递推和协方差预测
+  private void propagate(double dt) {
+    double fx = acc[0] - accBias[0];
+    double fy = acc[1] - accBias[1];
+    double fz = acc[2] - accBias[2];
+    fn[0] = c[0] * fx + c[1] * fy + c[2] * fz;
+    fn[1] = c[3] * fx + c[4] * fy + c[5] * fz;
+    fn[2] = c[6] * fx + c[7] * fy + c[8] * fz;
+    an[0] = fn[0];
+    an[1] = fn[1];
+    an[2] = fn[2] - GRAVITY;
+
+    for (int i = 0; i < 3; i++) {
+      p[i] += v[i] * dt + 0.5 * an[i] * dt * dt;
+      v[i] += an[i] * dt;
+    }
+
+    if (hasGyro) {
+      rotate(q, (gyro[0] - gyroBias[0]) * dt, (gyro[1] - gyroBias[1]) * dt, (gyro[2] - gyroBias[2]) * dt, false);
+    }
+
+    // phi = I + F dt
+    Arrays.fill(phi, 0);
+    for (int i = 0; i < N; i++) {
+      phi[i * N + i] = 1;
+    }
+    for (int i = 0; i < 3; i++) {
+      phi[(POS + i) * N + VEL + i] = dt;
+    }
+    // δv' = -[C f]x δθ - C δba
+    phi[(VEL) * N + ATT + 1] = fn[2] * dt;
+    phi[(VEL) * N + ATT + 2] = -fn[1] * dt;
+    phi[(VEL + 1) * N + ATT] = -fn[2] * dt;
+    phi[(VEL + 1) * N + ATT + 2] = fn[0] * dt;
+    phi[(VEL + 2) * N + ATT] = fn[1] * dt;
+    phi[(VEL + 2) * N + ATT + 1] = -fn[0] * dt;
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        phi[(VEL + i) * N + ACC_BIAS + j] = -c[i * 3 + j] * dt;
+        // δθ' = -C δbg
+        phi[(ATT + i) * N + GYRO_BIAS + j] = -c[i * 3 + j] * dt;
+      }
+    }
+
+    // cov = phi cov phi' + Q
+    multiply(phi, cov, tmp);
+    multiplyTransposed(tmp, phi, cov);
+    double qv = ACC_NOISE * ACC_NOISE * dt;
+    double qa = GYRO_NOISE * GYRO_NOISE * dt;
+    double qba = ACC_BIAS_WALK * ACC_BIAS_WALK * dt;
+    double qbg = GYRO_BIAS_WALK * GYRO_BIAS_WALK * dt;
+    for (int i = 0; i < 3; i++) {
+      cov[(VEL + i) * N + VEL + i] += qv;
+      cov[(ATT + i) * N + ATT + i] += qa;
+      cov[(ACC_BIAS + i) * N + ACC_BIAS + i] += qba;
+      cov[(GYRO_BIAS + i) * N + GYRO_BIAS + i] += qbg;
+    }
+  }
+
+  // 量测矩阵为状态 k..k+2 的单位阵，新息在 innovation 中
+  private boolean update(int k, double r0, double r1, double r2) {
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        s[i * 3 + j] = cov[(k + i) * N + k + j];
+      }
+    }
+    s[0] += r0;
+    s[4] += r1;
+    s[8] += r2;
+    if (!invert3(s, sInv)) {
+      return false;
+    }
+
+    // 新息检验，剔除跳变的定位结果
+    double d2 = 0;
+    for (int i = 0; i < 3; i++) {
+      double t = 0;
+      for (int j = 0; j < 3; j++) {
+        t += sInv[i * 3 + j] * innovation[j];
+      }
+      d2 += innovation[i] * t;
+    }
+    if (d2 > GATE) {
+      return false;
+    }
+
+    // K = P H' S^-1
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < 3; j++) {
+        double t = 0;
+        for (int m = 0; m < 3; m++) {
+          t += cov[i * N + k + m] * sInv[m * 3 + j];
+        }
+        gain[i * 3 + j] = t;
+      }
+    }
+
+    // P = P - K H P
+    System.arraycopy(cov, k * N, rows, 0, 3 * N);
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        cov[i * N + j] -= gain[i * 3] * rows[j] + gain[i * 3 + 1] * rows[N + j] + gain[i * 3 + 2] * rows[2 * N + j];
+      }
+    }
+    symmetrize();
+
+    for (int i = 0; i < N; i++) {
+      dx[i] = gain[i * 3] * innovation[0] + gain[i * 3 + 1] * innovation[1] + gain[i * 3 + 2] * innovation[2];
+    }
+    inject();
+    return true;
+  }
+
+  // 把误差状态修正到名义状态
+  private void inject() {
+    for (int i = 0; i < 3; i++) {
+      p[i] += dx[POS + i];
+      v[i] += dx[VEL + i];
+      accBias[i] += dx[ACC_BIAS + i];
+      gyroBias[i] += dx[GYRO_BIAS + i];
+    }
+    rotate(q, dx[ATT], dx[ATT + 1], dx[ATT + 2], true);
+  }
+
+  // 按旋转矢量更新四元数，global 为 true 时在导航系左乘，否则在载体系右乘
+  private void rotate(double[] q, double rx, double ry, double rz, boolean global) {
+    double angle = Math.sqrt(rx * rx + ry * ry + rz * rz);
+    double w;
+    double k;
+    if (angle < 1E-9) {
+      w = 1;
+      k = 0.5;
+    } else {
+      w = Math.cos(angle / 2);
+      k = Math.sin(angle / 2) / angle;
+    }
+    double x = rx * k;
+    double y = ry * k;
+    double z = rz * k;
+
+    double aw;
+    double ax;
+    double ay;
+    double az;
+    double bw;
+    double bx;
+    double by;
+    double bz;
+    if (global) {
+      aw = w; ax = x; ay = y; az = z;
+      bw = q[0]; bx = q[1]; by = q[2]; bz = q[3];
+    } else {
+      aw = q[0]; ax = q[1]; ay = q[2]; az = q[3];
+      bw = w; bx = x; by = y; bz = z;
+    }
+    q[0] = aw * bw - ax * bx - ay * by - az * bz;
+    q[1] = aw * bx + ax * bw + ay * bz - az * by;
+    q[2] = aw * by - ax * bz + ay * bw + az * bx;
+    q[3] = aw * bz + ax * by - ay * bx + az * bw;
+
+    double n = Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+    for (int i = 0; i < 4; i++) {
+      q[i] /= n;
+    }
+    toDcm();
+  }
+
+  private void toDcm() {
+    double w = q[0];
+    double x = q[1];
+    double y = q[2];
+    double z = q[3];
+    c[0] = 1 - 2 * (y * y + z * z);
+    c[1] = 2 * (x * y - w * z);
+    c[2] = 2 * (x * z + w * y);
+    c[3] = 2 * (x * y + w * z);
+    c[4] = 1 - 2 * (x * x + z * z);
+    c[5] = 2 * (y * z - w * x);
+    c[6] = 2 * (x * z - w * y);
+    c[7] = 2 * (y * z + w * x);
+    c[8] = 1 - 2 * (x * x + y * y);
+  }
+
+  private void fromDcm() {
+    double trace = c[0] + c[4] + c[8];
+    if (trace > 0) {
+      double t = Math.sqrt(trace + 1) * 2;
+      q[0] = 0.25 * t;
+      q[1] = (c[7] - c[5]) / t;
+      q[2] = (c[2] - c[6]) / t;
+      q[3] = (c[3] - c[1]) / t;
+    } else if (c[0] > c[4] && c[0] > c[8]) {
+      double t = Math.sqrt(1 + c[0] - c[4] - c[8]) * 2;
+      q[0] = (c[7] - c[5]) / t;
+      q[1] = 0.25 * t;
+      q[2] = (c[1] + c[3]) / t;
+      q[3] = (c[2] + c[6]) / t;
+    } else if (c[4] > c[8]) {
+      double t = Math.sqrt(1 + c[4] - c[0] - c[8]) * 2;
+      q[0] = (c[2] - c[6]) / t;
+      q[1] = (c[1] + c[3]) / t;
+      q[2] = 0.25 * t;
+      q[3] = (c[5] + c[7]) / t;
+    } else {
+      double t = Math.sqrt(1 + c[8] - c[0] - c[4]) * 2;
+      q[0] = (c[3] - c[1]) / t;
+      q[1] = (c[2] + c[6]) / t;
+      q[2] = (c[5] + c[7]) / t;
+      q[3] = 0.25 * t;
+    }
+    toDcm();
+  }
+
+  private void setVariance(int k, double a, double b, double d) {
+    cov[k * N + k] = a;
+    cov[(k + 1) * N + k + 1] = b;
+    cov[(k + 2) * N + k + 2] = d;
+  }
+
+  private void symmetrize() {
+    for (int i = 0; i < N; i++) {
+      for (int j = i + 1; j < N; j++) {
+        double t = 0.5 * (cov[i * N + j] + cov[j * N + i]);
+        cov[i * N + j] = t;
+        cov[j * N + i] = t;
+      }
+    }
+  }
+
+  // out = a b
+  private static void multiply(double[] a, double[] b, double[] out) {
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        double t = 0;
+        for (int k = 0; k < N; k++) {
+          t += a[i * N + k] * b[k * N + j];
+        }
+        out[i * N + j] = t;
+      }
+    }
+  }
+
+  // out = a b'
+  private static void multiplyTransposed(double[] a, double[] b, double[] out) {
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        double t = 0;
+        for (int k = 0; k < N; k++) {
+          t += a[i * N + k] * b[j * N + k];
+        }
+        out[i * N + j] = t;
+      }
+    }
+  }
+
+  private static boolean invert3(double[] m, double[] out) {
+    double a = m[4] * m[8] - m[5] * m[7];
+    double b = m[5] * m[6] - m[3] * m[8];
+    double d = m[3] * m[7] - m[4] * m[6];
+    double det = m[0] * a + m[1] * b + m[2] * d;
+    if (Math.abs(det) < 1E-30) {
+      return false;
+    }
+    out[0] = a / det;
+    out[1] = (m[2] * m[7] - m[1] * m[8]) / det;
+    out[2] = (m[1] * m[5] - m[2] * m[4]) / det;
+    out[3] = b / det;
+    out[4] = (m[0] * m[8] - m[2] * m[6]) / det;
+    out[5] = (m[2] * m[3] - m[0] * m[5]) / det;
+    out[6] = d / det;
+    out[7] = (m[1] * m[6] - m[0] * m[7]) / det;
+    out[8] = (m[0] * m[4] - m[1] * m[3]) / det;
+    return true;
+  }
+
+  private static double norm(double[] a) {
+    return Math.sqrt(a[0] * a[0] + a[1] * a[1] + a[2] * a[2]);
+  }
+
+  private static void normalize(double[] a, double[] out) {
+    double n = norm(a);
+    out[0] = a[0] / n;
+    out[1] = a[1] / n;
+    out[2] = a[2] / n;
+  }
+
+  private static void cross(double[] a, double[] b, double[] out) {
+    double x = a[1] * b[2] - a[2] * b[1];
+    double y = a[2] * b[0] - a[0] * b[2];
+    double z = a[0] * b[1] - a[1] * b[0];
+    out[0] = x;
+    out[1] = y;
+    out[2] = z;
+  }
+}
@@ -0,0 +1,89 @@
+package com.xd.location;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对数-线性分桶的延迟直方图（HdrHistogram 的简化），记录纳秒值
+ *
+ * 0..15 每个值一个桶，之后每个 2 的幂区间再等分为 16 个桶，相对误差不超过 1/16，
+ * 最大可记录约 2^41 ns（36 分钟，MAX_SHIFT 为 36），超出的记入最后一个桶。
+ * record 不分配对象、不加锁，只能在一个线程上调用；其他线程读取的是近似的快照。
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKETS = 16;
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int MAX_SHIFT = 36;
+  private static final int BUCKETS = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKETS];
+  private volatile long count = 0;
+  private long sum = 0;
+  private long max = 0;
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      return;
+    }
+    counts[index(nanos)]++;
+    sum += nanos;
+    if (nanos > max) {
+      max = nanos;
+    }
+    count = count + 1;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  // 百分位数对应的桶的上界，纳秒，没有记录时为 0
+  public long percentile(double percentile) {
+    long total = count;
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max);
+      }
+    }
+    return max;
+  }
+
+  // count、mean、p50、p90、p99、max，时间单位为微秒
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new HashMap<String, Object>();
+    long n = count;
+    map.put("count", n);
+    map.put("mean_us", n > 0 ? sum / n / 1000.0 : 0.0);
+    map.put("p50_us", percentile(50) / 1000.0);
+    map.put("p90_us", percentile(90) / 1000.0);
+    map.put("p99_us", percentile(99) / 1000.0);
+    map.put("max_us", max / 1000.0);
+    return map;
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    if (shift > MAX_SHIFT) {
+      return BUCKETS - 1;
+    }
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lower + (1L << shift) - 1;
+  }
+}
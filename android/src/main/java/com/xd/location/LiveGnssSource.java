@@ -0,0 +1,241 @@
+package com.xd.location;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.location.GnssMeasurementsEvent;
+import android.location.GnssNavigationMessage;
+import android.location.GnssStatus;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Handler;
+
+/**
+ * 实时数据：LocationManager 的 GNSS 观测值、卫星状态、导航电文回调和 GPS 定位结果推送，
+ * 以及 SensorHandler 采集的传感器数据
+ *
+ * 原始观测值和导航电文只在 GnssCapabilityProbe 没有确认不支持时注册，
+ * 注册后状态回调报告不支持时在处理线程上注销。
+ * 采集档位见 SamplingScheduler：position 只保留卫星状态、按 positionIntervalMillis 的定位结果和传感器，
+ * paused 注销所有 GNSS 回调，传感器只等待显著运动。
+ */
+public class LiveGnssSource implements GnssSource {
+  private final LocationManager locationManager;
+  private final SensorHandler sensorHandler;
+  private final long locationIntervalMillis;
+  private final long positionIntervalMillis;
+  private final int imuRateHz;
+  private final int orientationMode;
+  private final GnssCapabilityProbe probe;
+
+  private static final String[] ORIENTATION_NAMES = {"magnetic", "rotation_vector", "fused"};
+
+  private GnssSink sink;
+  private Handler handler;
+  private volatile int profile = SamplingScheduler.PROFILE_FULL;
+  private boolean statusActive = false;
+  private volatile boolean measurementsActive = false;
+  private volatile boolean navigationActive = false;
+
+  private final GnssMeasurementsEvent.Callback measurementsCallback = new GnssMeasurementsEvent.Callback() {
+    @Override
+    public void onGnssMeasurementsReceived(GnssMeasurementsEvent event) {
+      sink.onMeasurements(event.getClock(), event.getMeasurements());
+    }
+
+    @Override
+    public void onStatusChanged(int status) {
+      if (!probe.onMeasurementStatus(status)) {
+        stopMeasurements();
+        // 没有原始观测值时导航电文也不需要
+        stopNavigation();
+      }
+    }
+  };
+
+  private final GnssStatus.Callback statusCallback = new GnssStatus.Callback() {
+    @Override
+    public void onSatelliteStatusChanged(GnssStatus status) {
+      sink.onSatelliteStatus(status);
+    }
+  };
+
+  private final GnssNavigationMessage.Callback navigationCallback = new GnssNavigationMessage.Callback() {
+    @Override
+    public void onGnssNavigationMessageReceived(GnssNavigationMessage event) {
+      sink.onNavigationMessage(event.getType(), event.getSvid(), event.getStatus(), event.getMessageId(),
+          event.getSubmessageId(), event.getData());
+    }
+
+    @Override
+    public void onStatusChanged(int status) {
+      if (!probe.onNavigationStatus(status)) {
+        stopNavigation();
+      }
+    }
+  };
+
+  private final LocationListener locationListener = new LocationListener() {
+    @Override
+    public void onLocationChanged(Location location) {
+      sink.onLocation(location);
+    }
+
+    @Override
+    public void onStatusChanged(String provider, int status, Bundle extras) {
+
+    }
+
+    @Override
+    public void onProviderEnabled(String provider) {
+
+    }
+
+    @Override
+    public void onProviderDisabled(String provider) {
+
+    }
+  };
+
+  public LiveGnssSource(LocationManager locationManager, SensorHandler sensorHandler, GnssCapabilityProbe probe,
+                        long locationIntervalMillis, long positionIntervalMillis, int imuRateHz,
+                        int orientationMode) {
+    this.locationManager = locationManager;
+    this.sensorHandler = sensorHandler;
+    this.probe = probe;
+    this.locationIntervalMillis = locationIntervalMillis;
+    this.positionIntervalMillis = positionIntervalMillis;
+    this.imuRateHz = imuRateHz;
+    this.orientationMode = orientationMode;
+  }
+
+  @Override
+  public synchronized void start(final GnssSink sink, Handler handler) {
+    this.sink = sink;
+    this.handler = handler;
+    probe.probe(locationManager);
+
+    // 定位结果在处理线程上推送，历元处理时不再调用 getLastKnownLocation。
+    // 第一次推送前先用上一次的定位结果
+    final Location last = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
+    if (last != null) {
+      handler.post(new Runnable() {
+        @Override
+        public void run() {
+          sink.onLocation(last);
+        }
+      });
+    }
+    apply(SamplingScheduler.PROFILE_FULL);
+  }
+
+  // 与 stop 互斥，停止后不再重新注册
+  @Override
+  public synchronized void setProfile(int profile) {
+    if (handler == null || profile == this.profile) {
+      return;
+    }
+    apply(profile);
+  }
+
+  private void apply(int profile) {
+    this.profile = profile;
+    boolean full = profile == SamplingScheduler.PROFILE_FULL;
+    boolean paused = profile == SamplingScheduler.PROFILE_PAUSED;
+
+    if (full) {
+      if (!measurementsActive && probe.shouldRegisterMeasurements()) {
+        measurementsActive = locationManager.registerGnssMeasurementsCallback(measurementsCallback, handler);
+      }
+      if (!navigationActive && probe.shouldRegisterNavigation()) {
+        navigationActive = locationManager.registerGnssNavigationMessageCallback(navigationCallback, handler);
+      }
+    } else {
+      stopMeasurements();
+      stopNavigation();
+    }
+
+    if (paused) {
+      stopStatus();
+      locationManager.removeUpdates(locationListener);
+    } else {
+      if (!statusActive) {
+        statusActive = locationManager.registerGnssStatusCallback(statusCallback, handler);
+      }
+      // 同一个 listener 重新请求时替换原来的间隔
+      locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER,
+          full ? locationIntervalMillis : positionIntervalMillis, 0, locationListener, handler.getLooper());
+    }
+
+    if (sensorHandler != null) {
+      if (!paused) {
+        sensorHandler.start(orientationMode);
+      } else if (!sensorHandler.sleepUntilMotion()) {
+        // 没有显著运动传感器时保留加速度计检测运动
+        sensorHandler.start(orientationMode);
+      }
+      if (full && imuRateHz > 0) {
+        sensorHandler.startImu(imuRateHz);
+      } else {
+        sensorHandler.stopImu();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    handler = null;
+    stopMeasurements();
+    stopNavigation();
+    stopStatus();
+    locationManager.removeUpdates(locationListener);
+    if (sensorHandler != null) {
+      sensorHandler.stop();
+    }
+  }
+
+  @Override
+  public SensorSource getSensorSource() {
+    return sensorHandler;
+  }
+
+  @Override
+  public Map<String, Object> getConfiguration() {
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("source", "live");
+    map.put("profile", SamplingScheduler.PROFILE_NAMES[profile]);
+    map.put("measurements", measurementsActive);
+    map.put("navigation_messages", navigationActive);
+    map.put("sensors", sensorHandler != null);
+    map.put("imu_rate_hz", sensorHandler != null ? imuRateHz : 0);
+    if (sensorHandler != null) {
+      map.put("orientation", ORIENTATION_NAMES[sensorHandler.getOrientationMode()]);
+    }
+    map.put("location_interval_ms",
+        profile == SamplingScheduler.PROFILE_FULL ? locationIntervalMillis : positionIntervalMillis);
+    return map;
+  }
+
+  private void stopMeasurements() {
+    if (measurementsActive) {
+      measurementsActive = false;
+      locationManager.unregisterGnssMeasurementsCallback(measurementsCallback);
+    }
+  }
+
+  private void stopStatus() {
+    if (statusActive) {
+      statusActive = false;
+      locationManager.unregisterGnssStatusCallback(statusCallback);
+    }
+  }
+
+  private void stopNavigation() {
+    if (navigationActive) {
+      navigationActive = false;
+      locationManager.unregisterGnssNavigationMessageCallback(navigationCallback);
+    }
+  }
+}
@@ -2,13 +2,9 @@ package com.xd.location;
 
 import androidx.annotation.NonNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Locale;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
@@ -19,28 +15,23 @@ import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.EventChannel;
 
-import android.location.LocationManager;
-import android.location.Location;
-import android.location.GnssMeasurementsEvent;
-import android.location.GnssClock;
-import android.location.GnssMeasurement;
-import android.location.GnssStatus;
-import android.location.GnssNavigationMessage;
-import android.content.Context;
 import android.app.Activity;
-import android.util.Log;
-import android.os.Looper;
-import android.os.Handler;
-import android.os.Message;
+import android.app.Application;
+import android.os.Bundle;
 
 
-/** LocationPlugin */
+/**
+ * LocationPlugin
+ *
+ * 方法调用转发给 GnssEngine，事件流挂接到引擎上。Flutter 引擎分离时只断开自己的事件流，
+ * 引擎以前台服务运行时继续采集，否则停止采集并注销全部回调。
+ */
 public class LocationPlugin implements FlutterPlugin, ActivityAware, MethodCallHandler {
   private String METHOD_CHANNEL = "location";
 
   private String EVENT_CHANNEL = "com.xd.location/location";
 
-  private Handler uiThreadHandler = new Handler(Looper.getMainLooper());
+  private GnssEngine engine;
 
   private Activity mActivity;
   /// The MethodChannel that will the communication between Flutter and native Android
@@ -49,205 +40,55 @@ public class LocationPlugin implements FlutterPlugin, ActivityAware, MethodCallH
   /// when the Flutter Engine is detached from the Activity
   private MethodChannel mChannel;
 
-  // private Handler messageHandler = new Handler() {
-  //   @Override
-  //   public void handleMessage(Message msg) {
-  //     LocationPlugin.this.sendMessage();
-  //   }
-  // };
-
-  // private TimerTask task = new TimerTask() {
-  //   @Override
-  //   public void run() {
-  //     Message msg = new Message();
-  //     messageHandler.sendMessage(msg);
-  //   }
-  // };
-
-  private Map<String, Object> gnssData = new HashMap<String, Object>();
-
-  // private final Timer timer = new Timer(); 
-
-  private Map<String, String> navigationData = new HashMap<String, String>();
-
   private EventChannel eChannel;
-  private EventChannel.EventSink eventSink;
-
-  private LocationManager mLocationManager;
-
-  private GnssLocationListener locationListener = new GnssLocationListener();
+  private EventChannel.EventSink eventSink; // 本 Flutter 引擎挂接的事件流
 
-  private SensorHandler sensorHandler;
-
-  private GnssNavigationMessage.Callback gnssNavigationCallback = new GnssNavigationMessage.Callback() {
-    @Override
-    public void onGnssNavigationMessageReceived(GnssNavigationMessage event) {
-      LocationPlugin.this.onGnssNavigationMessageReceived(event);
-    }
-  };
-
-  private GnssMeasurementsEvent.Callback gnssMeasurementEventListener = new GnssMeasurementsEvent.Callback() {
+  // 应用切到后台时切换采集档位
+  private final Application.ActivityLifecycleCallbacks lifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
     @Override
-    public void onGnssMeasurementsReceived(GnssMeasurementsEvent eventArgs) {
-      LocationPlugin.this.onGnssMeasurementsReceived(eventArgs);
+    public void onActivityStarted(@NonNull Activity activity) {
+      if (activity == mActivity) {
+        engine.setForeground(true);
+      }
     }
 
     @Override
-    public void onStatusChanged(int status) {
-        LocationPlugin.this.onStatusChanged(status);
+    public void onActivityStopped(@NonNull Activity activity) {
+      if (activity == mActivity) {
+        engine.setForeground(false);
+      }
     }
-  };
 
-  private GnssStatus gnssStatus; // GnssStatus数据
-
-  private GnssStatus.Callback gnssStatusCallback = new GnssStatus.Callback() {
     @Override
-    public void onSatelliteStatusChanged(GnssStatus status) {
-      LocationPlugin.this.gnssStatus = status;
-    }
+    public void onActivityCreated(@NonNull Activity activity, Bundle savedInstanceState) {
 
-    @Override
-    public void onStarted() {
-      // Log.i("location", "gnss started");
     }
 
     @Override
-    public void onStopped() {
-      // Log.i("location", "gnss stopped");
-    }
-  };
+    public void onActivityResumed(@NonNull Activity activity) {
 
-  public void onGnssNavigationMessageReceived(GnssNavigationMessage event) {
-    if (event.getStatus() != GnssNavigationMessage.STATUS_UNKNOWN) {
-      navigationData.put(getNavigationMessageType(event.getType(), event.getSvid()), new String(event.getData()));
     }
-  }
 
-  public String getNavigationMessageType(int stype, int svid) {
-    Locale locale = Locale.getDefault();
-    switch (stype) {
-      case GnssNavigationMessage.TYPE_GPS_L1CA:
-      case GnssNavigationMessage.TYPE_GPS_L2CNAV:
-      case GnssNavigationMessage.TYPE_GPS_L5CNAV:
-      case GnssNavigationMessage.TYPE_GPS_CNAV2:
-        return "G#" + String.format(locale, "%02d", svid);
-      case GnssNavigationMessage.TYPE_GLO_L1CA:
-        return "R#" + String.format(locale, "%02d", svid);
-      case GnssNavigationMessage.TYPE_BDS_D1:
-      case GnssNavigationMessage.TYPE_BDS_D2:
-      case GnssNavigationMessage.TYPE_BDS_CNAV1:
-        return "C#" + String.format(locale, "%02d", svid);
-      case GnssNavigationMessage.TYPE_GAL_I:
-      case GnssNavigationMessage.TYPE_GAL_F:
-        return "E#" + String.format(locale, "%02d", svid);
-      case GnssNavigationMessage.TYPE_QZS_L1CA:
-        return "J#" + String.format(locale, "%02d", svid);
-      default:
-        return "U#" + String.format(locale, "%02d", svid);
-    }
-  }
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
 
-  public void onGnssMeasurementsReceived(GnssMeasurementsEvent event) {
-    Map<String, Object> data = new HashMap<String, Object>();
-    GnssClock gnssClock = event.getClock();
-    data.put("rx_clock", formatClock(gnssClock));
-
-    Location loc = mLocationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
-    if (loc != null) {
-      data.put("accuracy", loc.getAccuracy());
-      data.put("longitude", loc.getLongitude());
-      data.put("latitude", loc.getLatitude());
-      data.put("speed", loc.getSpeed());
-      data.put("altitude", loc.getAltitude());
-      data.put("speed_accuracy", loc.getSpeedAccuracyMetersPerSecond());
     }
 
-    data.put("satellite_count", 0);
-    if (gnssStatus != null) {
-      data.put("satellite_count", gnssStatus.getSatelliteCount());
-
-      List<Map<String, Object>> satelliteData = new ArrayList<Map<String, Object>>();
-      for (GnssMeasurement measurement : event.getMeasurements()) { // 遍历所有的卫星数据
-        GnssData gnssdata = new GnssData(measurement, gnssClock, gnssStatus);
-        Map<String, Object> temp = new HashMap<String, Object>();
-        temp.put("svid", gnssdata.getPRN());
-        temp.put("ttx", gnssdata.getTTx());
-        temp.put("trx", gnssdata.getTRx());
-        temp.put("azimuth_degrees", gnssdata.getAzimuthDegrees());
-        temp.put("elevation_degrees", gnssdata.getElevationDegrees());
-        temp.put("cn0_db", gnssdata.getCn0DbHz());
-        temp.put("received_svtime_uncertainty_nanos", gnssdata.getReceivedSvTimeUncertaintyNanos());
-        temp.put("pseudorange", gnssdata.getPseudorange());
-        temp.put("time_offset_nanos", gnssdata.getTimeOffsetNanos());
-        // temp.put("snr_in_db", gnssdata.getSnrInDb());
-        // temp.put("satellite_inter_signal_bias_nanos", gnssdata.getSatelliteInterSignalBiasNanos());
-        temp.put("received_sv_time_uncertainty_nanos", gnssdata.getReceivedSvTimeUncertaintyNanos());
-        temp.put("received_sv_time_nanos", gnssdata.getReceivedSvTimeNanos());
-        temp.put("pseudorange_rate_uncertainty_meters_per_second", gnssdata.getPseudorangeRateUncertaintyMetersPerSecond());
-        temp.put("pseudorange_rate_meters_per_second", gnssdata.getPseudorangeRateMetersPerSecond());
-        temp.put("multipath_indicator", gnssdata.getMultipathIndicator());
-        // temp.put("full_inter_signal_bias_nanos", gnssdata.getFullInterSignalBiasNanos());
-        temp.put("constellation_type", gnssdata.getConstellationType());
-        temp.put("automatic_gain_control_levelDb", gnssdata.getAutomaticGainControlLevelDb());
-        temp.put("acumulated_delta_range_uncertainty_meters", gnssdata.getAccumulatedDeltaRangeUncertaintyMeters());
-        temp.put("accumulated_delta_range_state", gnssdata.getAccumulatedDeltaRangeState());
-        temp.put("accumulated_delta_range_meters", gnssdata.getAccumulatedDeltaRangeMeters());
-        temp.put("carrier_frequency", gnssdata.getCarrierFrequencyHz());
-        // temp.put("base_cn0_db", gnssdata.getBasebandCn0DbHz());
-        // temp.put("navigation", navigationData.get(gnssdata.getPRN()));
-
-        satelliteData.add(temp);
-      }
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
 
-      data.put("satellites", satelliteData);
     }
 
-    gnssData = data;
-
-    LocationPlugin.this.sendMessage();
-  }
-
-  public void sendMessage() {
-    gnssData.put("sensor", sensorHandler.getSensorData());
-    uiThreadHandler.post(() -> eventSink.success(gnssData));
-  }
-
-  public Map<String, Object> formatClock(GnssClock gnssClock) {
-    Map<String, Object> clock = new HashMap<String, Object>();
-    clock.put("leap_second", gnssClock.getLeapSecond());
-    clock.put("time_nanos", gnssClock.getTimeNanos());
-    if (gnssClock.hasTimeUncertaintyNanos()) {
-      clock.put("time_uncertaint_nanos", gnssClock.getTimeUncertaintyNanos());
-    }
-    if (gnssClock.hasFullBiasNanos()) {
-      clock.put("full_bias_nanos", gnssClock.getFullBiasNanos());
-    }
-    if (gnssClock.hasBiasNanos()) {
-      clock.put("bias_nanos", gnssClock.getBiasNanos());
-    }
-    if (gnssClock.hasBiasUncertaintyNanos()) {
-      clock.put("bias_uncertaint_nanos", gnssClock.getBiasUncertaintyNanos());
-    }
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
 
-    if (gnssClock.hasDriftNanosPerSecond()) {
-      clock.put("drift_nanos_second", gnssClock.getDriftNanosPerSecond());
-    }
-    if (gnssClock.hasDriftUncertaintyNanosPerSecond()) {
-      clock.put("bias_uncertaint_nanos", gnssClock.getDriftUncertaintyNanosPerSecond());
     }
-    
-    clock.put("hardware_clock_discontinuity_count", gnssClock.getHardwareClockDiscontinuityCount());
-
-    return clock;
-  }
-
-  // 卫星监测状态变化回调
-  public void onStatusChanged(int status) {
-    // TODO 处理状态数据
-  }
+  };
 
   @Override
   public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
+    engine = GnssEngine.getInstance(flutterPluginBinding.getApplicationContext());
+
     mChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), METHOD_CHANNEL);
     mChannel.setMethodCallHandler(this);
 
@@ -255,37 +96,50 @@ public class LocationPlugin implements FlutterPlugin, ActivityAware, MethodCallH
     eChannel.setStreamHandler(new EventChannel.StreamHandler() {
       @Override
       public void onListen(Object obj, EventChannel.EventSink eSink) {
-        LocationPlugin.this.eventSink = eSink;
+        eventSink = eSink;
+        engine.setEventSink(eSink);
       }
 
       @Override
       public void onCancel(Object obj) {
-        LocationPlugin.this.eventSink = null;
+        engine.removeEventSink(eventSink);
+        eventSink = null;
       }
     });
   }
-  
+
   @Override
   public void onAttachedToActivity(@NonNull final ActivityPluginBinding binding) {
-    mActivity = binding.getActivity();
-    mLocationManager = (LocationManager) mActivity.getSystemService(Context.LOCATION_SERVICE);
-
-    sensorHandler = new SensorHandler(mActivity);
+    attachActivity(binding.getActivity());
   }
 
   @Override
   public void onDetachedFromActivityForConfigChanges() {
-
+    detachActivity();
   }
 
   @Override
   public void onReattachedToActivityForConfigChanges(@NonNull ActivityPluginBinding binding) {
-
+    attachActivity(binding.getActivity());
   }
 
   @Override
   public void onDetachedFromActivity() {
+    detachActivity();
+    engine.setForeground(false);
+  }
+
+  private void attachActivity(Activity activity) {
+    mActivity = activity;
+    mActivity.getApplication().registerActivityLifecycleCallbacks(lifecycleCallbacks);
+    engine.setForeground(true);
+  }
 
+  private void detachActivity() {
+    if (mActivity != null) {
+      mActivity.getApplication().unregisterActivityLifecycleCallbacks(lifecycleCallbacks);
+      mActivity = null;
+    }
   }
 
   @Override
@@ -295,40 +149,108 @@ public class LocationPlugin implements FlutterPlugin, ActivityAware, MethodCallH
     } else if (call.method.equals("getEventMessage")) {
       result.success("Message: send ok!");
     } else if (call.method.equals("open")) {
-      openLocationListen();
+      engine.open(new SubscriptionSpec(call.<Map<String, Object>>arguments()));
       result.success(true);
     } else if (call.method.equals("close")) {
-      closeLocationListen();
+      engine.close();
       result.success(true);
+    } else if (call.method.equals("startRecording")) {
+      try {
+        engine.startRecording((String) call.argument("path"));
+        result.success(true);
+      } catch (IOException e) {
+        result.error("RECORDING_FAILED", e.getMessage(), null);
+      }
+    } else if (call.method.equals("stopRecording")) {
+      engine.stopRecording();
+      result.success(true);
+    } else if (call.method.equals("startLog")) {
+      try {
+        engine.startLog((String) call.argument("path"));
+        result.success(true);
+      } catch (IOException e) {
+        result.error("RECORDING_FAILED", e.getMessage(), null);
+      }
+    } else if (call.method.equals("stopLog")) {
+      engine.stopLog();
+      result.success(true);
+    } else if (call.method.equals("drain")) {
+      result.success(engine.drain());
+    } else if (call.method.equals("getBatchStats")) {
+      result.success(engine.getBatchStats());
+    } else if (call.method.equals("getCapabilities")) {
+      result.success(engine.getCapabilities());
+    } else if (call.method.equals("getSchedulerStats")) {
+      result.success(engine.getSchedulerStats());
+    } else if (call.method.equals("getMetrics")) {
+      result.success(engine.getMetrics());
+    } else if (call.method.equals("openStore")) {
+      engine.openStore((String) call.argument("path"), longArgument(call, "segment_bytes", 8L << 20),
+          longArgument(call, "max_bytes", 256L << 20), longArgument(call, "max_age_ms", 86400000L),
+          callback(result));
+    } else if (call.method.equals("closeStore")) {
+      engine.closeStore();
+      result.success(true);
+    } else if (call.method.equals("queryEpochs")) {
+      long from = longArgument(call, "from", Long.MIN_VALUE);
+      engine.queryEpochs(from, longArgument(call, "to", Long.MAX_VALUE),
+          fieldMask(call.<List<String>>argument("fields")), (int) longArgument(call, "limit", 256),
+          (int) longArgument(call, "segment", -1), longArgument(call, "time", from), callback(result));
+    } else if (call.method.equals("compactStore")) {
+      engine.compactStore(callback(result));
+    } else if (call.method.equals("getStoreStats")) {
+      result.success(engine.getStoreStats());
+    } else if (call.method.equals("getState")) {
+      result.success(engine.getState());
     } else {
       result.notImplemented();
     }
   }
 
-  // 开启定位数据监测
-  public void openLocationListen() {
-    mLocationManager.registerGnssMeasurementsCallback(gnssMeasurementEventListener, null);
-    mLocationManager.registerGnssStatusCallback(gnssStatusCallback, null);
-    mLocationManager.registerGnssNavigationMessageCallback(gnssNavigationCallback, null);
-
-    mLocationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 30000, 0, locationListener);
+  private static GnssEngine.Callback callback(final Result result) {
+    return new GnssEngine.Callback() {
+      @Override
+      public void onResult(Object value) {
+        result.success(value);
+      }
 
-    sensorHandler.start();
-    // timer.schedule(task, 100, 100);
+      @Override
+      public void onError(String code, String message) {
+        result.error(code, message, null);
+      }
+    };
   }
 
-  // 关闭定位数据监测
-  public void closeLocationListen() {
-    mLocationManager.unregisterGnssMeasurementsCallback(gnssMeasurementEventListener);
-    mLocationManager.unregisterGnssStatusCallback(gnssStatusCallback);
-    mLocationManager.unregisterGnssNavigationMessageCallback(gnssNavigationCallback);
-    // timer.cancel();
+  // Dart 的 int 按大小编码为 Integer 或 Long
+  private static long longArgument(MethodCall call, String key, long defaultValue) {
+    Object value = call.argument(key);
+    return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+  }
 
-    sensorHandler.stop();
+  // 观测值字段名转为字段掩码，没有指定时为全部字段
+  private static int fieldMask(List<String> fields) {
+    if (fields == null) {
+      return EpochEncoder.ALL_FIELDS;
+    }
+    int mask = 0;
+    for (String name : fields) {
+      int field = EpochEncoder.fieldOf(name);
+      if (field >= 0) {
+        mask |= 1 << field;
+      }
+    }
+    return mask;
   }
 
   @Override
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
     mChannel.setMethodCallHandler(null);
+    eChannel.setStreamHandler(null);
+    engine.removeEventSink(eventSink);
+    eventSink = null;
+    // 前台服务继续采集，等待新的 Flutter 引擎挂接
+    if (!engine.isForegroundService()) {
+      engine.release();
+    }
   }
 }
@@ -0,0 +1,468 @@
+package com.xd.location;
+
+import android.location.GnssNavigationMessage;
+
+/**
+ * 导航电文解码，把 GnssNavigationMessage 的原始比特组装成星历写入 EphemerisCache
+ *
+ * 支持：
+ *   GPS / QZSS L1 C/A LNAV  子帧 1~3，按 IODC/IODE 配对
+ *   Galileo I/NAV            字 1~5，按 IODnav 配对
+ *   北斗 D1（MEO/IGSO）       子帧 1~3，按同一主帧的 SOW 配对
+ * 每颗卫星的中间状态放在固定数组里，解码过程中不分配对象，只在处理线程上调用。
+ */
+public class NavigationDecoder {
+  private static final double PI = 3.1415926535898; // ICD 规定的圆周率
+  private static final double P2_5 = 0.03125;
+  private static final double P2_6 = 0.015625;
+  private static final double P2_19 = 1.9073486328125E-6;
+  private static final double P2_29 = 1.862645149230957E-9;
+  private static final double P2_31 = 4.656612873077393E-10;
+  private static final double P2_32 = 2.3283064365386963E-10;
+  private static final double P2_33 = 1.1641532182693481E-10;
+  private static final double P2_34 = 5.820766091346741E-11;
+  private static final double P2_43 = 1.1368683772161603E-13;
+  private static final double P2_46 = 1.4210854715202004E-14;
+  private static final double P2_50 = 8.881784197001252E-16;
+  private static final double P2_55 = 2.7755575615628914E-17;
+  private static final double P2_59 = 1.734723475976807E-18;
+  private static final double P2_66 = 1.3552527156068805E-20;
+
+  private static final int GPS_PREAMBLE = 0x8B;
+  private static final int BDS_PREAMBLE = 0x712;
+  private static final int GPS_WEEK_ROLLOVER = 2048; // 2019 年 4 月以后的 10 位周数
+  private static final int[] HAMMING = {
+      0xBB1F3480, 0x5D8F9A40, 0xAEC7CD00, 0x5763E680, 0x6BB1F340, 0x8B7A89C0
+  };
+  private static final int CRC24Q = 0x1864CFB;
+
+  private static final int SATELLITES = 8 * 64;
+
+  private final EphemerisCache cache;
+
+  // 每颗卫星正在组装的星历和已收到的子帧
+  private final Ephemeris[] pending = new Ephemeris[SATELLITES];
+  private final int[] received = new int[SATELLITES]; // 第 n 位表示收到子帧（字）n
+  private final int[] issue = new int[SATELLITES * 4]; // 各子帧的 IODE 或 SOW，下标 1..3
+
+  private final byte[] bits = new byte[32]; // 去掉校验位后的数据比特
+
+  private long decodedCount = 0; // 完整解出的星历组数
+  private long rejectedCount = 0; // 校验失败的电文数
+
+  public NavigationDecoder(EphemerisCache cache) {
+    this.cache = cache;
+  }
+
+  public long getDecodedCount() {
+    return decodedCount;
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  /**
+   * 解码一条导航电文，组装出完整的星历时写入缓存并返回 true
+   */
+  public boolean decode(int type, int svid, int status, byte[] data) {
+    if (data == null || svid <= 0) {
+      return false;
+    }
+    // 芯片已经校验过时，自己的校验失败也接受芯片给出的比特
+    boolean trusted = status == GnssNavigationMessage.STATUS_PARITY_PASSED
+        || status == GnssNavigationMessage.STATUS_PARITY_REBUILT;
+
+    switch (type) {
+      case GnssNavigationMessage.TYPE_GPS_L1CA:
+        return decodeLnav(Ephemeris.GPS, svid, data, trusted);
+      case GnssNavigationMessage.TYPE_QZS_L1CA:
+        return decodeLnav(Ephemeris.QZSS, svid, data, trusted);
+      case GnssNavigationMessage.TYPE_GAL_I:
+        return decodeInav(svid, data);
+      case GnssNavigationMessage.TYPE_BDS_D1:
+        return decodeD1(svid, data);
+      default:
+        return false;
+    }
+  }
+
+  private int slot(int constellationType, int svid) {
+    int index = ((constellationType & 7) << 6) | (svid & 63);
+    if (pending[index] == null || pending[index].svid != svid || pending[index].constellationType != constellationType) {
+      if (pending[index] == null) {
+        pending[index] = new Ephemeris();
+      }
+      pending[index].constellationType = constellationType;
+      pending[index].svid = svid;
+      received[index] = 0;
+    }
+    return index;
+  }
+
+  private boolean complete(int index) {
+    cache.put(pending[index]);
+    received[index] = 0;
+    decodedCount++;
+    return true;
+  }
+
+  // ---- GPS / QZSS LNAV ----
+
+  // 一个子帧 10 个字，每个字占 4 字节的低 30 位
+  private boolean decodeLnav(int constellationType, int svid, byte[] data, boolean trusted) {
+    if (data.length < 40) {
+      return false;
+    }
+
+    // 整个子帧极性反转时前导码为 0x74
+    int invert = (word(data, 0) >>> 22) == (~GPS_PREAMBLE & 0xFF) ? 0x3FFFFFFF : 0;
+    if (((word(data, 0) ^ invert) >>> 22) != GPS_PREAMBLE) {
+      rejectedCount++;
+      return false;
+    }
+
+    boolean parity = true;
+    int last = 0; // 上一个字的 D29 D30，第一个字前为 0
+    for (int i = 0; i < 10; i++) {
+      int w = (word(data, i) ^ invert) | (last << 30);
+      last = w & 3;
+      // D30* 为 1 时数据位是反相发送的
+      if ((w & 0x40000000) != 0) {
+        w ^= 0x3FFFFFC0;
+      }
+      int p = 0;
+      for (int h : HAMMING) {
+        p = (p << 1) | (Integer.bitCount((w & h) >>> 6) & 1);
+      }
+      if (p != (w & 0x3F)) {
+        parity = false;
+      }
+      setBits(bits, i * 24, 24, (w >>> 6) & 0xFFFFFF);
+    }
+    if (!parity) {
+      if (!trusted) {
+        rejectedCount++;
+        return false;
+      }
+      for (int i = 0; i < 10; i++) {
+        setBits(bits, i * 24, 24, ((word(data, i) ^ invert) >>> 6) & 0xFFFFFF);
+      }
+    }
+
+    int subframe = (int) getBits(bits, 43, 3);
+    if (subframe < 1 || subframe > 3) {
+      return false; // 子帧 4、5 为历书，不需要
+    }
+
+    int index = slot(constellationType, svid);
+    Ephemeris eph = pending[index];
+    switch (subframe) {
+      case 1:
+        eph.week = (int) getBits(bits, 48, 10) + GPS_WEEK_ROLLOVER;
+        eph.health = (int) getBits(bits, 64, 6);
+        eph.iodc = (int) (getBits(bits, 70, 2) << 8 | getBits(bits, 168, 8));
+        eph.tgd = getSignedBits(bits, 160, 8) * P2_31;
+        eph.toc = getBits(bits, 176, 16) * 16.0;
+        eph.af2 = getSignedBits(bits, 192, 8) * P2_55;
+        eph.af1 = getSignedBits(bits, 200, 16) * P2_43;
+        eph.af0 = getSignedBits(bits, 216, 22) * P2_31;
+        issue[index * 4 + 1] = eph.iodc & 0xFF;
+        break;
+      case 2:
+        eph.iode = (int) getBits(bits, 48, 8);
+        eph.crs = getSignedBits(bits, 56, 16) * P2_5;
+        eph.deltaN = getSignedBits(bits, 72, 16) * P2_43 * PI;
+        eph.m0 = getSignedBits(bits, 88, 32) * P2_31 * PI;
+        eph.cuc = getSignedBits(bits, 120, 16) * P2_29;
+        eph.e = getBits(bits, 136, 32) * P2_33;
+        eph.cus = getSignedBits(bits, 168, 16) * P2_29;
+        eph.sqrtA = getBits(bits, 184, 32) * P2_19;
+        eph.toe = getBits(bits, 216, 16) * 16.0;
+        issue[index * 4 + 2] = eph.iode;
+        break;
+      default:
+        eph.cic = getSignedBits(bits, 48, 16) * P2_29;
+        eph.omega0 = getSignedBits(bits, 64, 32) * P2_31 * PI;
+        eph.cis = getSignedBits(bits, 96, 16) * P2_29;
+        eph.i0 = getSignedBits(bits, 112, 32) * P2_31 * PI;
+        eph.crc = getSignedBits(bits, 144, 16) * P2_5;
+        eph.omega = getSignedBits(bits, 160, 32) * P2_31 * PI;
+        eph.omegaDot = getSignedBits(bits, 192, 24) * P2_43 * PI;
+        issue[index * 4 + 3] = (int) getBits(bits, 216, 8);
+        eph.idot = getSignedBits(bits, 224, 14) * P2_43 * PI;
+        break;
+    }
+    received[index] |= 1 << subframe;
+
+    // 三个子帧属于同一组星历时 IODC 低 8 位与两个 IODE 相同
+    if (received[index] == 0xE
+        && issue[index * 4 + 1] == issue[index * 4 + 2]
+        && issue[index * 4 + 2] == issue[index * 4 + 3]) {
+      return complete(index);
+    }
+    return false;
+  }
+
+  private static int word(byte[] data, int i) {
+    int o = i * 4;
+    return ((data[o] & 0xFF) << 24 | (data[o + 1] & 0xFF) << 16 | (data[o + 2] & 0xFF) << 8 | (data[o + 3] & 0xFF))
+        & 0x3FFFFFFF;
+  }
+
+  // ---- Galileo I/NAV ----
+
+  // 偶数页和奇数页各 114 位，共 228 位；字 = 偶数页第 2~113 位 + 奇数页第 2~17 位
+  private boolean decodeInav(int svid, byte[] data) {
+    if (data.length < 29) {
+      return false;
+    }
+    // 报警页不含星历
+    if (getBits(data, 1, 1) != 0 || getBits(data, 0, 1) != 0 || getBits(data, 114, 1) != 1) {
+      return false;
+    }
+    // CRC-24Q 覆盖前 196 位
+    if (crc24q(data, 196) != getBits(data, 196, 24)) {
+      rejectedCount++;
+      return false;
+    }
+
+    for (int i = 0; i < 112; i += 28) {
+      setBits(bits, i, 28, getBits(data, 2 + i, 28));
+    }
+    setBits(bits, 112, 16, getBits(data, 116, 16));
+
+    int wordType = (int) getBits(bits, 0, 6);
+    if (wordType < 1 || wordType > 5) {
+      return false;
+    }
+
+    int index = slot(Ephemeris.GALILEO, svid);
+    Ephemeris eph = pending[index];
+    switch (wordType) {
+      case 1:
+        issue[index * 4] = (int) getBits(bits, 6, 10);
+        eph.toe = getBits(bits, 16, 14) * 60.0;
+        eph.m0 = getSignedBits(bits, 30, 32) * P2_31 * PI;
+        eph.e = getBits(bits, 62, 32) * P2_33;
+        eph.sqrtA = getBits(bits, 94, 32) * P2_19;
+        break;
+      case 2:
+        issue[index * 4 + 1] = (int) getBits(bits, 6, 10);
+        eph.omega0 = getSignedBits(bits, 16, 32) * P2_31 * PI;
+        eph.i0 = getSignedBits(bits, 48, 32) * P2_31 * PI;
+        eph.omega = getSignedBits(bits, 80, 32) * P2_31 * PI;
+        eph.idot = getSignedBits(bits, 112, 14) * P2_43 * PI;
+        break;
+      case 3:
+        issue[index * 4 + 2] = (int) getBits(bits, 6, 10);
+        eph.omegaDot = getSignedBits(bits, 16, 24) * P2_43 * PI;
+        eph.deltaN = getSignedBits(bits, 40, 16) * P2_43 * PI;
+        eph.cuc = getSignedBits(bits, 56, 16) * P2_29;
+        eph.cus = getSignedBits(bits, 72, 16) * P2_29;
+        eph.crc = getSignedBits(bits, 88, 16) * P2_5;
+        eph.crs = getSignedBits(bits, 104, 16) * P2_5;
+        break;
+      case 4:
+        issue[index * 4 + 3] = (int) getBits(bits, 6, 10);
+        eph.cic = getSignedBits(bits, 22, 16) * P2_29;
+        eph.cis = getSignedBits(bits, 38, 16) * P2_29;
+        eph.toc = getBits(bits, 54, 14) * 60.0;
+        eph.af0 = getSignedBits(bits, 68, 31) * P2_34;
+        eph.af1 = getSignedBits(bits, 99, 21) * P2_46;
+        eph.af2 = getSignedBits(bits, 120, 6) * P2_59;
+        break;
+      default:
+        // 单频 E1 使用 BGD(E1,E5b)，健康状态取 E1-B 的 HS 和 DVS
+        eph.tgd = getSignedBits(bits, 57, 10) * P2_32;
+        eph.health = (int) (getBits(bits, 69, 2) << 1 | getBits(bits, 72, 1));
+        eph.week = (int) getBits(bits, 73, 12);
+        break;
+    }
+    received[index] |= 1 << wordType;
+
+    // 字 1~4 的 IODnav 相同时为同一组星历，字 5 可以晚到
+    if ((received[index] & 0x3E) == 0x3E
+        && issue[index * 4] == issue[index * 4 + 1]
+        && issue[index * 4 + 1] == issue[index * 4 + 2]
+        && issue[index * 4 + 2] == issue[index * 4 + 3]) {
+      eph.iode = issue[index * 4];
+      eph.iodc = eph.iode;
+      return complete(index);
+    }
+    return false;
+  }
+
+  static int crc24q(byte[] data, int length) {
+    int crc = 0;
+    for (int i = 0; i < length; i++) {
+      crc = (crc << 1) | (int) getBits(data, i, 1);
+      if ((crc & 0x1000000) != 0) {
+        crc ^= CRC24Q;
+      }
+    }
+    // 再移入 24 个 0 得到余数
+    for (int i = 0; i < 24; i++) {
+      crc <<= 1;
+      if ((crc & 0x1000000) != 0) {
+        crc ^= CRC24Q;
+      }
+    }
+    return crc & 0xFFFFFF;
+  }
+
+  // ---- 北斗 D1 ----
+
+  // 字 1 前 15 位不编码，后 15 位为 BCH(15,11)；字 2~10 为两个 BCH(15,11) 按位交织
+  private boolean decodeD1(int svid, byte[] data) {
+    if (data.length < 40) {
+      return false;
+    }
+    // GEO 卫星播发 D2 电文
+    if (svid <= 5 || svid >= 59) {
+      return false;
+    }
+
+    int first = word(data, 0);
+    int invert = (first >>> 19) == (~BDS_PREAMBLE & 0x7FF) ? 0x3FFFFFFF : 0;
+    first ^= invert;
+    if ((first >>> 19) != BDS_PREAMBLE) {
+      rejectedCount++;
+      return false;
+    }
+
+    int info = bch(first & 0x7FFF);
+    if (info < 0) {
+      rejectedCount++;
+      return false;
+    }
+    setBits(bits, 0, 15, first >>> 15);
+    setBits(bits, 15, 11, info);
+
+    for (int i = 1; i < 10; i++) {
+      int w = word(data, i) ^ invert;
+      int a = 0;
+      int b = 0;
+      for (int k = 0; k < 15; k++) {
+        a = (a << 1) | ((w >>> (29 - 2 * k)) & 1);
+        b = (b << 1) | ((w >>> (28 - 2 * k)) & 1);
+      }
+      int ia = bch(a);
+      int ib = bch(b);
+      if (ia < 0 || ib < 0) {
+        rejectedCount++;
+        return false;
+      }
+      setBits(bits, 26 + (i - 1) * 22, 11, ia);
+      setBits(bits, 37 + (i - 1) * 22, 11, ib);
+    }
+
+    int subframe = (int) getBits(bits, 15, 3);
+    if (subframe < 1 || subframe > 3) {
+      return false;
+    }
+    int sow = (int) getBits(bits, 18, 20);
+
+    int index = slot(Ephemeris.BEIDOU, svid);
+    Ephemeris eph = pending[index];
+    switch (subframe) {
+      case 1:
+        eph.health = (int) getBits(bits, 38, 1);
+        eph.iodc = (int) getBits(bits, 39, 5);
+        eph.week = (int) getBits(bits, 48, 13);
+        eph.toc = getBits(bits, 61, 17) * 8.0;
+        eph.tgd = getSignedBits(bits, 78, 10) * 1E-10;
+        eph.af2 = getSignedBits(bits, 162, 11) * P2_66;
+        eph.af0 = getSignedBits(bits, 173, 24) * P2_33;
+        eph.af1 = getSignedBits(bits, 197, 22) * P2_50;
+        eph.iode = (int) getBits(bits, 219, 5);
+        break;
+      case 2:
+        eph.deltaN = getSignedBits(bits, 38, 16) * P2_43 * PI;
+        eph.cuc = getSignedBits(bits, 54, 18) * P2_31;
+        eph.m0 = getSignedBits(bits, 72, 32) * P2_31 * PI;
+        eph.e = getBits(bits, 104, 32) * P2_33;
+        eph.cus = getSignedBits(bits, 136, 18) * P2_31;
+        eph.crc = getSignedBits(bits, 154, 18) * P2_6;
+        eph.crs = getSignedBits(bits, 172, 18) * P2_6;
+        eph.sqrtA = getBits(bits, 190, 32) * P2_19;
+        issue[index * 4] = (int) getBits(bits, 222, 2); // toe 高 2 位
+        break;
+      default:
+        eph.toe = (issue[index * 4] << 15 | getBits(bits, 38, 15)) * 8.0;
+        eph.i0 = getSignedBits(bits, 53, 32) * P2_31 * PI;
+        eph.cic = getSignedBits(bits, 85, 18) * P2_31;
+        eph.omegaDot = getSignedBits(bits, 103, 24) * P2_43 * PI;
+        eph.cis = getSignedBits(bits, 127, 18) * P2_31;
+        eph.idot = getSignedBits(bits, 145, 14) * P2_43 * PI;
+        eph.omega0 = getSignedBits(bits, 159, 32) * P2_31 * PI;
+        eph.omega = getSignedBits(bits, 191, 32) * P2_31 * PI;
+        break;
+    }
+    issue[index * 4 + subframe] = sow;
+    received[index] |= 1 << subframe;
+
+    // 子帧 1~3 间隔 6 秒，属于同一个主帧时才是同一组星历；子帧 3 用到子帧 2 的 toe 高位
+    int sow1 = issue[index * 4 + 1];
+    if (received[index] == 0xE
+        && issue[index * 4 + 2] - sow1 == 6
+        && issue[index * 4 + 3] - sow1 == 12) {
+      return complete(index);
+    }
+    return false;
+  }
+
+  // BCH(15,11) 校验并纠正一位错误，返回 11 位信息位，无法纠正时返回 -1
+  static int bch(int codeword) {
+    int syndrome = bchSyndrome(codeword);
+    if (syndrome != 0) {
+      int k = 0;
+      while (k < 15 && bchSyndrome(1 << k) != syndrome) {
+        k++;
+      }
+      if (k == 15) {
+        return -1;
+      }
+      codeword ^= 1 << k;
+    }
+    return codeword >>> 4;
+  }
+
+  // 生成多项式 x^4 + x + 1
+  private static int bchSyndrome(int codeword) {
+    int r = codeword;
+    for (int bit = 14; bit >= 4; bit--) {
+      if ((r >>> bit & 1) != 0) {
+        r ^= 0x13 << (bit - 4);
+      }
+    }
+    return r & 0xF;
+  }
+
+  // ---- 比特读写，MSB 在前 ----
+
+  static long getBits(byte[] buffer, int pos, int length) {
+    long value = 0;
+    for (int i = pos; i < pos + length; i++) {
+      value = (value << 1) | ((buffer[i >>> 3] >>> (7 - (i & 7))) & 1);
+    }
+    return value;
+  }
+
+  static long getSignedBits(byte[] buffer, int pos, int length) {
+    long value = getBits(buffer, pos, length);
+    return (value << (64 - length)) >> (64 - length);
+  }
+
+  static void setBits(byte[] buffer, int pos, int length, long value) {
+    for (int i = 0; i < length; i++) {
+      int bit = pos + i;
+      int mask = 1 << (7 - (bit & 7));
+      if (((value >>> (length - 1 - i)) & 1) != 0) {
+        buffer[bit >>> 3] |= mask;
+      } else {
+        buffer[bit >>> 3] &= ~mask;
+      }
+    }
+  }
+}
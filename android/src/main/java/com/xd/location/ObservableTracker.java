@@ -0,0 +1,273 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+/**
+ * 跨历元的观测值状态，按信号（星座, svid, 频段）保存在基本类型数组中
+ *
+ * 每个历元 begin 后依次 add 所有信号，finish 时计算：
+ *   载波相位周数 ADR / 波长
+ *   Hatch 滤波平滑伪距，有连续的载波相位时用 ADR 增量，否则用多普勒积分
+ *   周跳标记：芯片报告的 ADR 复位/周跳、ADR 增量与多普勒积分不符、同一卫星双频的无几何组合跳变
+ *
+ * GnssData 的伪距每个历元都减去当时的 FullBiasNanos + BiasNanos，而 ADR 和多普勒包含接收机钟漂，
+ * 所以平滑在以第一个历元钟差为基准的伪距上进行，输出时再换回本历元的基准。
+ * 只在处理线程上使用，不依赖 Android 类。
+ */
+public class ObservableTracker {
+  // 与 GnssMeasurement.ADR_STATE_* 相同
+  public static final int ADR_STATE_VALID = 1;
+  public static final int ADR_STATE_RESET = 1 << 1;
+  public static final int ADR_STATE_CYCLE_SLIP = 1 << 2;
+
+  // 周跳标记
+  public static final int SLIP_REPORTED = 1; // 芯片报告 ADR 复位或周跳
+  public static final int SLIP_DOPPLER = 1 << 1; // ADR 增量与多普勒积分不符
+  public static final int SLIP_GEOMETRY_FREE = 1 << 2; // 双频无几何组合跳变
+
+  public static final int HATCH_WINDOW = 100; // 平滑窗口（历元数）
+
+  private static final double SPEED_OF_LIGHT = 299792458.0;
+  private static final double MAX_GAP_SECONDS = 3; // 超过该间隔视为失锁，重新开始平滑
+  private static final double DOPPLER_TOLERANCE = 1.0; // ADR 增量与多普勒积分之差，m/s
+  private static final double GEOMETRY_FREE_TOLERANCE = 0.15; // 相邻历元无几何组合之差，m
+  private static final double DIVERGENCE_LIMIT = 50; // 平滑值与原始伪距之差超过该值时重新开始，m
+
+  // 按 SatelliteIndex.satelliteSlot 编号的卫星，每颗卫星 GnssBand.COUNT 个频段
+  private static final int SIGNALS = SatelliteIndex.SATELLITE_SLOTS * GnssBand.COUNT;
+
+  // 按信号保存的上一历元状态
+  private final long[] lastTime = new long[SIGNALS];
+  private final double[] lastAdr = new double[SIGNALS]; // ADR 无效时为 NaN
+  private final double[] lastRate = new double[SIGNALS];
+  private final double[] lastGeometryFree = new double[SIGNALS];
+  private final double[] smoothedState = new double[SIGNALS]; // 以第一个历元钟差为基准
+  private final int[] smoothingState = new int[SIGNALS];
+  private final int[] signalEpoch = new int[SIGNALS]; // 信号在哪个历元出现过
+  private final int[] signalIndex = new int[SIGNALS]; // 信号在该历元中的序号
+
+  // 本历元的输入和输出，按 add 的顺序
+  private int count = 0;
+  private int[] signal;
+  private double[] pseudorange;
+  private double[] rate;
+  private double[] adr;
+  private int[] adrState;
+  private double[] wavelength;
+  private double[] residual;
+  private double[] scratch;
+  private double[] smoothed;
+  private double[] cycles;
+  private byte[] slip;
+  private byte[] smoothing;
+
+  private int epoch = 0;
+  private long timeNanos;
+  private int discontinuityCount = -1;
+  private boolean hasReference = false;
+  private long referenceFullBiasNanos;
+  private double referenceBiasNanos;
+  private double clockOffset; // 本历元伪距换算到基准钟差需要加上的距离，m
+
+  public ObservableTracker() {
+    this(GnssDataPool.MAX_CHANNELS);
+  }
+
+  public ObservableTracker(int capacity) {
+    allocate(capacity);
+  }
+
+  public void clear() {
+    Arrays.fill(lastTime, 0);
+    hasReference = false;
+    count = 0;
+  }
+
+  // 开始一个历元，参数来自 GnssClock
+  public void begin(long timeNanos, long fullBiasNanos, double biasNanos, int hardwareClockDiscontinuityCount) {
+    if (hardwareClockDiscontinuityCount != discontinuityCount) {
+      // 硬件时钟不连续，所有信号重新开始
+      clear();
+      discontinuityCount = hardwareClockDiscontinuityCount;
+    }
+    if (!hasReference) {
+      referenceFullBiasNanos = fullBiasNanos;
+      referenceBiasNanos = biasNanos;
+      hasReference = true;
+    }
+    clockOffset = ((fullBiasNanos - referenceFullBiasNanos) + (biasNanos - referenceBiasNanos)) * 1E-9 * SPEED_OF_LIGHT;
+    this.timeNanos = timeNanos;
+    epoch++;
+    count = 0;
+  }
+
+  // 加入一个信号，返回它在本历元中的序号。同一信号重复出现时只跟踪第一个
+  public int add(int constellationType, int svid, double carrierFrequencyHz, double pseudorangeMeters,
+                 double pseudorangeRateMetersPerSecond, double adrMeters, int adrStateFlags) {
+    if (count == signal.length) {
+      allocate(count * 2);
+    }
+    int s = SatelliteIndex.satelliteSlot(constellationType, svid) * GnssBand.COUNT + GnssBand.of(carrierFrequencyHz);
+    int i = count++;
+    if (signalEpoch[s] == epoch) {
+      s = -1;
+    } else {
+      signalEpoch[s] = epoch;
+      signalIndex[s] = i;
+    }
+    signal[i] = s;
+    pseudorange[i] = pseudorangeMeters > 0 && pseudorangeMeters < 1E8 ? pseudorangeMeters : Double.NaN;
+    rate[i] = pseudorangeRateMetersPerSecond;
+    adr[i] = (adrStateFlags & ADR_STATE_VALID) != 0 ? adrMeters : Double.NaN;
+    adrState[i] = adrStateFlags;
+    wavelength[i] = SPEED_OF_LIGHT / (carrierFrequencyHz > 0 ? carrierFrequencyHz : 1575.42E6);
+    return i;
+  }
+
+  public void finish() {
+    // 1. 芯片报告的周跳和 ADR 增量与多普勒积分之差
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      slip[i] = 0;
+      residual[i] = Double.NaN;
+      int s = signal[i];
+      if (s < 0 || Double.isNaN(adr[i])) {
+        continue;
+      }
+      if ((adrState[i] & (ADR_STATE_RESET | ADR_STATE_CYCLE_SLIP)) != 0) {
+        slip[i] |= SLIP_REPORTED;
+      }
+      double dt = gap(s);
+      if (dt > 0 && !Double.isNaN(lastAdr[s]) && !Double.isNaN(rate[i]) && !Double.isNaN(lastRate[s])) {
+        residual[i] = (adr[i] - lastAdr[s]) - 0.5 * (rate[i] + lastRate[s]) * dt;
+        scratch[n++] = residual[i];
+      }
+    }
+
+    // 各信号共同的部分（钟漂估计误差等）用中位数去掉，信号太少时不做判断
+    if (n >= 3) {
+      Arrays.sort(scratch, 0, n);
+      double median = (n & 1) != 0 ? scratch[n / 2] : 0.5 * (scratch[n / 2 - 1] + scratch[n / 2]);
+      for (int i = 0; i < count; i++) {
+        if (!Double.isNaN(residual[i]) && Math.abs(residual[i] - median) > DOPPLER_TOLERANCE * gap(signal[i])) {
+          slip[i] |= SLIP_DOPPLER;
+        }
+      }
+    }
+
+    // 2. 同一卫星 L1 与其他频段的无几何组合，电离层变化很慢，跳变说明其中一个信号有周跳
+    for (int i = 0; i < count; i++) {
+      int s = signal[i];
+      if (s < 0 || s % GnssBand.COUNT == GnssBand.L1) {
+        continue;
+      }
+      int l1 = s - s % GnssBand.COUNT + GnssBand.L1;
+      int j = signalEpoch[l1] == epoch ? signalIndex[l1] : -1;
+      if (j < 0 || Double.isNaN(adr[i]) || Double.isNaN(adr[j])) {
+        lastGeometryFree[s] = Double.NaN;
+        continue;
+      }
+      double geometryFree = adr[j] - adr[i];
+      if (gap(s) > 0 && !Double.isNaN(lastGeometryFree[s])
+          && Math.abs(geometryFree - lastGeometryFree[s]) > GEOMETRY_FREE_TOLERANCE) {
+        slip[i] |= SLIP_GEOMETRY_FREE;
+        slip[j] |= SLIP_GEOMETRY_FREE;
+      }
+      lastGeometryFree[s] = geometryFree;
+    }
+
+    // 3. Hatch 滤波
+    for (int i = 0; i < count; i++) {
+      int s = signal[i];
+      cycles[i] = adr[i] / wavelength[i];
+      if (s < 0) {
+        smoothed[i] = pseudorange[i];
+        smoothing[i] = 0;
+        continue;
+      }
+
+      double p = pseudorange[i] + clockOffset;
+      double dt = gap(s);
+      int k = smoothingState[s];
+      double delta = Double.NaN;
+      if (dt > 0 && k > 0) {
+        if (slip[i] == 0 && !Double.isNaN(adr[i]) && !Double.isNaN(lastAdr[s])) {
+          delta = adr[i] - lastAdr[s];
+        } else if (!Double.isNaN(rate[i]) && !Double.isNaN(lastRate[s])) {
+          delta = 0.5 * (rate[i] + lastRate[s]) * dt;
+        }
+      }
+
+      if (Double.isNaN(p)) {
+        k = 0;
+      } else if (Double.isNaN(delta)) {
+        k = 1;
+        smoothedState[s] = p;
+      } else {
+        k = Math.min(k + 1, HATCH_WINDOW);
+        double value = p / k + (k - 1.0) / k * (smoothedState[s] + delta);
+        if (Math.abs(value - p) > DIVERGENCE_LIMIT) {
+          k = 1;
+          value = p;
+        }
+        smoothedState[s] = value;
+      }
+      smoothingState[s] = k;
+      smoothed[i] = k > 0 ? smoothedState[s] - clockOffset : Double.NaN;
+      smoothing[i] = (byte) k;
+
+      lastTime[s] = timeNanos;
+      lastAdr[s] = adr[i];
+      lastRate[s] = rate[i];
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  // 平滑伪距，m，伪距无效时为 NaN
+  public double getSmoothedPseudorange(int i) {
+    return smoothed[i];
+  }
+
+  // 参与平滑的历元数，0 表示没有平滑值
+  public int getSmoothingCount(int i) {
+    return smoothing[i] & 0xff;
+  }
+
+  // 载波相位，周，ADR 无效时为 NaN
+  public double getCarrierCycles(int i) {
+    return cycles[i];
+  }
+
+  // SLIP_* 标记
+  public int getCycleSlip(int i) {
+    return slip[i];
+  }
+
+  // 距上一次出现的时间，秒，没有连续跟踪时返回 0
+  private double gap(int s) {
+    long last = lastTime[s];
+    if (last == 0) {
+      return 0;
+    }
+    double dt = (timeNanos - last) * 1E-9;
+    return dt > 0 && dt <= MAX_GAP_SECONDS ? dt : 0;
+  }
+
+  private void allocate(int capacity) {
+    signal = signal == null ? new int[capacity] : Arrays.copyOf(signal, capacity);
+    pseudorange = pseudorange == null ? new double[capacity] : Arrays.copyOf(pseudorange, capacity);
+    rate = rate == null ? new double[capacity] : Arrays.copyOf(rate, capacity);
+    adr = adr == null ? new double[capacity] : Arrays.copyOf(adr, capacity);
+    adrState = adrState == null ? new int[capacity] : Arrays.copyOf(adrState, capacity);
+    wavelength = wavelength == null ? new double[capacity] : Arrays.copyOf(wavelength, capacity);
+    residual = new double[capacity];
+    scratch = new double[capacity];
+    smoothed = new double[capacity];
+    cycles = new double[capacity];
+    slip = new byte[capacity];
+    smoothing = new byte[capacity];
+  }
+}
@@ -0,0 +1,255 @@
+package com.xd.location;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.hardware.SensorManager;
+
+/**
+ * 航向角计算，传感器线程只拷贝输入，读取时才计算
+ *
+ * 三种模式：
+ *   MODE_MAGNETIC         加速度计 + 磁力计，getRotationMatrix / getOrientation
+ *   MODE_ROTATION_VECTOR  系统融合的 TYPE_ROTATION_VECTOR
+ *   MODE_FUSED            互补滤波：TYPE_GAME_ROTATION_VECTOR（陀螺仪积分，短时稳定但航向没有绝对基准）
+ *                         加上一个偏移量，偏移量按时间常数 FUSED_TIME_CONSTANT 向磁力计航向收敛，
+ *                         磁场的短时干扰被平滑掉，长时间的漂移由磁力计纠正
+ * 输入由传感器线程写入 volatile 字段并用序号（seqlock）发布，传感器回调都在同一个线程上，只有它写入；
+ * setMode 可能在其他线程上调用，只设置模式并递增 generation，由传感器线程在下一次写入时清空已有的输入，
+ * 读取线程重新开始互补滤波。getHeadingDegrees 只在一个读取线程上调用，输入没有变化时直接返回上次的结果。
+ * 不分配对象。
+ */
+public class OrientationEngine {
+  public static final int MODE_MAGNETIC = 0;
+  public static final int MODE_ROTATION_VECTOR = 1;
+  public static final int MODE_FUSED = 2;
+
+  private static final double FUSED_TIME_CONSTANT = 5; // 偏移量收敛的时间常数，秒
+
+  private static final int HAS_ACCELEROMETER = 1;
+  private static final int HAS_MAGNETIC = 1 << 1;
+  private static final int HAS_ROTATION_VECTOR = 1 << 2;
+  private static final int HAS_GAME_ROTATION = 1 << 3;
+
+  private volatile int mode = MODE_MAGNETIC;
+  private final AtomicInteger generation = new AtomicInteger(); // 每次 setMode 加一
+
+  // 传感器线程写入的输入，写入前后各把序号加一，序号为奇数时表示正在写入
+  private volatile int sequence = 0;
+  private volatile float ax; // 加速度计
+  private volatile float ay;
+  private volatile float az;
+  private volatile float mx; // 磁力计
+  private volatile float my;
+  private volatile float mz;
+  private volatile float rx; // TYPE_ROTATION_VECTOR 四元数
+  private volatile float ry;
+  private volatile float rz;
+  private volatile float rw;
+  private volatile float gx; // TYPE_GAME_ROTATION_VECTOR 四元数
+  private volatile float gy;
+  private volatile float gz;
+  private volatile float gw;
+  private volatile int available = 0;
+  private volatile long gameRotationNanos = 0;
+  private volatile int inputGeneration = 0; // 输入对应的 generation，与 generation 不同时输入已经作废
+
+  // 以下只在读取线程上访问
+  private final float[] a = new float[3];
+  private final float[] m = new float[3];
+  private final float[] rv = new float[4];
+  private final float[] grv = new float[4];
+  private final float[] rotation = new float[9];
+  private final float[] orientation = new float[3];
+  private int computedSequence = 0;
+  private int computedGeneration = 0;
+  private float heading = 0;
+  private boolean hasOffset = false;
+  private double offset = 0; // MODE_FUSED 的航向偏移量，弧度
+  private long offsetNanos = 0;
+
+  public int getMode() {
+    return mode;
+  }
+
+  // 切换模式，可以在任何线程上调用。已有的输入作废，互补滤波重新开始
+  public void setMode(int mode) {
+    this.mode = mode;
+    generation.incrementAndGet();
+  }
+
+  // 以下由传感器线程调用，values 为 SensorEvent.values，会被系统复用，只拷贝
+  public void onAccelerometer(float[] values) {
+    int s = begin();
+    ax = values[0];
+    ay = values[1];
+    az = values[2];
+    available |= HAS_ACCELEROMETER;
+    sequence = s + 2;
+  }
+
+  public void onMagneticField(float[] values) {
+    int s = begin();
+    mx = values[0];
+    my = values[1];
+    mz = values[2];
+    available |= HAS_MAGNETIC;
+    sequence = s + 2;
+  }
+
+  public void onRotationVector(float[] values) {
+    int s = begin();
+    rx = values[0];
+    ry = values[1];
+    rz = values[2];
+    rw = scalar(values);
+    available |= HAS_ROTATION_VECTOR;
+    sequence = s + 2;
+  }
+
+  public void onGameRotationVector(float[] values, long timestampNanos) {
+    int s = begin();
+    gx = values[0];
+    gy = values[1];
+    gz = values[2];
+    gw = scalar(values);
+    gameRotationNanos = timestampNanos;
+    available |= HAS_GAME_ROTATION;
+    sequence = s + 2;
+  }
+
+  // 开始写入，把序号变为奇数；setMode 之后的第一次写入先清空已有的输入
+  private int begin() {
+    int s = sequence;
+    sequence = s + 1;
+    int g = generation.get();
+    if (g != inputGeneration) {
+      available = 0;
+      inputGeneration = g;
+    }
+    return s;
+  }
+
+  /**
+   * 航向角，度，-180..180，还没有足够的输入时为 0 或上一次的值。
+   * 只能在一个线程上调用
+   */
+  public float getHeadingDegrees() {
+    int g = generation.get();
+    int s;
+    int flags;
+    long time;
+    int inputs;
+    while (true) {
+      s = sequence;
+      if ((s & 1) != 0) {
+        Thread.yield();
+        continue;
+      }
+      if (s == computedSequence && g == computedGeneration) {
+        return heading;
+      }
+      a[0] = ax;
+      a[1] = ay;
+      a[2] = az;
+      m[0] = mx;
+      m[1] = my;
+      m[2] = mz;
+      rv[0] = rx;
+      rv[1] = ry;
+      rv[2] = rz;
+      rv[3] = rw;
+      grv[0] = gx;
+      grv[1] = gy;
+      grv[2] = gz;
+      grv[3] = gw;
+      flags = available;
+      time = gameRotationNanos;
+      inputs = inputGeneration;
+      if (sequence == s) {
+        break;
+      }
+    }
+    if (g != computedGeneration) {
+      hasOffset = false;
+    }
+    computedSequence = s;
+    computedGeneration = g;
+    // 传感器线程还没有处理模式切换，切换前的输入不再使用
+    if (inputs != g) {
+      flags = 0;
+    }
+
+    switch (mode) {
+      case MODE_ROTATION_VECTOR:
+        if ((flags & HAS_ROTATION_VECTOR) != 0) {
+          SensorManager.getRotationMatrixFromVector(rotation, rv);
+          heading = (float) Math.toDegrees(SensorManager.getOrientation(rotation, orientation)[0]);
+        }
+        break;
+      case MODE_FUSED:
+        fuse(flags, time);
+        break;
+      default:
+        double yaw = magneticYaw(flags);
+        if (!Double.isNaN(yaw)) {
+          heading = (float) Math.toDegrees(yaw);
+        }
+        break;
+    }
+    return heading;
+  }
+
+  private void fuse(int flags, long timestampNanos) {
+    if ((flags & HAS_GAME_ROTATION) == 0) {
+      hasOffset = false;
+      return;
+    }
+    SensorManager.getRotationMatrixFromVector(rotation, grv);
+    double gameYaw = SensorManager.getOrientation(rotation, orientation)[0];
+
+    double yaw = magneticYaw(flags);
+    if (!Double.isNaN(yaw)) {
+      double target = wrap(yaw - gameYaw);
+      if (!hasOffset) {
+        offset = target;
+        hasOffset = true;
+      } else {
+        double dt = Math.max(0, (timestampNanos - offsetNanos) * 1E-9);
+        double k = 1 - Math.exp(-dt / FUSED_TIME_CONSTANT);
+        offset = wrap(offset + k * wrap(target - offset));
+      }
+      offsetNanos = timestampNanos;
+    }
+    if (hasOffset) {
+      heading = (float) Math.toDegrees(wrap(gameYaw + offset));
+    }
+  }
+
+  // 加速度计和磁力计得到的航向，弧度，没有数据或自由落体时为 NaN
+  private double magneticYaw(int flags) {
+    if ((flags & (HAS_ACCELEROMETER | HAS_MAGNETIC)) != (HAS_ACCELEROMETER | HAS_MAGNETIC)
+        || !SensorManager.getRotationMatrix(rotation, null, a, m)) {
+      return Double.NaN;
+    }
+    return SensorManager.getOrientation(rotation, orientation)[0];
+  }
+
+  // 旋转向量的标量部分，没有时按单位四元数补上
+  private static float scalar(float[] values) {
+    if (values.length >= 4) {
+      return values[3];
+    }
+    double w = 1 - values[0] * values[0] - values[1] * values[1] - values[2] * values[2];
+    return w > 0 ? (float) Math.sqrt(w) : 0;
+  }
+
+  private static double wrap(double radians) {
+    while (radians > Math.PI) {
+      radians -= 2 * Math.PI;
+    }
+    while (radians < -Math.PI) {
+      radians += 2 * Math.PI;
+    }
+    return radians;
+  }
+}
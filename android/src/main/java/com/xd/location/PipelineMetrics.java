@@ -0,0 +1,130 @@
+package com.xd.location;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.os.Build;
+import android.os.Debug;
+
+/**
+ * 处理链路的分阶段延迟和计数
+ *
+ * 处理线程上的阶段（STAGE_CALLBACK..STAGE_PROCESS）和 UI 线程上的阶段（STAGE_DISPATCH、STAGE_END_TO_END）
+ * 分别只由一个线程记录，每个阶段一个 LatencyHistogram：
+ *   callback    历元的测量时刻（GnssClock 的 elapsedRealtime）到回调开始处理，Android 10 以下没有对应关系时不记录
+ *   pool        GnssData 的填充和伪距计算
+ *   qc、track、solve、fusion、store  质量检查、平滑跟踪、分组和单点定位、INS 融合、写入历元存储
+ *   encode      选择观测值并编码为二进制历元或 map
+ *   process     一个历元在处理线程上的总时间
+ *   dispatch    交给 EpochDispatcher 到 UI 线程投递给 EventChannel 的等待时间
+ *   end_to_end  测量时刻到投递给 EventChannel，不包括 Dart 端的解码
+ * 没有开启时 GnssEngine 不创建该对象，处理链路只多一次 null 判断。
+ */
+public class PipelineMetrics {
+  public static final int STAGE_CALLBACK = 0;
+  public static final int STAGE_POOL = 1;
+  public static final int STAGE_QC = 2;
+  public static final int STAGE_TRACK = 3;
+  public static final int STAGE_SOLVE = 4;
+  public static final int STAGE_FUSION = 5;
+  public static final int STAGE_STORE = 6;
+  public static final int STAGE_ENCODE = 7;
+  public static final int STAGE_PROCESS = 8;
+  public static final int STAGE_DISPATCH = 9;
+  public static final int STAGE_END_TO_END = 10;
+  public static final int STAGE_COUNT = 11;
+
+  private static final String[] STAGE_NAMES = {
+    "callback", "pool", "qc", "track", "solve", "fusion", "store", "encode", "process", "dispatch", "end_to_end"
+  };
+
+  private final LatencyHistogram[] stages = new LatencyHistogram[STAGE_COUNT];
+  private final long startNanos = System.nanoTime();
+
+  // 计数，处理线程写入
+  private volatile long epochs = 0; // 收到的历元
+  private volatile long measurements = 0; // 收到的观测值
+  private volatile long skipped = 0; // 没有监听或被限频、没有其他用途而跳过的历元
+  private volatile long emitted = 0; // 发送给 Dart 端的历元
+
+  public PipelineMetrics() {
+    for (int i = 0; i < STAGE_COUNT; i++) {
+      stages[i] = new LatencyHistogram();
+    }
+  }
+
+  public void record(int stage, long nanos) {
+    stages[stage].record(nanos);
+  }
+
+  // 记录 since 到现在的时间，返回现在，用于连续的阶段
+  public long stage(int stage, long since) {
+    long now = System.nanoTime();
+    stages[stage].record(now - since);
+    return now;
+  }
+
+  // 以下在处理线程上调用
+  public void onEpoch(int measurementCount) {
+    epochs = epochs + 1;
+    measurements = measurements + measurementCount;
+  }
+
+  public void onSkipped() {
+    skipped = skipped + 1;
+  }
+
+  public void onEmitted() {
+    emitted = emitted + 1;
+  }
+
+  /**
+   * 各阶段的直方图、计数和 GC 指标。dispatchDropped、bufferOverwritten 为 EpochDispatcher 和缓冲区丢弃的历元数
+   */
+  public Map<String, Object> toMap(long dispatchDropped, long bufferOverwritten) {
+    Map<String, Object> latency = new HashMap<String, Object>();
+    for (int i = 0; i < STAGE_COUNT; i++) {
+      if (stages[i].getCount() > 0) {
+        latency.put(STAGE_NAMES[i], stages[i].toMap());
+      }
+    }
+
+    Map<String, Object> counters = new HashMap<String, Object>();
+    counters.put("epochs", epochs);
+    counters.put("measurements", measurements);
+    counters.put("skipped", skipped);
+    counters.put("emitted", emitted);
+    counters.put("dispatch_dropped", dispatchDropped);
+    counters.put("buffer_overwritten", bufferOverwritten);
+
+    Map<String, Object> metrics = new HashMap<String, Object>();
+    metrics.put("uptime_ms", (System.nanoTime() - startNanos) / 1000000L);
+    metrics.put("latency", latency);
+    metrics.put("counters", counters);
+    metrics.put("gc", gcStats());
+    return metrics;
+  }
+
+  // 进程的 GC 次数和耗时（Android 6 起）以及 Java 堆的使用情况
+  private static Map<String, Object> gcStats() {
+    Map<String, Object> gc = new HashMap<String, Object>();
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+      gc.put("count", parse(Debug.getRuntimeStat("art.gc.gc-count")));
+      gc.put("time_ms", parse(Debug.getRuntimeStat("art.gc.gc-time")));
+      gc.put("blocking_count", parse(Debug.getRuntimeStat("art.gc.blocking-gc-count")));
+      gc.put("blocking_time_ms", parse(Debug.getRuntimeStat("art.gc.blocking-gc-time")));
+    }
+    Runtime runtime = Runtime.getRuntime();
+    gc.put("heap_used_bytes", runtime.totalMemory() - runtime.freeMemory());
+    gc.put("heap_max_bytes", runtime.maxMemory());
+    return gc;
+  }
+
+  private static long parse(String value) {
+    try {
+      return value != null ? Long.parseLong(value) : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+/**
+ * 观测值质量检查，在编码、跟踪和解算之前标记有问题的信号
+ *
+ * 每个历元 begin 后依次 add 所有信号，finish 时对整个历元的基本类型数组逐项检查，每项检查一次遍历：
+ *   跟踪状态：码锁定，且 TOW（GLONASS 为 TOD）已解码或已知，否则接收时间还没有确定，伪距无意义
+ *   不确定度：接收时间不确定度和伪距率不确定度的上限
+ *   伪距范围：不在 1E7..5E7 m 之间
+ *   载噪比和高度角掩码，没有 GnssStatus 时高度角为 NaN，不做判断
+ *   伪距变化率与多普勒一致性：相邻历元伪距之差除以间隔，与两个历元伪距率的平均值比较，
+ *   各信号共同的部分用中位数去掉；连续多次不一致时以当前值为新的基准，避免基准本身是错误值
+ * 结果为 QC_* 标记，0 表示通过。只在处理线程上使用，不依赖 Android 类。
+ */
+public class QualityControl {
+  // 与 GnssMeasurement.STATE_* 相同
+  public static final int STATE_CODE_LOCK = 1;
+  public static final int STATE_TOW_DECODED = 1 << 3;
+  public static final int STATE_GLO_TOD_DECODED = 1 << 7;
+  public static final int STATE_TOW_KNOWN = 1 << 14;
+  public static final int STATE_GLO_TOD_KNOWN = 1 << 15;
+
+  private static final int CONSTELLATION_GLONASS = 3;
+
+  // 检查标记
+  public static final int QC_STATE = 1; // 跟踪状态不完整
+  public static final int QC_UNCERTAINTY = 1 << 1; // 不确定度超过上限
+  public static final int QC_RANGE = 1 << 2; // 伪距超出范围
+  public static final int QC_CN0 = 1 << 3; // 载噪比低于掩码
+  public static final int QC_ELEVATION = 1 << 4; // 高度角低于掩码
+  public static final int QC_RATE = 1 << 5; // 伪距变化与多普勒不一致
+
+  // 这些标记说明伪距本身不可用，不参与一致性检查，也不更新基准
+  private static final int INVALID = QC_STATE | QC_UNCERTAINTY | QC_RANGE;
+
+  private static final double SPEED_OF_LIGHT = 299792458.0;
+  private static final double MIN_PSEUDORANGE = 1E7;
+  private static final double MAX_PSEUDORANGE = 5E7;
+  private static final double MAX_GAP_SECONDS = 3; // 超过该间隔不做一致性检查
+  private static final int MAX_REJECTS = 3; // 连续不一致的次数，达到后重新建立基准
+
+  // 按 SatelliteIndex.satelliteSlot 编号的卫星，每颗卫星 GnssBand.COUNT 个频段
+  private static final int SIGNALS = SatelliteIndex.SATELLITE_SLOTS * GnssBand.COUNT;
+
+  // 按信号保存的上一次通过检查的伪距
+  private final long[] lastTime = new long[SIGNALS];
+  private final double[] lastPseudorange = new double[SIGNALS]; // 以第一个历元钟差为基准
+  private final double[] lastRate = new double[SIGNALS];
+  private final byte[] rejects = new byte[SIGNALS];
+  private final int[] signalEpoch = new int[SIGNALS];
+
+  // 检查参数
+  private double minCn0DbHz = 0;
+  private double minElevationDegrees = Double.NEGATIVE_INFINITY;
+  private double maxTimeUncertaintyNanos = Double.POSITIVE_INFINITY;
+  private double maxRateUncertainty = Double.POSITIVE_INFINITY;
+  private double maxRateResidual = Double.POSITIVE_INFINITY;
+
+  // 本历元的输入和输出，按 add 的顺序
+  private int count = 0;
+  private int[] signal;
+  private int[] constellation;
+  private int[] state;
+  private double[] timeUncertainty;
+  private double[] pseudorange;
+  private double[] rate;
+  private double[] rateUncertainty;
+  private double[] cn0;
+  private double[] elevation;
+  private double[] residual;
+  private double[] scratch;
+  private int[] flags;
+
+  private int epoch = 0;
+  private long timeNanos;
+  private int discontinuityCount = -1;
+  private boolean hasReference = false;
+  private long referenceFullBiasNanos;
+  private double referenceBiasNanos;
+  private double clockOffset; // 本历元伪距换算到基准钟差需要加上的距离，m
+
+  public QualityControl() {
+    this(GnssDataPool.MAX_CHANNELS);
+  }
+
+  public QualityControl(int capacity) {
+    allocate(capacity);
+  }
+
+  // 检查参数，不需要的检查传 0
+  public void configure(double minCn0DbHz, double minElevationDegrees, double maxTimeUncertaintyNanos,
+                        double maxRateUncertainty, double maxRateResidual) {
+    this.minCn0DbHz = minCn0DbHz;
+    this.minElevationDegrees = minElevationDegrees > 0 ? minElevationDegrees : Double.NEGATIVE_INFINITY;
+    this.maxTimeUncertaintyNanos = maxTimeUncertaintyNanos > 0 ? maxTimeUncertaintyNanos : Double.POSITIVE_INFINITY;
+    this.maxRateUncertainty = maxRateUncertainty > 0 ? maxRateUncertainty : Double.POSITIVE_INFINITY;
+    this.maxRateResidual = maxRateResidual > 0 ? maxRateResidual : Double.POSITIVE_INFINITY;
+  }
+
+  public void clear() {
+    Arrays.fill(lastTime, 0);
+    Arrays.fill(rejects, (byte) 0);
+    hasReference = false;
+    count = 0;
+  }
+
+  // 开始一个历元，参数来自 GnssClock
+  public void begin(long timeNanos, long fullBiasNanos, double biasNanos, int hardwareClockDiscontinuityCount) {
+    if (hardwareClockDiscontinuityCount != discontinuityCount) {
+      clear();
+      discontinuityCount = hardwareClockDiscontinuityCount;
+    }
+    if (!hasReference) {
+      referenceFullBiasNanos = fullBiasNanos;
+      referenceBiasNanos = biasNanos;
+      hasReference = true;
+    }
+    clockOffset = ((fullBiasNanos - referenceFullBiasNanos) + (biasNanos - referenceBiasNanos)) * 1E-9 * SPEED_OF_LIGHT;
+    this.timeNanos = timeNanos;
+    epoch++;
+    count = 0;
+  }
+
+  // 加入一个信号，返回它在本历元中的序号。elevationDegrees 未知时传 NaN
+  public int add(int constellationType, int svid, double carrierFrequencyHz, int stateFlags,
+                 double receivedSvTimeUncertaintyNanos, double pseudorangeMeters, double pseudorangeRateMetersPerSecond,
+                 double pseudorangeRateUncertainty, double cn0DbHz, double elevationDegrees) {
+    if (count == signal.length) {
+      allocate(count * 2);
+    }
+    int s = SatelliteIndex.satelliteSlot(constellationType, svid) * GnssBand.COUNT + GnssBand.of(carrierFrequencyHz);
+    int i = count++;
+    if (signalEpoch[s] == epoch) {
+      s = -1; // 同一信号重复出现时只有第一个参与一致性检查
+    } else {
+      signalEpoch[s] = epoch;
+    }
+    signal[i] = s;
+    constellation[i] = constellationType;
+    state[i] = stateFlags;
+    timeUncertainty[i] = receivedSvTimeUncertaintyNanos;
+    pseudorange[i] = pseudorangeMeters;
+    rate[i] = pseudorangeRateMetersPerSecond;
+    rateUncertainty[i] = pseudorangeRateUncertainty;
+    cn0[i] = cn0DbHz;
+    elevation[i] = elevationDegrees;
+    return i;
+  }
+
+  public void finish() {
+    // 1. 跟踪状态
+    for (int i = 0; i < count; i++) {
+      int time = constellation[i] == CONSTELLATION_GLONASS
+          ? STATE_GLO_TOD_DECODED | STATE_GLO_TOD_KNOWN : STATE_TOW_DECODED | STATE_TOW_KNOWN;
+      boolean ok = (state[i] & STATE_CODE_LOCK) != 0 && (state[i] & time) != 0;
+      flags[i] = ok ? 0 : QC_STATE;
+    }
+
+    // 2. 不确定度和伪距范围。比较式对 NaN 为 false，接收时间不确定度和伪距写成通过的条件取反，NaN 时不通过；
+    //    伪距率不确定度为 NaN 时与高度角一样视为未知，不做判断
+    for (int i = 0; i < count; i++) {
+      if (!(timeUncertainty[i] <= maxTimeUncertaintyNanos) || rateUncertainty[i] > maxRateUncertainty) {
+        flags[i] |= QC_UNCERTAINTY;
+      }
+      if (!(pseudorange[i] > MIN_PSEUDORANGE && pseudorange[i] < MAX_PSEUDORANGE)) {
+        flags[i] |= QC_RANGE;
+      }
+    }
+
+    // 3. 载噪比和高度角掩码
+    for (int i = 0; i < count; i++) {
+      if (!(cn0[i] > 0) || cn0[i] < minCn0DbHz) {
+        flags[i] |= QC_CN0;
+      }
+      if (elevation[i] < minElevationDegrees) {
+        flags[i] |= QC_ELEVATION;
+      }
+    }
+
+    // 4. 伪距变化率与多普勒一致性
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      residual[i] = Double.NaN;
+      int s = signal[i];
+      if (s < 0 || (flags[i] & INVALID) != 0) {
+        continue;
+      }
+      double dt = gap(s);
+      if (dt > 0 && !Double.isNaN(rate[i]) && !Double.isNaN(lastRate[s])) {
+        residual[i] = (pseudorange[i] + clockOffset - lastPseudorange[s]) / dt - 0.5 * (rate[i] + lastRate[s]);
+        scratch[n++] = residual[i];
+      }
+    }
+
+    // 信号太少时只去掉共同部分会把异常值当成中位数，不做判断
+    double median = Double.NaN;
+    if (n >= 3) {
+      Arrays.sort(scratch, 0, n);
+      median = (n & 1) != 0 ? scratch[n / 2] : 0.5 * (scratch[n / 2 - 1] + scratch[n / 2]);
+    }
+    for (int i = 0; i < count; i++) {
+      int s = signal[i];
+      if (s < 0 || (flags[i] & INVALID) != 0) {
+        continue;
+      }
+      boolean accept = true;
+      if (!Double.isNaN(residual[i]) && !Double.isNaN(median)
+          && Math.abs(residual[i] - median) > maxRateResidual) {
+        flags[i] |= QC_RATE;
+        accept = ++rejects[s] >= MAX_REJECTS;
+      }
+      if (accept) {
+        rejects[s] = 0;
+        lastTime[s] = timeNanos;
+        lastPseudorange[s] = pseudorange[i] + clockOffset;
+        lastRate[s] = rate[i];
+      }
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  // QC_* 标记，0 表示通过
+  public int getFlags(int i) {
+    return flags[i];
+  }
+
+  // 距上一次通过检查的时间，秒，没有连续跟踪时返回 0
+  private double gap(int s) {
+    long last = lastTime[s];
+    if (last == 0) {
+      return 0;
+    }
+    double dt = (timeNanos - last) * 1E-9;
+    return dt > 0 && dt <= MAX_GAP_SECONDS ? dt : 0;
+  }
+
+  private void allocate(int capacity) {
+    signal = signal == null ? new int[capacity] : Arrays.copyOf(signal, capacity);
+    constellation = constellation == null ? new int[capacity] : Arrays.copyOf(constellation, capacity);
+    state = state == null ? new int[capacity] : Arrays.copyOf(state, capacity);
+    timeUncertainty = timeUncertainty == null ? new double[capacity] : Arrays.copyOf(timeUncertainty, capacity);
+    pseudorange = pseudorange == null ? new double[capacity] : Arrays.copyOf(pseudorange, capacity);
+    rate = rate == null ? new double[capacity] : Arrays.copyOf(rate, capacity);
+    rateUncertainty = rateUncertainty == null ? new double[capacity] : Arrays.copyOf(rateUncertainty, capacity);
+    cn0 = cn0 == null ? new double[capacity] : Arrays.copyOf(cn0, capacity);
+    elevation = elevation == null ? new double[capacity] : Arrays.copyOf(elevation, capacity);
+    residual = new double[capacity];
+    scratch = new double[capacity];
+    flags = new int[capacity];
+  }
+}
@@ -0,0 +1,138 @@
+package com.xd.location;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 带缓冲的文本记录文件
+ *
+ * 内容先写入预分配的 direct ByteBuffer，缓冲区快满或调用 flush 时才一次性写入 FileChannel，
+ * 每个历元不产生系统调用。数字直接格式化为 ASCII，不经过 String.format。
+ */
+class RecordFile {
+  private static final byte SPACE = ' ';
+  private static final long[] POW10 = {
+    1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+  };
+
+  private final FileOutputStream stream;
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] digits = new byte[20];
+
+  RecordFile(File file, int bufferSize) throws IOException {
+    this.stream = new FileOutputStream(file);
+    this.channel = stream.getChannel();
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  int remaining() {
+    return buffer.remaining();
+  }
+
+  void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      stream.close();
+    }
+  }
+
+  RecordFile put(char c) {
+    buffer.put((byte) c);
+    return this;
+  }
+
+  RecordFile put(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      buffer.put((byte) s.charAt(i));
+    }
+    return this;
+  }
+
+  RecordFile spaces(int n) {
+    for (int i = 0; i < n; i++) {
+      buffer.put(SPACE);
+    }
+    return this;
+  }
+
+  RecordFile newline() {
+    buffer.put((byte) '\n');
+    return this;
+  }
+
+  // 右对齐整数，zeroPad 为 true 时左侧补 0
+  RecordFile putInt(long value, int width, boolean zeroPad) {
+    boolean negative = value < 0;
+    long v = negative ? -value : value;
+    int n = 0;
+    do {
+      digits[n++] = (byte) ('0' + (v % 10));
+      v /= 10;
+    } while (v > 0);
+
+    int pad = width - n - (negative ? 1 : 0);
+    if (!zeroPad) {
+      spaces(pad);
+    }
+    if (negative) {
+      buffer.put((byte) '-');
+    }
+    for (int i = 0; zeroPad && i < pad; i++) {
+      buffer.put((byte) '0');
+    }
+    while (n > 0) {
+      buffer.put(digits[--n]);
+    }
+    return this;
+  }
+
+  // 右对齐定点小数，相当于 Fortran 的 Fw.d，数值超出宽度或无效时写空白
+  RecordFile putFixed(double value, int width, int decimals) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return spaces(width);
+    }
+
+    boolean negative = value < 0;
+    long scaled = Math.round(Math.abs(value) * POW10[decimals]);
+    long integer = scaled / POW10[decimals];
+    long fraction = scaled % POW10[decimals];
+
+    int n = 0;
+    for (int i = 0; i < decimals; i++) {
+      digits[n++] = (byte) ('0' + (fraction % 10));
+      fraction /= 10;
+    }
+    digits[n++] = '.';
+    do {
+      digits[n++] = (byte) ('0' + (integer % 10));
+      integer /= 10;
+    } while (integer > 0 && n < digits.length);
+
+    int length = n + (negative ? 1 : 0);
+    if (length > width || integer > 0) {
+      return spaces(width);
+    }
+
+    spaces(width - length);
+    if (negative) {
+      buffer.put((byte) '-');
+    }
+    while (n > 0) {
+      buffer.put(digits[--n]);
+    }
+    return this;
+  }
+}
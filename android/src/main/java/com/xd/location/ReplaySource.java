@@ -0,0 +1,205 @@
+package com.xd.location;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 回放 EpochLog 记录的数据，作为 GnssSource 接入与实时数据相同的处理链路
+ *
+ * 按记录时的间隔除以 speed 推送，speed 为 0 时尽快推送；尽快推送时每个历元之后让出一次线程，
+ * 批量发送等任务可以穿插执行。读取文件和回调都在 start 传入的 handler 的线程上。
+ * IMU 采样放入 ImuRingBuffer，由处理线程按历元取出，传感器快照为最近一条记录的值。
+ */
+public class ReplaySource implements GnssSource, SensorSource {
+  private static final String TAG = "ReplaySource";
+
+  private final File file;
+  private final double speed;
+
+  private final ImuRingBuffer imuBuffer = new ImuRingBuffer(ImuRingBuffer.DEFAULT_CAPACITY);
+  private final SensorSnapshot sensor = new SensorSnapshot(); // 只在处理线程上访问
+
+  // 只在处理线程上访问
+  private GnssSink sink;
+  private Handler handler;
+  private EpochLog.Reader reader;
+  private int pending = -1; // 已读出、还没到时间推送的记录类型
+  private long firstElapsedNanos;
+  private long startUptimeMillis;
+  private int epochCount = 0;
+
+  private volatile boolean stopped = false;
+
+  private final Runnable step = new Runnable() {
+    @Override
+    public void run() {
+      replay();
+    }
+  };
+
+  private final Runnable close = new Runnable() {
+    @Override
+    public void run() {
+      closeReader();
+    }
+  };
+
+  public ReplaySource(File file, double speed) {
+    this.file = file;
+    this.speed = speed;
+  }
+
+  @Override
+  public void start(GnssSink sink, Handler handler) {
+    this.sink = sink;
+    this.handler = handler;
+    handler.post(step);
+  }
+
+  @Override
+  public void stop() {
+    stopped = true;
+    if (handler != null) {
+      handler.removeCallbacks(step);
+      handler.post(close);
+    }
+  }
+
+  // 回放按记录的数据推送，不切换档位
+  @Override
+  public void setProfile(int profile) {
+  }
+
+  @Override
+  public SensorSource getSensorSource() {
+    return this;
+  }
+
+  @Override
+  public boolean read(SensorSnapshot out) {
+    out.valid = sensor.valid;
+    out.timestampNanos = sensor.timestampNanos;
+    out.origen = sensor.origen;
+    out.angle = sensor.angle;
+    out.speed = sensor.speed;
+    out.speedH = sensor.speedH;
+    out.speedV = sensor.speedV;
+    return out.valid;
+  }
+
+  @Override
+  public int drainImu(long boundaryNanos, ImuSamples out) {
+    return imuBuffer.drain(boundaryNanos, out);
+  }
+
+  @Override
+  public Map<String, Object> getConfiguration() {
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("source", "replay");
+    map.put("path", file.getPath());
+    map.put("speed", speed);
+    map.put("epochs", epochCount);
+    return map;
+  }
+
+  // 已推送的历元数
+  public int getEpochCount() {
+    return epochCount;
+  }
+
+  private void replay() {
+    try {
+      if (reader == null) {
+        reader = new EpochLog.Reader(file);
+      }
+      while (!stopped) {
+        if (pending < 0) {
+          pending = reader.next();
+          if (pending < 0) {
+            Log.i(TAG, "replay finished, " + epochCount + " epochs");
+            closeReader();
+            return;
+          }
+          if (startUptimeMillis == 0) {
+            firstElapsedNanos = reader.getElapsedNanos();
+            startUptimeMillis = SystemClock.uptimeMillis();
+          }
+        }
+
+        if (speed > 0) {
+          long due = startUptimeMillis + (long) ((reader.getElapsedNanos() - firstElapsedNanos) * 1E-6 / speed);
+          if (due > SystemClock.uptimeMillis()) {
+            handler.postAtTime(step, due);
+            return;
+          }
+        }
+
+        int type = pending;
+        pending = -1;
+        dispatch(type);
+        if (type == EpochLog.RECORD_MEASUREMENTS && speed <= 0) {
+          handler.post(step);
+          return;
+        }
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "replay failed", e);
+      closeReader();
+    }
+  }
+
+  private void dispatch(int type) {
+    switch (type) {
+      case EpochLog.RECORD_MEASUREMENTS:
+        epochCount++;
+        sink.onMeasurements(reader.getClock(), reader.getMeasurements());
+        break;
+      case EpochLog.RECORD_STATUS:
+        if (reader.getStatus() != null) {
+          sink.onSatelliteStatus(reader.getStatus());
+        }
+        break;
+      case EpochLog.RECORD_NAVIGATION:
+        sink.onNavigationMessage(reader.getNavigationType(), reader.getNavigationSvid(), reader.getNavigationStatus(),
+            reader.getMessageId(), reader.getSubmessageId(), reader.getNavigationData());
+        break;
+      case EpochLog.RECORD_LOCATION:
+        sink.onLocation(reader.getLocation());
+        break;
+      case EpochLog.RECORD_IMU:
+        imuBuffer.push(reader.getImuType(), reader.getImuTimestampNanos(), reader.getImuValue(0),
+            reader.getImuValue(1), reader.getImuValue(2));
+        break;
+      case EpochLog.RECORD_SENSOR:
+        SensorSnapshot recorded = reader.getSensor();
+        sensor.valid = true;
+        sensor.timestampNanos = recorded.timestampNanos;
+        sensor.origen = recorded.origen;
+        sensor.angle = recorded.angle;
+        sensor.speed = recorded.speed;
+        sensor.speedH = recorded.speedH;
+        sensor.speedV = recorded.speedV;
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void closeReader() {
+    if (reader == null) {
+      return;
+    }
+    try {
+      reader.close();
+    } catch (IOException e) {
+      Log.e(TAG, "close failed", e);
+    }
+    reader = null;
+  }
+}
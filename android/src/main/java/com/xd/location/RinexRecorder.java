@@ -0,0 +1,482 @@
+package com.xd.location;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssStatus;
+import android.util.Log;
+
+/**
+ * 原生 RINEX 记录
+ *
+ * 观测值写入 RINEX 3.03 观测文件（.obs），导航电文原始帧写入同名 .nav 文件，
+ * 格式与 GnssLogger 的 Nav 行一致。两个文件都经 RecordFile 批量写入，
+ * 缓冲区将满或每 FLUSH_EPOCHS 个历元才落盘一次。
+ */
+public class RinexRecorder {
+  private static final String TAG = "RinexRecorder";
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+  private static final int NAV_BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_EPOCH_SIZE = 32 * 1024; // 一个历元记录的最大长度
+  private static final int MAX_NAV_SIZE = 1024; // 一条导航电文记录的最大长度
+  private static final int FLUSH_EPOCHS = 60; // 最多缓存的历元数
+
+  private static final double SPEED_OF_LIGHT = 299792458.0;
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long NANOS_PER_DAY = 86400 * NANOS_PER_SECOND;
+  private static final int GPS_EPOCH_DAYS = 3657; // 1970-01-01 到 1980-01-06 的天数
+
+  private static final int MAX_SVID = 256;
+  private static final int MAX_SIGNALS = 6; // 每个系统最多记录的信号数
+  private static final int OBS_TYPES_PER_LINE = 13;
+
+  // 伪距在这个范围之外或有这些质量检查标记时不写伪距（TOW 未解出等情况下的伪距没有意义）
+  private static final double MIN_PSEUDORANGE = 1E7;
+  private static final double MAX_PSEUDORANGE = 5E7;
+  private static final int INVALID_PSEUDORANGE = QualityControl.QC_STATE | QualityControl.QC_UNCERTAINTY
+      | QualityControl.QC_RANGE | QualityControl.QC_RATE; // SYS / # / OBS TYPES 每行最多的观测值类型数
+
+  // 北斗各频点的载波频率，B1I 与 B1C、B2a 与 B2I 在同一 GnssBand 中，需要按频点区分
+  private static final double BDS_B1I = 1561.098E6;
+  private static final double BDS_B1C = 1575.42E6;
+  private static final double BDS_B2A = 1176.45E6;
+  private static final double BDS_B2I = 1207.14E6;
+  private static final double BDS_B3I = 1268.52E6;
+  private static final double FREQUENCY_TOLERANCE = 0.5E6;
+
+  // 下标为 GnssStatus.CONSTELLATION_*
+  private static final char[] SYSTEM = {' ', 'G', 'S', 'R', 'J', 'C', 'E', 'I'};
+  // 每个系统记录的信号（RINEX 频段号和码类型），每个信号依次记录 C/L/D/S 四个观测值，
+  // 不在表中的信号不记录
+  private static final String[][] SIGNALS = {
+    null,
+    {"1C", "1L", "5Q", "5I"},
+    null,
+    {"1C"},
+    {"1C", "1L", "5Q", "5I"},
+    {"2I", "1P", "1D", "5P", "5D", "7I"},
+    {"1C", "1B", "5Q", "5I", "7Q", "7I"},
+    null,
+  };
+
+  private RecordFile obs;
+  private RecordFile nav;
+  private boolean headerWritten = false;
+  private int bufferedEpochs = 0;
+
+  // 按卫星合并同一历元的多个信号，一颗卫星一行
+  private final int[] rowOfSatellite = new int[SYSTEM.length * MAX_SVID];
+  private final int[] stampOfSatellite = new int[SYSTEM.length * MAX_SVID];
+  private final int[] rowSatellite = new int[GnssDataPool.MAX_CHANNELS];
+  private final int[] rowSignals = new int[GnssDataPool.MAX_CHANNELS * MAX_SIGNALS];
+  private int stamp = 0;
+
+  // toCalendar 的结果
+  private long year;
+  private long month;
+  private long day;
+  private long hour;
+  private long minute;
+  private double second;
+
+  // 当前是否在记录
+  public synchronized boolean isRecording() {
+    return obs != null;
+  }
+
+  public synchronized void start(String path) throws IOException {
+    stop();
+
+    File obsFile = new File(path);
+    File parent = obsFile.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("cannot create " + parent);
+    }
+
+    obs = new RecordFile(obsFile, BUFFER_SIZE);
+    try {
+      nav = new RecordFile(new File(navigationPath(path)), NAV_BUFFER_SIZE);
+    } catch (IOException e) {
+      obs.close();
+      obs = null;
+      throw e;
+    }
+
+    headerWritten = false;
+    bufferedEpochs = 0;
+    nav.put("# Nav,Svid,Type,Status,MessageId,Sub-messageId,Data(Bytes)").newline();
+  }
+
+  // 两个文件分别关闭，一个关闭失败不影响另一个
+  public synchronized void stop() {
+    if (obs != null) {
+      try {
+        obs.close();
+      } catch (IOException e) {
+        Log.e(TAG, "close failed", e);
+      }
+      obs = null;
+    }
+    if (nav != null) {
+      try {
+        nav.close();
+      } catch (IOException e) {
+        Log.e(TAG, "nav close failed", e);
+      }
+      nav = null;
+    }
+  }
+
+  public synchronized void writeEpoch(GnssClock clock, GnssDataPool data) {
+    if (obs == null || !clock.hasFullBiasNanos() || data.size() == 0) {
+      return;
+    }
+
+    // 接收机 GPS 时间，整数部分用 long 避免精度损失
+    double biasNanos = clock.hasBiasNanos() ? clock.getBiasNanos() : 0;
+    long gpsNanos = clock.getTimeNanos() - clock.getFullBiasNanos();
+    long biasWhole = (long) Math.floor(biasNanos);
+    gpsNanos -= biasWhole;
+    double fraction = -(biasNanos - biasWhole);
+
+    try {
+      if (!headerWritten) {
+        writeHeader(gpsNanos);
+        headerWritten = true;
+      }
+
+      int rows = groupRows(data);
+      writeEpochLine(gpsNanos, fraction, rows);
+      for (int row = 0; row < rows; row++) {
+        writeRow(row, data);
+      }
+
+      if (++bufferedEpochs >= FLUSH_EPOCHS || obs.remaining() < MAX_EPOCH_SIZE) {
+        obs.flush();
+        nav.flush();
+        bufferedEpochs = 0;
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "write failed, recording stopped", e);
+      stop();
+    }
+  }
+
+  public synchronized void writeNavigation(int type, int svid, int status, int messageId, int submessageId,
+                                           byte[] bytes) {
+    if (nav == null) {
+      return;
+    }
+
+    try {
+      if (nav.remaining() < MAX_NAV_SIZE + bytes.length * 5) {
+        nav.flush();
+      }
+
+      nav.put("Nav,").putInt(svid, 0, false)
+          .put(',').putInt(type, 0, false)
+          .put(',').putInt(status, 0, false)
+          .put(',').putInt(messageId, 0, false)
+          .put(',').putInt(submessageId, 0, false);
+      for (byte b : bytes) {
+        nav.put(',').putInt(b, 0, false);
+      }
+      nav.newline();
+    } catch (IOException e) {
+      Log.e(TAG, "nav write failed", e);
+    }
+  }
+
+  private static String navigationPath(String obsPath) {
+    if (obsPath.endsWith(".obs")) {
+      return obsPath.substring(0, obsPath.length() - 4) + ".nav";
+    }
+    return obsPath + ".nav";
+  }
+
+  private int groupRows(GnssDataPool data) {
+    stamp++;
+    int rows = 0;
+    int count = data.size();
+    for (int i = 0; i < count; i++) {
+      GnssData d = data.get(i);
+      int type = d.getConstellationType();
+      int svid = rinexSvid(type, d.getSvid());
+      if (svid <= 0 || type >= SYSTEM.length) {
+        continue;
+      }
+      int signal = signalOf(type, d);
+      if (signal < 0) {
+        continue;
+      }
+
+      int key = type * MAX_SVID + svid;
+      int row;
+      if (stampOfSatellite[key] == stamp) {
+        row = rowOfSatellite[key];
+      } else {
+        if (rows == rowSatellite.length) {
+          continue;
+        }
+        row = rows++;
+        stampOfSatellite[key] = stamp;
+        rowOfSatellite[key] = row;
+        rowSatellite[row] = key;
+        Arrays.fill(rowSignals, row * MAX_SIGNALS, (row + 1) * MAX_SIGNALS, -1);
+      }
+      rowSignals[row * MAX_SIGNALS + signal] = i;
+    }
+    return rows;
+  }
+
+  /**
+   * 信号在 SIGNALS[type] 中的下标，不能确定或不记录时返回 -1。
+   * 码类型来自 GnssMeasurement.getCodeType（Android 10 起），没有上报时 GPS、QZSS、Galileo、GLONASS
+   * 按频段取 L1 C/A（1C）、L5 Q（5Q），北斗只有 B1I（1561.098 MHz）可以确定为 2I
+   */
+  private static int signalOf(int type, GnssData d) {
+    String[] signals = SIGNALS[type];
+    if (signals == null) {
+      return -1;
+    }
+    char band = rinexBand(type, d);
+    if (band == 0) {
+      return -1;
+    }
+    String codeType = d.getCodeType();
+    char code;
+    if (codeType != null) {
+      code = codeType.length() == 1 ? codeType.charAt(0) : 0;
+    } else if (type == GnssStatus.CONSTELLATION_BEIDOU) {
+      code = band == '2' ? 'I' : 0;
+    } else {
+      code = band == '1' ? 'C' : band == '5' ? 'Q' : 0;
+    }
+    for (int i = 0; i < signals.length; i++) {
+      if (signals[i].charAt(0) == band && signals[i].charAt(1) == code) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // RINEX 频段号，北斗没有上报载波频率或频率不是已知频点时返回 0
+  private static char rinexBand(int type, GnssData d) {
+    if (type == GnssStatus.CONSTELLATION_BEIDOU) {
+      if (!d.hasCarrierFrequency()) {
+        return 0;
+      }
+      double f = d.getCarrierFrequencyHz();
+      if (Math.abs(f - BDS_B1I) < FREQUENCY_TOLERANCE) {
+        return '2';
+      }
+      if (Math.abs(f - BDS_B1C) < FREQUENCY_TOLERANCE) {
+        return '1';
+      }
+      if (Math.abs(f - BDS_B2A) < FREQUENCY_TOLERANCE) {
+        return '5';
+      }
+      if (Math.abs(f - BDS_B2I) < FREQUENCY_TOLERANCE) {
+        return '7';
+      }
+      if (Math.abs(f - BDS_B3I) < FREQUENCY_TOLERANCE) {
+        return '6';
+      }
+      return 0;
+    }
+    switch (d.getBand()) {
+      case GnssBand.L1:
+        return '1';
+      case GnssBand.L2:
+        return '2';
+      case GnssBand.L5:
+        return '5';
+      case GnssBand.L6:
+        return '6';
+      case GnssBand.L7:
+        return '7';
+      default:
+        return 0;
+    }
+  }
+
+  // RINEX 卫星号，不能表示的卫星返回 0
+  private static int rinexSvid(int constellationType, int svid) {
+    switch (constellationType) {
+      case GnssStatus.CONSTELLATION_GPS:
+      case GnssStatus.CONSTELLATION_GALILEO:
+      case GnssStatus.CONSTELLATION_BEIDOU:
+        return svid < 100 ? svid : 0;
+      case GnssStatus.CONSTELLATION_GLONASS:
+        return svid <= 24 ? svid : 0; // 只有频率号（93 - 106）时无法确定轨道号
+      case GnssStatus.CONSTELLATION_QZSS:
+        return svid > 192 && svid < 293 ? svid - 192 : 0;
+      default:
+        return 0;
+    }
+  }
+
+  private void writeEpochLine(long gpsNanos, double fractionNanos, int rows) {
+    toCalendar(gpsNanos, fractionNanos);
+    obs.put('>').spaces(1).putInt(year, 4, false)
+        .spaces(1).putInt(month, 2, true)
+        .spaces(1).putInt(day, 2, true)
+        .spaces(1).putInt(hour, 2, true)
+        .spaces(1).putInt(minute, 2, true)
+        .putFixed(second, 11, 7)
+        .spaces(2).putInt(0, 1, false)
+        .putInt(rows, 3, false)
+        .newline();
+  }
+
+  /**
+   * GPS 时间转换为年月日时分秒，结果存在 year ... second 中。
+   * fractionNanos 先归一化到 [0, 1) 纳秒并把借位计入 gpsNanos，再按输出精度 0.1 微秒取整，
+   * 秒数在 [0, 60) 内，不会输出 -0.0000000 或 60.0000000
+   */
+  private void toCalendar(long gpsNanos, double fractionNanos) {
+    long borrow = (long) Math.floor(fractionNanos);
+    gpsNanos += borrow;
+    fractionNanos -= borrow;
+    gpsNanos = Math.floorDiv(gpsNanos + Math.round(fractionNanos) + 50, 100) * 100;
+
+    long days = Math.floorDiv(gpsNanos, NANOS_PER_DAY);
+    long nanosOfDay = gpsNanos - days * NANOS_PER_DAY;
+
+    // civil-from-days，见 http://howardhinnant.github.io/date_algorithms.html
+    long z = days + GPS_EPOCH_DAYS + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long doe = z - era * 146097;
+    long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    long mp = (5 * doy + 2) / 153;
+    day = doy - (153 * mp + 2) / 5 + 1;
+    month = mp < 10 ? mp + 3 : mp - 9;
+    year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+    hour = nanosOfDay / (3600 * NANOS_PER_SECOND);
+    minute = nanosOfDay / (60 * NANOS_PER_SECOND) % 60;
+    second = nanosOfDay % (60 * NANOS_PER_SECOND) * 1E-9;
+  }
+
+  private void writeRow(int row, GnssDataPool data) {
+    int key = rowSatellite[row];
+    int type = key / MAX_SVID;
+    obs.put(SYSTEM[type]).putInt(key % MAX_SVID, 2, true);
+
+    // 行尾没有观测到的信号省略
+    int last = SIGNALS[type].length - 1;
+    while (rowSignals[row * MAX_SIGNALS + last] < 0) {
+      last--;
+    }
+    for (int signal = 0; signal <= last; signal++) {
+      int index = rowSignals[row * MAX_SIGNALS + signal];
+      if (index < 0) {
+        obs.spaces(64);
+        continue;
+      }
+
+      GnssData d = data.get(index);
+      double wavelength = SPEED_OF_LIGHT / d.getCarrierFrequencyHz();
+      int adrState = d.getAccumulatedDeltaRangeState();
+
+      // C 伪距
+      double pseudorange = d.getPseudorange();
+      if (pseudorange > MIN_PSEUDORANGE && pseudorange < MAX_PSEUDORANGE
+          && (d.getQcFlags() & INVALID_PSEUDORANGE) == 0) {
+        putObservation(pseudorange, ' ');
+      } else {
+        obs.spaces(16);
+      }
+      // L 载波相位，以周为单位
+      if ((adrState & GnssMeasurement.ADR_STATE_VALID) != 0) {
+        char lli = (adrState & GnssMeasurement.ADR_STATE_CYCLE_SLIP) != 0 ? '1' : ' ';
+        putObservation(d.getAccumulatedDeltaRangeMeters() / wavelength, lli);
+      } else {
+        obs.spaces(16);
+      }
+      // D 多普勒，以 Hz 为单位
+      putObservation(-d.getPseudorangeRateMetersPerSecond() / wavelength, ' ');
+      // S 载噪比
+      putObservation(d.getMeasurementCn0DbHz(), ' ');
+    }
+    obs.newline();
+  }
+
+  private void putObservation(double value, char lli) {
+    obs.putFixed(value, 14, 3).put(lli).spaces(1);
+  }
+
+  private void writeHeader(long gpsNanos) {
+    headerLine("     3.03           OBSERVATION DATA    M: MIXED", "RINEX VERSION / TYPE");
+    headerLine("location", "PGM / RUN BY / DATE");
+    headerLine("UNKNOWN", "MARKER NAME");
+    headerLine("SMARTPHONE", "MARKER TYPE");
+    headerLine("", "OBSERVER / AGENCY");
+    headerLine(pad("", 20) + pad(android.os.Build.MODEL, 20) + android.os.Build.VERSION.RELEASE,
+        "REC # / TYPE / VERS");
+    headerLine("", "ANT # / TYPE");
+    headerLine("        0.0000        0.0000        0.0000", "APPROX POSITION XYZ");
+    headerLine("        0.0000        0.0000        0.0000", "ANTENNA: DELTA H/E/N");
+
+    for (int type = 0; type < SIGNALS.length; type++) {
+      if (SIGNALS[type] == null) {
+        continue;
+      }
+      StringBuilder line = new StringBuilder();
+      line.append(SYSTEM[type]).append("  ");
+      String count = Integer.toString(SIGNALS[type].length * 4);
+      line.append(pad("", 3 - count.length())).append(count);
+      int types = 0;
+      for (String signal : SIGNALS[type]) {
+        for (char observation : new char[] {'C', 'L', 'D', 'S'}) {
+          // 超过 13 个时换到续行
+          if (types > 0 && types % OBS_TYPES_PER_LINE == 0) {
+            headerLine(line.toString(), "SYS / # / OBS TYPES");
+            line.setLength(0);
+            line.append(pad("", 6));
+          }
+          line.append(' ').append(observation).append(signal);
+          types++;
+        }
+      }
+      headerLine(line.toString(), "SYS / # / OBS TYPES");
+    }
+
+    for (int type = 0; type < SIGNALS.length; type++) {
+      if (SIGNALS[type] == null) {
+        continue;
+      }
+      for (String signal : SIGNALS[type]) {
+        headerLine(SYSTEM[type] + " L" + signal + "  0.00000", "SYS / PHASE SHIFT");
+      }
+    }
+    headerLine("  0", "GLONASS SLOT / FRQ #");
+    headerLine(" C1C    0.000 C1P    0.000 C2C    0.000 C2P    0.000", "GLONASS COD/PHS/BIS");
+
+    toCalendar(gpsNanos, 0);
+    obs.putInt(year, 6, false).putInt(month, 6, false).putInt(day, 6, false)
+        .putInt(hour, 6, false).putInt(minute, 6, false).putFixed(second, 13, 7)
+        .spaces(5).put("GPS").spaces(9).put("TIME OF FIRST OBS").newline();
+    headerLine("", "END OF HEADER");
+  }
+
+  private void headerLine(String content, String label) {
+    obs.put(pad(content, 60)).put(label).newline();
+  }
+
+  private static String pad(String s, int width) {
+    if (s.length() >= width) {
+      return s.substring(0, width);
+    }
+    StringBuilder sb = new StringBuilder(s);
+    while (sb.length() < width) {
+      sb.append(' ');
+    }
+    return sb.toString();
+  }
+}
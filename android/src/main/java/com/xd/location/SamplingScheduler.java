@@ -0,0 +1,235 @@
+package com.xd.location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * 按运动状态、定位质量和前后台切换采集档位
+ *
+ * 档位：
+ *   PROFILE_FULL      原始观测值、导航电文、定位结果和传感器全部开启
+ *   PROFILE_POSITION  只有系统定位结果（间隔 position_interval_ms）和运动检测用的加速度计
+ *   PROFILE_PAUSED    GNSS 全部关闭，由显著运动传感器唤醒；没有该传感器时保留加速度计检测运动
+ * 规则（每 TICK_MILLIS 在处理线程上判断一次）：
+ *   后台时使用 background 指定的档位，指定 paused 但设备在移动时用 position
+ *   前台移动时 full；静止超过 stationary_timeout_ms 且定位精度好于 max_accuracy 时 position，
+ *   定位精度变差时回到 full；静止超过 pause_timeout_ms 时 paused
+ * 升档立即生效，降档要在当前档位停留 MIN_DWELL_MILLIS 之后，避免在边界上来回切换。
+ * 每个档位累计停留时间、处理的历元数和处理线程的 CPU 时间，作为该档位的开销报告给 Dart 端。
+ */
+public class SamplingScheduler {
+  public static final int PROFILE_FULL = 0;
+  public static final int PROFILE_POSITION = 1;
+  public static final int PROFILE_PAUSED = 2;
+  public static final int PROFILE_COUNT = 3;
+
+  public static final String[] PROFILE_NAMES = {"full", "position", "paused"};
+
+  private static final long TICK_MILLIS = 2000;
+  private static final long MIN_DWELL_MILLIS = 30000;
+  private static final long FIX_TIMEOUT_NANOS = 10000000000L; // 超过该时间没有定位结果视为定位质量差
+  private static final int MAX_TRANSITIONS = 32; // 保留的最近切换记录数
+
+  public interface Listener {
+    // 在处理线程上调用
+    void onProfileChanged(int previous, int profile, String reason);
+  }
+
+  private final Handler handler;
+  private final SensorHandler sensors;
+  private final Listener listener;
+  private final long stationaryTimeoutNanos;
+  private final long pauseTimeoutNanos;
+  private final double maxAccuracy;
+  private final int backgroundProfile;
+
+  // 处理线程在锁内写入，getStats 在锁内读取；getProfile 不加锁，所以 profile 为 volatile
+  private volatile int profile = PROFILE_FULL;
+  private long enteredNanos;
+
+  // 以下只在处理线程上访问
+  private long startNanos;
+  private long fixNanos = 0;
+  private double fixAccuracy = Double.NaN;
+
+  private volatile boolean running = false;
+  private volatile boolean foreground = true;
+
+  // 统计，处理线程写入，主线程读取
+  private final long[] profileNanos = new long[PROFILE_COUNT];
+  private final long[] profileEpochs = new long[PROFILE_COUNT];
+  private final long[] profileCpuNanos = new long[PROFILE_COUNT];
+  private final int[] profileEntries = new int[PROFILE_COUNT];
+  private final List<Map<String, Object>> transitions = new ArrayList<Map<String, Object>>();
+
+  private final Runnable tick = new Runnable() {
+    @Override
+    public void run() {
+      evaluate();
+      if (running) {
+        handler.postDelayed(this, TICK_MILLIS);
+      }
+    }
+  };
+
+  public SamplingScheduler(Handler handler, SensorHandler sensors, SubscriptionSpec spec, Listener listener) {
+    this.handler = handler;
+    this.sensors = sensors;
+    this.listener = listener;
+    this.stationaryTimeoutNanos = spec.stationaryTimeoutMillis * 1000000L;
+    this.pauseTimeoutNanos = spec.pauseTimeoutMillis * 1000000L;
+    this.maxAccuracy = spec.maxFixAccuracy;
+    this.backgroundProfile = profileOf(spec.backgroundProfile, PROFILE_POSITION);
+  }
+
+  // 档位名对应的编号，不认识时返回 defaultProfile
+  public static int profileOf(String name, int defaultProfile) {
+    for (int p = 0; p < PROFILE_COUNT; p++) {
+      if (PROFILE_NAMES[p].equals(name)) {
+        return p;
+      }
+    }
+    return defaultProfile;
+  }
+
+  // 处理线程调用，数据来源已经以 PROFILE_FULL 启动
+  public void start() {
+    long now = SystemClock.elapsedRealtimeNanos();
+    startNanos = now;
+    synchronized (this) {
+      enteredNanos = now;
+      profile = PROFILE_FULL;
+      profileEntries[PROFILE_FULL]++;
+      record(PROFILE_FULL, PROFILE_FULL, "start", now);
+    }
+    running = true;
+    handler.postDelayed(tick, TICK_MILLIS);
+  }
+
+  // 任意线程调用
+  public void stop() {
+    running = false;
+    handler.removeCallbacks(tick);
+  }
+
+  // 任意线程调用，切换后立即重新判断
+  public void setForeground(boolean foreground) {
+    if (this.foreground == foreground) {
+      return;
+    }
+    this.foreground = foreground;
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        evaluate();
+      }
+    });
+  }
+
+  // 处理线程调用，系统定位结果的精度，m
+  public void onFix(double accuracyMeters, long elapsedNanos) {
+    fixAccuracy = accuracyMeters;
+    fixNanos = elapsedNanos;
+  }
+
+  // 处理线程调用，一个历元的处理开销
+  public synchronized void onEpoch(long cpuNanos) {
+    profileEpochs[profile]++;
+    if (cpuNanos > 0) {
+      profileCpuNanos[profile] += cpuNanos;
+    }
+  }
+
+  public int getProfile() {
+    return profile;
+  }
+
+  private void evaluate() {
+    if (!running) {
+      return;
+    }
+    long now = SystemClock.elapsedRealtimeNanos();
+    long motion = sensors != null ? sensors.getLastMotionNanos() : now;
+    // 还没有检测到过移动时从开始计时
+    long still = now - Math.max(motion, startNanos);
+    boolean moving = still < stationaryTimeoutNanos;
+    boolean goodFix = fixNanos > 0 && now - fixNanos < FIX_TIMEOUT_NANOS && fixAccuracy <= maxAccuracy;
+
+    int target;
+    String reason;
+    if (!foreground) {
+      target = backgroundProfile == PROFILE_PAUSED && moving ? PROFILE_POSITION : backgroundProfile;
+      reason = "background";
+    } else if (moving) {
+      target = PROFILE_FULL;
+      reason = profile == PROFILE_PAUSED ? "motion" : "moving";
+    } else if (still >= pauseTimeoutNanos) {
+      target = PROFILE_PAUSED;
+      reason = "stationary";
+    } else if (goodFix) {
+      target = PROFILE_POSITION;
+      reason = "stationary";
+    } else {
+      target = PROFILE_FULL;
+      reason = "poor_fix";
+    }
+
+    if (target == profile) {
+      return;
+    }
+    // 降档（编号变大）要先停留一段时间，前后台切换不受限制
+    if (target > profile && foreground && now - enteredNanos < MIN_DWELL_MILLIS * 1000000L) {
+      return;
+    }
+
+    int previous = profile;
+    synchronized (this) {
+      profileNanos[previous] += now - enteredNanos;
+      profileEntries[target]++;
+      profile = target;
+      enteredNanos = now;
+      record(previous, target, reason, now);
+    }
+    listener.onProfileChanged(previous, target, reason);
+  }
+
+  // 调用方持有锁
+  private void record(int previous, int target, String reason, long now) {
+    Map<String, Object> transition = new HashMap<String, Object>();
+    transition.put("from", PROFILE_NAMES[previous]);
+    transition.put("to", PROFILE_NAMES[target]);
+    transition.put("reason", reason);
+    transition.put("elapsed_realtime_nanos", now);
+    if (transitions.size() == MAX_TRANSITIONS) {
+      transitions.remove(0);
+    }
+    transitions.add(transition);
+  }
+
+  // 任意线程调用：当前档位、每个档位的停留时间、进入次数、历元数和 CPU 时间，以及最近的切换记录
+  public synchronized Map<String, Object> getStats() {
+    long now = SystemClock.elapsedRealtimeNanos();
+    Map<String, Object> profiles = new HashMap<String, Object>();
+    for (int p = 0; p < PROFILE_COUNT; p++) {
+      long nanos = profileNanos[p] + (p == profile && running ? now - enteredNanos : 0);
+      Map<String, Object> cost = new HashMap<String, Object>();
+      cost.put("time_ms", nanos / 1000000L);
+      cost.put("entries", profileEntries[p]);
+      cost.put("epochs", profileEpochs[p]);
+      cost.put("cpu_ms", profileCpuNanos[p] / 1000000L);
+      profiles.put(PROFILE_NAMES[p], cost);
+    }
+
+    Map<String, Object> stats = new HashMap<String, Object>();
+    stats.put("profile", PROFILE_NAMES[profile]);
+    stats.put("foreground", foreground);
+    stats.put("profiles", profiles);
+    stats.put("transitions", new ArrayList<Map<String, Object>>(transitions));
+    return stats;
+  }
+}
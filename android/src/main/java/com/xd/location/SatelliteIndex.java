@@ -0,0 +1,145 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+import android.location.GnssStatus;
+import android.os.Build;
+
+/**
+ * GnssStatus 卫星索引
+ *
+ * 每次 onSatelliteStatusChanged 时建立一次，按 (constellation, svid, band) 查找卫星在
+ * GnssStatus 中的下标，同一频段有多个信号（如北斗 B1I 和 B1C）时再按载波频率选择，
+ * 查找为 O(1)。只在处理线程上使用。
+ */
+public class SatelliteIndex {
+  private static final int CONSTELLATION_COUNT = 8;
+  private static final int MAX_SVID = 256;
+  private static final double CARRIER_TOLERANCE_HZ = 1E5;
+
+  // 按卫星保存跨历元状态时使用的紧凑编号 0..SATELLITE_SLOTS-1，见 satelliteSlot
+  public static final int SATELLITE_SLOTS = 8 * 128;
+
+  // [constellation][svid][band] -> 该频段第一个信号的 GnssStatus 下标，-1 表示没有
+  private final int[] signalSlots = new int[CONSTELLATION_COUNT * MAX_SVID * GnssBand.COUNT];
+  // GnssStatus 下标 -> 同一卫星同一频段的下一个信号的下标，-1 表示没有
+  private int[] nextInBand = new int[64];
+  // GnssStatus 下标 -> 载波频率，没有上报时为 0
+  private double[] carriers = new double[64];
+  // [constellation][svid] -> 该卫星任一频段的下标，频段对不上时使用
+  private final int[] satelliteSlots = new int[CONSTELLATION_COUNT * MAX_SVID];
+
+  // 本次填充过的位置，下次更新时只清这些位置
+  private int[] usedSignals = new int[64];
+  private int[] usedSatellites = new int[64];
+  private int usedSignalCount = 0;
+  private int usedSatelliteCount = 0;
+
+  private GnssStatus status;
+
+  public SatelliteIndex() {
+    Arrays.fill(signalSlots, -1);
+    Arrays.fill(satelliteSlots, -1);
+  }
+
+  public GnssStatus getStatus() {
+    return status;
+  }
+
+  public int getSatelliteCount() {
+    return status == null ? 0 : status.getSatelliteCount();
+  }
+
+  public void update(GnssStatus status) {
+    for (int i = 0; i < usedSignalCount; i++) {
+      signalSlots[usedSignals[i]] = -1;
+    }
+    for (int i = 0; i < usedSatelliteCount; i++) {
+      satelliteSlots[usedSatellites[i]] = -1;
+    }
+    usedSignalCount = 0;
+    usedSatelliteCount = 0;
+
+    this.status = status;
+    if (status == null) {
+      return;
+    }
+
+    boolean hasCarrier = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+    int count = status.getSatelliteCount();
+    if (count > nextInBand.length) {
+      nextInBand = new int[count];
+      carriers = new double[count];
+    }
+    for (int i = 0; i < count; i++) {
+      int satellite = satelliteKey(status.getConstellationType(i), status.getSvid(i));
+      if (satellite < 0) {
+        continue;
+      }
+
+      double carrier = hasCarrier && status.hasCarrierFrequencyHz(i) ? status.getCarrierFrequencyHz(i) : 0;
+      int signal = satellite * GnssBand.COUNT + GnssBand.of(carrier);
+      carriers[i] = carrier;
+      nextInBand[i] = -1;
+      if (signalSlots[signal] < 0) {
+        signalSlots[signal] = i;
+        usedSignals = append(usedSignals, usedSignalCount++, signal);
+      } else {
+        // 同一频段的其他信号接在后面，查找时按顺序匹配，载波频率相同时取第一个
+        int last = signalSlots[signal];
+        while (nextInBand[last] >= 0) {
+          last = nextInBand[last];
+        }
+        nextInBand[last] = i;
+      }
+      if (satelliteSlots[satellite] < 0) {
+        satelliteSlots[satellite] = i;
+        usedSatellites = append(usedSatellites, usedSatelliteCount++, satellite);
+      }
+    }
+  }
+
+  /**
+   * 查找信号在 GnssStatus 中的下标：同一频段中载波频率相同的信号，没有时为该频段的第一个信号，
+   * 没有该频段时退回到同一卫星的其它频段
+   */
+  public int indexOf(int constellationType, int svid, double carrierFrequencyHz) {
+    int satellite = satelliteKey(constellationType, svid);
+    if (satellite < 0) {
+      return -1;
+    }
+
+    int first = signalSlots[satellite * GnssBand.COUNT + GnssBand.of(carrierFrequencyHz)];
+    if (first < 0) {
+      return satelliteSlots[satellite];
+    }
+    for (int i = first; i >= 0; i = nextInBand[i]) {
+      if (Math.abs(carriers[i] - carrierFrequencyHz) < CARRIER_TOLERANCE_HZ) {
+        return i;
+      }
+    }
+    return first;
+  }
+
+  // Android 各星座的 svid 都在 128 个连续值之内：GPS 1-32、SBAS 120-192、GLONASS 1-24（OSN）或 93-106（FCN）、
+  // QZSS 193-200、Galileo 1-36、北斗 1-63、IRNSS 1-14，所以取低 7 位在同一星座内不会冲突。
+  // 只取低 6 位时 SBAS 184-192 会与 120-128 重叠
+  public static int satelliteSlot(int constellationType, int svid) {
+    return ((constellationType & 7) << 7) | (svid & 127);
+  }
+
+  private static int satelliteKey(int constellationType, int svid) {
+    if (constellationType < 0 || constellationType >= CONSTELLATION_COUNT || svid < 0 || svid >= MAX_SVID) {
+      return -1;
+    }
+    return constellationType * MAX_SVID + svid;
+  }
+
+  private static int[] append(int[] array, int index, int value) {
+    if (index == array.length) {
+      array = Arrays.copyOf(array, array.length * 2);
+    }
+    array[index] = value;
+    return array;
+  }
+}
@@ -1,27 +1,31 @@
 package com.xd.location;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.util.Log;
 
-public class SensorHandler {
+public class SensorHandler implements SensorSource {
   private static final String TAG = "Sensor";
   private static final boolean DEBUG = false;
 
-  private Activity mActivity;
+  private Context mContext;
 
   // 摇晃速度临界值
   private static final int SPEED_SHRESHOLD = 600;
 
+  // 超过该速度视为设备在移动，用于采集档位切换
+  private static final int MOTION_THRESHOLD = 20;
+
   // 两次检测的时间间隔
   private static final int UPTATE_INTERVAL_TIME = 200;
 
@@ -30,6 +34,18 @@ public class SensorHandler {
   private SensorManager sensorMag;
   private Sensor aSensor;
   private Sensor mSensor;
+  private Sensor gSensor;
+  private Sensor rotationSensor;
+  private Sensor gameRotationSensor;
+  private Sensor motionSensor;
+
+  // 航向角在读取快照时才计算
+  private final OrientationEngine orientationEngine = new OrientationEngine();
+
+  // 高频 IMU 采集：加速度计、陀螺仪和磁力计在单独的线程上按指定频率写入环形缓冲区
+  private final ImuRingBuffer imuBuffer = new ImuRingBuffer(ImuRingBuffer.DEFAULT_CAPACITY);
+  private HandlerThread imuThread;
+  private volatile EpochLogRecorder recorder; // 记录原始数据时同时写入 IMU 采样
 
   //保存上一次位置记录
   float lastX = 0;
@@ -38,20 +54,46 @@ public class SensorHandler {
 
   float tMax = 1.0f;
 
+  // 以下字段只在传感器回调线程上读写
   private int origen = 0; // 屏幕方向
   private double speed = 0.0; // 速度
   private double speedH = 0.0; // 水平速度
   private double speedV = 0.0; // 垂直速度
-  private float angle = 0.0f; // 角度
+  private long timestampNanos = 0;
 
-  float[] accelerometerValues = new float[3];
-  float[] magneticFieldValues = new float[3];
+  // 发布给处理线程的快照（seqlock）：写入前后各把序号加一，序号为奇数时表示正在写入。
+  // 只有传感器线程写入，读取方不加锁，读到的序号前后不一致时重读
+  private volatile int sequence = 0;
+  private volatile int sharedOrigen;
+  private volatile double sharedSpeed;
+  private volatile double sharedSpeedH;
+  private volatile double sharedSpeedV;
+  private volatile long sharedTimestampNanos;
+
+  // 最近一次检测到移动的时间，elapsedRealtime 纳秒
+  private volatile long lastMotionNanos = 0;
+
+  private final TriggerEventListener motionListener = new TriggerEventListener() {
+    @Override
+    public void onTrigger(TriggerEvent event) {
+      lastMotionNanos = event.timestamp;
+    }
+  };
 
   private SensorEventListener sensorEventListener = new SensorEventListener() {
     @Override
     public void onSensorChanged(SensorEvent event) {
-      if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-        accelerometerValues = event.values;
+      // event.values 会被系统复用，OrientationEngine 只拷贝，不在这里计算
+      int type = event.sensor.getType();
+      if (type == Sensor.TYPE_MAGNETIC_FIELD) {
+        orientationEngine.onMagneticField(event.values);
+      } else if (type == Sensor.TYPE_ROTATION_VECTOR) {
+        orientationEngine.onRotationVector(event.values);
+      } else if (type == Sensor.TYPE_GAME_ROTATION_VECTOR) {
+        orientationEngine.onGameRotationVector(event.values, event.timestamp);
+      } else if (type == Sensor.TYPE_ACCELEROMETER) {
+        orientationEngine.onAccelerometer(event.values);
+        timestampNanos = event.timestamp;
 
         long currentUpdateTime = System.currentTimeMillis();
         long timeInterval = currentUpdateTime - lastUpdateTime;
@@ -67,12 +109,28 @@ public class SensorHandler {
         calcOrigen(x, y, z);
 
         calcSpeed(x, y, z, timeInterval);
-        return;
-      } else if (event.sensor.getType() == Sensor.TYPE_MAGNETIC_FIELD) {
-        magneticFieldValues = event.values;
+        if (speed > MOTION_THRESHOLD) {
+          lastMotionNanos = event.timestamp;
+        }
+        publish();
       }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
 
-      calcOrientation();
+    }
+  };
+
+  private SensorEventListener imuEventListener = new SensorEventListener() {
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+      float[] v = event.values;
+      imuBuffer.push(event.sensor.getType(), event.timestamp, v[0], v[1], v[2]);
+      EpochLogRecorder r = recorder;
+      if (r != null && r.isRecording()) {
+        r.writeImu(event.sensor.getType(), event.timestamp, v[0], v[1], v[2]);
+      }
     }
 
     @Override
@@ -124,40 +182,146 @@ public class SensorHandler {
     speedV = Math.sqrt(deltaX*deltaX + deltaY*deltaY)/timeInterval * 10000; // 待优化，根据手机横屏竖屏判断
   }
 
-  private  void calcOrientation() {
-    float[] values = new float[3];
-    float[] R = new float[9];
-    SensorManager.getRotationMatrix(R, null, accelerometerValues, magneticFieldValues);         
-    SensorManager.getOrientation(R, values);
-
-    // 要经过一次数据格式的转换，转换为度
-    angle = (float) Math.toDegrees(values[0]);
+  // 传感器线程调用，把当前值作为一个整体发布
+  private void publish() {
+    int s = sequence;
+    sequence = s + 1;
+    sharedOrigen = origen;
+    sharedSpeed = speed;
+    sharedSpeedH = speedH;
+    sharedSpeedV = speedV;
+    sharedTimestampNanos = timestampNanos;
+    sequence = s + 2;
   }
 
-  public Map<String, Object> getSensorData() {
-    Map<String, Object> data = new HashMap<String, Object>();
-    data.put("origen", origen);
-    data.put("speed", speed);
-    data.put("speedH", speedH);
-    data.put("speedV", speedV);
-    data.put("angle", angle);
-
-    return data;
+  /**
+   * 读取最近发布的快照，不加锁、不分配对象，航向角在这里按需计算，所以只能在一个线程上调用。
+   * 还没有数据时返回 false
+   */
+  @Override
+  public boolean read(SensorSnapshot out) {
+    while (true) {
+      int s = sequence;
+      if ((s & 1) != 0) {
+        Thread.yield();
+        continue;
+      }
+      out.origen = sharedOrigen;
+      out.speed = sharedSpeed;
+      out.speedH = sharedSpeedH;
+      out.speedV = sharedSpeedV;
+      out.timestampNanos = sharedTimestampNanos;
+      if (sequence == s) {
+        out.angle = orientationEngine.getHeadingDegrees();
+        out.valid = s != 0;
+        return out.valid;
+      }
+    }
   }
 
-  public SensorHandler(Activity activity) {
-    this.mActivity = activity;
-    this.sensorMag = (SensorManager) mActivity.getSystemService(Context.SENSOR_SERVICE);
+  public SensorHandler(Context context) {
+    this.mContext = context;
+    this.sensorMag = (SensorManager) mContext.getSystemService(Context.SENSOR_SERVICE);
     this.aSensor = sensorMag.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
     this.mSensor = sensorMag.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+    this.gSensor = sensorMag.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+    this.rotationSensor = sensorMag.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+    this.gameRotationSensor = sensorMag.getDefaultSensor(Sensor.TYPE_GAME_ROTATION_VECTOR);
+    this.motionSensor = sensorMag.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
   }
 
-  public void start() {
+  // orientationMode 为 OrientationEngine.MODE_*，设备没有对应的传感器时退回加速度计 + 磁力计
+  public void start(int orientationMode) {
+    if (orientationMode == OrientationEngine.MODE_ROTATION_VECTOR && rotationSensor == null
+        || orientationMode == OrientationEngine.MODE_FUSED && gameRotationSensor == null) {
+      orientationMode = OrientationEngine.MODE_MAGNETIC;
+    }
+    orientationEngine.setMode(orientationMode);
+
+    // 可以重复调用，切换档位时重新注册
+    sensorMag.unregisterListener(sensorEventListener);
+    if (motionSensor != null) {
+      sensorMag.cancelTriggerSensor(motionListener, motionSensor);
+    }
     sensorMag.registerListener(sensorEventListener, aSensor, SensorManager.SENSOR_DELAY_NORMAL);
+    if (orientationMode == OrientationEngine.MODE_ROTATION_VECTOR) {
+      sensorMag.registerListener(sensorEventListener, rotationSensor, SensorManager.SENSOR_DELAY_NORMAL);
+      return;
+    }
     sensorMag.registerListener(sensorEventListener, mSensor, SensorManager.SENSOR_DELAY_NORMAL);
+    if (orientationMode == OrientationEngine.MODE_FUSED) {
+      sensorMag.registerListener(sensorEventListener, gameRotationSensor, SensorManager.SENSOR_DELAY_NORMAL);
+    }
+  }
+
+  // 实际使用的航向计算模式
+  public int getOrientationMode() {
+    return orientationEngine.getMode();
   }
 
   public void stop() {
     sensorMag.unregisterListener(sensorEventListener);
+    if (motionSensor != null) {
+      sensorMag.cancelTriggerSensor(motionListener, motionSensor);
+    }
+    stopImu();
+  }
+
+  /**
+   * 停止所有传感器，只等待显著运动传感器触发，触发后更新 getLastMotionNanos。
+   * 显著运动传感器触发一次后自动注销，由调用方重新 start。没有该传感器时返回 false，传感器保持不变
+   */
+  public boolean sleepUntilMotion() {
+    if (motionSensor == null) {
+      return false;
+    }
+    stop();
+    return sensorMag.requestTriggerSensor(motionListener, motionSensor);
+  }
+
+  // 最近一次检测到移动的时间，elapsedRealtime 纳秒，还没有检测到时为 0
+  public long getLastMotionNanos() {
+    return lastMotionNanos;
+  }
+
+  // 开始以 rateHz 采集 IMU，已经在采集时按新的频率重新注册
+  public void startImu(int rateHz) {
+    stopImu();
+    imuThread = new HandlerThread("ImuCapture", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+    imuThread.start();
+    Handler handler = new Handler(imuThread.getLooper());
+
+    int periodUs = 1000000 / Math.max(1, rateHz);
+    for (Sensor sensor : new Sensor[] {aSensor, gSensor, mSensor}) {
+      if (sensor != null) {
+        sensorMag.registerListener(imuEventListener, sensor, periodUs, handler);
+      }
+    }
+  }
+
+  public void stopImu() {
+    if (imuThread == null) {
+      return;
+    }
+    sensorMag.unregisterListener(imuEventListener);
+    imuThread.quitSafely();
+    imuThread = null;
+  }
+
+  /**
+   * 取出时间戳不晚于 boundaryNanos（elapsedRealtime 纳秒）的 IMU 采样追加到 out，
+   * 只能在一个线程上调用
+   */
+  @Override
+  public int drainImu(long boundaryNanos, ImuSamples out) {
+    return imuBuffer.drain(boundaryNanos, out);
+  }
+
+  public void setRecorder(EpochLogRecorder recorder) {
+    this.recorder = recorder;
+  }
+
+  public long getImuDroppedCount() {
+    return imuBuffer.getDroppedCount();
   }
 }
\ No newline at end of file
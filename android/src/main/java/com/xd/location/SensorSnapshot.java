@@ -0,0 +1,16 @@
+package com.xd.location;
+
+/**
+ * 传感器数据快照，由 SensorHandler.read 在处理线程上填充
+ *
+ * 只包含基本类型字段，编码时直接读取，不经过 map。
+ */
+public class SensorSnapshot {
+  public boolean valid; // 是否已经收到过传感器数据
+  public long timestampNanos; // SensorEvent.timestamp，elapsedRealtime 时间基准
+  public int origen; // 屏幕方向
+  public float angle; // 角度
+  public double speed; // 速度
+  public double speedH; // 水平速度
+  public double speedV; // 垂直速度
+}
@@ -0,0 +1,12 @@
+package com.xd.location;
+
+/**
+ * 处理线程读取传感器数据的接口，实时数据由 SensorHandler 提供，回放时由 ReplaySource 提供
+ */
+public interface SensorSource {
+  // 读取最新的传感器快照，还没有数据时返回 false
+  boolean read(SensorSnapshot out);
+
+  // 取出时间戳不晚于 boundaryNanos（elapsedRealtime 纳秒）的 IMU 采样追加到 out，返回取出的个数
+  int drainImu(long boundaryNanos, ImuSamples out);
+}
@@ -0,0 +1,240 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+/**
+ * 一个历元内按卫星分组的信号，以及双频无电离层组合伪距
+ *
+ * 每个历元 begin 后依次 add 所有信号，finish 时一次遍历完成分组，
+ * 有 L1 和另一个频段时计算无电离层组合：P_IF = (f1^2 P1 - f2^2 P2) / (f1^2 - f2^2)，
+ * 第二个频段只在广播钟差能用于该组合时选择，见 secondaryBands。两个信号都有平滑伪距时同时给出平滑伪距的组合。
+ * 只在处理线程上使用，不依赖 Android 类。
+ */
+public class SignalGroups {
+  // 与 L1 组合时第二个频段的优先顺序，GPS、Galileo、北斗见 secondaryBands
+  private static final int[] SECONDARY = {GnssBand.L5, GnssBand.L2, GnssBand.L7, GnssBand.L6};
+  private static final int[] GPS_SECONDARY = {GnssBand.L5, GnssBand.L2};
+  private static final int[] GALILEO_SECONDARY = {GnssBand.L7, GnssBand.L5};
+  private static final int[] BEIDOU_SECONDARY = {GnssBand.L6};
+
+  private static final double B1I_HZ = 1561.098E6;
+  private static final double B3I_HZ = 1268.52E6;
+
+  private static final double MAX_IONOSPHERE_METERS = 100; // 组合与 L1 伪距之差超过该值时认为有误
+
+  // 按 SatelliteIndex.satelliteSlot 编号的卫星
+  private static final int SATELLITES = SatelliteIndex.SATELLITE_SLOTS;
+
+  private final int[] satelliteEpoch = new int[SATELLITES];
+  private final int[] satelliteGroup = new int[SATELLITES];
+  private int epoch = 0;
+
+  // 本历元的信号，按 add 的顺序
+  private int count = 0;
+  private int[] band;
+  private int[] groupOf;
+  private double[] frequency;
+  private double[] pseudorange;
+  private double[] smoothed;
+
+  // 本历元的卫星分组
+  private int groups = 0;
+  private int[] constellation;
+  private int[] svid;
+  private int[] signals; // [group * GnssBand.COUNT + band] -> 信号序号，-1 表示没有
+  private int[] secondary; // 组合使用的第二个频段，-1 表示没有组合
+  private double[] ionosphereFree;
+  private double[] ionosphereFreeSmoothed;
+  private double[] scale;
+  private double[] groupDelayScale;
+
+  public SignalGroups() {
+    this(GnssDataPool.MAX_CHANNELS);
+  }
+
+  public SignalGroups(int capacity) {
+    allocate(capacity);
+  }
+
+  public void begin() {
+    epoch++;
+    count = 0;
+    groups = 0;
+  }
+
+  // 加入一个信号，返回信号序号。同一卫星同一频段重复出现时只保留第一个
+  public int add(int constellationType, int svid, double carrierFrequencyHz, double pseudorangeMeters,
+                 double smoothedPseudorangeMeters) {
+    if (count == band.length) {
+      allocate(count * 2);
+    }
+    int satellite = SatelliteIndex.satelliteSlot(constellationType, svid);
+    int g;
+    if (satelliteEpoch[satellite] == epoch) {
+      g = satelliteGroup[satellite];
+    } else {
+      g = groups++;
+      satelliteEpoch[satellite] = epoch;
+      satelliteGroup[satellite] = g;
+      constellation[g] = constellationType;
+      this.svid[g] = svid;
+      Arrays.fill(signals, g * GnssBand.COUNT, (g + 1) * GnssBand.COUNT, -1);
+    }
+
+    int i = count++;
+    int b = GnssBand.of(carrierFrequencyHz);
+    band[i] = b;
+    groupOf[i] = g;
+    frequency[i] = carrierFrequencyHz > 0 ? carrierFrequencyHz : 1575.42E6;
+    pseudorange[i] = pseudorangeMeters;
+    smoothed[i] = smoothedPseudorangeMeters;
+    if (signals[g * GnssBand.COUNT + b] < 0) {
+      signals[g * GnssBand.COUNT + b] = i;
+    }
+    return i;
+  }
+
+  public void finish() {
+    for (int g = 0; g < groups; g++) {
+      secondary[g] = -1;
+      ionosphereFree[g] = Double.NaN;
+      ionosphereFreeSmoothed[g] = Double.NaN;
+      scale[g] = 1;
+      groupDelayScale[g] = 0;
+
+      int first = signals[g * GnssBand.COUNT + GnssBand.L1];
+      if (first < 0 || !valid(pseudorange[first])) {
+        continue;
+      }
+      boolean beidou = constellation[g] == Ephemeris.BEIDOU;
+      if (beidou && !near(frequency[first], B1I_HZ)) {
+        continue;
+      }
+      for (int b : secondaryBands(constellation[g])) {
+        int second = signals[g * GnssBand.COUNT + b];
+        if (second < 0 || !valid(pseudorange[second])) {
+          continue;
+        }
+        if (beidou && !near(frequency[second], B3I_HZ)) {
+          continue;
+        }
+        double f1 = frequency[first] * frequency[first];
+        double f2 = frequency[second] * frequency[second];
+        double a = f1 / (f1 - f2);
+        double c = f2 / (f1 - f2);
+        double p = a * pseudorange[first] - c * pseudorange[second];
+        if (Math.abs(p - pseudorange[first]) > MAX_IONOSPHERE_METERS) {
+          continue;
+        }
+        secondary[g] = b;
+        ionosphereFree[g] = p;
+        scale[g] = a * a + c * c;
+        groupDelayScale[g] = beidou ? a : 0;
+        if (valid(smoothed[first]) && valid(smoothed[second])) {
+          ionosphereFreeSmoothed[g] = a * smoothed[first] - c * smoothed[second];
+        }
+        break;
+      }
+    }
+  }
+
+  // 可以与 L1 组合的第二个频段。GPS、QZSS 的 LNAV 钟差以 L1/L2 无电离层组合为基准，TGD 在 L1/L5 组合中
+  // 也正好抵消，只剩 1 ns 以内的 ISC；Galileo I/NAV 钟差以 E1/E5b 为基准，E1/E5a 只差两个 BGD 之差。
+  // 北斗 D1 钟差以 B3I 为基准，只组合 B1I/B3I 并由 getGroupDelayScale 改正 TGD1，
+  // B2I、B2a 需要的 TGD2、ISC 没有解码，不组合
+  private static int[] secondaryBands(int constellationType) {
+    switch (constellationType) {
+      case Ephemeris.GPS:
+      case Ephemeris.QZSS:
+        return GPS_SECONDARY;
+      case Ephemeris.GALILEO:
+        return GALILEO_SECONDARY;
+      case Ephemeris.BEIDOU:
+        return BEIDOU_SECONDARY;
+      default:
+        return SECONDARY;
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int getBand(int i) {
+    return band[i];
+  }
+
+  // 信号所在的卫星分组
+  public int getGroup(int i) {
+    return groupOf[i];
+  }
+
+  public int getGroupCount() {
+    return groups;
+  }
+
+  public int getConstellationType(int g) {
+    return constellation[g];
+  }
+
+  public int getSvid(int g) {
+    return svid[g];
+  }
+
+  // 该卫星在 band 频段的信号序号，没有时返回 -1
+  public int getSignal(int g, int band) {
+    return signals[g * GnssBand.COUNT + band];
+  }
+
+  public boolean hasIonosphereFree(int g) {
+    return secondary[g] >= 0;
+  }
+
+  // 与 L1 组合的频段，没有组合时为 -1
+  public int getSecondaryBand(int g) {
+    return secondary[g];
+  }
+
+  public double getIonosphereFree(int g) {
+    return ionosphereFree[g];
+  }
+
+  // 平滑伪距的组合，任一信号没有平滑值时为 NaN
+  public double getIonosphereFreeSmoothed(int g) {
+    return ionosphereFreeSmoothed[g];
+  }
+
+  // 组合系数的平方和，即组合伪距噪声方差的放大倍数
+  public double getVarianceScale(int g) {
+    return scale[g];
+  }
+
+  // 组合伪距的卫星钟差要减去 getGroupDelayScale 倍的星历 TGD，广播钟差以该组合为基准时为 0
+  public double getGroupDelayScale(int g) {
+    return groupDelayScale[g];
+  }
+
+  private static boolean near(double frequencyHz, double expectedHz) {
+    return Math.abs(frequencyHz - expectedHz) < 1E6;
+  }
+
+  private static boolean valid(double pseudorangeMeters) {
+    return pseudorangeMeters > 1E7 && pseudorangeMeters < 5E7;
+  }
+
+  private void allocate(int capacity) {
+    band = band == null ? new int[capacity] : Arrays.copyOf(band, capacity);
+    groupOf = groupOf == null ? new int[capacity] : Arrays.copyOf(groupOf, capacity);
+    frequency = frequency == null ? new double[capacity] : Arrays.copyOf(frequency, capacity);
+    pseudorange = pseudorange == null ? new double[capacity] : Arrays.copyOf(pseudorange, capacity);
+    smoothed = smoothed == null ? new double[capacity] : Arrays.copyOf(smoothed, capacity);
+    constellation = constellation == null ? new int[capacity] : Arrays.copyOf(constellation, capacity);
+    svid = svid == null ? new int[capacity] : Arrays.copyOf(svid, capacity);
+    signals = signals == null ? new int[capacity * GnssBand.COUNT] : Arrays.copyOf(signals, capacity * GnssBand.COUNT);
+    secondary = new int[capacity];
+    ionosphereFree = new double[capacity];
+    ionosphereFreeSmoothed = new double[capacity];
+    scale = new double[capacity];
+    groupDelayScale = new double[capacity];
+  }
+}
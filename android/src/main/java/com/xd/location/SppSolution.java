@@ -0,0 +1,37 @@
+package com.xd.location;
+
+/**
+ * 单点定位结果，由 SppSolver 填充，可以复用
+ */
+public class SppSolution {
+  public boolean valid;
+  public int iterations;
+  public int usedCount; // 参与解算的卫星数
+
+  // ECEF 坐标，米
+  public double x;
+  public double y;
+  public double z;
+
+  // WGS84 大地坐标
+  public double latitude;
+  public double longitude;
+  public double altitude;
+
+  public double clockBiasMeters; // 接收机钟差（第一个参与解算的系统），米
+  public final double[] systemBiasMeters = new double[SppSolver.MAX_SYSTEMS]; // 各系统钟差，按 SppSolver 的系统顺序
+
+  public double gdop;
+  public double pdop;
+  public double hdop;
+  public double vdop;
+
+  // 每个观测值的残差（米），未参与解算的为 NaN
+  public final double[] residuals = new double[SppSolver.MAX_OBSERVATIONS];
+
+  public void reset() {
+    valid = false;
+    iterations = 0;
+    usedCount = 0;
+  }
+}
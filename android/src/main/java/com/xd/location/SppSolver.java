@@ -0,0 +1,443 @@
+package com.xd.location;
+
+import java.util.Arrays;
+
+/**
+ * 加权最小二乘单点定位
+ *
+ * 输入为一个历元的伪距（通过 add 逐个加入）和广播星历，输出位置、接收机钟差、DOP 和残差。
+ * 所有矩阵预先分配，迭代过程中不分配对象，可以在处理线程上每个历元运行。
+ * 不依赖 Android 类，可以直接在 JVM 上用记录的历元测试。
+ *
+ * 未知数为 ECEF 坐标和每个系统一个钟差（GPS/QZSS、Galileo、北斗）。
+ * 对流层使用简单的高度角映射模型，电离层只在输入无电离层组合伪距时消除，单频伪距未改正。
+ */
+public class SppSolver {
+  public static final int MAX_OBSERVATIONS = 128;
+  public static final int MAX_SYSTEMS = 3;
+
+  private static final int MAX_UNKNOWNS = 3 + MAX_SYSTEMS;
+  private static final double SPEED_OF_LIGHT = 299792458.0;
+  private static final double OMEGA_E = 7.2921151467E-5;
+  private static final int MAX_ITERATIONS = 10;
+  private static final double CONVERGENCE_METERS = 1E-4;
+  private static final double ELEVATION_MASK = Math.toRadians(10);
+  private static final double MAX_GDOP = 30;
+
+  // 伪距误差模型：var = SIGMA0^2 / sin^2(el) + CN0_VARIANCE * 10^(-cn0 / 10)
+  private static final double SIGMA0 = 3.0;
+  private static final double CN0_VARIANCE = 2.8E4;
+
+  // WGS84
+  private static final double WGS84_A = 6378137.0;
+  private static final double WGS84_E2 = 6.69437999014E-3;
+
+  // 输入
+  private final int[] constellation = new int[MAX_OBSERVATIONS];
+  private final int[] svid = new int[MAX_OBSERVATIONS];
+  private final double[] pseudorange = new double[MAX_OBSERVATIONS];
+  private final double[] receiveTime = new double[MAX_OBSERVATIONS]; // 系统时间周内秒
+  private final double[] cn0 = new double[MAX_OBSERVATIONS];
+  private final double[] groupDelay = new double[MAX_OBSERVATIONS]; // 卫星钟差减去的 TGD 倍数
+  private final double[] varianceScale = new double[MAX_OBSERVATIONS]; // 无电离层组合的噪声放大倍数
+  private int count = 0;
+
+  // 中间结果
+  private final double[] satellite = new double[MAX_OBSERVATIONS * 4]; // x, y, z, 钟差（秒）
+  private final int[] system = new int[MAX_OBSERVATIONS]; // 系统编号，-1 表示不参与解算
+  private final double[] elevation = new double[MAX_OBSERVATIONS];
+  private final double[] h = new double[MAX_OBSERVATIONS * MAX_UNKNOWNS];
+  private final double[] v = new double[MAX_OBSERVATIONS];
+  private final double[] w = new double[MAX_OBSERVATIONS];
+  private final double[] normal = new double[MAX_UNKNOWNS * MAX_UNKNOWNS];
+  private final double[] inverse = new double[MAX_UNKNOWNS * MAX_UNKNOWNS];
+  private final double[] work = new double[MAX_UNKNOWNS * MAX_UNKNOWNS];
+  private final double[] rhs = new double[MAX_UNKNOWNS];
+  private final double[] dx = new double[MAX_UNKNOWNS];
+  private final double[] state = new double[MAX_UNKNOWNS];
+  private final int[] systemColumn = new int[MAX_SYSTEMS];
+  private final double[] east = new double[3];
+  private final double[] north = new double[3];
+  private final double[] up = new double[3];
+
+  // 上一次的位置，作为下一次迭代初值
+  private final double[] lastPosition = new double[3];
+
+  public void clear() {
+    count = 0;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /**
+   * 加入一个观测值
+   *
+   * @param receiveTimeSeconds 接收时刻，该系统的周内秒（北斗为 BDT）
+   * @param primary 是否为星历 TGD 对应的频点（GPS L1、北斗 B1I、Galileo E1）
+   */
+  public boolean add(int constellationType, int svid, double pseudorangeMeters, double receiveTimeSeconds,
+                     double cn0DbHz, boolean primary) {
+    return add(constellationType, svid, pseudorangeMeters, receiveTimeSeconds, cn0DbHz, primary ? 1 : 0, 1);
+  }
+
+  /**
+   * 加入一个无电离层组合伪距
+   *
+   * @param groupDelayScale 卫星钟差减去的 TGD 倍数，见 SignalGroups.getGroupDelayScale
+   * @param scale 组合系数的平方和
+   */
+  public boolean add(int constellationType, int svid, double pseudorangeMeters, double receiveTimeSeconds,
+                     double cn0DbHz, double groupDelayScale, double scale) {
+    if (count == MAX_OBSERVATIONS || systemOf(constellationType) < 0) {
+      return false;
+    }
+    if (!(pseudorangeMeters > 1E7 && pseudorangeMeters < 5E7)) {
+      return false;
+    }
+
+    constellation[count] = constellationType;
+    this.svid[count] = svid;
+    pseudorange[count] = pseudorangeMeters;
+    receiveTime[count] = receiveTimeSeconds;
+    cn0[count] = cn0DbHz;
+    groupDelay[count] = groupDelayScale;
+    varianceScale[count] = scale;
+    count++;
+    return true;
+  }
+
+  public boolean solve(EphemerisSource ephemerides, SppSolution out) {
+    out.reset();
+    Arrays.fill(out.residuals, Double.NaN);
+
+    // 卫星位置和钟差，每个历元只算一次
+    Arrays.fill(systemColumn, -1);
+    int systems = 0;
+    int usable = 0;
+    for (int i = 0; i < count; i++) {
+      system[i] = -1;
+      Ephemeris eph = ephemerides.find(constellation[i], svid[i], receiveTime[i]);
+      if (eph == null || eph.health != 0) {
+        continue;
+      }
+
+      double tTx = receiveTime[i] - pseudorange[i] / SPEED_OF_LIGHT;
+      tTx -= eph.clockBias(tTx);
+      eph.position(tTx, satellite, i * 4);
+      satellite[i * 4 + 3] -= groupDelay[i] * eph.tgd;
+
+      int s = systemOf(constellation[i]);
+      if (systemColumn[s] < 0) {
+        systemColumn[s] = 3 + systems++;
+      }
+      system[i] = s;
+      elevation[i] = Math.PI / 2;
+      usable++;
+    }
+
+    int unknowns = 3 + systems;
+    if (usable < unknowns) {
+      return false;
+    }
+
+    Arrays.fill(state, 0);
+    System.arraycopy(lastPosition, 0, state, 0, 3);
+
+    int used = 0;
+    for (int iteration = 1; iteration <= MAX_ITERATIONS; iteration++) {
+      used = buildDesign(unknowns, iteration > 1 || norm(state) > 1E6);
+      if (used < unknowns) {
+        return false;
+      }
+
+      // 法方程 N = H^T W H，rhs = H^T W v
+      for (int r = 0; r < unknowns; r++) {
+        double sum = 0;
+        for (int k = 0; k < count; k++) {
+          sum += h[k * MAX_UNKNOWNS + r] * w[k] * v[k];
+        }
+        rhs[r] = sum;
+        for (int c = r; c < unknowns; c++) {
+          double n = 0;
+          for (int k = 0; k < count; k++) {
+            n += h[k * MAX_UNKNOWNS + r] * w[k] * h[k * MAX_UNKNOWNS + c];
+          }
+          normal[r * unknowns + c] = n;
+          normal[c * unknowns + r] = n;
+        }
+      }
+
+      if (!invert(normal, inverse, unknowns)) {
+        return false;
+      }
+
+      double step = 0;
+      for (int r = 0; r < unknowns; r++) {
+        double sum = 0;
+        for (int c = 0; c < unknowns; c++) {
+          sum += inverse[r * unknowns + c] * rhs[c];
+        }
+        dx[r] = sum;
+        state[r] += sum;
+        if (r < 3) {
+          step += sum * sum;
+        }
+      }
+
+      out.iterations = iteration;
+      if (Math.sqrt(step) < CONVERGENCE_METERS) {
+        break;
+      }
+    }
+
+    // 用最终位置更新残差和高度角
+    used = buildDesign(unknowns, true);
+    if (used < unknowns || !computeDop(unknowns, out)) {
+      return false;
+    }
+
+    for (int i = 0; i < count; i++) {
+      out.residuals[i] = w[i] > 0 ? v[i] : Double.NaN;
+    }
+
+    out.x = state[0];
+    out.y = state[1];
+    out.z = state[2];
+    out.usedCount = used;
+    Arrays.fill(out.systemBiasMeters, 0);
+    for (int s = 0; s < MAX_SYSTEMS; s++) {
+      if (systemColumn[s] >= 0) {
+        out.systemBiasMeters[s] = state[systemColumn[s]];
+      }
+    }
+    out.clockBiasMeters = state[3];
+    toGeodetic(out);
+
+    out.valid = out.gdop < MAX_GDOP && !Double.isNaN(out.x);
+    if (out.valid) {
+      System.arraycopy(state, 0, lastPosition, 0, 3);
+    }
+    return out.valid;
+  }
+
+  // 按当前状态线性化，填充 h、v、w，返回参与解算的观测数
+  private int buildDesign(int unknowns, boolean positionKnown) {
+    double rx = state[0];
+    double ry = state[1];
+    double rz = state[2];
+    double lat = 0;
+    double lon = 0;
+    if (positionKnown) {
+      double p = Math.sqrt(rx * rx + ry * ry);
+      lat = Math.atan2(rz, p * (1 - WGS84_E2));
+      lon = Math.atan2(ry, rx);
+    }
+    double sinLat = Math.sin(lat);
+    double cosLat = Math.cos(lat);
+    double sinLon = Math.sin(lon);
+    double cosLon = Math.cos(lon);
+
+    int used = 0;
+    for (int i = 0; i < count; i++) {
+      int row = i * MAX_UNKNOWNS;
+      w[i] = 0;
+      v[i] = 0;
+      for (int c = 0; c < unknowns; c++) {
+        h[row + c] = 0;
+      }
+      if (system[i] < 0) {
+        continue;
+      }
+
+      double sx = satellite[i * 4];
+      double sy = satellite[i * 4 + 1];
+      double sz = satellite[i * 4 + 2];
+
+      // 地球自转改正（Sagnac）
+      double dxs = sx - rx;
+      double dys = sy - ry;
+      double dzs = sz - rz;
+      double range = Math.sqrt(dxs * dxs + dys * dys + dzs * dzs);
+      double theta = OMEGA_E * range / SPEED_OF_LIGHT;
+      double cx = sx * Math.cos(theta) + sy * Math.sin(theta);
+      double cy = -sx * Math.sin(theta) + sy * Math.cos(theta);
+      dxs = cx - rx;
+      dys = cy - ry;
+      range = Math.sqrt(dxs * dxs + dys * dys + dzs * dzs);
+
+      double tropo = 0;
+      if (positionKnown) {
+        double e = -sinLon * dxs + cosLon * dys;
+        double n = -sinLat * cosLon * dxs - sinLat * sinLon * dys + cosLat * dzs;
+        double u = cosLat * cosLon * dxs + cosLat * sinLon * dys + sinLat * dzs;
+        elevation[i] = Math.atan2(u, Math.sqrt(e * e + n * n));
+        if (elevation[i] < ELEVATION_MASK) {
+          continue;
+        }
+        tropo = 2.47 / (Math.sin(elevation[i]) + 0.0121);
+      }
+
+      int column = systemColumn[system[i]];
+      double predicted = range + state[column] - SPEED_OF_LIGHT * satellite[i * 4 + 3] + tropo;
+      v[i] = pseudorange[i] - predicted;
+
+      h[row] = -dxs / range;
+      h[row + 1] = -dys / range;
+      h[row + 2] = -dzs / range;
+      h[row + column] = 1;
+
+      double sinEl = positionKnown ? Math.max(Math.sin(elevation[i]), 0.1) : 1;
+      double variance = SIGMA0 * SIGMA0 / (sinEl * sinEl) + CN0_VARIANCE * Math.pow(10, -cn0[i] / 10);
+      variance *= varianceScale[i];
+      w[i] = 1 / variance;
+      used++;
+    }
+    return used;
+  }
+
+  // 用不加权的设计矩阵计算 DOP
+  private boolean computeDop(int unknowns, SppSolution out) {
+    for (int r = 0; r < unknowns; r++) {
+      for (int c = r; c < unknowns; c++) {
+        double n = 0;
+        for (int k = 0; k < count; k++) {
+          if (w[k] > 0) {
+            n += h[k * MAX_UNKNOWNS + r] * h[k * MAX_UNKNOWNS + c];
+          }
+        }
+        normal[r * unknowns + c] = n;
+        normal[c * unknowns + r] = n;
+      }
+    }
+    if (!invert(normal, inverse, unknowns)) {
+      return false;
+    }
+
+    double qxx = inverse[0];
+    double qyy = inverse[unknowns + 1];
+    double qzz = inverse[2 * unknowns + 2];
+    double qtt = inverse[3 * unknowns + 3];
+    out.gdop = Math.sqrt(qxx + qyy + qzz + qtt);
+    out.pdop = Math.sqrt(qxx + qyy + qzz);
+
+    // 位置协因数阵转换到当地 ENU
+    double p = Math.sqrt(state[0] * state[0] + state[1] * state[1]);
+    double lat = Math.atan2(state[2], p * (1 - WGS84_E2));
+    double lon = Math.atan2(state[1], state[0]);
+    double sinLat = Math.sin(lat);
+    double cosLat = Math.cos(lat);
+    double sinLon = Math.sin(lon);
+    double cosLon = Math.cos(lon);
+    east[0] = -sinLon;
+    east[1] = cosLon;
+    east[2] = 0;
+    north[0] = -sinLat * cosLon;
+    north[1] = -sinLat * sinLon;
+    north[2] = cosLat;
+    up[0] = cosLat * cosLon;
+    up[1] = cosLat * sinLon;
+    up[2] = sinLat;
+    out.hdop = Math.sqrt(quadratic(east, unknowns) + quadratic(north, unknowns));
+    out.vdop = Math.sqrt(quadratic(up, unknowns));
+    return true;
+  }
+
+  // a^T Q a，Q 为 inverse 左上角 3x3
+  private double quadratic(double[] a, int unknowns) {
+    double sum = 0;
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 3; c++) {
+        sum += a[r] * inverse[r * unknowns + c] * a[c];
+      }
+    }
+    return sum;
+  }
+
+  // Gauss-Jordan 求逆，a 不被修改
+  private boolean invert(double[] a, double[] inv, int n) {
+    System.arraycopy(a, 0, work, 0, n * n);
+    for (int r = 0; r < n; r++) {
+      for (int c = 0; c < n; c++) {
+        inv[r * n + c] = r == c ? 1 : 0;
+      }
+    }
+
+    for (int col = 0; col < n; col++) {
+      int pivot = col;
+      for (int r = col + 1; r < n; r++) {
+        if (Math.abs(work[r * n + col]) > Math.abs(work[pivot * n + col])) {
+          pivot = r;
+        }
+      }
+      if (Math.abs(work[pivot * n + col]) < 1E-12) {
+        return false;
+      }
+      if (pivot != col) {
+        for (int c = 0; c < n; c++) {
+          double t = work[col * n + c];
+          work[col * n + c] = work[pivot * n + c];
+          work[pivot * n + c] = t;
+          t = inv[col * n + c];
+          inv[col * n + c] = inv[pivot * n + c];
+          inv[pivot * n + c] = t;
+        }
+      }
+
+      double d = work[col * n + col];
+      for (int c = 0; c < n; c++) {
+        work[col * n + c] /= d;
+        inv[col * n + c] /= d;
+      }
+      for (int r = 0; r < n; r++) {
+        if (r == col) {
+          continue;
+        }
+        double f = work[r * n + col];
+        if (f == 0) {
+          continue;
+        }
+        for (int c = 0; c < n; c++) {
+          work[r * n + c] -= f * work[col * n + c];
+          inv[r * n + c] -= f * inv[col * n + c];
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void toGeodetic(SppSolution out) {
+    double p = Math.sqrt(out.x * out.x + out.y * out.y);
+    double lat = Math.atan2(out.z, p * (1 - WGS84_E2));
+    double height = 0;
+    for (int i = 0; i < 5; i++) {
+      double sinLat = Math.sin(lat);
+      double n = WGS84_A / Math.sqrt(1 - WGS84_E2 * sinLat * sinLat);
+      height = p / Math.cos(lat) - n;
+      lat = Math.atan2(out.z, p * (1 - WGS84_E2 * n / (n + height)));
+    }
+    out.latitude = Math.toDegrees(lat);
+    out.longitude = Math.toDegrees(Math.atan2(out.y, out.x));
+    out.altitude = height;
+  }
+
+  private static double norm(double[] v) {
+    return Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+  }
+
+  // 星座对应的钟差编号，不支持的星座返回 -1
+  private static int systemOf(int constellationType) {
+    switch (constellationType) {
+      case Ephemeris.GPS:
+      case Ephemeris.QZSS:
+        return 0;
+      case Ephemeris.GALILEO:
+        return 1;
+      case Ephemeris.BEIDOU:
+        return 2;
+      default:
+        return -1;
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package com.xd.location;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 事件流订阅参数，由 open 方法的参数解析得到，参数创建后不再修改
+ *
+ * 支持的参数：
+ *   format          "map"（默认）或 "binary"
+ *   max_rate_hz     最大发送频率，0 表示不限制
+ *   fields          字段白名单，可以是分组名（rx_clock, location, sensor, satellites, spp, imu, fusion, iono_free）
+ *                   或单个观测值字段名，为空时发送全部字段
+ *   constellations  只发送这些星座（GnssStatus.CONSTELLATION_*）的观测值
+ *   min_cn0         最小载噪比 dB-Hz
+ *   delivery        "stream"（默认，每个历元一条消息）、"batch"（批量发送）或 "pull"（由 drain 取出）
+ *   batch_size      批量模式下每批的历元数
+ *   batch_interval_ms  批量模式下最长的发送间隔
+ *   buffer_capacity 批量和拉取模式下环形缓冲区的容量
+ *   imu_rate_hz     IMU 采集频率，大于 0 时每个历元附带上一历元以来的全部 IMU 采样
+ *                   和按 IMU 频率输出的 GNSS/INS 融合结果
+ *   location_interval_ms  系统定位结果的推送间隔，location 字段和融合使用最新一次推送的结果
+ *   keyframe_interval  大于 0 时二进制格式使用增量编码，每 N 个历元一个关键帧
+ *   replay_path     回放的 EpochLog 文件，replay_speed 为回放倍速，0 表示尽快回放
+ *   qc              质量检查："off"（默认）、"tag"（在 qc_flags 字段中标记）或 "drop"（不发送有标记的观测值），
+ *                   两种模式下有标记的观测值都不参与跟踪、无电离层组合和单点定位
+ *   min_elevation   质量检查的高度角掩码，度
+ *   max_time_uncertainty_ns  质量检查的接收时间不确定度上限，默认 500 ns
+ *   max_rate_uncertainty     质量检查的伪距率不确定度上限，默认 10 m/s
+ *   max_rate_residual        质量检查的伪距变化率与多普勒之差的上限，默认 50 m/s
+ *   orientation     sensor 中航向角的来源："magnetic"（默认，加速度计 + 磁力计）、"rotation_vector"
+ *                   （系统的旋转向量）或 "fused"（游戏旋转向量与磁力计的互补滤波）
+ *   adaptive        true 时按运动状态、定位质量和前后台切换采集档位，见 SamplingScheduler
+ *   stationary_timeout_ms  静止超过该时间后只保留系统定位结果，默认 60000
+ *   pause_timeout_ms       静止超过该时间后暂停 GNSS，由显著运动唤醒，默认 300000
+ *   position_interval_ms   只有定位结果的档位下的定位间隔，默认 5000
+ *   max_accuracy    定位精度好于该值（m）时才允许降档，默认 20
+ *   background      后台时的档位："full"、"position"（默认）或 "paused"
+ *   foreground_service     true 时以前台服务运行，Activity 和 Flutter 引擎销毁后继续采集
+ *   notification_title、notification_text  前台服务通知的标题和内容，默认为应用名称
+ *   metrics         true 时记录处理链路的分阶段延迟和计数，见 PipelineMetrics，可通过 getMetrics 读取
+ *   metrics_interval_ms    大于 0 时按该间隔发送 type 为 "metrics" 的事件，同时开启 metrics，默认 0
+ */
+public class SubscriptionSpec {
+  public static final int GROUP_CLOCK = 1;
+  public static final int GROUP_LOCATION = 1 << 1;
+  public static final int GROUP_SENSOR = 1 << 2;
+  public static final int GROUP_SATELLITES = 1 << 3;
+  public static final int GROUP_SOLUTION = 1 << 4;
+  public static final int GROUP_IMU = 1 << 5;
+  public static final int GROUP_FUSION = 1 << 6; // GNSS/INS 融合结果，需要 imu_rate_hz > 0
+  public static final int GROUP_IONO_FREE = 1 << 7; // 双频无电离层组合伪距
+  public static final int ALL_GROUPS = GROUP_CLOCK | GROUP_LOCATION | GROUP_SENSOR | GROUP_SATELLITES | GROUP_SOLUTION
+      | GROUP_IMU | GROUP_FUSION | GROUP_IONO_FREE;
+
+  public static final int DELIVERY_STREAM = 0;
+  public static final int DELIVERY_BATCH = 1;
+  public static final int DELIVERY_PULL = 2;
+
+  public static final int QC_OFF = 0;
+  public static final int QC_TAG = 1;
+  public static final int QC_DROP = 2;
+
+  // 与 OrientationEngine.MODE_* 相同，benchmark 模块不包含 OrientationEngine
+  public static final int ORIENTATION_MAGNETIC = 0;
+  public static final int ORIENTATION_ROTATION_VECTOR = 1;
+  public static final int ORIENTATION_FUSED = 2;
+
+  // 频率限制允许的抖动，避免 1Hz 数据在 1Hz 限制下被丢一半
+  private static final double RATE_TOLERANCE = 0.9;
+
+  public final boolean binary;
+  public final long minIntervalNanos;
+  public final int groups;
+  public final int fieldMask;
+  public final boolean legacyFields; // 没有指定字段白名单，保持原来的输出
+  public final int constellationMask;
+  public final double minCn0DbHz;
+  public final int delivery;
+  public final int batchSize;
+  public final long batchIntervalMillis;
+  public final int bufferCapacity;
+  public final int imuRateHz;
+  public final long locationIntervalMillis;
+  public final int keyframeInterval; // 大于 0 时二进制格式使用增量编码
+  public final String replayPath; // 回放的 EpochLog 文件，为 null 时使用实时数据
+  public final double replaySpeed; // 回放倍速，0 表示尽快回放
+  public final int qcMode;
+  public final double minElevationDegrees;
+  public final double maxTimeUncertaintyNanos;
+  public final double maxRateUncertainty;
+  public final double maxRateResidual;
+  public final int orientationMode; // ORIENTATION_*
+  public final boolean adaptive;
+  public final long stationaryTimeoutMillis;
+  public final long pauseTimeoutMillis;
+  public final long positionIntervalMillis;
+  public final double maxFixAccuracy;
+  public final String backgroundProfile;
+  public final boolean foregroundService;
+  public final String notificationTitle; // 没有指定时为 null
+  public final String notificationText;
+  public final boolean metrics;
+  public final long metricsIntervalMillis; // 0 表示不定时发送
+
+  private long lastEmitNanos = Long.MIN_VALUE; // 只在处理线程上访问
+
+  public static final SubscriptionSpec DEFAULT = new SubscriptionSpec(null);
+
+  public SubscriptionSpec(Map<String, Object> arguments) {
+    binary = arguments != null && "binary".equals(arguments.get("format"));
+
+    double maxRateHz = number(arguments, "max_rate_hz", 0);
+    minIntervalNanos = maxRateHz > 0 ? (long) (1E9 / maxRateHz * RATE_TOLERANCE) : 0;
+
+    Object fields = arguments != null ? arguments.get("fields") : null;
+    if (fields instanceof List && !((List<?>) fields).isEmpty()) {
+      int g = 0;
+      int mask = 0;
+      for (Object item : (List<?>) fields) {
+        String name = String.valueOf(item);
+        if (name.equals("rx_clock")) {
+          g |= GROUP_CLOCK;
+        } else if (name.equals("location")) {
+          g |= GROUP_LOCATION;
+        } else if (name.equals("sensor")) {
+          g |= GROUP_SENSOR;
+        } else if (name.equals("spp")) {
+          g |= GROUP_SOLUTION;
+        } else if (name.equals("imu")) {
+          g |= GROUP_IMU;
+        } else if (name.equals("fusion")) {
+          g |= GROUP_FUSION;
+        } else if (name.equals("iono_free")) {
+          g |= GROUP_IONO_FREE;
+        } else if (name.equals("satellites")) {
+          g |= GROUP_SATELLITES;
+          mask = EpochEncoder.ALL_FIELDS;
+        } else {
+          int field = EpochEncoder.fieldOf(name);
+          if (field >= 0) {
+            g |= GROUP_SATELLITES;
+            mask |= 1 << field;
+          }
+        }
+      }
+      groups = g;
+      fieldMask = mask;
+      legacyFields = false;
+    } else {
+      groups = ALL_GROUPS;
+      fieldMask = EpochEncoder.ALL_FIELDS;
+      legacyFields = true;
+    }
+
+    Object constellations = arguments != null ? arguments.get("constellations") : null;
+    if (constellations instanceof List && !((List<?>) constellations).isEmpty()) {
+      int mask = 0;
+      for (Object item : (List<?>) constellations) {
+        if (item instanceof Number) {
+          mask |= 1 << ((Number) item).intValue();
+        }
+      }
+      constellationMask = mask;
+    } else {
+      constellationMask = -1;
+    }
+
+    minCn0DbHz = number(arguments, "min_cn0", 0);
+
+    Object mode = arguments != null ? arguments.get("delivery") : null;
+    if ("batch".equals(mode)) {
+      delivery = DELIVERY_BATCH;
+    } else if ("pull".equals(mode)) {
+      delivery = DELIVERY_PULL;
+    } else {
+      delivery = DELIVERY_STREAM;
+    }
+    batchSize = Math.max(1, (int) number(arguments, "batch_size", 10));
+    batchIntervalMillis = Math.max(1, (long) number(arguments, "batch_interval_ms", 1000));
+    bufferCapacity = Math.max(batchSize, (int) number(arguments, "buffer_capacity", 64));
+    imuRateHz = Math.max(0, (int) number(arguments, "imu_rate_hz", 0));
+    locationIntervalMillis = Math.max(0, (long) number(arguments, "location_interval_ms", 1000));
+    keyframeInterval = binary ? Math.max(0, (int) number(arguments, "keyframe_interval", 0)) : 0;
+
+    Object replay = arguments != null ? arguments.get("replay_path") : null;
+    replayPath = replay instanceof String ? (String) replay : null;
+    replaySpeed = Math.max(0, number(arguments, "replay_speed", 1));
+
+    Object qc = arguments != null ? arguments.get("qc") : null;
+    if ("tag".equals(qc)) {
+      qcMode = QC_TAG;
+    } else if ("drop".equals(qc)) {
+      qcMode = QC_DROP;
+    } else {
+      qcMode = QC_OFF;
+    }
+    minElevationDegrees = number(arguments, "min_elevation", 0);
+    maxTimeUncertaintyNanos = number(arguments, "max_time_uncertainty_ns", 500);
+    maxRateUncertainty = number(arguments, "max_rate_uncertainty", 10);
+    maxRateResidual = number(arguments, "max_rate_residual", 50);
+
+    Object orientation = arguments != null ? arguments.get("orientation") : null;
+    if ("rotation_vector".equals(orientation)) {
+      orientationMode = ORIENTATION_ROTATION_VECTOR;
+    } else if ("fused".equals(orientation)) {
+      orientationMode = ORIENTATION_FUSED;
+    } else {
+      orientationMode = ORIENTATION_MAGNETIC;
+    }
+
+    adaptive = arguments != null && Boolean.TRUE.equals(arguments.get("adaptive"));
+    stationaryTimeoutMillis = Math.max(0, (long) number(arguments, "stationary_timeout_ms", 60000));
+    pauseTimeoutMillis = Math.max(stationaryTimeoutMillis, (long) number(arguments, "pause_timeout_ms", 300000));
+    positionIntervalMillis = Math.max(locationIntervalMillis, (long) number(arguments, "position_interval_ms", 5000));
+    maxFixAccuracy = number(arguments, "max_accuracy", 20);
+    Object background = arguments != null ? arguments.get("background") : null;
+    backgroundProfile = background instanceof String ? (String) background : "position";
+
+    foregroundService = arguments != null && Boolean.TRUE.equals(arguments.get("foreground_service"));
+    Object title = arguments != null ? arguments.get("notification_title") : null;
+    notificationTitle = title instanceof String ? (String) title : null;
+    Object text = arguments != null ? arguments.get("notification_text") : null;
+    notificationText = text instanceof String ? (String) text : null;
+
+    metricsIntervalMillis = Math.max(0, (long) number(arguments, "metrics_interval_ms", 0));
+    metrics = metricsIntervalMillis > 0 || arguments != null && Boolean.TRUE.equals(arguments.get("metrics"));
+  }
+
+  public boolean has(int group) {
+    return (groups & group) != 0;
+  }
+
+  // 订阅了平滑伪距、周跳等字段时，每个历元都要更新 ObservableTracker，包括被限频跳过的历元
+  public boolean tracksObservables() {
+    return has(GROUP_SATELLITES) && (fieldMask & EpochEncoder.TRACKED_FIELDS) != 0;
+  }
+
+  // 按频率限制判断该历元是否需要发送
+  public boolean shouldEmit(long timeNanos) {
+    if (minIntervalNanos > 0 && lastEmitNanos != Long.MIN_VALUE) {
+      long elapsed = timeNanos - lastEmitNanos;
+      // 时间倒退（如硬件时钟重置）时重新开始计时
+      if (elapsed >= 0 && elapsed < minIntervalNanos) {
+        return false;
+      }
+    }
+    lastEmitNanos = timeNanos;
+    return true;
+  }
+
+  // 按星座和载噪比筛选观测值，drop 模式下去掉质量检查有标记的观测值，把选中的下标写入 selected，返回个数
+  public int select(GnssDataPool data, int[] selected) {
+    int count = 0;
+    for (int i = 0; i < data.size(); i++) {
+      GnssData d = data.get(i);
+      if ((constellationMask & (1 << d.getConstellationType())) == 0) {
+        continue;
+      }
+      if (minCn0DbHz > 0 && d.getMeasurementCn0DbHz() < minCn0DbHz) {
+        continue;
+      }
+      if (qcMode == QC_DROP && d.getQcFlags() != 0) {
+        continue;
+      }
+      selected[count++] = i;
+    }
+    return count;
+  }
+
+  private static double number(Map<String, Object> arguments, String key, double defaultValue) {
+    Object value = arguments != null ? arguments.get(key) : null;
+    return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+  }
+}
@@ -1,8 +1,13 @@
 import 'dart:async';
+import 'dart:typed_data';
 
 import 'package:flutter/services.dart';
 import 'package:permission_handler/permission_handler.dart';
 
+import 'src/gnss_epoch.dart';
+
+export 'src/gnss_epoch.dart';
+
 class Location {
   static const MethodChannel _channel = MethodChannel('location');
   static const EventChannel _eChannel =
@@ -18,10 +23,103 @@ class Location {
     return message;
   }
 
-  // 开启定位
-  static Future<bool> open() async {
-    if (await Permission.location.request().isGranted) {
-      return await _channel.invokeMethod("open");
+  // 开启定位，format 为 'binary' 时事件为二进制历元，使用 onListenEpoch 接收
+  // maxRateHz 限制发送频率，fields 为字段白名单（rx_clock、location、sensor、
+  // satellites、spp、imu、fusion、iono_free 或单个观测值字段名），constellations 为星座类型，minCn0 为最小载噪比
+  // delivery 为 'batch' 时每 batchSize 个历元或 batchIntervalMs 毫秒发送一批，
+  // 为 'pull' 时不推送，由 drain 取出，bufferCapacity 为原生缓冲区容量
+  // imuRateHz 大于 0 时以该频率采集加速度计、陀螺仪和磁力计，每个历元附带期间的全部采样
+  // 以及按 IMU 频率输出的 GNSS/INS 融合位置、速度和姿态（fusion）
+  // locationIntervalMs 为系统定位结果的推送间隔，默认 1000 毫秒
+  // keyframeInterval 大于 0 时二进制历元使用增量编码，每 keyframeInterval 个历元一个关键帧，
+  // 其余历元只包含变化的卫星和字段，onListenEpoch 会重建完整的历元，drain 的结果用 GnssDeltaDecoder 解码
+  // replayPath 为 startLog 记录的文件时回放该文件代替实时数据，replaySpeed 为回放倍速，默认 1，0 表示尽快回放
+  // qc 为 'tag' 时对观测值做质量检查并在 qc_flags 字段中标记，为 'drop' 时不发送有标记的观测值，
+  // 两种模式下有标记的观测值都不参与平滑、无电离层组合和单点定位；minElevation 为高度角掩码，
+  // maxTimeUncertaintyNs、maxRateUncertainty 为不确定度上限，maxRateResidual 为伪距变化率与多普勒之差的上限
+  // orientation 为 sensor 中航向角的来源：'magnetic'（加速度计 + 磁力计）、'rotation_vector'（系统旋转向量）
+  // 或 'fused'（游戏旋转向量与磁力计的互补滤波），设备没有对应的传感器时退回 'magnetic'
+  // adaptive 为 true 时按运动状态、定位质量和前后台切换采集档位：'full' 全部数据，
+  // 'position' 只有间隔 positionIntervalMs 的系统定位结果，'paused' 暂停 GNSS 直到设备移动。
+  // 静止 stationaryTimeoutMs 且定位精度好于 maxAccuracy 米时降为 'position'，静止 pauseTimeoutMs 时 'paused'，
+  // background 为切到后台时的档位；档位切换和 'position' 档位的定位结果通过 onListenEpoch 的 onEvent 接收
+  // foregroundService 为 true 时以前台服务运行，Activity 和 Flutter 引擎销毁后继续采集、记录和解算，
+  // 重新监听事件流即可继续接收，notificationTitle、notificationText 为前台服务通知的内容
+  // metrics 为 true 时记录处理链路的分阶段延迟和计数，用 metrics() 读取；metricsIntervalMs 大于 0 时
+  // 同时按该间隔发送 type 为 'metrics' 的事件，通过 onListenEpoch 的 onEvent 接收
+  static Future<bool> open({
+    String format = 'map',
+    double? maxRateHz,
+    List<String>? fields,
+    List<int>? constellations,
+    double? minCn0,
+    String delivery = 'stream',
+    int? batchSize,
+    int? batchIntervalMs,
+    int? bufferCapacity,
+    int? imuRateHz,
+    int? locationIntervalMs,
+    int? keyframeInterval,
+    String? replayPath,
+    double? replaySpeed,
+    String qc = 'off',
+    double? minElevation,
+    double? maxTimeUncertaintyNs,
+    double? maxRateUncertainty,
+    double? maxRateResidual,
+    String orientation = 'magnetic',
+    bool adaptive = false,
+    int? stationaryTimeoutMs,
+    int? pauseTimeoutMs,
+    int? positionIntervalMs,
+    double? maxAccuracy,
+    String background = 'position',
+    bool foregroundService = false,
+    String? notificationTitle,
+    String? notificationText,
+    bool metrics = false,
+    int? metricsIntervalMs,
+  }) async {
+    if (replayPath != null || await Permission.location.request().isGranted) {
+      _measureDecode = metrics || (metricsIntervalMs ?? 0) > 0;
+      return await _channel.invokeMethod("open", {
+        'format': format,
+        if (maxRateHz != null) 'max_rate_hz': maxRateHz,
+        if (fields != null) 'fields': fields,
+        if (constellations != null) 'constellations': constellations,
+        if (minCn0 != null) 'min_cn0': minCn0,
+        'delivery': delivery,
+        if (batchSize != null) 'batch_size': batchSize,
+        if (batchIntervalMs != null) 'batch_interval_ms': batchIntervalMs,
+        if (bufferCapacity != null) 'buffer_capacity': bufferCapacity,
+        if (imuRateHz != null) 'imu_rate_hz': imuRateHz,
+        if (locationIntervalMs != null)
+          'location_interval_ms': locationIntervalMs,
+        if (keyframeInterval != null) 'keyframe_interval': keyframeInterval,
+        if (replayPath != null) 'replay_path': replayPath,
+        if (replaySpeed != null) 'replay_speed': replaySpeed,
+        'qc': qc,
+        if (minElevation != null) 'min_elevation': minElevation,
+        if (maxTimeUncertaintyNs != null)
+          'max_time_uncertainty_ns': maxTimeUncertaintyNs,
+        if (maxRateUncertainty != null)
+          'max_rate_uncertainty': maxRateUncertainty,
+        if (maxRateResidual != null) 'max_rate_residual': maxRateResidual,
+        'orientation': orientation,
+        'adaptive': adaptive,
+        if (stationaryTimeoutMs != null)
+          'stationary_timeout_ms': stationaryTimeoutMs,
+        if (pauseTimeoutMs != null) 'pause_timeout_ms': pauseTimeoutMs,
+        if (positionIntervalMs != null)
+          'position_interval_ms': positionIntervalMs,
+        if (maxAccuracy != null) 'max_accuracy': maxAccuracy,
+        'background': background,
+        'foreground_service': foregroundService,
+        if (notificationTitle != null) 'notification_title': notificationTitle,
+        if (notificationText != null) 'notification_text': notificationText,
+        'metrics': metrics,
+        if (metricsIntervalMs != null) 'metrics_interval_ms': metricsIntervalMs,
+      });
     }
     return false;
   }
@@ -31,8 +129,171 @@ class Location {
     return await _channel.invokeMethod("close");
   }
 
+  // 开始原生 RINEX 记录，path 为观测文件路径，导航电文写入同名 .nav 文件
+  static Future<bool> startRecording(String path) async {
+    return await _channel.invokeMethod("startRecording", {'path': path});
+  }
+
+  // 停止 RINEX 记录
+  static Future<bool> stopRecording() async {
+    return await _channel.invokeMethod("stopRecording");
+  }
+
+  // 开始记录原始观测值、卫星状态、导航电文、定位结果和传感器数据，记录的文件可以用 open(replayPath:) 回放
+  static Future<bool> startLog(String path) async {
+    return await _channel.invokeMethod("startLog", {'path': path});
+  }
+
+  // 停止原始数据记录
+  static Future<bool> stopLog() async {
+    return await _channel.invokeMethod("stopLog");
+  }
+
+  // 取出原生缓冲区中的全部历元（pull/batch 模式）
+  static Future<List<dynamic>> drain() async {
+    return await _channel.invokeMethod("drain");
+  }
+
+  // 缓冲区计数：capacity、size、pushed、overwritten、drained、batches、dispatch_dropped
+  static Future<Map<String, dynamic>> batchStats() async {
+    final Map stats = await _channel.invokeMethod("getBatchStats");
+    return Map<String, dynamic>.from(stats);
+  }
+
+  // 设备能力和当前启用的数据来源：
+  // device 为 measurements、navigation_messages（supported、unsupported 或 unknown，按设备缓存）、
+  // measurement_status、navigation_status（最近一次状态回调）以及 Android 12 起的其他能力；
+  // active 为 open 后实际注册的数据（source、measurements、navigation_messages 等），没有 open 时为 null
+  static Future<Map<String, dynamic>> capabilities() async {
+    final Map data = await _channel.invokeMethod("getCapabilities");
+    return Map<String, dynamic>.from(data);
+  }
+
+  // 打开 path 目录下的历元存储，之后每个历元的全部观测值都写入存储（分段文件，只追加），
+  // 可以用 queryEpochs 按 GPS 时间查询。segmentBytes 为分段大小，默认 8 MB；
+  // 超过 maxBytes（默认 256 MB）或早于最新历元 maxAgeMs（默认 24 小时）的分段被删除，0 表示不限
+  static Future<bool> openStore(String path,
+      {int? segmentBytes, int? maxBytes, int? maxAgeMs}) async {
+    return await _channel.invokeMethod("openStore", {
+      'path': path,
+      if (segmentBytes != null) 'segment_bytes': segmentBytes,
+      if (maxBytes != null) 'max_bytes': maxBytes,
+      if (maxAgeMs != null) 'max_age_ms': maxAgeMs,
+    });
+  }
+
+  // 停止写入历元存储
+  static Future<bool> closeStore() async {
+    return await _channel.invokeMethod("closeStore");
+  }
+
+  // 返回存储中 GPS 时间（纳秒，见 GnssEpoch.gpsTimeNanos）在 [from, to] 之间的历元，按写入顺序排列：
+  // 分段内时间递增，GPS 时间回退后写入的历元排在时间较晚的旧历元之后。
+  // 每次从原生端取 chunkSize 个（大于 0），fields 为保留的观测值字段名，默认全部字段
+  static Stream<GnssEpoch> queryEpochs(int from, int to,
+      {List<String>? fields, int chunkSize = 256}) async* {
+    assert(chunkSize > 0, 'chunkSize must be positive');
+    Map? next;
+    do {
+      final Map chunk = await _channel.invokeMethod("queryEpochs", {
+        'from': from,
+        'to': to,
+        if (fields != null) 'fields': fields,
+        'limit': chunkSize,
+        if (next != null) 'segment': next['segment'],
+        if (next != null) 'time': next['time'],
+      });
+      for (final bytes in chunk['epochs'] as List<dynamic>) {
+        yield GnssEpoch(bytes as Uint8List);
+      }
+      next = chunk['next'] as Map?;
+    } while (next != null);
+  }
+
+  // 合并相邻的小分段（每次 openStore 都从新分段开始），返回合并掉的分段数
+  static Future<int> compactStore() async {
+    return await _channel.invokeMethod("compactStore");
+  }
+
+  // 历元存储统计：open、path、segments、bytes、epochs、first_gps_nanos、last_gps_nanos、
+  // appended、deleted_segments、compacted_segments、write_errors
+  static Future<Map<String, dynamic>> storeStats() async {
+    final Map stats = await _channel.invokeMethod("getStoreStats");
+    return Map<String, dynamic>.from(stats);
+  }
+
+  // 原生引擎状态：open、foreground_service、recording（RINEX）、logging（原始数据记录）、storing（历元存储），
+  // 前台服务运行时新的 Flutter 引擎用来判断是否需要重新 open
+  static Future<Map<String, dynamic>> state() async {
+    final Map data = await _channel.invokeMethod("getState");
+    return Map<String, dynamic>.from(data);
+  }
+
+  // 采集档位统计：当前 profile、foreground，profiles 中每个档位的 time_ms、entries、epochs、cpu_ms，
+  // 以及最近的切换记录 transitions；没有开启 adaptive 时为 null
+  static Future<Map<String, dynamic>?> schedulerStats() async {
+    final Map? stats = await _channel.invokeMethod("getSchedulerStats");
+    return stats != null ? Map<String, dynamic>.from(stats) : null;
+  }
+
+  // 处理链路的分阶段延迟和计数：latency 中每个阶段（callback、pool、qc、track、solve、fusion、store、encode、
+  // process、dispatch、end_to_end）的 count、mean_us、p50_us、p90_us、p99_us、max_us，counters 中的历元计数和丢弃数，
+  // gc 中的 GC 次数、耗时和堆大小，以及 Dart 端 onListenEpoch 解码的耗时 decode；没有开启 metrics 时为 null
+  static Future<Map<String, dynamic>?> metrics() async {
+    final Map? data = await _channel.invokeMethod("getMetrics");
+    if (data == null) return null;
+    return Map<String, dynamic>.from(data)
+      ..['decode'] = {
+        'count': _decodeCount,
+        'mean_us': _decodeCount > 0 ? _decodeMicros / _decodeCount : 0.0,
+        'max_us': _decodeMaxMicros,
+      };
+  }
+
+  // onListenEpoch 中二进制历元的解码耗时，只在开启 metrics 时统计
+  static bool _measureDecode = false;
+  static int _decodeCount = 0;
+  static int _decodeMicros = 0;
+  static int _decodeMaxMicros = 0;
+
   // 监听native event数据流
   static void onListenData(onEvent, onError) {
     _eChannel.receiveBroadcastStream().listen(onEvent, onError: onError);
   }
+
+  // 监听二进制历元数据流，批量消息会拆成单个历元，增量帧重建为完整的历元，
+  // 丢帧后到下一个关键帧之前的增量帧无法重建，不会回调。
+  // 其他 map 事件（type 为 'profile' 的档位切换、'location' 的定位结果、'metrics' 的统计）交给 onEvent
+  static void onListenEpoch(
+      void Function(GnssEpoch epoch) onEpoch, Function? onError,
+      {void Function(Map<String, dynamic> event)? onEvent}) {
+    final decoder = GnssDeltaDecoder();
+    final stopwatch = Stopwatch();
+    _eChannel.receiveBroadcastStream().listen((event) {
+      for (final epoch in unbatch(event)) {
+        if (epoch is Map) {
+          onEvent?.call(Map<String, dynamic>.from(epoch));
+          continue;
+        }
+        if (epoch is! Uint8List) continue;
+        if (_measureDecode) stopwatch..reset()..start();
+        final decoded = decoder.decode(epoch);
+        if (_measureDecode) {
+          final micros = stopwatch.elapsedMicroseconds;
+          _decodeCount++;
+          _decodeMicros += micros;
+          if (micros > _decodeMaxMicros) _decodeMaxMicros = micros;
+        }
+        if (decoded != null) onEpoch(decoded);
+      }
+    }, onError: onError);
+  }
+
+  // 批量消息展开为历元列表，单个历元原样返回
+  static List<dynamic> unbatch(dynamic event) {
+    if (event is Map && event['type'] == 'batch') {
+      return event['epochs'] as List<dynamic>;
+    }
+    return [event];
+  }
 }
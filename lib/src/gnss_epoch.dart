@@ -0,0 +1,603 @@
+import 'dart:typed_data';
+
+// 二进制历元解码，布局与 android 端 EpochEncoder 保持一致
+// 所有字段直接从 ByteData 读取，不做整体拷贝
+class GnssEpoch {
+  static const int magic = 0x4550;
+  static const int version = 8;
+
+  static const int headerSize = 16;
+  static const int clockSize = 64;
+  static const int locationSize = 40;
+  static const int sensorSize = 32;
+  static const int solutionSize = 48;
+  static const int imuSampleSize = 21;
+  static const int fusionSampleSize = 56;
+  static const int ionoFreeSize = 19;
+  static const int deltaHeaderSize = 8;
+
+  static const int flagLocation = 1;
+  static const int flagSensor = 1 << 1;
+  static const int flagStatus = 1 << 2;
+  static const int flagSolution = 1 << 3;
+  static const int flagImu = 1 << 4;
+  static const int flagFusion = 1 << 5;
+  static const int flagIonoFree = 1 << 6;
+  static const int flagDelta = 1 << 7;
+
+  // 增量条目的 mask 中表示残差字段为绝对值
+  static const int entryAbsolute = 1 << 31;
+
+  static const int clockLeapSecond = 1;
+  static const int clockTimeUncertainty = 1 << 1;
+  static const int clockFullBias = 1 << 2;
+  static const int clockBias = 1 << 3;
+  static const int clockBiasUncertainty = 1 << 4;
+  static const int clockDrift = 1 << 5;
+  static const int clockDriftUncertainty = 1 << 6;
+
+  final ByteData _data;
+  final List<int> _columnOffset = List<int>.filled(GnssField.count, -1);
+  late final int _locationOffset;
+  late final int _sensorOffset;
+  late final int _solutionOffset;
+  late final int _imuOffset;
+  late final int _fusionOffset;
+  late final int _ionoFreeOffset;
+  late final int _measurementOffset;
+
+  GnssEpoch(Uint8List bytes) : _data = ByteData.sublistView(bytes) {
+    if (_data.lengthInBytes < headerSize + clockSize ||
+        _data.getUint16(0, Endian.little) != magic) {
+      throw const FormatException('not a gnss epoch');
+    }
+    if (_data.getUint8(2) > version) {
+      throw FormatException('unsupported epoch version ${_data.getUint8(2)}');
+    }
+
+    int offset = headerSize + clockSize;
+    _locationOffset = hasLocation ? offset : -1;
+    if (hasLocation) offset += locationSize;
+    _sensorOffset = hasSensor ? offset : -1;
+    if (hasSensor) offset += sensorSize;
+    _solutionOffset = hasSolution ? offset : -1;
+    if (hasSolution) offset += solutionSize;
+    _imuOffset = hasImu ? offset : -1;
+    if (hasImu) offset += 4 + imuSampleSize * imuCount;
+    _fusionOffset = hasFusion ? offset : -1;
+    if (hasFusion) offset += 4 + fusionSampleSize * fusionCount;
+    _ionoFreeOffset = hasIonoFree ? offset : -1;
+    if (hasIonoFree) offset += 4 + ionoFreeSize * ionoFreeCount;
+    _measurementOffset = offset;
+
+    // 增量帧没有完整的观测值列，需要先经过 GnssDeltaDecoder
+    if (isDelta) return;
+    final mask = fieldMask;
+    final n = measurementCount;
+    for (int field = 0; field < GnssField.count; field++) {
+      if (mask & (1 << field) != 0) {
+        _columnOffset[field] = offset;
+        offset += GnssField.width[field] * n;
+      }
+    }
+  }
+
+  int get formatVersion => _data.getUint8(2);
+  int get flags => _data.getUint8(3);
+  int get measurementCount => _data.getUint16(4, Endian.little);
+  int get satelliteCount => _data.getUint16(6, Endian.little);
+  int get clockFlags => _data.getUint32(8, Endian.little);
+  int get fieldMask => _data.getUint32(12, Endian.little);
+
+  bool get hasLocation => flags & flagLocation != 0;
+  bool get hasSensor => flags & flagSensor != 0;
+  bool get hasStatus => flags & flagStatus != 0;
+  bool get hasSolution => flags & flagSolution != 0;
+  bool get hasImu => flags & flagImu != 0;
+  bool get hasFusion => flags & flagFusion != 0;
+  bool get hasIonoFree => flags & flagIonoFree != 0;
+  bool get isDelta => flags & flagDelta != 0;
+
+  // 观测值部分的起始位置
+  int get measurementOffset => _measurementOffset;
+
+  bool hasField(int field) => _columnOffset[field] >= 0;
+
+  // clock
+  int get timeNanos => _data.getInt64(headerSize, Endian.little);
+  int get fullBiasNanos => _data.getInt64(headerSize + 8, Endian.little);
+  double get biasNanos => _data.getFloat64(headerSize + 16, Endian.little);
+  double get biasUncertaintyNanos =>
+      _data.getFloat64(headerSize + 24, Endian.little);
+  double get driftNanosPerSecond =>
+      _data.getFloat64(headerSize + 32, Endian.little);
+  double get driftUncertaintyNanosPerSecond =>
+      _data.getFloat64(headerSize + 40, Endian.little);
+  double get timeUncertaintyNanos =>
+      _data.getFloat64(headerSize + 48, Endian.little);
+  int get leapSecond => _data.getInt32(headerSize + 56, Endian.little);
+  int get hardwareClockDiscontinuityCount =>
+      _data.getInt32(headerSize + 60, Endian.little);
+
+  // 自 GPS 时间起点的纳秒数，即 Location.queryEpochs 使用的时间
+  int get gpsTimeNanos => timeNanos - fullBiasNanos - biasNanos.round();
+
+  // location
+  double get latitude => _data.getFloat64(_locationOffset, Endian.little);
+  double get longitude => _data.getFloat64(_locationOffset + 8, Endian.little);
+  double get altitude => _data.getFloat64(_locationOffset + 16, Endian.little);
+  double get accuracy => _data.getFloat32(_locationOffset + 24, Endian.little);
+  double get speed => _data.getFloat32(_locationOffset + 28, Endian.little);
+  double get speedAccuracy =>
+      _data.getFloat32(_locationOffset + 32, Endian.little);
+
+  // sensor
+  int get origen => _data.getInt32(_sensorOffset, Endian.little);
+  double get angle => _data.getFloat32(_sensorOffset + 4, Endian.little);
+  double get sensorSpeed => _data.getFloat64(_sensorOffset + 8, Endian.little);
+  double get sensorSpeedH =>
+      _data.getFloat64(_sensorOffset + 16, Endian.little);
+  double get sensorSpeedV =>
+      _data.getFloat64(_sensorOffset + 24, Endian.little);
+
+  // spp，原生端单点定位结果
+  double get sppLatitude => _data.getFloat64(_solutionOffset, Endian.little);
+  double get sppLongitude =>
+      _data.getFloat64(_solutionOffset + 8, Endian.little);
+  double get sppAltitude =>
+      _data.getFloat64(_solutionOffset + 16, Endian.little);
+  double get sppClockBiasMeters =>
+      _data.getFloat64(_solutionOffset + 24, Endian.little);
+  double get sppPdop => _data.getFloat32(_solutionOffset + 32, Endian.little);
+  double get sppHdop => _data.getFloat32(_solutionOffset + 36, Endian.little);
+  double get sppVdop => _data.getFloat32(_solutionOffset + 40, Endian.little);
+  int get sppUsedCount => _data.getUint16(_solutionOffset + 44, Endian.little);
+  int get sppIterations =>
+      _data.getUint16(_solutionOffset + 46, Endian.little);
+
+  // imu，上一历元以来的 IMU 采样，时间戳为 elapsedRealtime 纳秒
+  int get imuCount => hasImu ? _data.getUint32(_imuOffset, Endian.little) : 0;
+  int imuTimestamp(int i) =>
+      _data.getInt64(_imuOffset + 4 + i * 8, Endian.little);
+  // axis 为 0、1、2 对应 x、y、z
+  double imuValue(int i, int axis) => _data.getFloat32(
+      _imuOffset + 4 + imuCount * 8 + (i * 3 + axis) * 4, Endian.little);
+  // Android Sensor.TYPE_*：1 加速度计，2 磁力计，4 陀螺仪
+  int imuType(int i) => _data.getUint8(_imuOffset + 4 + imuCount * 20 + i);
+
+  // fusion，GNSS/INS 融合结果，按 IMU 频率输出
+  // 位置 axis 0..2 为纬度、经度、高度，速度为东北天，姿态为横滚、俯仰、航向（度）
+  int get fusionCount =>
+      hasFusion ? _data.getUint32(_fusionOffset, Endian.little) : 0;
+  int fusionTimestamp(int i) =>
+      _data.getInt64(_fusionOffset + 4 + i * 8, Endian.little);
+  double fusionPosition(int i, int axis) => _data.getFloat64(
+      _fusionOffset + 4 + fusionCount * 8 + (i * 3 + axis) * 8,
+      Endian.little);
+  double fusionVelocity(int i, int axis) => _data.getFloat32(
+      _fusionOffset + 4 + fusionCount * 32 + (i * 3 + axis) * 4,
+      Endian.little);
+  double fusionAttitude(int i, int axis) => _data.getFloat32(
+      _fusionOffset + 4 + fusionCount * 44 + (i * 3 + axis) * 4,
+      Endian.little);
+
+  // iono_free，每颗有双频组合的卫星一项，ionoFreeBand 为与 L1 组合的第二个频段
+  int get ionoFreeCount =>
+      hasIonoFree ? _data.getUint32(_ionoFreeOffset, Endian.little) : 0;
+  double ionoFreePseudorange(int i) =>
+      _data.getFloat64(_ionoFreeOffset + 4 + i * 8, Endian.little);
+  double ionoFreeSmoothedPseudorange(int i) => _data.getFloat64(
+      _ionoFreeOffset + 4 + ionoFreeCount * 8 + i * 8, Endian.little);
+  int ionoFreeSvid(int i) =>
+      _data.getUint8(_ionoFreeOffset + 4 + ionoFreeCount * 16 + i);
+  int ionoFreeConstellationType(int i) =>
+      _data.getUint8(_ionoFreeOffset + 4 + ionoFreeCount * 17 + i);
+  int ionoFreeBand(int i) =>
+      _data.getUint8(_ionoFreeOffset + 4 + ionoFreeCount * 18 + i);
+
+  // 第 i 个观测值的字段，按字段类型读取
+  num value(int field, int i) {
+    final o = _columnOffset[field] + i * GnssField.width[field];
+    switch (GnssField.type[field]) {
+      case GnssField.u8:
+        return _data.getUint8(o);
+      case GnssField.i32:
+        return _data.getInt32(o, Endian.little);
+      case GnssField.i64:
+        return _data.getInt64(o, Endian.little);
+      case GnssField.f32:
+        return _data.getFloat32(o, Endian.little);
+      default:
+        return _data.getFloat64(o, Endian.little);
+    }
+  }
+
+  int svid(int i) => _data.getInt32(
+      _columnOffset[GnssField.svid] + i * 4, Endian.little);
+  int constellationType(int i) =>
+      _data.getUint8(_columnOffset[GnssField.constellationType] + i);
+  double pseudorange(int i) => _data.getFloat64(
+      _columnOffset[GnssField.pseudorange] + i * 8, Endian.little);
+  double cn0DbHz(int i) => _data.getFloat32(
+      _columnOffset[GnssField.cn0Db] + i * 4, Endian.little);
+
+  // 跨历元跟踪的观测值：Hatch 平滑伪距、载波相位周数和周跳标记
+  double smoothedPseudorange(int i) => _data.getFloat64(
+      _columnOffset[GnssField.smoothedPseudorange] + i * 8, Endian.little);
+  double carrierCycles(int i) => _data.getFloat64(
+      _columnOffset[GnssField.carrierCycles] + i * 8, Endian.little);
+  int cycleSlip(int i) =>
+      _data.getUint8(_columnOffset[GnssField.cycleSlip] + i);
+  int band(int i) => _data.getUint8(_columnOffset[GnssField.band] + i);
+
+  // 质量检查标记（GnssField.qc*），0 表示通过
+  int qcFlags(int i) => _data.getUint8(_columnOffset[GnssField.qcFlags] + i);
+
+  // 信号标识，同一卫星不同频段各不相同，如 G#05/L5
+  String signalId(int i) => '${prn(i)}/${GnssField.bandNames[band(i)]}';
+
+  // 卫星标识，与 map 格式的 svid 字段相同，如 G#05
+  String prn(int i) {
+    const prefix = {1: 'G', 3: 'R', 4: 'J', 5: 'C', 6: 'E'};
+    return '${prefix[constellationType(i)] ?? 'U'}#'
+        '${svid(i).toString().padLeft(2, '0')}';
+  }
+
+  // 转换成与 map 格式相同的结构，便于兼容旧的处理代码
+  Map<String, dynamic> toMap() {
+    final clock = <String, dynamic>{
+      'leap_second': leapSecond,
+      'time_nanos': timeNanos,
+      'hardware_clock_discontinuity_count': hardwareClockDiscontinuityCount,
+    };
+    final cf = clockFlags;
+    if (cf & clockTimeUncertainty != 0) {
+      clock['time_uncertaint_nanos'] = timeUncertaintyNanos;
+    }
+    if (cf & clockFullBias != 0) clock['full_bias_nanos'] = fullBiasNanos;
+    if (cf & clockBias != 0) clock['bias_nanos'] = biasNanos;
+    if (cf & clockBiasUncertainty != 0) {
+      clock['bias_uncertaint_nanos'] = biasUncertaintyNanos;
+    }
+    if (cf & clockDrift != 0) clock['drift_nanos_second'] = driftNanosPerSecond;
+
+    final data = <String, dynamic>{
+      'rx_clock': clock,
+      'satellite_count': satelliteCount,
+    };
+    if (hasLocation) {
+      data['accuracy'] = accuracy;
+      data['longitude'] = longitude;
+      data['latitude'] = latitude;
+      data['speed'] = speed;
+      data['altitude'] = altitude;
+      data['speed_accuracy'] = speedAccuracy;
+    }
+    if (hasSensor) {
+      data['sensor'] = {
+        'origen': origen,
+        'speed': sensorSpeed,
+        'speedH': sensorSpeedH,
+        'speedV': sensorSpeedV,
+        'angle': angle,
+      };
+    }
+    if (hasSolution) {
+      data['spp'] = {
+        'latitude': sppLatitude,
+        'longitude': sppLongitude,
+        'altitude': sppAltitude,
+        'clock_bias_meters': sppClockBiasMeters,
+        'pdop': sppPdop,
+        'hdop': sppHdop,
+        'vdop': sppVdop,
+        'used_count': sppUsedCount,
+      };
+    }
+    if (hasImu) {
+      final n = imuCount;
+      final timestamps = Int64List(n);
+      final types = Uint8List(n);
+      final values = Float32List(n * 3);
+      for (int i = 0; i < n; i++) {
+        timestamps[i] = imuTimestamp(i);
+        types[i] = imuType(i);
+        for (int axis = 0; axis < 3; axis++) {
+          values[i * 3 + axis] = imuValue(i, axis);
+        }
+      }
+      data['imu'] = {'timestamps': timestamps, 'types': types, 'values': values};
+    }
+    if (hasFusion) {
+      final n = fusionCount;
+      final timestamps = Int64List(n);
+      final positions = Float64List(n * 3);
+      final velocities = Float32List(n * 3);
+      final attitudes = Float32List(n * 3);
+      for (int i = 0; i < n; i++) {
+        timestamps[i] = fusionTimestamp(i);
+        for (int axis = 0; axis < 3; axis++) {
+          positions[i * 3 + axis] = fusionPosition(i, axis);
+          velocities[i * 3 + axis] = fusionVelocity(i, axis);
+          attitudes[i * 3 + axis] = fusionAttitude(i, axis);
+        }
+      }
+      data['fusion'] = {
+        'timestamps': timestamps,
+        'positions': positions,
+        'velocities': velocities,
+        'attitudes': attitudes,
+      };
+    }
+    if (hasIonoFree) {
+      final n = ionoFreeCount;
+      final svids = Int32List(n);
+      final constellations = Int32List(n);
+      final bands = Int32List(n);
+      final pseudoranges = Float64List(n);
+      final smoothed = Float64List(n);
+      for (int i = 0; i < n; i++) {
+        svids[i] = ionoFreeSvid(i);
+        constellations[i] = ionoFreeConstellationType(i);
+        bands[i] = ionoFreeBand(i);
+        pseudoranges[i] = ionoFreePseudorange(i);
+        smoothed[i] = ionoFreeSmoothedPseudorange(i);
+      }
+      data['iono_free'] = {
+        'svids': svids,
+        'constellation_types': constellations,
+        'bands': bands,
+        'pseudoranges': pseudoranges,
+        'smoothed_pseudoranges': smoothed,
+      };
+    }
+    if (hasStatus) {
+      final satellites = <Map<String, dynamic>>[];
+      for (int i = 0; i < measurementCount; i++) {
+        final sat = <String, dynamic>{};
+        for (int field = 0; field < GnssField.count; field++) {
+          if (hasField(field)) sat[GnssField.names[field]] = value(field, i);
+        }
+        if (hasField(GnssField.band)) {
+          sat['band'] = GnssField.bandNames[band(i)];
+        }
+        if (hasField(GnssField.svid) &&
+            hasField(GnssField.constellationType)) {
+          sat['svid'] = prn(i);
+        }
+        satellites.add(sat);
+      }
+      data['satellites'] = satellites;
+    }
+    return data;
+  }
+}
+
+// 增量模式（open 的 keyframeInterval）的解码器，由关键帧和之后的增量帧重建完整的历元
+//
+// 每个订阅使用一个实例，按收到的顺序传入全部历元。sequence 不连续（原生端丢弃了历元）
+// 或缺少信号状态时返回 null，直到下一个关键帧；不是增量帧的历元原样返回。
+// 伪距、平滑伪距和 ADR 以 预测值 + f32 残差 重建，与原生端保存的值完全一致。
+class GnssDeltaDecoder {
+  final Map<int, _SignalState> _signals = {};
+  bool _valid = false;
+  int _sequence = 0;
+  int _fieldMask = 0;
+
+  GnssEpoch? decode(Uint8List bytes) {
+    final epoch = GnssEpoch(bytes);
+    if (!epoch.isDelta) {
+      _valid = false;
+      return epoch;
+    }
+
+    final data = ByteData.sublistView(bytes);
+    final head = epoch.measurementOffset;
+    final sequence = data.getUint32(head, Endian.little);
+    final keyframe = data.getUint8(head + 4) != 0;
+    final entries = data.getUint16(head + 6, Endian.little);
+    final mask = epoch.fieldMask;
+    if (keyframe) {
+      _signals.clear();
+    } else if (!_valid ||
+        mask != _fieldMask ||
+        sequence != (_sequence + 1) & 0xffffffff) {
+      _valid = false;
+      return null;
+    }
+    _valid = true;
+    _sequence = sequence;
+    _fieldMask = mask;
+
+    final count = epoch.measurementCount;
+    final time = epoch.timeNanos;
+    final keys = List<int>.filled(count, 0);
+    final present = List<_SignalState?>.filled(count, null);
+    int o = head + GnssEpoch.deltaHeaderSize;
+    for (int i = 0; i < count; i++) {
+      keys[i] = data.getUint16(o + i * 2, Endian.little);
+      present[i] = _signals[keys[i]];
+    }
+    o += count * 2;
+
+    // 预测使用条目更新前的伪距率和时间
+    final states = List<_SignalState?>.filled(entries, null);
+    final masks = List<int>.filled(entries, 0);
+    final rates = List<double>.filled(entries, 0);
+    final gaps = List<double>.filled(entries, 0);
+    final predictRate = mask & (1 << GnssField.pseudorangeRate) != 0;
+    for (int e = 0; e < entries; e++) {
+      final i = data.getUint16(o + e * 2, Endian.little);
+      final m = data.getUint32(o + entries * 2 + e * 4, Endian.little);
+      var state = present[i];
+      if (state == null) {
+        if (m & GnssEpoch.entryAbsolute == 0) {
+          _valid = false;
+          return null;
+        }
+        state = _SignalState();
+        _signals[keys[i]] = state;
+        present[i] = state;
+      }
+      states[e] = state;
+      masks[e] = m;
+      if (predictRate) {
+        rates[e] = state.values
+            .getFloat64(GnssField.pseudorangeRate * 8, Endian.little);
+      }
+      gaps[e] = (time - state.time) * 1e-9;
+    }
+    o += entries * 6;
+
+    for (int field = 0; field < GnssField.count; field++) {
+      final bit = 1 << field;
+      if (mask & bit == 0) continue;
+      final residual = GnssField.residual & bit != 0;
+      for (int e = 0; e < entries; e++) {
+        final m = masks[e];
+        if (m & bit == 0) continue;
+        final state = states[e]!;
+        if (residual && m & GnssEpoch.entryAbsolute == 0) {
+          final predicted =
+              state.values.getFloat64(field * 8, Endian.little) +
+                  rates[e] * gaps[e];
+          final r = data.getFloat32(o, Endian.little);
+          state.values.setFloat64(field * 8, predicted + r, Endian.little);
+          o += 4;
+        } else {
+          final w = GnssField.width[field];
+          state.bytes.setRange(field * 8, field * 8 + w, bytes, o);
+          o += w;
+        }
+      }
+    }
+
+    int size = head;
+    for (int field = 0; field < GnssField.count; field++) {
+      if (mask & (1 << field) != 0) size += GnssField.width[field] * count;
+    }
+    final out = Uint8List(size);
+    out.setRange(0, head, bytes);
+    out[3] &= ~GnssEpoch.flagDelta;
+    o = head;
+    for (int i = 0; i < count; i++) {
+      if (present[i] == null) {
+        _valid = false;
+        return null;
+      }
+      present[i]!.time = time;
+    }
+    for (int field = 0; field < GnssField.count; field++) {
+      if (mask & (1 << field) == 0) continue;
+      final w = GnssField.width[field];
+      for (int i = 0; i < count; i++) {
+        out.setRange(o, o + w, present[i]!.bytes, field * 8);
+        o += w;
+      }
+    }
+    return GnssEpoch(out);
+  }
+}
+
+// 一个信号的最新字段值，每个字段 8 字节，按编码后的类型保存
+class _SignalState {
+  final Uint8List bytes = Uint8List(GnssField.count * 8);
+  late final ByteData values = ByteData.sublistView(bytes);
+  int time = 0;
+}
+
+// 观测值字段编号，与 EpochEncoder.FIELD_* 一致
+class GnssField {
+  static const int svid = 0;
+  static const int constellationType = 1;
+  static const int ttx = 2;
+  static const int trx = 3;
+  static const int azimuthDegrees = 4;
+  static const int elevationDegrees = 5;
+  static const int cn0Db = 6;
+  static const int receivedSvTimeUncertaintyNanos = 7;
+  static const int pseudorange = 8;
+  static const int timeOffsetNanos = 9;
+  static const int receivedSvTimeNanos = 10;
+  static const int pseudorangeRateUncertainty = 11;
+  static const int pseudorangeRate = 12;
+  static const int multipathIndicator = 13;
+  static const int agcLevelDb = 14;
+  static const int adrUncertainty = 15;
+  static const int adrState = 16;
+  static const int adr = 17;
+  static const int carrierFrequency = 18;
+  static const int smoothedPseudorange = 19;
+  static const int smoothingCount = 20;
+  static const int carrierCycles = 21;
+  static const int cycleSlip = 22;
+  static const int band = 23;
+  static const int qcFlags = 24;
+  static const int count = 25;
+
+  // band 字段的频段名，与 GnssBand 一致
+  static const List<String> bandNames = ['L1', 'L2', 'L5', 'L6', 'L7'];
+
+  // cycleSlip 标记，与 ObservableTracker.SLIP_* 一致
+  static const int slipReported = 1;
+  static const int slipDoppler = 1 << 1;
+  static const int slipGeometryFree = 1 << 2;
+
+  // qcFlags 标记，与 QualityControl.QC_* 一致
+  static const int qcState = 1;
+  static const int qcUncertainty = 1 << 1;
+  static const int qcRange = 1 << 2;
+  static const int qcCn0 = 1 << 3;
+  static const int qcElevation = 1 << 4;
+  static const int qcRate = 1 << 5;
+
+  // 增量模式下按残差发送的字段，与 EpochEncoder.RESIDUAL_FIELDS 一致
+  static const int residual =
+      (1 << pseudorange) | (1 << smoothedPseudorange) | (1 << adr);
+
+  static const int u8 = 0;
+  static const int i32 = 1;
+  static const int i64 = 2;
+  static const int f32 = 3;
+  static const int f64 = 4;
+
+  static const List<int> type = [
+    i32, u8, f64, f64, f32, f32, f32, i64, f64, f64, //
+    i64, f64, f64, u8, f64, f64, i32, f64, f64, f64, //
+    u8, f64, u8, u8, u8,
+  ];
+
+  static const List<int> width = [
+    4, 1, 8, 8, 4, 4, 4, 8, 8, 8, //
+    8, 8, 8, 1, 8, 8, 4, 8, 8, 8, //
+    1, 8, 1, 1, 1,
+  ];
+
+  static const List<String> names = [
+    'svid',
+    'constellation_type',
+    'ttx',
+    'trx',
+    'azimuth_degrees',
+    'elevation_degrees',
+    'cn0_db',
+    'received_sv_time_uncertainty_nanos',
+    'pseudorange',
+    'time_offset_nanos',
+    'received_sv_time_nanos',
+    'pseudorange_rate_uncertainty_meters_per_second',
+    'pseudorange_rate_meters_per_second',
+    'multipath_indicator',
+    'automatic_gain_control_levelDb',
+    'acumulated_delta_range_uncertainty_meters',
+    'accumulated_delta_range_state',
+    'accumulated_delta_range_meters',
+    'carrier_frequency',
+    'smoothed_pseudorange',
+    'smoothing_count',
+    'carrier_cycles',
+    'cycle_slip',
+    'band',
+    'qc_flags',
+  ];
+}
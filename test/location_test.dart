@@ -1,3 +1,6 @@
+import 'dart:io';
+import 'dart:typed_data';
+
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:location/location.dart';
@@ -20,4 +23,126 @@ void main() {
   test('getPlatformVersion', () async {
     expect(await Location.platformVersion, '42');
   });
+
+  test('decode binary epoch', () {
+    const mask = (1 << GnssField.svid) |
+        (1 << GnssField.constellationType) |
+        (1 << GnssField.pseudorange);
+    final bytes =
+        ByteData(GnssEpoch.headerSize + GnssEpoch.clockSize + 4 + 1 + 8);
+    bytes.setUint16(0, GnssEpoch.magic, Endian.little);
+    bytes.setUint8(2, GnssEpoch.version);
+    bytes.setUint8(3, GnssEpoch.flagStatus);
+    bytes.setUint16(4, 1, Endian.little);
+    bytes.setUint16(6, 12, Endian.little);
+    bytes.setUint32(12, mask, Endian.little);
+    bytes.setInt64(GnssEpoch.headerSize, 123456789, Endian.little);
+    const base = GnssEpoch.headerSize + GnssEpoch.clockSize;
+    bytes.setInt32(base, 5, Endian.little);
+    bytes.setUint8(base + 4, 5);
+    bytes.setFloat64(base + 5, 21000000.5, Endian.little);
+
+    final epoch = GnssEpoch(bytes.buffer.asUint8List());
+    expect(epoch.measurementCount, 1);
+    expect(epoch.satelliteCount, 12);
+    expect(epoch.timeNanos, 123456789);
+    expect(epoch.prn(0), 'C#05');
+    expect(epoch.pseudorange(0), 21000000.5);
+    expect(epoch.toMap()['satellites'][0]['svid'], 'C#05');
+  });
+
+  test('decode delta epochs', () {
+    const mask = (1 << GnssField.svid) |
+        (1 << GnssField.constellationType) |
+        (1 << GnssField.pseudorange);
+    const base = GnssEpoch.headerSize + GnssEpoch.clockSize;
+    Uint8List frame(int sequence, bool keyframe, int time, List<int> values) {
+      final bytes =
+          ByteData(base + GnssEpoch.deltaHeaderSize + 8 + values.length);
+      bytes.setUint16(0, GnssEpoch.magic, Endian.little);
+      bytes.setUint8(2, GnssEpoch.version);
+      bytes.setUint8(3, GnssEpoch.flagStatus | GnssEpoch.flagDelta);
+      bytes.setUint16(4, 1, Endian.little);
+      bytes.setUint32(12, mask, Endian.little);
+      bytes.setInt64(GnssEpoch.headerSize, time, Endian.little);
+      bytes.setUint32(base, sequence, Endian.little);
+      bytes.setUint8(base + 4, keyframe ? 1 : 0);
+      bytes.setUint16(base + 6, 1, Endian.little);
+      bytes.setUint16(base + 8, 0x2345, Endian.little);
+      bytes.setUint16(base + 10, 0, Endian.little);
+      bytes.setUint32(base + 12,
+          keyframe ? mask | GnssEpoch.entryAbsolute : 1 << GnssField.pseudorange,
+          Endian.little);
+      final list = bytes.buffer.asUint8List();
+      list.setRange(base + 16, list.length, values);
+      return list;
+    }
+
+    final keyframe = ByteData(13)
+      ..setInt32(0, 5, Endian.little)
+      ..setUint8(4, 5)
+      ..setFloat64(5, 21000000.0, Endian.little);
+    final residual = ByteData(4)..setFloat32(0, 0.5, Endian.little);
+
+    final decoder = GnssDeltaDecoder();
+    final first =
+        decoder.decode(frame(0, true, 1000, keyframe.buffer.asUint8List()))!;
+    expect(first.isDelta, false);
+    expect(first.prn(0), 'C#05');
+    expect(first.pseudorange(0), 21000000.0);
+
+    final second =
+        decoder.decode(frame(1, false, 2000, residual.buffer.asUint8List()))!;
+    expect(second.prn(0), 'C#05');
+    expect(second.pseudorange(0), 21000000.5);
+
+    // 丢了 sequence 2，等待下一个关键帧
+    expect(
+        decoder.decode(frame(3, false, 4000, residual.buffer.asUint8List())),
+        isNull);
+  });
+
+  // test/fixtures/epoch_golden.bin 由 android/benchmark 的 EpochGoldenTest 用 EpochEncoder 生成：
+  // 一个关键帧和两个增量帧，每帧后跟同一历元的完整编码，格式为 长度(u32) 字节
+  test('decode java golden epochs', () {
+    final data = File('test/fixtures/epoch_golden.bin').readAsBytesSync();
+    final view = ByteData.sublistView(data);
+    final frames = <Uint8List>[];
+    for (int o = 0; o < data.length;) {
+      final n = view.getUint32(o, Endian.little);
+      frames.add(Uint8List.sublistView(data, o + 4, o + 4 + n));
+      o += 4 + n;
+    }
+    expect(frames.length, 6);
+
+    final decoder = GnssDeltaDecoder();
+    for (int k = 0; k < frames.length; k += 2) {
+      expect(GnssEpoch(frames[k]).isDelta, true);
+      final decoded = decoder.decode(frames[k])!;
+      final full = GnssEpoch(frames[k + 1]);
+      expect(decoded.formatVersion, GnssEpoch.version);
+      expect(decoded.flags, full.flags);
+      expect(decoded.timeNanos, full.timeNanos);
+      expect(decoded.measurementCount, 12);
+      expect(decoded.satelliteCount, full.satelliteCount);
+      expect(decoded.fieldMask, full.fieldMask);
+      for (int field = 0; field < GnssField.count; field++) {
+        if (full.fieldMask & (1 << field) == 0) continue;
+        for (int i = 0; i < full.measurementCount; i++) {
+          final want = full.value(field, i);
+          final got = decoded.value(field, i);
+          final reason = 'frame ${k ~/ 2} ${GnssField.names[field]} $i';
+          if (want is double && want.isNaN) {
+            expect((got as double).isNaN, true, reason: reason);
+          } else if (GnssField.residual & (1 << field) != 0) {
+            // 残差字段在 f32 残差精度以内
+            expect(got, closeTo(want, 1e-3), reason: reason);
+          } else {
+            expect(got, want, reason: reason);
+          }
+        }
+      }
+      expect(decoded.prn(0), full.prn(0));
+    }
+  });
 }